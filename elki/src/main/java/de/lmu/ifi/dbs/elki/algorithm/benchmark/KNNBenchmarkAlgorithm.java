@@ -23,6 +23,8 @@ package de.lmu.ifi.dbs.elki.algorithm.benchmark;
  along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
@@ -40,6 +42,7 @@ import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.Duration;
 import de.lmu.ifi.dbs.elki.math.MeanVariance;
 import de.lmu.ifi.dbs.elki.math.random.RandomFactory;
 import de.lmu.ifi.dbs.elki.result.Result;
@@ -48,6 +51,7 @@ import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
@@ -57,6 +61,11 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
  * point. The query points can either come from a separate data source, or from
  * the original database.
  * 
+ * With the bulk option, all queries from the database are executed with a
+ * single {@link KNNQuery#getKNNForBulkDBIDs} call instead, which allows
+ * comparing the bulk code path to individual queries. The result hash code is
+ * the same in both modes unless there are ties at the k-distance.
+ * 
  * @author Erich Schubert
  * 
  * @param <O> Object type
@@ -89,6 +98,11 @@ public class KNNBenchmarkAlgorithm<O> extends AbstractDistanceBasedAlgorithm<O,
    */
   protected RandomFactory random;
 
+  /**
+   * Use bulk queries.
+   */
+  protected boolean bulk = false;
+
   /**
    * Constructor.
    * 
@@ -99,11 +113,26 @@ public class KNNBenchmarkAlgorithm<O> extends AbstractDistanceBasedAlgorithm<O,
    * @param random Random factory
    */
   public KNNBenchmarkAlgorithm(DistanceFunction<? super O> distanceFunction, int k, DatabaseConnection queries, double sampling, RandomFactory random) {
+    this(distanceFunction, k, queries, sampling, random, false);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param distanceFunction Distance function to use
+   * @param k K parameter
+   * @param queries Query data set (may be null!)
+   * @param sampling Sampling rate
+   * @param random Random factory
+   * @param bulk Use bulk queries
+   */
+  public KNNBenchmarkAlgorithm(DistanceFunction<? super O> distanceFunction, int k, DatabaseConnection queries, double sampling, RandomFactory random, boolean bulk) {
     super(distanceFunction);
     this.k = k;
     this.queries = queries;
     this.sampling = sampling;
     this.random = random;
+    this.bulk = bulk;
   }
 
   /**
@@ -124,25 +153,26 @@ public class KNNBenchmarkAlgorithm<O> extends AbstractDistanceBasedAlgorithm<O,
       FiniteProgress prog = LOG.isVeryVerbose() ? new FiniteProgress("kNN queries", sample.size(), LOG) : null;
       int hash = 0;
       MeanVariance mv = new MeanVariance(), mvdist = new MeanVariance();
-      for(DBIDIter iditer = sample.iter(); iditer.valid(); iditer.advance()) {
-        KNNList knns = knnQuery.getKNNForDBID(iditer, k);
-        int ichecksum = 0;
-        for(DBIDIter it = knns.iter(); it.valid(); it.advance()) {
-          ichecksum += DBIDUtil.asInteger(it);
+      Duration duration = LOG.isStatistics() ? LOG.newDuration(this.getClass().getName() + (bulk ? ".bulk-time" : ".query-time")).begin() : null;
+      if(bulk) {
+        List<? extends KNNList> all = knnQuery.getKNNForBulkDBIDs(DBIDUtil.ensureArray(sample), k);
+        for(KNNList knns : all) {
+          hash = processResult(knns, hash, mv, mvdist);
+          LOG.incrementProcessed(prog);
         }
-        hash = Util.mixHashCodes(hash, ichecksum);
-        mv.put(knns.size());
-        mvdist.put(knns.getKNNDistance());
-        LOG.incrementProcessed(prog);
       }
-      LOG.ensureCompleted(prog);
-      if(LOG.isStatistics()) {
-        LOG.statistics("Result hashcode: " + hash);
-        LOG.statistics("Mean number of results: " + mv.getMean() + " +- " + mv.getNaiveStddev());
-        if(mvdist.getCount() > 0) {
-          LOG.statistics("Mean k-distance: " + mvdist.getMean() + " +- " + mvdist.getNaiveStddev());
+      else {
+        for(DBIDIter iditer = sample.iter(); iditer.valid(); iditer.advance()) {
+          KNNList knns = knnQuery.getKNNForDBID(iditer, k);
+          hash = processResult(knns, hash, mv, mvdist);
+          LOG.incrementProcessed(prog);
         }
       }
+      LOG.ensureCompleted(prog);
+      if(duration != null) {
+        LOG.statistics(duration.end());
+      }
+      logResultStatistics(hash, mv, mvdist);
     }
     else {
       // Separate query set.
@@ -158,6 +188,9 @@ public class KNNBenchmarkAlgorithm<O> extends AbstractDistanceBasedAlgorithm<O,
       if(col < 0) {
         throw new AbortException("No compatible data type in query input was found. Expected: " + res.toString());
       }
+      if(bulk) {
+        LOG.warning("Bulk queries are only supported for queries from the database.");
+      }
       // Random sampling is a bit of hack, sorry.
       // But currently, we don't (yet) have an "integer random sample" function.
       DBIDRange sids = DBIDUtil.generateStaticDBIDRange(bundle.dataLength());
@@ -171,27 +204,51 @@ public class KNNBenchmarkAlgorithm<O> extends AbstractDistanceBasedAlgorithm<O,
         @SuppressWarnings("unchecked")
         O o = (O) bundle.data(off, col);
         KNNList knns = knnQuery.getKNNForObject(o, k);
-        int ichecksum = 0;
-        for(DBIDIter it = knns.iter(); it.valid(); it.advance()) {
-          ichecksum += DBIDUtil.asInteger(it);
-        }
-        hash = Util.mixHashCodes(hash, ichecksum);
-        mv.put(knns.size());
-        mvdist.put(knns.getKNNDistance());
+        hash = processResult(knns, hash, mv, mvdist);
         LOG.incrementProcessed(prog);
       }
       LOG.ensureCompleted(prog);
-      if(LOG.isStatistics()) {
-        LOG.statistics("Result hashcode: " + hash);
-        LOG.statistics("Mean number of results: " + mv.getMean() + " +- " + mv.getNaiveStddev());
-        if(mvdist.getCount() > 0) {
-          LOG.statistics("Mean k-distance: " + mvdist.getMean() + " +- " + mvdist.getNaiveStddev());
-        }
-      }
+      logResultStatistics(hash, mv, mvdist);
     }
     return null;
   }
 
+  /**
+   * Fold a kNN result into the result hash and the statistics.
+   *
+   * @param knns kNN result
+   * @param hash Previous hash value
+   * @param mv Statistics of the result sizes
+   * @param mvdist Statistics of the k-distances
+   * @return Updated hash value
+   */
+  private static int processResult(KNNList knns, int hash, MeanVariance mv, MeanVariance mvdist) {
+    int ichecksum = 0;
+    for(DBIDIter it = knns.iter(); it.valid(); it.advance()) {
+      ichecksum += DBIDUtil.asInteger(it);
+    }
+    mv.put(knns.size());
+    mvdist.put(knns.getKNNDistance());
+    return Util.mixHashCodes(hash, ichecksum);
+  }
+
+  /**
+   * Log the result hash and statistics.
+   *
+   * @param hash Result hash value
+   * @param mv Statistics of the result sizes
+   * @param mvdist Statistics of the k-distances
+   */
+  private static void logResultStatistics(int hash, MeanVariance mv, MeanVariance mvdist) {
+    if(LOG.isStatistics()) {
+      LOG.statistics("Result hashcode: " + hash);
+      LOG.statistics("Mean number of results: " + mv.getMean() + " +- " + mv.getNaiveStddev());
+      if(mvdist.getCount() > 0) {
+        LOG.statistics("Mean k-distance: " + mvdist.getMean() + " +- " + mvdist.getNaiveStddev());
+      }
+    }
+  }
+
   @Override
   public TypeInformation[] getInputTypeRestriction() {
     return TypeUtil.array(getDistanceFunction().getInputTypeRestriction());
@@ -232,6 +289,11 @@ public class KNNBenchmarkAlgorithm<O> extends AbstractDistanceBasedAlgorithm<O,
      */
     public static final OptionID RANDOM_ID = new OptionID("knnbench.random", "Random generator for sampling.");
 
+    /**
+     * Flag to use bulk queries.
+     */
+    public static final OptionID BULK_ID = new OptionID("knnbench.bulk", "Execute all queries from the database as a single bulk query.");
+
     /**
      * K parameter
      */
@@ -252,6 +314,11 @@ public class KNNBenchmarkAlgorithm<O> extends AbstractDistanceBasedAlgorithm<O,
      */
     protected RandomFactory random;
 
+    /**
+     * Use bulk queries.
+     */
+    protected boolean bulk = false;
+
     @Override
     protected void makeOptions(Parameterization config) {
       super.makeOptions(config);
@@ -273,11 +340,15 @@ public class KNNBenchmarkAlgorithm<O> extends AbstractDistanceBasedAlgorithm<O,
       if(config.grab(randomP)) {
         random = randomP.getValue();
       }
+      Flag bulkP = new Flag(BULK_ID);
+      if(config.grab(bulkP)) {
+        bulk = bulkP.isTrue();
+      }
     }
 
     @Override
     protected KNNBenchmarkAlgorithm<O> makeInstance() {
-      return new KNNBenchmarkAlgorithm<>(distanceFunction, k, queries, sampling, random);
+      return new KNNBenchmarkAlgorithm<>(distanceFunction, k, queries, sampling, random, bulk);
     }
   }
 }
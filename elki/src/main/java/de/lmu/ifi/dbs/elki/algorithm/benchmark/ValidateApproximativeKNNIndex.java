@@ -164,12 +164,17 @@ public class ValidateApproximativeKNNIndex<O> extends AbstractDistanceBasedAlgor
       MeanVariance mv = new MeanVariance(), mvrec = new MeanVariance();
       MeanVariance mvdist = new MeanVariance(), mvdaerr = new MeanVariance(), mvdrerr = new MeanVariance();
       int misses = 0;
+      long approxTime = 0, exactTime = 0;
       for(DBIDIter iditer = sample.iter(); iditer.valid(); iditer.advance()) {
         if(pattern == null || pattern.matcher(lrel.get(iditer)).find()) {
           // Query index:
+          long start = System.nanoTime();
           KNNList knns = knnQuery.getKNNForDBID(iditer, k);
+          long mid = System.nanoTime();
           // Query reference:
           KNNList trueknns = truekNNQuery.getKNNForDBID(iditer, k);
+          exactTime += System.nanoTime() - mid;
+          approxTime += mid - start;
 
           // Put adjusted knn size:
           mv.put(knns.size() * k / (double) trueknns.size());
@@ -197,6 +202,7 @@ public class ValidateApproximativeKNNIndex<O> extends AbstractDistanceBasedAlgor
       if(LOG.isStatistics()) {
         LOG.statistics("Mean number of results: " + mv.getMean() + " +- " + mv.getNaiveStddev());
         LOG.statistics("Recall of true results: " + mvrec.getMean() + " +- " + mvrec.getNaiveStddev());
+        logThroughput(mv.getCount(), approxTime, exactTime);
         if(mvdist.getCount() > 0) {
           LOG.statistics("Mean k-distance: " + mvdist.getMean() + " +- " + mvdist.getNaiveStddev());
           LOG.statistics("Mean absolute k-error: " + mvdaerr.getMean() + " +- " + mvdaerr.getNaiveStddev());
@@ -229,6 +235,7 @@ public class ValidateApproximativeKNNIndex<O> extends AbstractDistanceBasedAlgor
       MeanVariance mv = new MeanVariance(), mvrec = new MeanVariance();
       MeanVariance mvdist = new MeanVariance(), mvdaerr = new MeanVariance(), mvdrerr = new MeanVariance();
       int misses = 0;
+      long approxTime = 0, exactTime = 0;
       for(DBIDIter iditer = sample.iter(); iditer.valid(); iditer.advance()) {
         int off = sids.binarySearch(iditer);
         assert (off >= 0);
@@ -236,9 +243,13 @@ public class ValidateApproximativeKNNIndex<O> extends AbstractDistanceBasedAlgor
         O o = (O) bundle.data(off, col);
 
         // Query index:
+        long start = System.nanoTime();
         KNNList knns = knnQuery.getKNNForObject(o, k);
+        long mid = System.nanoTime();
         // Query reference:
         KNNList trueknns = truekNNQuery.getKNNForObject(o, k);
+        exactTime += System.nanoTime() - mid;
+        approxTime += mid - start;
 
         // Put adjusted knn size:
         mv.put(knns.size() * k / (double) trueknns.size());
@@ -265,6 +276,7 @@ public class ValidateApproximativeKNNIndex<O> extends AbstractDistanceBasedAlgor
       if(LOG.isStatistics()) {
         LOG.statistics("Mean number of results: " + mv.getMean() + " +- " + mv.getNaiveStddev());
         LOG.statistics("Recall of true results: " + mvrec.getMean() + " +- " + mvrec.getNaiveStddev());
+        logThroughput(mv.getCount(), approxTime, exactTime);
         if(mvdist.getCount() > 0) {
           LOG.statistics("Mean absolute k-error: " + mvdaerr.getMean() + " +- " + mvdaerr.getNaiveStddev());
           LOG.statistics("Mean relative k-error: " + mvdrerr.getMean() + " +- " + mvdrerr.getNaiveStddev());
@@ -277,6 +289,18 @@ public class ValidateApproximativeKNNIndex<O> extends AbstractDistanceBasedAlgor
     return null;
   }
 
+  /**
+   * Log the query throughput.
+   *
+   * @param count Number of queries
+   * @param approxTime Time spent in approximate queries, in nanoseconds
+   * @param exactTime Time spent in exact queries, in nanoseconds
+   */
+  private void logThroughput(double count, long approxTime, long exactTime) {
+    LOG.statistics(String.format("Approximate queries per second: %.1f", count * 1e9 / Math.max(approxTime, 1)));
+    LOG.statistics(String.format("Exact queries per second: %.1f", count * 1e9 / Math.max(exactTime, 1)));
+  }
+
   @Override
   public TypeInformation[] getInputTypeRestriction() {
     return TypeUtil.array(getDistanceFunction().getInputTypeRestriction());
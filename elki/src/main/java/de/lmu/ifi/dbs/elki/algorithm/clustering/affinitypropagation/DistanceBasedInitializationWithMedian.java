@@ -27,7 +27,11 @@ import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
@@ -45,7 +49,7 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
  * 
  * @param <O> Object type
  */
-public class DistanceBasedInitializationWithMedian<O> implements AffinityPropagationInitialization<O> {
+public class DistanceBasedInitializationWithMedian<O> implements SparseAffinityPropagationInitialization<O> {
   /**
    * Distance function.
    */
@@ -94,6 +98,38 @@ public class DistanceBasedInitializationWithMedian<O> implements AffinityPropaga
     return mat;
   }
 
+  @Override
+  public double[] getSparseSimilarities(Database db, Relation<O> relation, DBIDRange ids, int k, int[] cols) {
+    final int size = ids.size(), width = k + 1;
+    DistanceQuery<O> dq = db.getDistanceQuery(relation, distance);
+    // Will use a kNN preprocessor or index, if available:
+    KNNQuery<O> knnq = db.getKNNQuery(dq, width);
+    double[] sim = new double[size * width];
+    double[] flat = new double[size * k];
+    DBIDArrayIter i1 = ids.iter();
+    for(int i = 0, j = 0; i < size; i++, i1.advance()) {
+      final int off = i * width;
+      cols[off] = i; // Diagonal
+      int c = 1;
+      for(DoubleDBIDListIter n = knnq.getKNNForDBID(i1, width).iter(); n.valid() && c < width; n.advance()) {
+        if(DBIDUtil.equal(i1, n)) {
+          continue;
+        }
+        cols[off + c] = ids.getOffset(n);
+        sim[off + c] = -n.doubleValue();
+        flat[j++] = sim[off + c];
+        c++;
+      }
+      assert (c == width) : "Not enough neighbors found.";
+    }
+    double median = QuickSelect.quantile(flat, quantile);
+    // On the diagonal, we place the median
+    for(int i = 0; i < size; i++) {
+      sim[i * width] = median;
+    }
+    return sim;
+  }
+
   @Override
   public TypeInformation getInputTypeRestriction() {
     return distance.getInputTypeRestriction();
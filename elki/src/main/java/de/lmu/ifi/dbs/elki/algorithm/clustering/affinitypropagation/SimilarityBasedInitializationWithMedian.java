@@ -26,11 +26,13 @@ import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
 import de.lmu.ifi.dbs.elki.database.query.similarity.SimilarityQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.similarityfunction.SimilarityFunction;
 import de.lmu.ifi.dbs.elki.distance.similarityfunction.kernel.LinearKernelFunction;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.QuickSelect;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerMinHeap;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
@@ -44,7 +46,7 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
  * 
  * @param <O> Object type
  */
-public class SimilarityBasedInitializationWithMedian<O> implements AffinityPropagationInitialization<O> {
+public class SimilarityBasedInitializationWithMedian<O> implements SparseAffinityPropagationInitialization<O> {
   /**
    * Similarity function.
    */
@@ -98,6 +100,45 @@ public class SimilarityBasedInitializationWithMedian<O> implements AffinityPropa
     return mat;
   }
 
+  @Override
+  public double[] getSparseSimilarities(Database db, Relation<O> relation, DBIDRange ids, int k, int[] cols) {
+    final int size = ids.size(), width = k + 1;
+    SimilarityQuery<O> sq = db.getSimilarityQuery(relation, similarity);
+    double[] sim = new double[size * width];
+    double[] flat = new double[size * k];
+    double[] self = new double[size];
+    DBIDArrayIter i1 = ids.iter(), i2 = ids.iter();
+    // Compute self-similarities first, for centering:
+    for (int i = 0; i < size; i++, i1.advance()) {
+      self[i] = sq.similarity(i1, i1) * .5;
+    }
+    // Keep the k largest similarities of each row.
+    DoubleIntegerMinHeap heap = new DoubleIntegerMinHeap(k);
+    i1.seek(0);
+    for (int i = 0, j = 0; i < size; i++, i1.advance()) {
+      heap.clear();
+      i2.seek(0);
+      for (int m = 0; m < size; m++, i2.advance()) {
+        if (m != i) {
+          heap.add(sq.similarity(i1, i2) - self[i] - self[m], m, k);
+        }
+      }
+      final int off = i * width;
+      cols[off] = i; // Diagonal
+      for (int c = k; !heap.isEmpty(); c--, heap.poll()) {
+        cols[off + c] = heap.peekValue();
+        sim[off + c] = heap.peekKey();
+        flat[j++] = sim[off + c];
+      }
+    }
+    double median = QuickSelect.quantile(flat, quantile);
+    // On the diagonal, we place the median
+    for (int i = 0; i < size; i++) {
+      sim[i * width] = median;
+    }
+    return sim;
+  }
+
   @Override
   public TypeInformation getInputTypeRestriction() {
     return similarity.getInputTypeRestriction();
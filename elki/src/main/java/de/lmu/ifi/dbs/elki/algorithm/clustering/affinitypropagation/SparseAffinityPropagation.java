@@ -0,0 +1,519 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.affinitypropagation;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import gnu.trove.iterator.TIntObjectIterator;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.ClusteringAlgorithm;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.model.MedoidModel;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.IndefiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.progress.MutableProgress;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Sparse variant of affinity propagation, which only retains the k most
+ * similar objects of each object, and passes messages along these edges only.
+ *
+ * The similarities, responsibilities and availabilities are stored in flat
+ * arrays with k+1 entries per object (including the diagonal), so memory is
+ * O(n*k) instead of O(n*n). For distance-based initialization, the neighbors
+ * are obtained via kNN queries, and thus benefit from a kNN preprocessor or
+ * index. The message updates are computed in parallel; the preference on the
+ * diagonal is the quantile of the retained similarities only.
+ *
+ * Reference:
+ * <p>
+ * Clustering by Passing Messages Between Data Points<br />
+ * B. J. Frey and D. Dueck<br />
+ * Science Vol 315
+ * </p>
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.composedOf SparseAffinityPropagationInitialization
+ *
+ * @param <O> object type
+ */
+@Title("Sparse Affinity Propagation")
+@Reference(title = "Clustering by Passing Messages Between Data Points", authors = "B. J. Frey and D. Dueck", booktitle = "Science Vol 315", url = "http://dx.doi.org/10.1126/science.1136800")
+public class SparseAffinityPropagation<O> extends AbstractAlgorithm<Clustering<MedoidModel>> implements ClusteringAlgorithm<Clustering<MedoidModel>> {
+  /**
+   * Class logger
+   */
+  private static final Logging LOG = Logging.getLogger(SparseAffinityPropagation.class);
+
+  /**
+   * Similarity initialization
+   */
+  SparseAffinityPropagationInitialization<O> initialization;
+
+  /**
+   * Number of neighbors to retain.
+   */
+  int k;
+
+  /**
+   * Damping factor lambda.
+   */
+  double lambda = 0.5;
+
+  /**
+   * Terminate after 10 iterations with no changes.
+   */
+  int convergence = 10;
+
+  /**
+   * Maximum number of iterations.
+   */
+  int maxiter = 1000;
+
+  /**
+   * Constructor.
+   *
+   * @param initialization Similarity initialization
+   * @param k Number of neighbors to retain
+   * @param lambda Damping factor
+   * @param convergence Termination threshold (Number of stable iterations)
+   * @param maxiter Maximum number of iterations
+   */
+  public SparseAffinityPropagation(SparseAffinityPropagationInitialization<O> initialization, int k, double lambda, int convergence, int maxiter) {
+    super();
+    this.initialization = initialization;
+    this.k = k;
+    this.lambda = lambda;
+    this.convergence = convergence;
+    this.maxiter = maxiter;
+  }
+
+  /**
+   * Perform affinity propagation clustering.
+   *
+   * @param db Database
+   * @param relation Relation
+   * @return Clustering result
+   */
+  public Clustering<MedoidModel> run(Database db, Relation<O> relation) {
+    DBIDRange ids = DBIDUtil.assertRange(relation.getDBIDs());
+    final int size = ids.size();
+    final int knn = Math.min(k, size - 1);
+
+    int[] cols = new int[size * (knn + 1)];
+    double[] s = initialization.getSparseSimilarities(db, relation, ids, knn, cols);
+    MessagePassing mp = new MessagePassing(ids, knn + 1, cols, s, lambda);
+
+    IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Affinity Propagation Iteration", LOG) : null;
+    MutableProgress aprog = LOG.isVerbose() ? new MutableProgress("Stable assignments", size + 1, LOG) : null;
+
+    int inactive = 0;
+    for(int iteration = 0; iteration < maxiter && inactive < convergence; iteration++) {
+      mp.phase = MessagePassing.RESPONSIBILITY;
+      ParallelExecutor.run(ids, mp);
+      mp.phase = MessagePassing.AVAILABILITY;
+      ParallelExecutor.run(ids, mp);
+      mp.phase = MessagePassing.ASSIGNMENT;
+      mp.changed = 0;
+      ParallelExecutor.run(ids, mp);
+      final int changed = mp.changed;
+      inactive = (changed > 0) ? 0 : (inactive + 1);
+      LOG.incrementProcessed(prog);
+      if(aprog != null) {
+        aprog.setProcessed(size - changed, LOG);
+      }
+    }
+    if(aprog != null) {
+      aprog.setProcessed(aprog.getTotal(), LOG);
+    }
+    LOG.setCompleted(prog);
+    final int[] assignment = mp.assignment;
+    // Cluster map, by lead object
+    TIntObjectHashMap<ModifiableDBIDs> map = new TIntObjectHashMap<>();
+    DBIDArrayIter i1 = ids.iter();
+    for(int i = 0; i1.valid(); i1.advance(), i++) {
+      int c = assignment[i];
+      // Add to cluster members:
+      ModifiableDBIDs cids = map.get(c);
+      if(cids == null) {
+        cids = DBIDUtil.newArray();
+        map.put(c, cids);
+      }
+      cids.add(i1);
+    }
+
+    Clustering<MedoidModel> clustering = new Clustering<>("Affinity Propagation Clustering", "ap-clustering");
+    ModifiableDBIDs noise = DBIDUtil.newArray();
+    for(TIntObjectIterator<ModifiableDBIDs> iter = map.iterator(); iter.hasNext();) {
+      iter.advance(); // Trove iterator; advance first!
+      i1.seek(iter.key());
+      if(iter.value().size() > 1) {
+        MedoidModel mod = new MedoidModel(DBIDUtil.deref(i1));
+        clustering.addToplevelCluster(new Cluster<>(iter.value(), mod));
+      }
+      else {
+        noise.add(i1);
+      }
+    }
+    if(noise.size() > 0) {
+      MedoidModel mod = new MedoidModel(DBIDUtil.deref(noise.iter()));
+      clustering.addToplevelCluster(new Cluster<>(noise, true, mod));
+    }
+    return clustering;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(initialization.getInputTypeRestriction());
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Message passing on the sparse matrixes.
+   *
+   * Responsibilities and assignments are updated row by row, availabilities
+   * column by column (using a column index), so that each entry is only
+   * written by a single thread.
+   *
+   * @author Erich Schubert
+   */
+  private static class MessagePassing implements Processor {
+    /**
+     * Update phases.
+     */
+    static final int RESPONSIBILITY = 0, AVAILABILITY = 1, ASSIGNMENT = 2;
+
+    /**
+     * Current phase.
+     */
+    int phase = RESPONSIBILITY;
+
+    /**
+     * DBID range, for row offsets.
+     */
+    DBIDRange ids;
+
+    /**
+     * Row width.
+     */
+    int width;
+
+    /**
+     * Column of each entry.
+     */
+    int[] cols;
+
+    /**
+     * Column index: start of each column in {@link #colentries}.
+     */
+    int[] colstart;
+
+    /**
+     * Column index: entries, sorted by column.
+     */
+    int[] colentries;
+
+    /**
+     * Similarities, responsibilities and availabilities.
+     */
+    double[] s, r, a;
+
+    /**
+     * Damping factor.
+     */
+    double lambda;
+
+    /**
+     * Current assignment.
+     */
+    int[] assignment;
+
+    /**
+     * Number of changed assignments.
+     */
+    int changed;
+
+    /**
+     * Constructor.
+     *
+     * @param ids DBID range
+     * @param width Row width
+     * @param cols Column indexes
+     * @param s Similarities
+     * @param lambda Damping factor
+     */
+    MessagePassing(DBIDRange ids, int width, int[] cols, double[] s, double lambda) {
+      super();
+      final int size = ids.size();
+      this.ids = ids;
+      this.width = width;
+      this.cols = cols;
+      this.s = s;
+      this.r = new double[s.length];
+      this.a = new double[s.length];
+      this.lambda = lambda;
+      this.assignment = new int[size];
+      // Build the column index:
+      colstart = new int[size + 1];
+      for(int e = 0; e < cols.length; e++) {
+        colstart[cols[e] + 1]++;
+      }
+      for(int i = 0; i < size; i++) {
+        colstart[i + 1] += colstart[i];
+      }
+      colentries = new int[cols.length];
+      int[] pos = new int[size];
+      System.arraycopy(colstart, 0, pos, 0, size);
+      for(int e = 0; e < cols.length; e++) {
+        colentries[pos[cols[e]]++] = e;
+      }
+    }
+
+    /**
+     * Update the responsibilities of a row.
+     *
+     * @param i Row
+     */
+    void updateResponsibilities(int i) {
+      final int start = i * width, end = start + width;
+      // Find the two largest values
+      double max1 = Double.NEGATIVE_INFINITY, max2 = Double.NEGATIVE_INFINITY;
+      int maxe = -1;
+      for(int e = start; e < end; e++) {
+        double val = a[e] + s[e];
+        if(val > max1) {
+          max2 = max1;
+          max1 = val;
+          maxe = e;
+        }
+        else if(val > max2) {
+          max2 = val;
+        }
+      }
+      // With the maximum value known, update r:
+      for(int e = start; e < end; e++) {
+        double val = s[e] - ((e != maxe) ? max1 : max2);
+        r[e] = r[e] * lambda + val * (1. - lambda);
+      }
+    }
+
+    /**
+     * Update the availabilities of a column.
+     *
+     * @param k Column
+     */
+    void updateAvailabilities(int k) {
+      final int start = colstart[k], end = colstart[k + 1];
+      // Compute sum of max(0, r_ik) for all i.
+      // For r_kk, don't apply the max.
+      double colposum = 0.;
+      for(int p = start; p < end; p++) {
+        final int e = colentries[p];
+        if(e / width == k || r[e] > 0.) {
+          colposum += r[e];
+        }
+      }
+      for(int p = start; p < end; p++) {
+        final int e = colentries[p];
+        final boolean diag = (e / width == k);
+        double val = colposum;
+        // Adjust column sum by the one extra term.
+        if(diag || r[e] > 0.) {
+          val -= r[e];
+        }
+        if(!diag && val > 0.) { // min
+          val = 0.;
+        }
+        a[e] = a[e] * lambda + val * (1 - lambda);
+      }
+    }
+
+    /**
+     * Update the assignment of a row.
+     *
+     * @param i Row
+     * @return {@code true} if the assignment changed
+     */
+    boolean updateAssignment(int i) {
+      final int start = i * width, end = start + width;
+      double max = Double.NEGATIVE_INFINITY;
+      int maxj = -1;
+      for(int e = start; e < end; e++) {
+        double v = a[e] + r[e];
+        if(v > max || (cols[e] == i && v >= max)) {
+          max = v;
+          maxj = cols[e];
+        }
+      }
+      if(assignment[i] != maxj) {
+        assignment[i] = maxj;
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      return new Instance();
+    }
+
+    @Override
+    public void cleanup(Processor.Instance inst) {
+      if(phase == ASSIGNMENT) {
+        synchronized(this) {
+          changed += ((Instance) inst).changed;
+        }
+      }
+    }
+
+    /**
+     * Instance for a single thread.
+     *
+     * @author Erich Schubert
+     */
+    private class Instance implements Processor.Instance {
+      /**
+       * Number of changed assignments.
+       */
+      int changed = 0;
+
+      @Override
+      public void map(DBIDRef id) {
+        final int i = ids.getOffset(id);
+        switch(phase){
+        case RESPONSIBILITY:
+          updateResponsibilities(i);
+          break;
+        case AVAILABILITY:
+          updateAvailabilities(i);
+          break;
+        default:
+          if(updateAssignment(i)) {
+            ++changed;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> object type
+   */
+  public static class Parameterizer<O> extends AbstractParameterizer {
+    /**
+     * Parameter for the number of neighbors to retain.
+     */
+    public static final OptionID K_ID = new OptionID("ap.knn", "Number of most similar objects to retain for each object.");
+
+    /**
+     * Initialization function for the similarity matrix.
+     */
+    SparseAffinityPropagationInitialization<O> initialization;
+
+    /**
+     * Number of neighbors to retain.
+     */
+    int k;
+
+    /**
+     * Dampening parameter.
+     */
+    double lambda = .5;
+
+    /**
+     * Number of stable iterations for convergence.
+     */
+    int convergence;
+
+    /**
+     * Maximum number of iterations.
+     */
+    int maxiter;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      final ObjectParameter<SparseAffinityPropagationInitialization<O>> param = new ObjectParameter<>(AffinityPropagationClusteringAlgorithm.Parameterizer.INITIALIZATION_ID, SparseAffinityPropagationInitialization.class, DistanceBasedInitializationWithMedian.class);
+      if(config.grab(param)) {
+        initialization = param.instantiateClass(config);
+      }
+      final IntParameter kP = new IntParameter(K_ID, 100);
+      kP.addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kP)) {
+        k = kP.intValue();
+      }
+      final DoubleParameter lambdaP = new DoubleParameter(AffinityPropagationClusteringAlgorithm.Parameterizer.LAMBDA_ID, .5);
+      lambdaP.addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE);
+      lambdaP.addConstraint(CommonConstraints.LESS_THAN_ONE_DOUBLE);
+      if(config.grab(lambdaP)) {
+        lambda = lambdaP.doubleValue();
+      }
+      final IntParameter convergenceP = new IntParameter(AffinityPropagationClusteringAlgorithm.Parameterizer.CONVERGENCE_ID, 15);
+      convergenceP.addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(convergenceP)) {
+        convergence = convergenceP.intValue();
+      }
+      final IntParameter maxiterP = new IntParameter(AffinityPropagationClusteringAlgorithm.Parameterizer.MAXITER_ID, 1000);
+      if(config.grab(maxiterP)) {
+        maxiter = maxiterP.intValue();
+      }
+    }
+
+    @Override
+    protected SparseAffinityPropagation<O> makeInstance() {
+      return new SparseAffinityPropagation<>(initialization, k, lambda, convergence, maxiter);
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.affinitypropagation;
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+
+/**
+ * Initialization methods for affinity propagation, that can also provide a
+ * sparse similarity matrix, as used by {@link SparseAffinityPropagation}.
+ * 
+ * @author Erich Schubert
+ */
+public interface SparseAffinityPropagationInitialization<O> extends AffinityPropagationInitialization<O> {
+  /**
+   * Compute a sparse similarity matrix, retaining only the k most similar
+   * objects of each object.
+   * 
+   * Each row has exactly k+1 entries: row i is stored at the positions
+   * {@code i*(k+1)} to {@code (i+1)*(k+1)-1}, and its first entry is the
+   * diagonal.
+   * 
+   * @param db Database
+   * @param relation Data relation
+   * @param ids DBID range
+   * @param k Number of neighbors to retain, must be less than the data size
+   * @param cols Output array for the column indexes, of size n*(k+1)
+   * @return Similarities, of size n*(k+1)
+   */
+  double[] getSparseSimilarities(Database db, Relation<O> relation, DBIDRange ids, int k, int[] cols);
+}
@@ -142,6 +142,31 @@ public class DiagonalGaussianModel implements EMClusterModel<EMModel> {
     }
   }
 
+  @Override
+  public DiagonalGaussianModel newPartialModel() {
+    DiagonalGaussianModel partial = new DiagonalGaussianModel(0., mean.copy(), norm);
+    Arrays.fill(partial.variances, 0.);
+    return partial;
+  }
+
+  @Override
+  public void mergeE(EMClusterModel<EMModel> other) {
+    final DiagonalGaussianModel partial = (DiagonalGaussianModel) other;
+    if(!(partial.wsum > 0.)) {
+      return;
+    }
+    final double nwsum = wsum + partial.wsum;
+    // Correction term for the difference of the means
+    final double f = wsum * partial.wsum / nwsum;
+    final double[] pref = partial.mref;
+    for(int i = 0; i < mref.length; i++) {
+      final double delta = pref[i] - mref[i];
+      variances[i] += partial.variances[i] + delta * delta * f;
+      mref[i] += delta * partial.wsum / nwsum;
+    }
+    wsum = nwsum;
+  }
+
   /**
    * Compute the Mahalanobis distance from the centroid for a given vector.
    * 
@@ -50,6 +50,22 @@ public interface EMClusterModel<M extends MeanModel> {
    */
   void finalizeEStep();
 
+  /**
+   * Create an empty model, to accumulate the updates of a subset of the data
+   * in parallel. The result can be merged using {@link #mergeE}.
+   *
+   * @return Empty partial model
+   */
+  EMClusterModel<M> newPartialModel();
+
+  /**
+   * Merge the updates accumulated in a partial model, in between
+   * {@link #beginEStep} and {@link #finalizeEStep}.
+   *
+   * @param partial Partial model, obtained via {@link #newPartialModel}
+   */
+  void mergeE(EMClusterModel<M> partial);
+
   /**
    * Estimate the likelihood of a vector.
    * 
@@ -163,6 +163,42 @@ public class MultivariateGaussianModel implements EMClusterModel<EMModel> {
     invCovMatr = lu.solve(Matrix.identity(dim, dim));
   }
 
+  @Override
+  public MultivariateGaussianModel newPartialModel() {
+    MultivariateGaussianModel partial = new MultivariateGaussianModel(0., mean.copy(), norm);
+    return partial;
+  }
+
+  @Override
+  public void mergeE(EMClusterModel<EMModel> other) {
+    final MultivariateGaussianModel partial = (MultivariateGaussianModel) other;
+    if(!(partial.wsum > 0.)) {
+      return;
+    }
+    final double nwsum = wsum + partial.wsum;
+    // Correction term for the difference of the means
+    final double f = wsum * partial.wsum / nwsum;
+    final double[] pref = partial.mref;
+    for(int i = 0; i < mref.length; i++) {
+      nmea[i] = pref[i] - mref[i];
+    }
+    for(int i = 0; i < mref.length; i++) {
+      for(int j = i; j < mref.length; j++) {
+        double delta = partial.elements[i][j] + nmea[i] * nmea[j] * f;
+        elements[i][j] = elements[i][j] + delta;
+        // Optimize via symmetry
+        if(i != j) {
+          elements[j][i] = elements[j][i] + delta;
+        }
+      }
+    }
+    // Update the mean
+    for(int i = 0; i < mref.length; i++) {
+      mref[i] += nmea[i] * partial.wsum / nwsum;
+    }
+    wsum = nwsum;
+  }
+
   /**
    * Compute the Mahalanobis distance from the centroid for a given vector.
    * 
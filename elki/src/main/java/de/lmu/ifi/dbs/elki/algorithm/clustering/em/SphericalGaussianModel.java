@@ -132,6 +132,32 @@ public class SphericalGaussianModel implements EMClusterModel<EMModel> {
     }
   }
 
+  @Override
+  public SphericalGaussianModel newPartialModel() {
+    SphericalGaussianModel partial = new SphericalGaussianModel(0., mean.copy(), norm);
+    partial.variance = 0.;
+    return partial;
+  }
+
+  @Override
+  public void mergeE(EMClusterModel<EMModel> other) {
+    final SphericalGaussianModel partial = (SphericalGaussianModel) other;
+    if(!(partial.wsum > 0.)) {
+      return;
+    }
+    final double nwsum = wsum + partial.wsum;
+    // Correction term for the difference of the means
+    final double f = wsum * partial.wsum / nwsum;
+    final double[] pref = partial.mref;
+    for(int i = 0; i < mref.length; i++) {
+      final double delta = pref[i] - mref[i];
+      variance += delta * delta * f;
+      mref[i] += delta * partial.wsum / nwsum;
+    }
+    variance += partial.variance;
+    wsum = nwsum;
+  }
+
   /**
    * Compute the Mahalanobis distance from the centroid for a given vector.
    * 
@@ -0,0 +1,279 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.em.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.em.EMClusterModel;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.MeanModel;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+
+/**
+ * Parallel EM processor, computing the cluster probabilities of each object
+ * and accumulating the model updates in the same pass.
+ *
+ * The probabilities are stored in a single n*k array. Each thread accumulates
+ * the weighted means and covariances in partial models, which are merged in
+ * {@link #cleanup}; the cluster models themselves are only updated in between
+ * two passes, by {@link #updateModels}.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has Instance
+ *
+ * @param <M> Model type
+ */
+public class EMProcessor<M extends MeanModel> implements Processor {
+  /**
+   * Minimum log likelihood, to avoid -infinity.
+   */
+  private static final double MIN_LOGLIKELIHOOD = -100000;
+
+  /**
+   * Data relation.
+   */
+  Relation<? extends NumberVector> relation;
+
+  /**
+   * Cluster models.
+   */
+  List<? extends EMClusterModel<M>> models;
+
+  /**
+   * Range of DBIDs, for computing offsets.
+   */
+  DBIDRange range;
+
+  /**
+   * Offsets, if the DBIDs are not a range.
+   */
+  WritableIntegerDataStore offsets;
+
+  /**
+   * Cluster probabilities, n*k.
+   */
+  double[] probabilities;
+
+  /**
+   * Accumulated updates of the models.
+   */
+  List<EMClusterModel<M>> partial;
+
+  /**
+   * Cluster weight sums.
+   */
+  double[] wsum;
+
+  /**
+   * Log likelihood sum.
+   */
+  double emSum;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Data relation
+   * @param models Cluster models
+   */
+  public EMProcessor(Relation<? extends NumberVector> relation, List<? extends EMClusterModel<M>> models) {
+    super();
+    this.relation = relation;
+    this.models = models;
+    final int k = models.size();
+    DBIDs ids = relation.getDBIDs();
+    if(ids instanceof DBIDRange) {
+      this.range = (DBIDRange) ids;
+    }
+    else {
+      this.offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, -1);
+      int off = 0;
+      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance(), off++) {
+        offsets.putInt(iter, off);
+      }
+    }
+    this.probabilities = new double[ids.size() * k];
+    this.partial = new ArrayList<>(k);
+    this.wsum = new double[k];
+  }
+
+  /**
+   * Initialize for a new pass.
+   */
+  public void nextIteration() {
+    partial.clear();
+    for(EMClusterModel<M> m : models) {
+      partial.add(m.newPartialModel());
+    }
+    Arrays.fill(wsum, 0.);
+    emSum = 0.;
+  }
+
+  /**
+   * Update the models from the statistics accumulated in the last pass.
+   */
+  public void updateModels() {
+    final int size = relation.size();
+    for(int i = 0; i < wsum.length; i++) {
+      EMClusterModel<M> m = models.get(i);
+      m.beginEStep();
+      m.mergeE(partial.get(i));
+      m.finalizeEStep();
+      m.setWeight(wsum[i] / size);
+    }
+  }
+
+  /**
+   * Get the expectation value of the last pass.
+   *
+   * @return Average log likelihood
+   */
+  public double getExpectation() {
+    return emSum / relation.size();
+  }
+
+  /**
+   * Get the cluster probabilities, as n*k array.
+   *
+   * @return Probabilities
+   */
+  public double[] getProbabilities() {
+    return probabilities;
+  }
+
+  /**
+   * Get the row offset of an object.
+   *
+   * @param id Object
+   * @return Offset
+   */
+  public int offset(DBIDRef id) {
+    return (range != null) ? range.getOffset(id) : offsets.intValue(id);
+  }
+
+  /**
+   * Release the temporary storage.
+   */
+  public void destroy() {
+    if(offsets != null) {
+      offsets.destroy();
+      offsets = null;
+    }
+  }
+
+  @Override
+  public Instance instantiate(Executor executor) {
+    return new Instance();
+  }
+
+  @Override
+  public void cleanup(Processor.Instance inst) {
+    @SuppressWarnings("unchecked")
+    Instance instance = (Instance) inst;
+    synchronized(this) {
+      emSum += instance.emSum;
+      for(int i = 0; i < wsum.length; i++) {
+        wsum[i] += instance.wsum[i];
+        partial.get(i).mergeE(instance.partial.get(i));
+      }
+    }
+  }
+
+  /**
+   * Instance to process part of the data set, for a single pass.
+   *
+   * @author Erich Schubert
+   */
+  private class Instance implements Processor.Instance {
+    /**
+     * Partial models.
+     */
+    List<EMClusterModel<M>> partial;
+
+    /**
+     * Cluster weight sums.
+     */
+    double[] wsum;
+
+    /**
+     * Log likelihood sum.
+     */
+    double emSum = 0.;
+
+    /**
+     * Scratch buffer for densities.
+     */
+    double[] buf;
+
+    /**
+     * Constructor.
+     */
+    protected Instance() {
+      super();
+      final int k = models.size();
+      this.partial = new ArrayList<>(k);
+      for(EMClusterModel<M> m : models) {
+        partial.add(m.newPartialModel());
+      }
+      this.wsum = new double[k];
+      this.buf = new double[k];
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      final int k = buf.length;
+      NumberVector vec = relation.get(id);
+      double priorProbability = 0.;
+      for(int i = 0; i < k; i++) {
+        final double p = models.get(i).estimateDensity(vec);
+        buf[i] = p;
+        priorProbability += p;
+      }
+      double logP = Math.max(Math.log(priorProbability), MIN_LOGLIKELIHOOD);
+      emSum += (logP == logP) ? logP : 0.; /* avoid NaN */
+
+      final int off = offset(id) * k;
+      for(int i = 0; i < k; i++) {
+        // do not divide by zero!
+        final double prior = (priorProbability > 0.) ? buf[i] / priorProbability : 0.;
+        probabilities[off + i] = prior;
+        if(prior > 0.) {
+          partial.get(i).updateE(vec, prior);
+        }
+        wsum[i] += prior;
+      }
+    }
+  }
+}
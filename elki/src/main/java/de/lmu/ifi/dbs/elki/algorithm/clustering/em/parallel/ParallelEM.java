@@ -0,0 +1,183 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.em.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.em.EM;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.em.EMClusterModel;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.em.EMClusterModelFactory;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.MeanModel;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+
+/**
+ * Parallel implementation of EM clustering.
+ *
+ * The expectation and the maximization steps are computed in a single parallel
+ * pass over the data: each thread computes the cluster probabilities of its
+ * objects, and accumulates the weighted means and covariances for the next
+ * models in partial models, which are merged at the end of the pass. The
+ * probabilities are kept in a single n*k array.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has EMProcessor
+ *
+ * @param <V> vector type to analyze
+ * @param <M> model type to produce
+ */
+public class ParallelEM<V extends NumberVector, M extends MeanModel> extends EM<V, M> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelEM.class);
+
+  /**
+   * Constructor.
+   *
+   * @param k k parameter
+   * @param delta delta parameter
+   * @param mfactory EM cluster model factory
+   * @param maxiter Maximum number of iterations
+   * @param soft Include soft assignments
+   */
+  public ParallelEM(int k, double delta, EMClusterModelFactory<V, M> mfactory, int maxiter, boolean soft) {
+    super(k, delta, mfactory, maxiter, soft);
+  }
+
+  @Override
+  public Clustering<M> run(Database database, Relation<V> relation) {
+    if(relation.size() == 0) {
+      throw new IllegalArgumentException("database empty: must contain elements");
+    }
+    // initial models
+    if(LOG.isVerbose()) {
+      LOG.verbose("initializing " + k + " models");
+    }
+    List<? extends EMClusterModel<M>> models = mfactory.buildInitialModels(database, relation, k, SquaredEuclideanDistanceFunction.STATIC);
+    EMProcessor<M> proc = new EMProcessor<>(relation, models);
+    proc.nextIteration();
+    ParallelExecutor.run(relation.getDBIDs(), proc);
+    double emNew = proc.getExpectation();
+
+    // iteration unless no change
+    if(LOG.isVerbose()) {
+      LOG.verbose("iterating EM");
+    }
+    if(LOG.isVerbose()) {
+      LOG.verbose("iteration " + 0 + " - expectation value: " + emNew);
+    }
+
+    for(int it = 1; it <= maxiter || maxiter < 0; it++) {
+      final double emOld = emNew;
+      proc.updateModels();
+      // reassign probabilities
+      proc.nextIteration();
+      ParallelExecutor.run(relation.getDBIDs(), proc);
+      emNew = proc.getExpectation();
+
+      if(LOG.isVerbose()) {
+        LOG.verbose("iteration " + it + " - expectation value: " + emNew);
+      }
+      if(Math.abs(emOld - emNew) <= delta || emOld > emNew) {
+        break;
+      }
+    }
+
+    if(LOG.isVerbose()) {
+      LOG.verbose("assigning clusters");
+    }
+
+    // fill result with clusters and models
+    List<ModifiableDBIDs> hardClusters = new ArrayList<>(k);
+    for(int i = 0; i < k; i++) {
+      hardClusters.add(DBIDUtil.newHashSet());
+    }
+
+    // provide a hard clustering
+    final double[] probabilities = proc.getProbabilities();
+    WritableDataStore<double[]> probClusterIGivenX = isSoft() ? DataStoreUtil.makeStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_SORTED, double[].class) : null;
+    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
+      final int off = proc.offset(iditer) * k;
+      int maxIndex = 0;
+      double currentMax = 0.0;
+      for(int i = 0; i < k; i++) {
+        if(probabilities[off + i] > currentMax) {
+          maxIndex = i;
+          currentMax = probabilities[off + i];
+        }
+      }
+      hardClusters.get(maxIndex).add(iditer);
+      if(probClusterIGivenX != null) {
+        probClusterIGivenX.put(iditer, Arrays.copyOfRange(probabilities, off, off + k));
+      }
+    }
+    proc.destroy();
+    Clustering<M> result = new Clustering<>("EM Clustering", "em-clustering");
+    // provide models within the result
+    for(int i = 0; i < k; i++) {
+      Cluster<M> model = new Cluster<>(hardClusters.get(i), models.get(i).finalizeCluster());
+      result.addToplevelCluster(model);
+    }
+    if(probClusterIGivenX != null) {
+      result.addChildResult(new MaterializedRelation<>("cluster assignments", "em-soft-score", SOFT_TYPE, probClusterIGivenX, relation.getDBIDs()));
+    }
+    return result;
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer<V extends NumberVector, M extends MeanModel> extends EM.Parameterizer<V, M> {
+    @Override
+    protected ParallelEM<V, M> makeInstance() {
+      return new ParallelEM<>(k, delta, initializer, maxiter, false);
+    }
+  }
+}
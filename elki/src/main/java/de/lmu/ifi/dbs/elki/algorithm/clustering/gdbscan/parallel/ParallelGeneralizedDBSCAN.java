@@ -0,0 +1,405 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.gdbscan.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.ClusteringAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.gdbscan.CorePredicate;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.gdbscan.EpsilonNeighborPredicate;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.gdbscan.GeneralizedDBSCAN;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.gdbscan.MinPtsCorePredicate;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.gdbscan.NeighborPredicate;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.model.ClusterModel;
+import de.lmu.ifi.dbs.elki.data.model.CoreObjectsModel;
+import de.lmu.ifi.dbs.elki.data.model.Model;
+import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.WorkStealingExecutor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.unionfind.ConcurrentUnionFindStaticDBIDs;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.unionfind.UnionFindUtil;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Parallel Generalized DBSCAN, using a concurrent union-find data structure to
+ * merge the clusters of core points.
+ *
+ * The neighborhoods are computed in parallel, exactly once for each object.
+ * When a core point is found, it is merged with all neighbors already known to
+ * be core points; all other neighbors are remembered as border point
+ * candidates. Because every core point is marked before its neighbors are
+ * inspected, at least one of two neighboring core points will see the other
+ * (for symmetric neighbor predicates), so no connection is missed. Border
+ * points are assigned to the cluster of the first core point that found them.
+ *
+ * For symmetric neighbor predicates, the result is the same as
+ * {@link GeneralizedDBSCAN}, except for the assignment of border points that
+ * are reachable from more than one cluster. As with the sequential algorithm,
+ * the result for non-symmetric predicates depends on the processing order.
+ *
+ * Reference:
+ * <p>
+ * M. M. A. Patwary, D. Palsetia, A. Agrawal, W. Liao, F. Manne, A. Choudhary<br />
+ * A new scalable parallel DBSCAN algorithm using the disjoint-set data
+ * structure<br />
+ * In: Proc. Int. Conf. High Performance Computing, Networking, Storage and
+ * Analysis (SC 2012)
+ * </p>
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has Instance
+ * @apiviz.composedOf CorePredicate
+ * @apiviz.composedOf NeighborPredicate
+ * @apiviz.uses ConcurrentUnionFindStaticDBIDs
+ */
+@Reference(authors = "M. M. A. Patwary, D. Palsetia, A. Agrawal, W. Liao, F. Manne, A. Choudhary", //
+title = "A new scalable parallel DBSCAN algorithm using the disjoint-set data structure", //
+booktitle = "Proc. Int. Conf. High Performance Computing, Networking, Storage and Analysis (SC 2012)", //
+url = "http://dx.doi.org/10.1109/SC.2012.9")
+public class ParallelGeneralizedDBSCAN extends AbstractAlgorithm<Clustering<Model>>implements ClusteringAlgorithm<Clustering<Model>> {
+  /**
+   * Get a logger for this algorithm
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelGeneralizedDBSCAN.class);
+
+  /**
+   * The neighborhood predicate factory.
+   */
+  protected NeighborPredicate npred;
+
+  /**
+   * The core predicate factory.
+   */
+  protected CorePredicate corepred;
+
+  /**
+   * Track which objects are "core" objects.
+   */
+  protected boolean coremodel = false;
+
+  /**
+   * Constructor for parameterized algorithm.
+   *
+   * @param npred Neighbor predicate.
+   * @param corepred Core point predicate.
+   * @param coremodel Keep track of core points.
+   */
+  public ParallelGeneralizedDBSCAN(NeighborPredicate npred, CorePredicate corepred, boolean coremodel) {
+    super();
+    this.npred = npred;
+    this.corepred = corepred;
+    this.coremodel = coremodel;
+  }
+
+  @Override
+  public Clustering<Model> run(Database database) {
+    for(SimpleTypeInformation<?> t : npred.getOutputType()) {
+      if(corepred.acceptsType(t)) {
+        return new Instance<>(npred.instantiate(database, t), corepred.instantiate(database, t), coremodel).run();
+      }
+    }
+    throw new AbortException("No compatible types found.");
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(npred.getInputTypeRestriction());
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Instance for a particular data set.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.composedOf CorePredicate.Instance
+   * @apiviz.composedOf NeighborPredicate.Instance
+   */
+  public static class Instance<T> implements Processor {
+    /**
+     * Object not yet processed.
+     */
+    protected static final int UNPROCESSED = 0;
+
+    /**
+     * Object is a core point.
+     */
+    protected static final int CORE = 1;
+
+    /**
+     * Object is not a core point.
+     */
+    protected static final int NONCORE = 2;
+
+    /**
+     * Offset of the noise cluster.
+     */
+    protected static final int NOISE = 0;
+
+    /**
+     * The neighborhood predicate
+     */
+    protected final NeighborPredicate.Instance<T> npred;
+
+    /**
+     * The core object property
+     */
+    protected final CorePredicate.Instance<? super T> corepred;
+
+    /**
+     * Track which objects are "core" objects.
+     */
+    protected boolean coremodel = false;
+
+    /**
+     * Core point state, by offset.
+     */
+    private AtomicIntegerArray state;
+
+    /**
+     * Core point a border point was first reached from, by offset.
+     */
+    private AtomicIntegerArray border;
+
+    /**
+     * Union-find of core points.
+     */
+    private ConcurrentUnionFindStaticDBIDs uf;
+
+    /**
+     * Progress logging.
+     */
+    private FiniteProgress progress;
+
+    /**
+     * Full Constructor
+     *
+     * @param npred Neighborhood predicate
+     * @param corepred Core object predicate
+     * @param coremodel Keep track of core points.
+     */
+    public Instance(NeighborPredicate.Instance<T> npred, CorePredicate.Instance<? super T> corepred, boolean coremodel) {
+      super();
+      this.npred = npred;
+      this.corepred = corepred;
+      this.coremodel = coremodel;
+    }
+
+    /**
+     * Run the parallel GDBSCAN algorithm.
+     *
+     * @return Clustering result
+     */
+    public Clustering<Model> run() {
+      final ArrayDBIDs ids = DBIDUtil.ensureArray(npred.getIDs());
+      final int size = ids.size();
+      uf = UnionFindUtil.makeConcurrent(DBIDUtil.makeUnmodifiable(ids));
+      state = new AtomicIntegerArray(size);
+      border = new AtomicIntegerArray(size);
+      for(int i = 0; i < size; i++) {
+        border.set(i, -1);
+      }
+      progress = LOG.isVerbose() ? new FiniteProgress("Parallel Generalized DBSCAN Clustering", size, LOG) : null;
+      WorkStealingExecutor.Statistics stats = WorkStealingExecutor.run(ids, this);
+      LOG.ensureCompleted(progress);
+      if(LOG.isStatistics()) {
+        stats.logStatistics(LOG, ParallelGeneralizedDBSCAN.class.getName() + ".executor");
+      }
+
+      // Core points first reached as border candidates of a core point.
+      // This only matters for non-symmetric neighbor predicates.
+      for(int i = 0; i < size; i++) {
+        final int b = border.get(i);
+        if(b >= 0 && state.get(i) == CORE) {
+          uf.union(i, b);
+        }
+      }
+
+      // Number the clusters by their union-find roots:
+      int[] cluster = new int[size];
+      int numclusters = 1; // Noise cluster.
+      for(int i = 0; i < size; i++) {
+        if(state.get(i) == CORE && uf.find(i) == i) {
+          cluster[i] = numclusters++;
+        }
+      }
+      ArrayModifiableDBIDs[] clusterlists = new ArrayModifiableDBIDs[numclusters];
+      ArrayModifiableDBIDs[] corelists = coremodel ? new ArrayModifiableDBIDs[numclusters] : null;
+      for(int i = 0; i < numclusters; i++) {
+        clusterlists[i] = DBIDUtil.newArray();
+        if(corelists != null) {
+          corelists[i] = DBIDUtil.newArray();
+        }
+      }
+      int numcore = 0;
+      DBIDArrayIter it = ids.iter();
+      for(int i = 0; i < size; i++) {
+        it.seek(i);
+        final boolean isCore = state.get(i) == CORE;
+        final int c = isCore ? cluster[uf.find(i)] : border.get(i) >= 0 ? cluster[uf.find(border.get(i))] : NOISE;
+        clusterlists[c].add(it);
+        if(isCore) {
+          ++numcore;
+          if(corelists != null) {
+            corelists[c].add(it);
+          }
+        }
+      }
+      if(LOG.isStatistics()) {
+        LOG.statistics(new LongStatistic(ParallelGeneralizedDBSCAN.class.getName() + ".core-points", numcore));
+        LOG.statistics(new LongStatistic(ParallelGeneralizedDBSCAN.class.getName() + ".clusters", numclusters - 1));
+      }
+      state = null;
+      border = null;
+      uf = null;
+
+      Clustering<Model> result = new Clustering<>("GDBSCAN", "gdbscan-clustering");
+      for(int cid = NOISE; cid < clusterlists.length; cid++) {
+        boolean isNoise = (cid == NOISE);
+        Model m = coremodel ? new CoreObjectsModel(corelists[cid]) : ClusterModel.CLUSTER;
+        result.addToplevelCluster(new Cluster<Model>(clusterlists[cid], isNoise, m));
+      }
+      return result;
+    }
+
+    @Override
+    public Processor.Instance instantiate(Executor executor) {
+      return new Processor.Instance() {
+        @Override
+        public void map(DBIDRef id) {
+          processObject(id);
+        }
+      };
+    }
+
+    /**
+     * Process a single object: evaluate the neighborhood and core predicates,
+     * and link the neighbors of core points.
+     *
+     * @param id Object to process
+     */
+    protected void processObject(DBIDRef id) {
+      final int off = uf.getOffset(id);
+      final T neighbors = npred.getNeighbors(id);
+      if(!corepred.isCorePoint(id, neighbors)) {
+        state.set(off, NONCORE);
+        LOG.incrementProcessed(progress);
+        return;
+      }
+      // Mark as core before inspecting the neighbors; see class documentation.
+      state.set(off, CORE);
+      for(DBIDIter it = npred.iterDBIDs(neighbors); it.valid(); it.advance()) {
+        final int noff = uf.getOffset(it);
+        if(noff == off) {
+          continue;
+        }
+        if(state.get(noff) == CORE) {
+          uf.union(off, noff);
+        }
+        else {
+          border.compareAndSet(noff, -1, off);
+        }
+      }
+      LOG.incrementProcessed(progress);
+    }
+
+    @Override
+    public void cleanup(Processor.Instance inst) {
+      // Nothing to do.
+    }
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends AbstractParameterizer {
+    /**
+     * Neighborhood predicate.
+     */
+    protected NeighborPredicate npred = null;
+
+    /**
+     * Core point predicate.
+     */
+    protected CorePredicate corepred = null;
+
+    /**
+     * Track which objects are "core" objects.
+     */
+    protected boolean coremodel = false;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      ObjectParameter<NeighborPredicate> npredOpt = new ObjectParameter<>(GeneralizedDBSCAN.Parameterizer.NEIGHBORHOODPRED_ID, NeighborPredicate.class, EpsilonNeighborPredicate.class);
+      if(config.grab(npredOpt)) {
+        npred = npredOpt.instantiateClass(config);
+      }
+
+      ObjectParameter<CorePredicate> corepredOpt = new ObjectParameter<>(GeneralizedDBSCAN.Parameterizer.COREPRED_ID, CorePredicate.class, MinPtsCorePredicate.class);
+      if(config.grab(corepredOpt)) {
+        corepred = corepredOpt.instantiateClass(config);
+      }
+
+      Flag coremodelOpt = new Flag(GeneralizedDBSCAN.Parameterizer.COREMODEL_ID);
+      if(config.grab(coremodelOpt)) {
+        coremodel = coremodelOpt.isTrue();
+      }
+    }
+
+    @Override
+    protected ParallelGeneralizedDBSCAN makeInstance() {
+      return new ParallelGeneralizedDBSCAN(npred, corepred, coremodel);
+    }
+  }
+}
@@ -22,15 +22,21 @@ package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical;
  You should have received a copy of the GNU Affero General Public License
  along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 import de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.extraction.ExtractFlatClusteringFromHierarchy;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDBIDDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
@@ -38,7 +44,9 @@ import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.math.MathUtil;
 import de.lmu.ifi.dbs.elki.math.geometry.PrimsMinimumSpanningTree;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleLongHeap;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleLongMinHeap;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
@@ -60,6 +68,11 @@ import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
  * clusterings (the compact pointer representation introduced in {@link SLINK})
  * we have to perform a postprocessing conversion.
  *
+ * Both the core distances and the relaxation of the distance row in each step
+ * of Prim's algorithm are computed in parallel. Ties are resolved the same way
+ * as in {@link PrimsMinimumSpanningTree}, so the resulting tree does not depend
+ * on the number of threads.
+ *
  * This implementation does <em>not</em> include the cluster extraction
  * discussed as Step 4. This functionality should however already be provided by
  * {@link ExtractFlatClusteringFromHierarchy}. For this reason, we also do
@@ -75,6 +88,8 @@ import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
  *
  * @author Erich Schubert
  *
+ * @apiviz.composedOf PrimRelaxation
+ *
  * @param <O> Object type
  */
 @Title("HDBSCAN: Hierarchical Density-Based Spatial Clustering of Applications with Noise")
@@ -118,11 +133,13 @@ public class HDBSCANLinearMemory<O> extends AbstractHDBSCAN<O, PointerDensityHie
 
     final int numedges = ids.size() - 1;
     DoubleLongHeap heap = new DoubleLongMinHeap(numedges);
-    // 2. Build spanning tree.
+    // 2. Build spanning tree, relaxing each distance row in parallel.
     FiniteProgress mprog = LOG.isVerbose() ? new FiniteProgress("Computing minimum spanning tree (n-1 edges).", numedges, LOG) : null;
-    PrimsMinimumSpanningTree.processDense(ids,//
-        new HDBSCANAdapter(ids, coredists, distQ), //
-        new HeapMSTCollector(heap, mprog, LOG));
+    HeapMSTCollector collector = new HeapMSTCollector(heap, mprog, LOG);
+    PrimRelaxation prim = new PrimRelaxation(ids, coredists, distQ, ParallelCore.getCore().getForkJoinPool());
+    for(int i = 0; i < numedges; i++) {
+      prim.step(collector);
+    }
     LOG.ensureCompleted(mprog);
     // Storage for pointer representation:
     WritableDBIDDataStore pi = DataStoreUtil.makeDBIDStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_STATIC);
@@ -142,6 +159,215 @@ public class HDBSCANLinearMemory<O> extends AbstractHDBSCAN<O, PointerDensityHie
     return LOG;
   }
 
+  /**
+   * Parallel relaxation for Prim's algorithm.
+   *
+   * The objects not yet connected are kept in a compacted array. In each step,
+   * the distances to the most recently connected object are relaxed by a tree
+   * of fork-join tasks over this array, and the per-task minima are merged.
+   * Small steps are processed in the calling thread, to avoid the task
+   * overhead.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.has RelaxationTask
+   */
+  private static class PrimRelaxation {
+    /**
+     * Minimum number of objects per task.
+     */
+    private static final int MIN_BLOCKSIZE = 256;
+
+    /**
+     * Objects to process.
+     */
+    ArrayDBIDs ids;
+
+    /**
+     * Core distances, by offset.
+     */
+    double[] core;
+
+    /**
+     * Distance query for exact distances.
+     */
+    DistanceQuery<?> distq;
+
+    /**
+     * Best distance for each object.
+     */
+    double[] best;
+
+    /**
+     * Best previous object.
+     */
+    int[] src;
+
+    /**
+     * Offsets of the objects not yet connected.
+     */
+    int[] todo;
+
+    /**
+     * Number of objects not yet connected.
+     */
+    int remaining;
+
+    /**
+     * Most recently connected object.
+     */
+    int current;
+
+    /**
+     * Pool to run the tasks in.
+     */
+    ForkJoinPool pool;
+
+    /**
+     * Constructor.
+     *
+     * @param ids Objects to process
+     * @param coredists Core distances
+     * @param distq Distance query
+     * @param pool Pool to run the tasks in
+     */
+    PrimRelaxation(ArrayDBIDs ids, DoubleDataStore coredists, DistanceQuery<?> distq, ForkJoinPool pool) {
+      super();
+      final int size = ids.size();
+      this.ids = ids;
+      this.distq = distq;
+      this.pool = pool;
+      core = new double[size];
+      int off = 0;
+      for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance(), off++) {
+        core[off] = coredists.doubleValue(iter);
+      }
+      best = new double[size];
+      Arrays.fill(best, Double.POSITIVE_INFINITY);
+      src = new int[size];
+      // We always start at "random" node 0
+      current = 0;
+      remaining = size - 1;
+      todo = new int[remaining];
+      for(int i = 0; i < remaining; i++) {
+        todo[i] = i + 1;
+      }
+    }
+
+    /**
+     * Relax the distances to the most recently connected object, emit the best
+     * edge and connect its endpoint.
+     *
+     * @param collector Edge collector
+     */
+    void step(PrimsMinimumSpanningTree.Collector collector) {
+      final int parallelism = pool.getParallelism();
+      final int blocksize = Math.max(MIN_BLOCKSIZE, remaining / (parallelism << 2));
+      RelaxationTask task = new RelaxationTask(0, remaining, blocksize);
+      if(parallelism > 1 && remaining > blocksize) {
+        pool.invoke(task);
+      }
+      else {
+        task.relax();
+      }
+      assert (task.bestpos >= 0);
+      final int j = todo[task.bestpos];
+      collector.addEdge(best[j], src[j], j);
+      // Remove from the unconnected objects:
+      todo[task.bestpos] = todo[--remaining];
+      current = j;
+    }
+
+    /**
+     * Task to relax a range of the unconnected objects, and find the best.
+     *
+     * @author Erich Schubert
+     */
+    private class RelaxationTask extends RecursiveAction {
+      /**
+       * Serialization version.
+       */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Range to process.
+       */
+      int start, end;
+
+      /**
+       * Maximum block size.
+       */
+      int blocksize;
+
+      /**
+       * Position of the best object in {@link PrimRelaxation#todo}.
+       */
+      int bestpos = -1;
+
+      /**
+       * Constructor.
+       *
+       * @param start Start position
+       * @param end End position
+       * @param blocksize Maximum block size
+       */
+      RelaxationTask(int start, int end, int blocksize) {
+        super();
+        this.start = start;
+        this.end = end;
+        this.blocksize = blocksize;
+      }
+
+      @Override
+      protected void compute() {
+        if(end - start <= blocksize) {
+          relax();
+          return;
+        }
+        final int mid = (start + end) >>> 1;
+        RelaxationTask left = new RelaxationTask(start, mid, blocksize);
+        RelaxationTask right = new RelaxationTask(mid, end, blocksize);
+        invokeAll(left, right);
+        bestpos = better(left.bestpos, right.bestpos);
+      }
+
+      /**
+       * Relax the range sequentially.
+       */
+      void relax() {
+        DBIDArrayIter cur = ids.iter(), it = ids.iter();
+        cur.seek(current);
+        final double corecur = core[current];
+        for(int p = start; p < end; p++) {
+          final int j = todo[p];
+          it.seek(j);
+          final double dist = MathUtil.max(corecur, core[j], distq.distance(cur, it));
+          if(dist < best[j]) {
+            best[j] = dist;
+            src[j] = current;
+          }
+          bestpos = better(bestpos, p);
+        }
+      }
+    }
+
+    /**
+     * Choose the better of two positions. Ties are resolved by the lower
+     * offset, as in {@link PrimsMinimumSpanningTree}.
+     *
+     * @param p1 First position, may be -1
+     * @param p2 Second position, may be -1
+     * @return Better position
+     */
+    int better(int p1, int p2) {
+      if(p1 < 0 || p2 < 0) {
+        return p1 < 0 ? p2 : p1;
+      }
+      final double d1 = best[todo[p1]], d2 = best[todo[p2]];
+      return (d2 < d1 || (d2 == d1 && todo[p2] < todo[p1])) ? p2 : p1;
+    }
+  }
+
   /**
    * Parameterization class
    *
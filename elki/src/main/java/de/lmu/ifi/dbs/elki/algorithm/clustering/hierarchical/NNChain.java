@@ -0,0 +1,357 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.matrix.ArrayDoubleTriangularMatrix;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.matrix.TriangularMatrix;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.IntegerArrayQuickSort;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.IntegerComparator;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Nearest-neighbor chain algorithm for hierarchical agglomerative clustering.
+ *
+ * Starting from an arbitrary cluster, the chain is extended by the nearest
+ * neighbor of its last element, until two clusters are reciprocal nearest
+ * neighbors. These are merged, and the chain continues from the remainder. For
+ * <em>reducible</em> linkages (single, complete, group average, weighted
+ * average and Ward), this yields the same hierarchy as {@link AGNES} in
+ * O(n^2) time and with the same O(n^2) memory for the distance matrix.
+ *
+ * Merges are not found in increasing order of distance. They are buffered, and
+ * passed to the pointer representation sorted by distance, so the result can be
+ * used with all the extraction methods.
+ *
+ * Centroid and median linkage are not reducible, and the chain may produce
+ * wrong results for them. For these, we fall back to
+ * {@link AnderbergHierarchicalClustering}.
+ *
+ * Reference:
+ * <p>
+ * F. Murtagh<br />
+ * A survey of recent advances in hierarchical clustering algorithms<br />
+ * The Computer Journal 26(4)
+ * </p>
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.composedOf LinkageMethod
+ * @apiviz.uses TriangularMatrix
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "F. Murtagh", //
+title = "A survey of recent advances in hierarchical clustering algorithms", //
+booktitle = "The Computer Journal 26(4)", //
+url = "http://dx.doi.org/10.1093/comjnl/26.4.354")
+public class NNChain<O> extends AbstractDistanceBasedAlgorithm<O, PointerHierarchyRepresentationResult>implements HierarchicalClusteringAlgorithm {
+  /**
+   * Class logger
+   */
+  private static final Logging LOG = Logging.getLogger(NNChain.class);
+
+  /**
+   * Current linkage method in use.
+   */
+  LinkageMethod linkage = WardLinkageMethod.STATIC;
+
+  /**
+   * Storage for the distance matrix.
+   */
+  TriangularMatrix.Factory matrix = ArrayDoubleTriangularMatrix.Factory.STATIC;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function to use
+   * @param linkage Linkage method
+   */
+  public NNChain(DistanceFunction<? super O> distanceFunction, LinkageMethod linkage) {
+    this(distanceFunction, linkage, ArrayDoubleTriangularMatrix.Factory.STATIC);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function to use
+   * @param linkage Linkage method
+   * @param matrix Distance matrix storage
+   */
+  public NNChain(DistanceFunction<? super O> distanceFunction, LinkageMethod linkage, TriangularMatrix.Factory matrix) {
+    super(distanceFunction);
+    this.linkage = linkage;
+    this.matrix = matrix;
+  }
+
+  /**
+   * Test whether a linkage is known to satisfy the reducibility property
+   * required by the nearest-neighbor chain.
+   *
+   * @param linkage Linkage method
+   * @return {@code true} if the linkage is reducible.
+   */
+  public static boolean isReducible(LinkageMethod linkage) {
+    return linkage instanceof SingleLinkageMethod //
+        || linkage instanceof CompleteLinkageMethod //
+        || linkage instanceof GroupAverageLinkageMethod //
+        || linkage instanceof WeightedAverageLinkageMethod //
+        || linkage instanceof WardLinkageMethod;
+  }
+
+  /**
+   * Run the algorithm
+   *
+   * @param db Database
+   * @param relation Relation
+   * @return Clustering hierarchy
+   */
+  public PointerHierarchyRepresentationResult run(Database db, Relation<O> relation) {
+    if(!isReducible(linkage)) {
+      LOG.warning("Linkage " + linkage.getClass().getSimpleName() + " is not reducible, falling back to the Anderberg algorithm.");
+      return new AnderbergHierarchicalClustering<O>(getDistanceFunction(), linkage, matrix).run(db, relation);
+    }
+    if(SingleLinkageMethod.class.isInstance(linkage)) {
+      LOG.verbose("Notice: SLINK is a much faster algorithm for single-linkage clustering!");
+    }
+    DistanceQuery<O> dq = db.getDistanceQuery(relation, getDistanceFunction());
+    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size();
+
+    // Compute the initial (lower triangular) distance matrix.
+    TriangularMatrix scratch = matrix.newMatrix(size);
+    DBIDArrayIter ix = ids.iter(), iy = ids.iter();
+    final boolean square = WardLinkageMethod.class.isInstance(linkage) && !(SquaredEuclideanDistanceFunction.class.isInstance(dq.getDistanceFunction()));
+    AGNES.initializeDistanceMatrix(scratch, dq, ix, iy, square);
+
+    // Cluster sizes, 0 for clusters that have been merged into another.
+    int[] csize = new int[size];
+    for(int i = 0; i < size; i++) {
+      csize[i] = 1;
+    }
+    // Merge buffer: x was merged into y at distance d.
+    final int[] mx = new int[size - 1 > 0 ? size - 1 : 0], my = new int[mx.length];
+    final double[] md = new double[mx.length];
+
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Agglomerative clustering", size - 1, LOG) : null;
+    int[] chain = new int[size];
+    int len = 0, start = 0;
+    for(int m = 0; m < mx.length;) {
+      if(len == 0) {
+        // Start a new chain with the first active cluster.
+        while(csize[start] == 0) {
+          ++start;
+        }
+        chain[len++] = start;
+      }
+      final int a = chain[len - 1], prev = len > 1 ? chain[len - 2] : -1;
+      // Find the nearest neighbor, preferring the previous chain element on ties
+      int b = prev;
+      double bestd = prev >= 0 ? scratch.get(offset(a, prev)) : Double.POSITIVE_INFINITY;
+      long o = AGNES.triangleSize(a);
+      for(int i = 0; i < a; i++, o++) {
+        if(csize[i] == 0) {
+          continue;
+        }
+        final double d = scratch.get(o);
+        if(d < bestd) {
+          bestd = d;
+          b = i;
+        }
+      }
+      o = AGNES.triangleSize(a + 1) + a;
+      for(int i = a + 1; i < size; o += i, i++) {
+        if(csize[i] == 0) {
+          continue;
+        }
+        final double d = scratch.get(o);
+        if(d < bestd) {
+          bestd = d;
+          b = i;
+        }
+      }
+      assert(b >= 0);
+      if(b != prev) {
+        chain[len++] = b;
+        continue;
+      }
+      // Reciprocal nearest neighbors: merge, keeping the smaller index.
+      len -= 2;
+      final int x = a > b ? a : b, y = a > b ? b : a;
+      mx[m] = x;
+      my[m] = y;
+      md[m] = bestd;
+      ++m;
+      updateMatrix(size, scratch, csize, bestd, x, y);
+      LOG.incrementProcessed(prog);
+    }
+    LOG.ensureCompleted(prog);
+    scratch.destroy();
+
+    // Sort merges by distance, keeping the discovery order on ties:
+    int[] order = new int[mx.length];
+    for(int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    IntegerArrayQuickSort.sort(order, new IntegerComparator() {
+      @Override
+      public int compare(int i, int j) {
+        final int c = Double.compare(md[i], md[j]);
+        return c != 0 ? c : (i < j ? -1 : i > j ? 1 : 0);
+      }
+    });
+    PointerHierarchyRepresentationBuilder builder = new PointerHierarchyRepresentationBuilder(ids);
+    for(int i : order) {
+      builder.add(ix.seek(mx[i]), md[i], iy.seek(my[i]));
+    }
+    return builder.complete();
+  }
+
+  /**
+   * Compute the offset of a pair in the lower triangular matrix.
+   *
+   * @param a First index
+   * @param b Second index, must differ from a
+   * @return Offset
+   */
+  private static long offset(int a, int b) {
+    return a > b ? AGNES.triangleSize(a) + b : AGNES.triangleSize(b) + a;
+  }
+
+  /**
+   * Update the scratch distance matrix after merging x into y.
+   *
+   * @param size Data set size
+   * @param scratch Scratch matrix
+   * @param csize Cluster sizes
+   * @param mindist Distance that was used for merging
+   * @param x First matrix position (removed)
+   * @param y Second matrix position (kept), {@code y < x}
+   */
+  protected void updateMatrix(int size, TriangularMatrix scratch, int[] csize, double mindist, int x, int y) {
+    final int sizex = csize[x], sizey = csize[y];
+    final long xbase = AGNES.triangleSize(x), ybase = AGNES.triangleSize(y);
+    // Write to (y, j), with j < y
+    int j = 0;
+    for(; j < y; j++) {
+      if(csize[j] == 0) {
+        continue;
+      }
+      final long yb = ybase + j;
+      scratch.set(yb, linkage.combine(sizex, scratch.get(xbase + j), sizey, scratch.get(yb), csize[j], mindist));
+    }
+    j++; // Skip y
+    // Write to (j, y), with y < j < x
+    long jbase = AGNES.triangleSize(j);
+    for(; j < x; jbase += j++) {
+      if(csize[j] == 0) {
+        continue;
+      }
+      final long jb = jbase + y;
+      scratch.set(jb, linkage.combine(sizex, scratch.get(xbase + j), sizey, scratch.get(jb), csize[j], mindist));
+    }
+    jbase += j++; // Skip x
+    // Write to (j, y), with y < x < j
+    for(; j < size; jbase += j++) {
+      if(csize[j] == 0) {
+        continue;
+      }
+      final long jb = jbase + y;
+      scratch.set(jb, linkage.combine(sizex, scratch.get(jbase + x), sizey, scratch.get(jb), csize[j], mindist));
+    }
+    csize[y] = sizex + sizey;
+    csize[x] = 0;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    // The input relation must match our distance function:
+    return TypeUtil.array(getDistanceFunction().getInputTypeRestriction());
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> Object type
+   */
+  public static class Parameterizer<O> extends AbstractDistanceBasedAlgorithm.Parameterizer<O> {
+    /**
+     * Current linkage in use.
+     */
+    protected LinkageMethod linkage;
+
+    /**
+     * Distance matrix storage.
+     */
+    protected TriangularMatrix.Factory matrix;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      // We don't call super, because we want a different default distance.
+      ObjectParameter<DistanceFunction<O>> distanceFunctionP = makeParameterDistanceFunction(SquaredEuclideanDistanceFunction.class, DistanceFunction.class);
+      if(config.grab(distanceFunctionP)) {
+        distanceFunction = distanceFunctionP.instantiateClass(config);
+      }
+
+      ObjectParameter<LinkageMethod> linkageP = new ObjectParameter<>(AGNES.Parameterizer.LINKAGE_ID, LinkageMethod.class);
+      linkageP.setDefaultValue(WardLinkageMethod.class);
+      if(config.grab(linkageP)) {
+        linkage = linkageP.instantiateClass(config);
+      }
+
+      ObjectParameter<TriangularMatrix.Factory> matrixP = new ObjectParameter<>(AGNES.Parameterizer.MATRIX_ID, TriangularMatrix.Factory.class, ArrayDoubleTriangularMatrix.Factory.class);
+      if(config.grab(matrixP)) {
+        matrix = matrixP.instantiateClass(config);
+      }
+    }
+
+    @Override
+    protected NNChain<O> makeInstance() {
+      return new NNChain<>(distanceFunction, linkage, matrix);
+    }
+  }
+}
@@ -22,6 +22,9 @@ package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical;
  You should have received a copy of the GNU Affero General Public License
  along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.Database;
@@ -31,12 +34,13 @@ import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDBIDDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDVar;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
-import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
@@ -44,6 +48,7 @@ import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
@@ -59,7 +64,8 @@ import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
  * This version uses the SLINK algorithm to directly produce the pointer
  * representation expected by the extraction methods. The SLINK algorithm is
  * closely related to Prim's minimum spanning tree, but produces the more
- * compact pointer representation instead of an edges list.
+ * compact pointer representation instead of an edges list. The core
+ * distances and the distance row of each step are computed in parallel.
  * 
  * This implementation does <em>not</em> include the cluster extraction
  * discussed as Step 4. This functionality should however already be provided by
@@ -122,13 +128,14 @@ public class SLINKHDBSCANLinearMemory<O> extends AbstractHDBSCAN<O, PointerDensi
 
     FiniteProgress progress = LOG.isVerbose() ? new FiniteProgress("Running HDBSCAN*-SLINK", ids.size(), LOG) : null;
     // has to be an array for monotonicity reasons!
-    ModifiableDBIDs processedIDs = DBIDUtil.newArray(ids.size());
+    ArrayModifiableDBIDs processedIDs = DBIDUtil.newArray(ids.size());
+    ReachabilityRow row = new ReachabilityRow(processedIDs, distQ, coredists, ParallelCore.getCore().getForkJoinPool(), ids.size());
 
     for(DBIDIter id = ids.iter(); id.valid(); id.advance()) {
       // Steps 1,3,4 are exactly as in SLINK
       step1(id, pi, lambda);
       // Step 2 is modified to use a different distance
-      step2(id, processedIDs, distQ, coredists, m);
+      step2(id, row, m);
       step3(id, pi, lambda, processedIDs, m);
       step4(id, pi, lambda, processedIDs);
 
@@ -159,22 +166,16 @@ public class SLINKHDBSCANLinearMemory<O> extends AbstractHDBSCAN<O, PointerDensi
 
   /**
    * Second step: Determine the pairwise distances from all objects in the
-   * pointer representation to the new object with the specified id.
+   * pointer representation to the new object with the specified id, in
+   * parallel.
    * 
    * @param id the id of the object to be inserted into the pointer
    *        representation
-   * @param processedIDs the already processed ids
-   * @param distQuery Distance query
+   * @param row Distance row computation
    * @param m Data store
    */
-  private void step2(DBIDRef id, DBIDs processedIDs, DistanceQuery<? super O> distQuery, DoubleDataStore coredists, WritableDoubleDataStore m) {
-    double coreP = coredists.doubleValue(id);
-    for(DBIDIter it = processedIDs.iter(); it.valid(); it.advance()) {
-      // M(i) = dist(i, n+1)
-      double coreQ = coredists.doubleValue(it);
-      double dist = MathUtil.max(coreP, coreQ, distQuery.distance(id, it));
-      m.putDouble(it, dist);
-    }
+  private void step2(DBIDRef id, ReachabilityRow row, WritableDoubleDataStore m) {
+    row.compute(id, m);
   }
 
   /**
@@ -252,6 +253,164 @@ public class SLINKHDBSCANLinearMemory<O> extends AbstractHDBSCAN<O, PointerDensi
     return LOG;
   }
 
+  /**
+   * Compute the mutual reachability distances of all processed objects to the
+   * new object.
+   *
+   * Long rows are split into a tree of fork-join tasks, which write into a
+   * buffer indexed by position; short rows are processed in the calling
+   * thread, to avoid the task overhead.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.has RowTask
+   */
+  private static class ReachabilityRow {
+    /**
+     * Minimum number of objects per task.
+     */
+    private static final int MIN_BLOCKSIZE = 256;
+
+    /**
+     * Processed objects.
+     */
+    ArrayDBIDs processedIDs;
+
+    /**
+     * Distance query.
+     */
+    DistanceQuery<?> distQuery;
+
+    /**
+     * Core distances.
+     */
+    DoubleDataStore coredists;
+
+    /**
+     * Pool to run the tasks in.
+     */
+    ForkJoinPool pool;
+
+    /**
+     * Buffer for the distances, by position in {@link #processedIDs}.
+     */
+    double[] buf;
+
+    /**
+     * New object.
+     */
+    DBIDRef id;
+
+    /**
+     * Core distance of the new object.
+     */
+    double coreP;
+
+    /**
+     * Constructor.
+     *
+     * @param processedIDs Processed objects (will be appended to)
+     * @param distQuery Distance query
+     * @param coredists Core distances
+     * @param pool Pool to run the tasks in
+     * @param size Maximum number of objects
+     */
+    ReachabilityRow(ArrayDBIDs processedIDs, DistanceQuery<?> distQuery, DoubleDataStore coredists, ForkJoinPool pool, int size) {
+      super();
+      this.processedIDs = processedIDs;
+      this.distQuery = distQuery;
+      this.coredists = coredists;
+      this.pool = pool;
+      this.buf = new double[size];
+    }
+
+    /**
+     * Compute the distances to a new object.
+     *
+     * @param id New object
+     * @param m Output data store
+     */
+    void compute(DBIDRef id, WritableDoubleDataStore m) {
+      this.id = id;
+      this.coreP = coredists.doubleValue(id);
+      final int size = processedIDs.size();
+      final int parallelism = pool.getParallelism();
+      final int blocksize = Math.max(MIN_BLOCKSIZE, size / (parallelism << 2));
+      if(parallelism <= 1 || size <= blocksize) {
+        for(DBIDIter it = processedIDs.iter(); it.valid(); it.advance()) {
+          // M(i) = dist(i, n+1)
+          m.putDouble(it, distance(it));
+        }
+        return;
+      }
+      pool.invoke(new RowTask(0, size, blocksize));
+      DBIDIter it = processedIDs.iter();
+      for(int i = 0; it.valid(); it.advance(), i++) {
+        m.putDouble(it, buf[i]);
+      }
+    }
+
+    /**
+     * Mutual reachability distance to the new object.
+     *
+     * @param it Other object
+     * @return Distance
+     */
+    double distance(DBIDRef it) {
+      return MathUtil.max(coreP, coredists.doubleValue(it), distQuery.distance(id, it));
+    }
+
+    /**
+     * Task to compute a range of the distances.
+     *
+     * @author Erich Schubert
+     */
+    private class RowTask extends RecursiveAction {
+      /**
+       * Serialization version.
+       */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Range to process.
+       */
+      int start, end;
+
+      /**
+       * Maximum block size.
+       */
+      int blocksize;
+
+      /**
+       * Constructor.
+       *
+       * @param start Start position
+       * @param end End position
+       * @param blocksize Maximum block size
+       */
+      RowTask(int start, int end, int blocksize) {
+        super();
+        this.start = start;
+        this.end = end;
+        this.blocksize = blocksize;
+      }
+
+      @Override
+      protected void compute() {
+        if(end - start > blocksize) {
+          final int mid = (start + end) >>> 1;
+          invokeAll(new RowTask(start, mid, blocksize), new RowTask(mid, end, blocksize));
+          return;
+        }
+        DBIDArrayIter it = processedIDs.iter();
+        it.seek(start);
+        for(int i = start; i < end; i++, it.advance()) {
+          buf[i] = distance(it);
+        }
+      }
+    }
+  }
+
   /**
    * Parameterization class
    * 
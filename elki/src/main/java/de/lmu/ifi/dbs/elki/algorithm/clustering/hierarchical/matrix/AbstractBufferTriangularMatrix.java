@@ -0,0 +1,131 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.matrix;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+import de.lmu.ifi.dbs.elki.utilities.io.ByteArrayUtil;
+
+/**
+ * Triangular matrix stored in chunks of {@link ByteBuffer}s, in single or
+ * double precision.
+ *
+ * @author Erich Schubert
+ */
+public abstract class AbstractBufferTriangularMatrix implements TriangularMatrix {
+  /**
+   * Matrix size.
+   */
+  private int size;
+
+  /**
+   * Data storage, when using single precision.
+   */
+  private FloatBuffer[] floats;
+
+  /**
+   * Data storage, when using double precision.
+   */
+  private DoubleBuffer[] doubles;
+
+  /**
+   * Constructor.
+   *
+   * @param size Matrix size
+   */
+  protected AbstractBufferTriangularMatrix(int size) {
+    super();
+    this.size = size;
+  }
+
+  /**
+   * Allocate the storage chunks.
+   *
+   * @param useFloat Use single precision
+   */
+  protected void allocate(boolean useFloat) {
+    final long entries = TriangularMatrixUtil.triangleSize(size);
+    final int chunks = TriangularMatrixUtil.numChunks(entries);
+    final int width = useFloat ? ByteArrayUtil.SIZE_FLOAT : ByteArrayUtil.SIZE_DOUBLE;
+    if(useFloat) {
+      floats = new FloatBuffer[chunks];
+    }
+    else {
+      doubles = new DoubleBuffer[chunks];
+    }
+    for(int i = 0; i < chunks; i++) {
+      final long start = (((long) i) << TriangularMatrixUtil.CHUNK_BITS) * width;
+      final int len = TriangularMatrixUtil.chunkSize(entries, i) * width;
+      ByteBuffer buf = allocateChunk(start, len).order(ByteOrder.nativeOrder());
+      if(useFloat) {
+        floats[i] = buf.asFloatBuffer();
+      }
+      else {
+        doubles[i] = buf.asDoubleBuffer();
+      }
+    }
+  }
+
+  /**
+   * Allocate a single chunk.
+   *
+   * @param start Byte position of the chunk
+   * @param len Length of the chunk in bytes
+   * @return Buffer
+   */
+  protected abstract ByteBuffer allocateChunk(long start, int len);
+
+  @Override
+  public int getMatrixSize() {
+    return size;
+  }
+
+  @Override
+  public double get(long offset) {
+    final int c = (int) (offset >>> TriangularMatrixUtil.CHUNK_BITS);
+    final int o = (int) (offset & TriangularMatrixUtil.CHUNK_MASK);
+    return floats != null ? floats[c].get(o) : doubles[c].get(o);
+  }
+
+  @Override
+  public void set(long offset, double value) {
+    final int c = (int) (offset >>> TriangularMatrixUtil.CHUNK_BITS);
+    final int o = (int) (offset & TriangularMatrixUtil.CHUNK_MASK);
+    if(floats != null) {
+      floats[c].put(o, (float) value);
+    }
+    else {
+      doubles[c].put(o, value);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    floats = null;
+    doubles = null;
+  }
+}
@@ -0,0 +1,121 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.matrix;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+
+/**
+ * Triangular matrix stored in a single on-heap {@code double[]} array.
+ *
+ * This is the fastest and most precise storage, but it is limited to about
+ * 65535 objects by the maximum Java array size.
+ *
+ * @author Erich Schubert
+ */
+public class ArrayDoubleTriangularMatrix implements TriangularMatrix {
+  /**
+   * Maximum matrix size, such that the array size fits into an integer.
+   */
+  public static final int MAX_SIZE = 0x10000;
+
+  /**
+   * Matrix size.
+   */
+  private int size;
+
+  /**
+   * Data storage.
+   */
+  private double[] data;
+
+  /**
+   * Constructor.
+   *
+   * @param size Matrix size
+   */
+  public ArrayDoubleTriangularMatrix(int size) {
+    super();
+    if(size > MAX_SIZE) {
+      throw new AbortException("This matrix storage does not scale to data sets larger than " + //
+      MAX_SIZE + " instances (~16 GB RAM), at which point the Java maximum array size is reached." + //
+      " Use a long-indexed matrix storage instead.");
+    }
+    this.size = size;
+    this.data = new double[(int) TriangularMatrixUtil.triangleSize(size)];
+  }
+
+  @Override
+  public int getMatrixSize() {
+    return size;
+  }
+
+  @Override
+  public double get(long offset) {
+    return data[(int) offset];
+  }
+
+  @Override
+  public void set(long offset, double value) {
+    data[(int) offset] = value;
+  }
+
+  @Override
+  public void destroy() {
+    data = null;
+  }
+
+  /**
+   * Factory for on-heap double matrixes.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.has ArrayDoubleTriangularMatrix
+   */
+  public static class Factory implements TriangularMatrix.Factory {
+    /**
+     * Static instance.
+     */
+    public static final Factory STATIC = new Factory();
+
+    @Override
+    public ArrayDoubleTriangularMatrix newMatrix(int size) {
+      return new ArrayDoubleTriangularMatrix(size);
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    public static class Parameterizer extends AbstractParameterizer {
+      @Override
+      protected Factory makeInstance() {
+        return STATIC;
+      }
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.matrix;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+
+/**
+ * Triangular matrix stored on-heap in single precision, in chunks of
+ * {@code float[]} arrays so that it is not limited by the maximum array size.
+ *
+ * Uses half the memory of {@link ArrayDoubleTriangularMatrix}, at the cost of
+ * precision.
+ *
+ * @author Erich Schubert
+ */
+public class ArrayFloatTriangularMatrix implements TriangularMatrix {
+  /**
+   * Matrix size.
+   */
+  private int size;
+
+  /**
+   * Data storage.
+   */
+  private float[][] data;
+
+  /**
+   * Constructor.
+   *
+   * @param size Matrix size
+   */
+  public ArrayFloatTriangularMatrix(int size) {
+    super();
+    this.size = size;
+    final long entries = TriangularMatrixUtil.triangleSize(size);
+    final int chunks = TriangularMatrixUtil.numChunks(entries);
+    this.data = new float[chunks][];
+    for(int i = 0; i < chunks; i++) {
+      data[i] = new float[TriangularMatrixUtil.chunkSize(entries, i)];
+    }
+  }
+
+  @Override
+  public int getMatrixSize() {
+    return size;
+  }
+
+  @Override
+  public double get(long offset) {
+    return data[(int) (offset >>> TriangularMatrixUtil.CHUNK_BITS)][(int) (offset & TriangularMatrixUtil.CHUNK_MASK)];
+  }
+
+  @Override
+  public void set(long offset, double value) {
+    data[(int) (offset >>> TriangularMatrixUtil.CHUNK_BITS)][(int) (offset & TriangularMatrixUtil.CHUNK_MASK)] = (float) value;
+  }
+
+  @Override
+  public void destroy() {
+    data = null;
+  }
+
+  /**
+   * Factory for on-heap float matrixes.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.has ArrayFloatTriangularMatrix
+   */
+  public static class Factory implements TriangularMatrix.Factory {
+    /**
+     * Static instance.
+     */
+    public static final Factory STATIC = new Factory();
+
+    @Override
+    public ArrayFloatTriangularMatrix newMatrix(int size) {
+      return new ArrayFloatTriangularMatrix(size);
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    public static class Parameterizer extends AbstractParameterizer {
+      @Override
+      protected Factory makeInstance() {
+        return STATIC;
+      }
+    }
+  }
+}
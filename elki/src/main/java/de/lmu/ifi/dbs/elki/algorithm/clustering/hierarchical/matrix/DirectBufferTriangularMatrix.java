@@ -0,0 +1,119 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.matrix;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.nio.ByteBuffer;
+
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
+
+/**
+ * Triangular matrix stored off-heap, in direct {@link ByteBuffer}s.
+ *
+ * This does not put pressure on the garbage collector, and is not limited by
+ * the Java heap size (but by {@code -XX:MaxDirectMemorySize}).
+ *
+ * @author Erich Schubert
+ */
+public class DirectBufferTriangularMatrix extends AbstractBufferTriangularMatrix {
+  /**
+   * Constructor.
+   *
+   * @param size Matrix size
+   * @param useFloat Use single precision
+   */
+  public DirectBufferTriangularMatrix(int size, boolean useFloat) {
+    super(size);
+    allocate(useFloat);
+  }
+
+  @Override
+  protected ByteBuffer allocateChunk(long start, int len) {
+    return ByteBuffer.allocateDirect(len);
+  }
+
+  /**
+   * Factory for off-heap matrixes.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.has DirectBufferTriangularMatrix
+   */
+  public static class Factory implements TriangularMatrix.Factory {
+    /**
+     * Use single precision.
+     */
+    private boolean useFloat;
+
+    /**
+     * Constructor.
+     *
+     * @param useFloat Use single precision
+     */
+    public Factory(boolean useFloat) {
+      super();
+      this.useFloat = useFloat;
+    }
+
+    @Override
+    public DirectBufferTriangularMatrix newMatrix(int size) {
+      return new DirectBufferTriangularMatrix(size, useFloat);
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    public static class Parameterizer extends AbstractParameterizer {
+      /**
+       * Flag to use single precision.
+       */
+      public static final OptionID FLOAT_ID = new OptionID("matrix.float", "Store the matrix in single precision, to reduce memory usage.");
+
+      /**
+       * Use single precision.
+       */
+      protected boolean useFloat;
+
+      @Override
+      protected void makeOptions(Parameterization config) {
+        super.makeOptions(config);
+        Flag floatF = new Flag(FLOAT_ID);
+        if(config.grab(floatF)) {
+          useFloat = floatF.isTrue();
+        }
+      }
+
+      @Override
+      protected Factory makeInstance() {
+        return new Factory(useFloat);
+      }
+    }
+  }
+}
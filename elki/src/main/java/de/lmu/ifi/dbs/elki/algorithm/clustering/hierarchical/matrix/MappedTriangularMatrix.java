@@ -0,0 +1,197 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.matrix;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import de.lmu.ifi.dbs.elki.logging.LoggingUtil;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.WrongParameterValueException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.FileParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
+
+/**
+ * Triangular matrix stored in a temporary, memory-mapped file.
+ *
+ * The file is mapped in multiple chunks, so the matrix is not limited by the
+ * 2 GB limit of a single mapping (as is
+ * {@link de.lmu.ifi.dbs.elki.persistent.OnDiskUpperTriangleMatrix}). The
+ * operating system pages the matrix in and out as needed, so it may exceed the
+ * main memory (at a substantial performance cost).
+ *
+ * @author Erich Schubert
+ */
+public class MappedTriangularMatrix extends AbstractBufferTriangularMatrix {
+  /**
+   * Backing file.
+   */
+  private File filename;
+
+  /**
+   * File handle.
+   */
+  private RandomAccessFile file;
+
+  /**
+   * Constructor.
+   *
+   * @param size Matrix size
+   * @param useFloat Use single precision
+   * @param directory Directory for the temporary file, may be {@code null}
+   * @throws IOException on errors creating the file
+   */
+  public MappedTriangularMatrix(int size, boolean useFloat, File directory) throws IOException {
+    super(size);
+    filename = File.createTempFile("elki-matrix-", ".bin", directory);
+    filename.deleteOnExit();
+    file = new RandomAccessFile(filename, "rw");
+    try {
+      allocate(useFloat);
+    }
+    catch(RuntimeException | Error e) {
+      file.close();
+      filename.delete();
+      throw e;
+    }
+  }
+
+  @Override
+  protected ByteBuffer allocateChunk(long start, int len) {
+    try {
+      return file.getChannel().map(FileChannel.MapMode.READ_WRITE, start, len);
+    }
+    catch(IOException e) {
+      throw new AbortException("Could not map matrix file " + filename, e);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    super.destroy();
+    try {
+      file.close();
+    }
+    catch(IOException e) {
+      LoggingUtil.exception("Could not close matrix file " + filename, e);
+    }
+    // May fail while the mappings have not been garbage collected yet.
+    if(!filename.delete()) {
+      filename.deleteOnExit();
+    }
+  }
+
+  /**
+   * Factory for memory-mapped matrixes.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.has MappedTriangularMatrix
+   */
+  public static class Factory implements TriangularMatrix.Factory {
+    /**
+     * Use single precision.
+     */
+    private boolean useFloat;
+
+    /**
+     * Directory for temporary files.
+     */
+    private File directory;
+
+    /**
+     * Constructor.
+     *
+     * @param useFloat Use single precision
+     * @param directory Directory for temporary files, may be {@code null}
+     */
+    public Factory(boolean useFloat, File directory) {
+      super();
+      this.useFloat = useFloat;
+      this.directory = directory;
+    }
+
+    @Override
+    public MappedTriangularMatrix newMatrix(int size) {
+      try {
+        return new MappedTriangularMatrix(size, useFloat, directory);
+      }
+      catch(IOException e) {
+        throw new AbortException("Could not create matrix file.", e);
+      }
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    public static class Parameterizer extends AbstractParameterizer {
+      /**
+       * Directory for the temporary files.
+       */
+      public static final OptionID DIRECTORY_ID = new OptionID("matrix.directory", "Directory to store the temporary matrix files in. Defaults to the system temporary directory.");
+
+      /**
+       * Use single precision.
+       */
+      protected boolean useFloat;
+
+      /**
+       * Directory for temporary files.
+       */
+      protected File directory;
+
+      @Override
+      protected void makeOptions(Parameterization config) {
+        super.makeOptions(config);
+        Flag floatF = new Flag(DirectBufferTriangularMatrix.Factory.Parameterizer.FLOAT_ID);
+        if(config.grab(floatF)) {
+          useFloat = floatF.isTrue();
+        }
+        FileParameter dirP = new FileParameter(DIRECTORY_ID, FileParameter.FileType.INPUT_FILE, true);
+        if(config.grab(dirP)) {
+          directory = dirP.getValue();
+          if(!directory.isDirectory()) {
+            config.reportError(new WrongParameterValueException(dirP, directory.getPath(), "Not a directory."));
+            directory = null;
+          }
+        }
+      }
+
+      @Override
+      protected Factory makeInstance() {
+        return new Factory(useFloat, directory);
+      }
+    }
+  }
+}
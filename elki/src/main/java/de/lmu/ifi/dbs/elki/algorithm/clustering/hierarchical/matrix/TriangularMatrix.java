@@ -0,0 +1,85 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.matrix;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Storage for the lower triangle (excluding the diagonal) of a symmetric
+ * matrix, as used by agglomerative hierarchical clustering.
+ *
+ * The entry for {@code (x, y)} with {@code y < x} is stored at offset
+ * {@code triangleSize(x) + y}. Offsets are {@code long}, so that
+ * implementations are not limited by the maximum Java array size.
+ *
+ * Implementations are not thread-safe.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has Factory
+ */
+public interface TriangularMatrix {
+  /**
+   * Get the number of rows (and columns) of the matrix.
+   *
+   * @return Matrix size
+   */
+  int getMatrixSize();
+
+  /**
+   * Get the value at the given offset.
+   *
+   * @param offset Offset, {@code triangleSize(x) + y}
+   * @return Value
+   */
+  double get(long offset);
+
+  /**
+   * Set the value at the given offset.
+   *
+   * @param offset Offset, {@code triangleSize(x) + y}
+   * @param value New value
+   */
+  void set(long offset, double value);
+
+  /**
+   * Release the memory or files used by this matrix.
+   */
+  void destroy();
+
+  /**
+   * Factory for triangular matrixes.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.has TriangularMatrix
+   */
+  public static interface Factory {
+    /**
+     * Allocate a new matrix.
+     *
+     * @param size Number of rows (and columns)
+     * @return New matrix
+     */
+    TriangularMatrix newMatrix(int size);
+  }
+}
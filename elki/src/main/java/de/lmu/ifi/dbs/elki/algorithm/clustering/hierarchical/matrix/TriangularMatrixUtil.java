@@ -0,0 +1,85 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.matrix;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Utility functions for triangular matrixes.
+ *
+ * @author Erich Schubert
+ */
+public final class TriangularMatrixUtil {
+  /**
+   * Number of entries per chunk, as power of two, for chunked storage.
+   */
+  protected static final int CHUNK_BITS = 27;
+
+  /**
+   * Number of entries per chunk.
+   */
+  protected static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+  /**
+   * Mask to get the offset within a chunk.
+   */
+  protected static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+  /**
+   * Fake constructor.
+   */
+  private TriangularMatrixUtil() {
+    // Do not instantiate.
+  }
+
+  /**
+   * Compute the size of a complete x by x triangle (minus diagonal)
+   *
+   * @param x Offset
+   * @return Size of complete triangle
+   */
+  public static long triangleSize(long x) {
+    return (x * (x - 1)) >>> 1;
+  }
+
+  /**
+   * Compute the number of chunks needed for the given number of entries.
+   *
+   * @param entries Number of entries
+   * @return Number of chunks
+   */
+  protected static int numChunks(long entries) {
+    return (int) ((entries + CHUNK_MASK) >>> CHUNK_BITS);
+  }
+
+  /**
+   * Compute the size of the given chunk.
+   *
+   * @param entries Total number of entries
+   * @param chunk Chunk number
+   * @return Number of entries in this chunk
+   */
+  protected static int chunkSize(long entries, int chunk) {
+    final long rest = entries - (((long) chunk) << CHUNK_BITS);
+    return rest < CHUNK_SIZE ? (int) rest : CHUNK_SIZE;
+  }
+}
@@ -32,6 +32,7 @@ import de.lmu.ifi.dbs.elki.algorithm.clustering.ClusteringAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.KMeansInitialization;
 import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.RandomlyChosenInitialMeans;
 import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.FloatVector;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.VectorUtil.SortDBIDsBySingleDimension;
 import de.lmu.ifi.dbs.elki.data.model.Model;
@@ -45,6 +46,7 @@ import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.PackedVectorRelation;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.PrimitiveDistanceFunction;
@@ -120,6 +122,10 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> ex
       cluster.clear();
     }
     final NumberVectorDistanceFunction<?> df = getDistanceFunction();
+    final PackedVectorRelation packed = PackedVectorRelation.asPacked(relation, means.get(0).getDimensionality());
+    if(packed != null && (df instanceof SquaredEuclideanDistanceFunction || df instanceof EuclideanDistanceFunction)) {
+      return assignToNearestClusterPacked(packed, means, clusters, assignment, varsum, df instanceof EuclideanDistanceFunction);
+    }
     for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
       double mindist = Double.POSITIVE_INFINITY;
       V fv = relation.get(iditer);
@@ -138,6 +144,40 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> ex
     return changed;
   }
 
+  /**
+   * Assign to the nearest cluster, reading a packed relation directly.
+   *
+   * @param relation Packed data relation
+   * @param means Means
+   * @param clusters Clusters (cleared already)
+   * @param assignment Current cluster assignment
+   * @param varsum Variance sum output (reset already)
+   * @param sqrt Use Euclidean instead of squared Euclidean distance
+   * @return true when the object was reassigned
+   */
+  private boolean assignToNearestClusterPacked(PackedVectorRelation relation, List<? extends NumberVector> means, List<? extends ModifiableDBIDs> clusters, WritableIntegerDataStore assignment, double[] varsum, boolean sqrt) {
+    boolean changed = false;
+    double[][] raw = new double[k][];
+    for(int i = 0; i < k; i++) {
+      raw[i] = means.get(i).getColumnVector().getArrayRef();
+    }
+    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
+      double mindist = Double.POSITIVE_INFINITY;
+      int minIndex = 0;
+      for(int i = 0; i < k; i++) {
+        double dist = relation.squaredDistance(iditer, raw[i]);
+        if(dist < mindist) {
+          minIndex = i;
+          mindist = dist;
+        }
+      }
+      varsum[minIndex] += sqrt ? Math.sqrt(mindist) : mindist;
+      clusters.get(minIndex).add(iditer);
+      changed |= assignment.putInt(iditer, minIndex) != minIndex;
+    }
+    return changed;
+  }
+
   @Override
   public TypeInformation[] getInputTypeRestriction() {
     return TypeUtil.array(new CombinedTypeInformation(TypeUtil.NUMBER_VECTOR_FIELD, getDistanceFunction().getInputTypeRestriction()));
@@ -154,10 +194,20 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> ex
   protected List<Vector> means(List<? extends DBIDs> clusters, List<? extends NumberVector> means, Relation<V> database) {
     // TODO: use Kahan summation for better numerical precision?
     List<Vector> newMeans = new ArrayList<>(k);
+    final PackedVectorRelation packed = PackedVectorRelation.asPacked(database, means.get(0).getDimensionality());
     for(int i = 0; i < k; i++) {
       DBIDs list = clusters.get(i);
       Vector mean = null;
-      if(list.size() > 0) {
+      if(list.size() > 0 && packed != null) {
+        // Fast path, reading the packed array directly.
+        double[] raw = new double[packed.getDimensionality()];
+        for(DBIDIter iter = list.iter(); iter.valid(); iter.advance()) {
+          packed.addRow(iter, raw);
+        }
+        mean = new Vector(raw);
+        mean.timesEquals(1.0 / list.size());
+      }
+      else if(list.size() > 0) {
         DBIDIter iter = list.iter();
         // Initialize with first.
         mean = database.get(iter).getColumnVector();
@@ -181,6 +231,54 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> ex
     return newMeans;
   }
 
+  /**
+   * Returns the mean vectors of the given clusters in single precision. Sums
+   * are accumulated in double precision, only the result is stored as float,
+   * which halves the memory traffic of the following assignment step when
+   * used with a single precision distance function.
+   *
+   * @param clusters the clusters to compute the means
+   * @param means the recent means
+   * @param database the database containing the vectors
+   * @return the mean vectors of the given clusters in the given database
+   */
+  protected List<FloatVector> floatMeans(List<? extends DBIDs> clusters, List<? extends NumberVector> means, Relation<V> database) {
+    List<FloatVector> newMeans = new ArrayList<>(k);
+    final int dim = means.get(0).getDimensionality();
+    final PackedVectorRelation packed = PackedVectorRelation.asPacked(database, dim);
+    double[] raw = new double[dim];
+    float[] fraw = new float[dim];
+    for(int i = 0; i < k; i++) {
+      DBIDs list = clusters.get(i);
+      if(list.size() == 0) {
+        // Keep degenerated means as-is for now.
+        NumberVector mean = means.get(i);
+        newMeans.add(mean instanceof FloatVector ? (FloatVector) mean : FloatVector.FACTORY.newNumberVector(mean));
+        continue;
+      }
+      Arrays.fill(raw, 0.);
+      if(packed != null) {
+        for(DBIDIter iter = list.iter(); iter.valid(); iter.advance()) {
+          packed.addRow(iter, raw);
+        }
+      }
+      else {
+        for(DBIDIter iter = list.iter(); iter.valid(); iter.advance()) {
+          NumberVector vec = database.get(iter);
+          for(int j = 0; j < dim; j++) {
+            raw[j] += vec.doubleValue(j);
+          }
+        }
+      }
+      final double s = 1.0 / list.size();
+      for(int j = 0; j < dim; j++) {
+        fraw[j] = (float) (raw[j] * s);
+      }
+      newMeans.add(new FloatVector(fraw));
+    }
+    return newMeans;
+  }
+
   /**
    * Returns the median vectors of the given clusters in the given database.
    *
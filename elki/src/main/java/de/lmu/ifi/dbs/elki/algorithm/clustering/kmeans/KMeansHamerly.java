@@ -36,8 +36,10 @@ import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableFloatDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
@@ -51,6 +53,7 @@ import de.lmu.ifi.dbs.elki.logging.statistics.StringStatistic;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.Vector;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
 
 /**
  * Hamerly's fast k-means by exploiting the triangle inequality.
@@ -83,6 +86,11 @@ public class KMeansHamerly<V extends NumberVector> extends AbstractKMeans<V, KMe
    */
   private static final String KEY = KMeansHamerly.class.getName();
 
+  /**
+   * Store the bounds in single precision.
+   */
+  protected boolean useFloat = false;
+
   /**
    * Constructor.
    *
@@ -92,7 +100,21 @@ public class KMeansHamerly<V extends NumberVector> extends AbstractKMeans<V, KMe
    * @param initializer Initialization method
    */
   public KMeansHamerly(NumberVectorDistanceFunction<? super V> distanceFunction, int k, int maxiter, KMeansInitialization<? super V> initializer) {
+    this(distanceFunction, k, maxiter, initializer, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param useFloat Store the bounds in single precision
+   */
+  public KMeansHamerly(NumberVectorDistanceFunction<? super V> distanceFunction, int k, int maxiter, KMeansInitialization<? super V> initializer, boolean useFloat) {
     super(distanceFunction, k, maxiter, initializer);
+    this.useFloat = useFloat;
   }
 
   @Override
@@ -112,8 +134,15 @@ public class KMeansHamerly<V extends NumberVector> extends AbstractKMeans<V, KMe
     }
     WritableIntegerDataStore assignment = DataStoreUtil.makeIntegerStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, -1);
     // Hamerly bounds
-    WritableDoubleDataStore upper = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, Double.POSITIVE_INFINITY);
-    WritableDoubleDataStore lower = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, 0.);
+    WritableDoubleDataStore upper, lower;
+    if(useFloat) {
+      upper = new FloatBoundStore(DataStoreUtil.makeFloatStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, Float.POSITIVE_INFINITY), true);
+      lower = new FloatBoundStore(DataStoreUtil.makeFloatStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, 0.f), false);
+    }
+    else {
+      upper = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, Double.POSITIVE_INFINITY);
+      lower = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, 0.);
+    }
     // Storage for updated means:
     final int dim = means.get(0).getDimensionality();
     List<Vector> sums = new ArrayList<>(k);
@@ -381,6 +410,109 @@ public class KMeansHamerly<V extends NumberVector> extends AbstractKMeans<V, KMe
     return LOG;
   }
 
+  /**
+   * Bound storage in single precision. Values are rounded conservatively, so
+   * that pruning with the bounds remains correct.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private static class FloatBoundStore implements WritableDoubleDataStore {
+    /**
+     * Single precision storage.
+     */
+    private final WritableFloatDataStore store;
+
+    /**
+     * Round upper bounds up, lower bounds down.
+     */
+    private final boolean upper;
+
+    /**
+     * Constructor.
+     *
+     * @param store Single precision storage
+     * @param upper {@code true} for upper bounds, {@code false} for lower
+     *        bounds
+     */
+    FloatBoundStore(WritableFloatDataStore store, boolean upper) {
+      this.store = store;
+      this.upper = upper;
+    }
+
+    /**
+     * Round a bound to single precision, without tightening it.
+     *
+     * @param v Bound
+     * @return Single precision bound
+     */
+    private float round(double v) {
+      final float f = (float) v;
+      if(upper) {
+        return f < v ? Math.nextUp(f) : f;
+      }
+      return f > v ? Math.nextAfter(f, Double.NEGATIVE_INFINITY) : f;
+    }
+
+    @Override
+    public double doubleValue(DBIDRef id) {
+      return store.floatValue(id);
+    }
+
+    @Override
+    public double putDouble(DBIDRef id, double value) {
+      return store.putFloat(id, round(value));
+    }
+
+    @Override
+    public double put(DBIDRef id, double value) {
+      return putDouble(id, value);
+    }
+
+    @Override
+    public void increment(DBIDRef id, double value) {
+      store.putFloat(id, round(store.floatValue(id) + value));
+    }
+
+    @Deprecated
+    @Override
+    public Double get(DBIDRef id) {
+      return Double.valueOf(doubleValue(id));
+    }
+
+    @Deprecated
+    @Override
+    public Double put(DBIDRef id, Double value) {
+      return Double.valueOf(putDouble(id, value.doubleValue()));
+    }
+
+    @Override
+    public void clear() {
+      store.clear();
+    }
+
+    @Override
+    public void delete(DBIDRef id) {
+      store.delete(id);
+    }
+
+    @Override
+    public void destroy() {
+      store.destroy();
+    }
+
+    @Override
+    public String getLongName() {
+      return store.getLongName();
+    }
+
+    @Override
+    public String getShortName() {
+      return store.getShortName();
+    }
+  }
+
   /**
    * Parameterization class.
    *
@@ -389,6 +521,20 @@ public class KMeansHamerly<V extends NumberVector> extends AbstractKMeans<V, KMe
    * @apiviz.exclude
    */
   public static class Parameterizer<V extends NumberVector> extends AbstractKMeans.Parameterizer<V> {
+    /**
+     * Store the bounds in single precision.
+     */
+    protected boolean useFloat = false;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      Flag floatP = new Flag(KMeansLloyd.Parameterizer.FLOAT_ID);
+      if(config.grab(floatP)) {
+        useFloat = floatP.isTrue();
+      }
+    }
+
     @Override
     protected Logging getLogger() {
       return LOG;
@@ -407,7 +553,7 @@ public class KMeansHamerly<V extends NumberVector> extends AbstractKMeans<V, KMe
 
     @Override
     protected KMeansHamerly<V> makeInstance() {
-      return new KMeansHamerly<>(distanceFunction, k, maxiter, initializer);
+      return new KMeansHamerly<>(distanceFunction, k, maxiter, initializer, useFloat);
     }
   }
 }
@@ -49,6 +49,9 @@ import de.lmu.ifi.dbs.elki.math.linearalgebra.Vector;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
 
 /**
  * The standard k-means algorithm, using Lloyd-style bulk iterations.
@@ -85,6 +88,11 @@ public class KMeansLloyd<V extends NumberVector> extends AbstractKMeans<V, KMean
    */
   private static final String KEY = KMeansLloyd.class.getName();
 
+  /**
+   * Use single precision centroids.
+   */
+  protected boolean useFloat = false;
+
   /**
    * Constructor.
    *
@@ -94,7 +102,21 @@ public class KMeansLloyd<V extends NumberVector> extends AbstractKMeans<V, KMean
    * @param initializer Initialization method
    */
   public KMeansLloyd(NumberVectorDistanceFunction<? super V> distanceFunction, int k, int maxiter, KMeansInitialization<? super V> initializer) {
+    this(distanceFunction, k, maxiter, initializer, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param useFloat Use single precision centroids
+   */
+  public KMeansLloyd(NumberVectorDistanceFunction<? super V> distanceFunction, int k, int maxiter, KMeansInitialization<? super V> initializer, boolean useFloat) {
     super(distanceFunction, k, maxiter, initializer);
+    this.useFloat = useFloat;
   }
 
   @Override
@@ -106,7 +128,7 @@ public class KMeansLloyd<V extends NumberVector> extends AbstractKMeans<V, KMean
     if(LOG.isStatistics()) {
       LOG.statistics(new StringStatistic(KEY + ".initialization", initializer.toString()));
     }
-    List<Vector> means = initializer.chooseInitialMeans(database, relation, k, getDistanceFunction(), Vector.FACTORY);
+    List<? extends NumberVector> means = initializer.chooseInitialMeans(database, relation, k, getDistanceFunction(), Vector.FACTORY);
     // Setup cluster assignment store
     List<ModifiableDBIDs> clusters = new ArrayList<>();
     for(int i = 0; i < k; i++) {
@@ -127,7 +149,7 @@ public class KMeansLloyd<V extends NumberVector> extends AbstractKMeans<V, KMean
         break;
       }
       // Recompute means.
-      means = means(clusters, means, relation);
+      means = useFloat ? floatMeans(clusters, means, relation) : means(clusters, means, relation);
     }
     LOG.setCompleted(prog);
     if(LOG.isStatistics()) {
@@ -141,7 +163,7 @@ public class KMeansLloyd<V extends NumberVector> extends AbstractKMeans<V, KMean
       if(ids.size() == 0) {
         continue;
       }
-      KMeansModel model = new KMeansModel(means.get(i), varsum[i]);
+      KMeansModel model = new KMeansModel(means.get(i).getColumnVector(), varsum[i]);
       result.addToplevelCluster(new Cluster<>(ids, model));
     }
     return result;
@@ -160,6 +182,25 @@ public class KMeansLloyd<V extends NumberVector> extends AbstractKMeans<V, KMean
    * @apiviz.exclude
    */
   public static class Parameterizer<V extends NumberVector> extends AbstractKMeans.Parameterizer<V> {
+    /**
+     * Flag to use single precision centroids.
+     */
+    public static final OptionID FLOAT_ID = new OptionID("kmeans.float", "Use single precision for the centroids (Lloyd) or the distance bounds (Hamerly). Combine with a float distance function and float vectors to reduce memory traffic.");
+
+    /**
+     * Use single precision centroids.
+     */
+    protected boolean useFloat = false;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      Flag floatP = new Flag(FLOAT_ID);
+      if(config.grab(floatP)) {
+        useFloat = floatP.isTrue();
+      }
+    }
+
     @Override
     protected Logging getLogger() {
       return LOG;
@@ -167,7 +208,7 @@ public class KMeansLloyd<V extends NumberVector> extends AbstractKMeans<V, KMean
 
     @Override
     protected KMeansLloyd<V> makeInstance() {
-      return new KMeansLloyd<>(distanceFunction, k, maxiter, initializer);
+      return new KMeansLloyd<>(distanceFunction, k, maxiter, initializer, useFloat);
     }
   }
 }
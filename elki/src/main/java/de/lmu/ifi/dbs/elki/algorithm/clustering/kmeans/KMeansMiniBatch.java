@@ -0,0 +1,425 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.KMeansInitialization;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.KMeansModel;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.MultipleObjectsBundleDatabaseConnection;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleMeta;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleStreamSource;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.logging.statistics.StringStatistic;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.Vector;
+import de.lmu.ifi.dbs.elki.math.random.RandomFactory;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+
+/**
+ * Mini-batch k-means, which updates the means from small random samples of the
+ * data, using a per-center learning rate of 1/n, where n is the number of
+ * points assigned to this center so far.
+ *
+ * Each iteration only touches a sample of the given batch size, so the cost of
+ * the optimization does not depend on the data set size. Only the optional
+ * final assignment pass processes all objects; without it, the resulting
+ * clusters only carry the models, but no members.
+ *
+ * The means can also be estimated from a {@link BundleStreamSource}, e.g. a
+ * streaming parser, in a single pass with memory bounded by the batch size,
+ * see {@link #run(BundleStreamSource)} and
+ * {@link de.lmu.ifi.dbs.elki.application.StreamKMeansApplication}.
+ *
+ * <p>
+ * Reference:<br />
+ * D. Sculley<br />
+ * Web-scale k-means clustering<br />
+ * Proc. 19th International Conference on World Wide Web, WWW 2010
+ * </p>
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has KMeansModel
+ *
+ * @param <V> vector datatype
+ */
+@Reference(authors = "D. Sculley", //
+title = "Web-scale k-means clustering", //
+booktitle = "Proc. 19th International Conference on World Wide Web, WWW 2010", //
+url = "http://dx.doi.org/10.1145/1772690.1772862")
+public class KMeansMiniBatch<V extends NumberVector> extends AbstractKMeans<V, KMeansModel> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(KMeansMiniBatch.class);
+
+  /**
+   * Key for statistics logging.
+   */
+  private static final String KEY = KMeansMiniBatch.class.getName();
+
+  /**
+   * Batch size.
+   */
+  int batchsize;
+
+  /**
+   * Random generator for sampling.
+   */
+  RandomFactory random;
+
+  /**
+   * Perform a final assignment pass.
+   */
+  boolean assign;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction distance function
+   * @param k k parameter
+   * @param maxiter Number of mini-batches
+   * @param initializer Initialization method
+   * @param batchsize Batch size
+   * @param random Random generator for sampling
+   * @param assign Perform a final assignment pass
+   */
+  public KMeansMiniBatch(NumberVectorDistanceFunction<? super V> distanceFunction, int k, int maxiter, KMeansInitialization<? super V> initializer, int batchsize, RandomFactory random, boolean assign) {
+    super(distanceFunction, k, maxiter, initializer);
+    this.batchsize = batchsize;
+    this.random = random;
+    this.assign = assign;
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Database database, Relation<V> relation) {
+    if(relation.size() <= 0) {
+      return new Clustering<>("k-Means Clustering", "kmeans-clustering");
+    }
+    // Choose initial means
+    if(LOG.isStatistics()) {
+      LOG.statistics(new StringStatistic(KEY + ".initializer", initializer.toString()));
+    }
+    List<Vector> means = initializer.chooseInitialMeans(database, relation, k, getDistanceFunction(), Vector.FACTORY);
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = Math.min(batchsize, ids.size());
+    final Random rnd = random.getSingleThreadedRandom();
+    int[] counts = new int[k];
+    int[] nearest = new int[size];
+    List<V> batch = new ArrayList<>(size);
+
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Mini-batch k-means", maxiter, LOG) : null;
+    for(int iteration = 0; iteration < maxiter; iteration++) {
+      batch.clear();
+      for(DBIDIter it = DBIDUtil.randomSample(ids, size, rnd).iter(); it.valid(); it.advance()) {
+        batch.add(relation.get(it));
+      }
+      updateMeans(batch, means, counts, nearest);
+      LOG.incrementProcessed(prog);
+    }
+    LOG.ensureCompleted(prog);
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(KEY + ".iterations", maxiter));
+    }
+
+    // Wrap result
+    Clustering<KMeansModel> result = new Clustering<>("k-Means Clustering", "kmeans-clustering");
+    if(!assign) {
+      for(int i = 0; i < k; i++) {
+        KMeansModel model = new KMeansModel(means.get(i), Double.NaN);
+        result.addToplevelCluster(new Cluster<>(DBIDUtil.EMPTYDBIDS, model));
+      }
+      return result;
+    }
+    List<ModifiableDBIDs> clusters = new ArrayList<>(k);
+    for(int i = 0; i < k; i++) {
+      clusters.add(DBIDUtil.newHashSet((int) (relation.size() * 2. / k)));
+    }
+    WritableIntegerDataStore assignment = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, -1);
+    double[] varsum = new double[k];
+    assignToNearestCluster(relation, means, clusters, assignment, varsum);
+    for(int i = 0; i < k; i++) {
+      DBIDs cids = clusters.get(i);
+      if(cids.size() == 0) {
+        continue;
+      }
+      KMeansModel model = new KMeansModel(means.get(i), varsum[i]);
+      result.addToplevelCluster(new Cluster<>(cids, model));
+    }
+    return result;
+  }
+
+  /**
+   * Estimate the means from a stream of vectors, in a single pass.
+   *
+   * The initial means are chosen by the configured initialization method from
+   * the first batch of the stream; the stream is then processed in
+   * mini-batches, starting with this first batch. Only the current batch is
+   * kept in memory. If the stream is ordered, the first batch may not be
+   * representative, and the initial means will be poor.
+   *
+   * As the stream objects do not have DBIDs, the resulting clusters only
+   * carry the models, but no members.
+   *
+   * @param source Data stream, containing a number vector column
+   * @return Clustering; fewer than k clusters if the stream was too short
+   */
+  public Clustering<KMeansModel> run(BundleStreamSource source) {
+    List<Vector> means = null;
+    int[] counts = new int[k];
+    int[] nearest = new int[batchsize];
+    List<NumberVector> batch = new ArrayList<>(batchsize);
+    SimpleTypeInformation<?> type = null;
+    int col = -1;
+    long processed = 0;
+    while(true) {
+      BundleStreamSource.Event ev = source.nextEvent();
+      if(ev == BundleStreamSource.Event.END_OF_STREAM) {
+        break;
+      }
+      if(ev == BundleStreamSource.Event.META_CHANGED) {
+        col = findVectorColumn(source.getMeta());
+        type = col >= 0 ? source.getMeta().get(col) : null;
+        continue;
+      }
+      if(col < 0) {
+        continue;
+      }
+      batch.add((NumberVector) source.data(col));
+      ++processed;
+      if(batch.size() == batchsize) {
+        if(means == null) {
+          means = chooseInitialMeans(batch, type);
+        }
+        updateMeans(batch, means, counts, nearest);
+        batch.clear();
+      }
+    }
+    if(!batch.isEmpty()) {
+      if(means == null) {
+        means = chooseInitialMeans(batch, type);
+      }
+      updateMeans(batch, means, counts, nearest);
+    }
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(KEY + ".stream-size", processed));
+    }
+    Clustering<KMeansModel> result = new Clustering<>("k-Means Clustering", "kmeans-clustering");
+    if(means != null) {
+      for(Vector mean : means) {
+        result.addToplevelCluster(new Cluster<>(DBIDUtil.EMPTYDBIDS, new KMeansModel(mean, Double.NaN)));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Choose the initial means from the first batch of a stream.
+   *
+   * @param batch First batch
+   * @param type Vector type of the stream
+   * @return Initial means, all objects of the batch if it has at most k
+   */
+  private List<Vector> chooseInitialMeans(List<NumberVector> batch, SimpleTypeInformation<?> type) {
+    if(batch.size() <= k) {
+      List<Vector> means = new ArrayList<>(batch.size());
+      for(NumberVector vec : batch) {
+        means.add(vec.getColumnVector());
+      }
+      return means;
+    }
+    if(LOG.isStatistics()) {
+      LOG.statistics(new StringStatistic(KEY + ".initializer", initializer.toString()));
+    }
+    @SuppressWarnings("unchecked")
+    final SimpleTypeInformation<NumberVector> vtype = (SimpleTypeInformation<NumberVector>) type;
+    Database db = new StaticArrayDatabase(new MultipleObjectsBundleDatabaseConnection(MultipleObjectsBundle.makeSimple(vtype, batch)), null);
+    db.initialize();
+    // The stream contains vectors of the type the algorithm was configured for.
+    final Relation<V> relation = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    return initializer.chooseInitialMeans(db, relation, k, getDistanceFunction(), Vector.FACTORY);
+  }
+
+  /**
+   * Find the first number vector column of a stream.
+   *
+   * @param meta Stream metadata
+   * @return Column number, or -1
+   */
+  private static int findVectorColumn(BundleMeta meta) {
+    for(int i = 0; i < meta.size(); i++) {
+      if(TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(meta.get(i))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Perform a single mini-batch update.
+   *
+   * @param batch Batch of vectors
+   * @param means Means to update
+   * @param counts Number of points assigned to each mean so far
+   * @param nearest Scratch array for the nearest means, at least batch size
+   */
+  protected void updateMeans(List<? extends NumberVector> batch, List<Vector> means, int[] counts, int[] nearest) {
+    final NumberVectorDistanceFunction<? super V> df = getDistanceFunction();
+    final int n = batch.size(), m = means.size();
+    // Assign all points to the nearest center first, then update.
+    for(int j = 0; j < n; j++) {
+      final NumberVector fv = batch.get(j);
+      double mindist = Double.POSITIVE_INFINITY;
+      int minIndex = 0;
+      for(int i = 0; i < m; i++) {
+        final double dist = df.distance(fv, means.get(i));
+        if(dist < mindist) {
+          minIndex = i;
+          mindist = dist;
+        }
+      }
+      nearest[j] = minIndex;
+    }
+    for(int j = 0; j < n; j++) {
+      final NumberVector fv = batch.get(j);
+      final int c = nearest[j];
+      // Per-center learning rate:
+      final double eta = 1. / ++counts[c];
+      double[] mean = means.get(c).getArrayRef();
+      for(int d = 0; d < mean.length; d++) {
+        mean[d] += eta * (fv.doubleValue(d) - mean[d]);
+      }
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer<V extends NumberVector> extends AbstractKMeans.Parameterizer<V> {
+    /**
+     * Parameter for the batch size.
+     */
+    public static final OptionID BATCHSIZE_ID = new OptionID("kmeans.batchsize", "Number of objects sampled for each mini-batch.");
+
+    /**
+     * Random source for sampling.
+     */
+    public static final OptionID RANDOM_ID = new OptionID("kmeans.batchsize.random", "Random source for sampling the mini-batches.");
+
+    /**
+     * Flag to disable the final assignment pass.
+     */
+    public static final OptionID NOASSIGN_ID = new OptionID("kmeans.minibatch.noassign", "Do not assign all objects to the final means, only produce the cluster models.");
+
+    /**
+     * Batch size.
+     */
+    int batchsize;
+
+    /**
+     * Random generator for sampling.
+     */
+    RandomFactory random;
+
+    /**
+     * Perform a final assignment pass.
+     */
+    boolean assign;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter batchsizeP = new IntParameter(BATCHSIZE_ID, 1000);
+      batchsizeP.addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(batchsizeP)) {
+        batchsize = batchsizeP.intValue();
+      }
+      RandomParameter randomP = new RandomParameter(RANDOM_ID);
+      if(config.grab(randomP)) {
+        random = randomP.getValue();
+      }
+      Flag noassignF = new Flag(NOASSIGN_ID);
+      if(config.grab(noassignF)) {
+        assign = !noassignF.isTrue();
+      }
+    }
+
+    @Override
+    protected void getParameterMaxIter(Parameterization config) {
+      // Mini-batch k-means does not converge, so we need a fixed number.
+      IntParameter maxiterP = new IntParameter(MAXITER_ID, 100);
+      maxiterP.addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(maxiterP)) {
+        maxiter = maxiterP.getValue();
+      }
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+
+    @Override
+    protected KMeansMiniBatch<V> makeInstance() {
+      return new KMeansMiniBatch<>(distanceFunction, k, maxiter, initializer, batchsize, random, assign);
+    }
+  }
+}
@@ -0,0 +1,275 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.Arrays;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.VMath;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.Vector;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+
+/**
+ * Shared state of the parallel k-means variants that maintain distance bounds
+ * (Elkan, Hamerly).
+ *
+ * Each worker thread only modifies the bounds and assignment of the objects in
+ * its own block; the cluster sums are accumulated as per-thread deltas, and
+ * merged in {@link #cleanup}. The means, and all values derived from the
+ * means, are only updated in between two parallel passes.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has Instance
+ *
+ * @param <V> Vector type
+ */
+public abstract class AbstractKMeansBoundsProcessor<V extends NumberVector> implements Processor {
+  /**
+   * Data relation.
+   */
+  Relation<V> relation;
+
+  /**
+   * Distance function.
+   */
+  NumberVectorDistanceFunction<? super V> distance;
+
+  /**
+   * Flag for squared Euclidean distance, where we need the square root to
+   * obtain a metric.
+   */
+  boolean issquared;
+
+  /**
+   * Assignment storage.
+   */
+  WritableIntegerDataStore assignment;
+
+  /**
+   * Upper bounds.
+   */
+  WritableDoubleDataStore upper;
+
+  /**
+   * Current mean vectors.
+   */
+  Vector[] means;
+
+  /**
+   * Running cluster sums.
+   */
+  double[][] sums;
+
+  /**
+   * Cluster sizes.
+   */
+  int[] sizes;
+
+  /**
+   * Distance moved by each mean in the last update.
+   */
+  double[] move;
+
+  /**
+   * Number of reassignments in the last pass.
+   */
+  int changed = 0;
+
+  /**
+   * Flag for the initial pass, where no bounds are available yet.
+   */
+  boolean initial = true;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Data relation
+   * @param distance Distance function
+   * @param assignment Cluster assignment
+   * @param upper Upper bounds
+   * @param means Initial means
+   */
+  public AbstractKMeansBoundsProcessor(Relation<V> relation, NumberVectorDistanceFunction<? super V> distance, WritableIntegerDataStore assignment, WritableDoubleDataStore upper, List<? extends Vector> means) {
+    super();
+    this.relation = relation;
+    this.distance = distance;
+    this.issquared = (distance instanceof SquaredEuclideanDistanceFunction);
+    this.assignment = assignment;
+    this.upper = upper;
+    final int k = means.size();
+    this.means = means.toArray(new Vector[k]);
+    final int dim = this.means[0].getDimensionality();
+    this.sums = new double[k][dim];
+    this.sizes = new int[k];
+    this.move = new double[k];
+  }
+
+  /**
+   * Get the number of reassignments in the last pass.
+   *
+   * @return Number of changes
+   */
+  public int changed() {
+    return changed;
+  }
+
+  /**
+   * Get the current means.
+   *
+   * @return Means
+   */
+  public List<Vector> getMeans() {
+    return Arrays.asList(means);
+  }
+
+  /**
+   * Prepare the next pass: update the means, and the values derived from them.
+   */
+  public abstract void nextIteration();
+
+  /**
+   * Recompute the means from the running sums.
+   *
+   * As in the sequential {@link de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.KMeansElkan}
+   * and {@link de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.KMeansHamerly},
+   * the mean of an empty cluster is set to its residual sum.
+   *
+   * @return Maximum distance moved
+   */
+  protected double updateMeans() {
+    double max = 0.;
+    for(int i = 0; i < means.length; i++) {
+      final int s = sizes[i];
+      Vector newmean = new Vector(VMath.times(sums[i], s > 0 ? 1. / s : 1.));
+      double d = distance.distance(means[i], newmean);
+      d = issquared ? Math.sqrt(d) : d;
+      move[i] = d;
+      max = (d > max) ? d : max;
+      means[i] = newmean;
+    }
+    initial = false;
+    changed = 0;
+    return max;
+  }
+
+  @Override
+  public void cleanup(Processor.Instance inst) {
+    @SuppressWarnings("unchecked")
+    Instance instance = (Instance) inst;
+    synchronized(this) {
+      changed += instance.changed;
+      for(int i = 0; i < sums.length; i++) {
+        if(instance.touched[i]) {
+          sizes[i] += instance.sizes[i];
+          VMath.plusEquals(sums[i], instance.sums[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Instance to process part of the data set, for a single pass.
+   *
+   * @author Erich Schubert
+   */
+  protected abstract class Instance implements Processor.Instance {
+    /**
+     * Changes to the cluster sums.
+     */
+    double[][] sums;
+
+    /**
+     * Changes to the cluster sizes.
+     */
+    int[] sizes;
+
+    /**
+     * Flag, whether a cluster was modified.
+     */
+    boolean[] touched;
+
+    /**
+     * Number of reassignments.
+     */
+    int changed = 0;
+
+    /**
+     * Constructor.
+     */
+    protected Instance() {
+      super();
+      final int k = means.length;
+      this.sums = new double[k][means[0].getDimensionality()];
+      this.sizes = new int[k];
+      this.touched = new boolean[k];
+    }
+
+    /**
+     * Compute the distance of a vector to a mean, as metric.
+     *
+     * @param fv Vector
+     * @param i Mean index
+     * @return Distance
+     */
+    protected double distance(V fv, int i) {
+      final double d = distance.distance(fv, means[i]);
+      return issquared ? Math.sqrt(d) : d;
+    }
+
+    /**
+     * Move an object from one cluster to another.
+     *
+     * @param fv Object vector
+     * @param from Previous cluster, or -1
+     * @param to New cluster
+     */
+    protected void reassign(V fv, int from, int to) {
+      ++changed;
+      double[] newsum = sums[to];
+      ++sizes[to];
+      touched[to] = true;
+      if(from < 0) {
+        for(int d = 0; d < newsum.length; d++) {
+          newsum[d] += fv.doubleValue(d);
+        }
+        return;
+      }
+      double[] oldsum = sums[from];
+      --sizes[from];
+      touched[from] = true;
+      for(int d = 0; d < newsum.length; d++) {
+        final double v = fv.doubleValue(d);
+        newsum[d] += v;
+        oldsum[d] -= v;
+      }
+    }
+  }
+}
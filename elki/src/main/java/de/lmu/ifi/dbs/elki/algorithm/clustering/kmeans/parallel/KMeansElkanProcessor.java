@@ -0,0 +1,184 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.Arrays;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.Vector;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+
+/**
+ * Parallel processor for Elkan's k-means.
+ *
+ * The bound updates for the movement of the means are applied lazily, at the
+ * beginning of the next pass, so that every iteration needs only a single pass
+ * over the data.
+ *
+ * @author Erich Schubert
+ *
+ * @param <V> Vector type
+ */
+public class KMeansElkanProcessor<V extends NumberVector> extends AbstractKMeansBoundsProcessor<V> {
+  /**
+   * Lower bounds, one per cluster.
+   */
+  WritableDataStore<double[]> lower;
+
+  /**
+   * Half the distance to the nearest other mean.
+   */
+  double[] sep;
+
+  /**
+   * Half the center-to-center distances.
+   */
+  double[][] cdist;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Data relation
+   * @param distance Distance function
+   * @param assignment Cluster assignment
+   * @param upper Upper bounds
+   * @param lower Lower bounds, arrays of length k
+   * @param means Initial means
+   */
+  public KMeansElkanProcessor(Relation<V> relation, NumberVectorDistanceFunction<? super V> distance, WritableIntegerDataStore assignment, WritableDoubleDataStore upper, WritableDataStore<double[]> lower, List<? extends Vector> means) {
+    super(relation, distance, assignment, upper, means);
+    this.lower = lower;
+    final int k = this.means.length;
+    this.sep = new double[k];
+    this.cdist = new double[k][k];
+  }
+
+  @Override
+  public void nextIteration() {
+    updateMeans();
+    recomputeSeperation();
+  }
+
+  /**
+   * Recompute the separation of cluster means.
+   */
+  private void recomputeSeperation() {
+    final int k = means.length;
+    Arrays.fill(sep, Double.POSITIVE_INFINITY);
+    for(int i = 1; i < k; i++) {
+      Vector mi = means[i];
+      for(int j = 0; j < i; j++) {
+        double d = distance.distance(mi, means[j]);
+        d = issquared ? Math.sqrt(d) : d;
+        d *= .5;
+        cdist[i][j] = d;
+        cdist[j][i] = d;
+        sep[i] = (d < sep[i]) ? d : sep[i];
+        sep[j] = (d < sep[j]) ? d : sep[j];
+      }
+    }
+  }
+
+  @Override
+  public Instance instantiate(Executor executor) {
+    return new Instance();
+  }
+
+  /**
+   * Instance to process part of the data set, for a single pass.
+   *
+   * @author Erich Schubert
+   */
+  private class Instance extends AbstractKMeansBoundsProcessor<V>.Instance {
+    @Override
+    public void map(DBIDRef id) {
+      final int k = means.length;
+      double[] l = lower.get(id);
+      if(initial) {
+        V fv = relation.get(id);
+        // Check all means:
+        double best = Double.POSITIVE_INFINITY;
+        int cur = -1;
+        for(int j = 0; j < k; j++) {
+          final double dist = distance(fv, j);
+          l[j] = dist;
+          if(dist < best) {
+            cur = j;
+            best = dist;
+          }
+        }
+        assignment.putInt(id, cur);
+        upper.putDouble(id, best);
+        reassign(fv, -1, cur);
+        return;
+      }
+      // Apply the movement of the means to the bounds:
+      for(int j = 0; j < k; j++) {
+        l[j] -= move[j];
+      }
+      final int orig = assignment.intValue(id);
+      double u = upper.doubleValue(id) + move[orig];
+      // Upper bound check (#2):
+      if(u <= sep[orig]) {
+        upper.putDouble(id, u);
+        return;
+      }
+      boolean recompute_u = true; // Elkan's r(x)
+      V fv = relation.get(id);
+      // Check all (other) means:
+      int cur = orig;
+      for(int j = 0; j < k; j++) {
+        if(orig == j || u <= l[j] || u <= cdist[cur][j]) {
+          continue; // Condition #3 i-iii not satisfied
+        }
+        if(recompute_u) { // Need to update bound? #3a
+          u = distance(fv, cur);
+          recompute_u = false; // Once only
+          if(u <= l[j] || u <= cdist[cur][j]) { // #3b
+            continue;
+          }
+        }
+        final double dist = distance(fv, j);
+        l[j] = dist;
+        if(dist < u) {
+          cur = j;
+          u = dist;
+        }
+      }
+      upper.putDouble(id, u);
+      // Object is to be reassigned.
+      if(cur != orig) {
+        assignment.putInt(id, cur);
+        reassign(fv, orig, cur);
+      }
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.Arrays;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.Vector;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+
+/**
+ * Parallel processor for Hamerly's k-means.
+ *
+ * The bound updates for the movement of the means are applied lazily, at the
+ * beginning of the next pass, so that every iteration needs only a single pass
+ * over the data.
+ *
+ * @author Erich Schubert
+ *
+ * @param <V> Vector type
+ */
+public class KMeansHamerlyProcessor<V extends NumberVector> extends AbstractKMeansBoundsProcessor<V> {
+  /**
+   * Lower bounds.
+   */
+  WritableDoubleDataStore lower;
+
+  /**
+   * Half the distance to the nearest other mean.
+   */
+  double[] sep;
+
+  /**
+   * Maximum distance moved by any mean.
+   */
+  double delta = 0.;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Data relation
+   * @param distance Distance function
+   * @param assignment Cluster assignment
+   * @param upper Upper bounds
+   * @param lower Lower bounds
+   * @param means Initial means
+   */
+  public KMeansHamerlyProcessor(Relation<V> relation, NumberVectorDistanceFunction<? super V> distance, WritableIntegerDataStore assignment, WritableDoubleDataStore upper, WritableDoubleDataStore lower, List<? extends Vector> means) {
+    super(relation, distance, assignment, upper, means);
+    this.lower = lower;
+    this.sep = new double[this.means.length];
+  }
+
+  @Override
+  public void nextIteration() {
+    delta = updateMeans();
+    recomputeSeperation();
+  }
+
+  /**
+   * Recompute the separation of cluster means.
+   */
+  private void recomputeSeperation() {
+    final int k = means.length;
+    Arrays.fill(sep, Double.POSITIVE_INFINITY);
+    for(int i = 1; i < k; i++) {
+      Vector m1 = means[i];
+      for(int j = 0; j < i; j++) {
+        double d = distance.distance(m1, means[j]);
+        sep[i] = (d < sep[i]) ? d : sep[i];
+        sep[j] = (d < sep[j]) ? d : sep[j];
+      }
+    }
+    // We need half the Euclidean distance
+    for(int i = 0; i < k; i++) {
+      sep[i] = issquared ? Math.sqrt(sep[i]) : sep[i];
+      sep[i] *= .5;
+    }
+  }
+
+  @Override
+  public Instance instantiate(Executor executor) {
+    return new Instance();
+  }
+
+  /**
+   * Instance to process part of the data set, for a single pass.
+   *
+   * @author Erich Schubert
+   */
+  private class Instance extends AbstractKMeansBoundsProcessor<V>.Instance {
+    @Override
+    public void map(DBIDRef id) {
+      final int cur = assignment.intValue(id);
+      double u = Double.POSITIVE_INFINITY, z = 0.;
+      V fv = null;
+      if(!initial) {
+        // Apply the movement of the means to the bounds:
+        u = upper.doubleValue(id) + move[cur];
+        z = lower.doubleValue(id) - delta;
+        final double sa = sep[cur];
+        if(u <= z || u <= sa) {
+          upper.putDouble(id, u);
+          lower.putDouble(id, z);
+          return;
+        }
+        // Update the upper bound
+        fv = relation.get(id);
+        u = distance(fv, cur);
+        if(u <= z || u <= sa) {
+          upper.putDouble(id, u);
+          lower.putDouble(id, z);
+          return;
+        }
+      }
+      else {
+        fv = relation.get(id);
+      }
+      // Find closest center, and distance to two closest centers
+      double min1 = Double.POSITIVE_INFINITY, min2 = Double.POSITIVE_INFINITY;
+      int minIndex = -1;
+      for(int i = 0; i < means.length; i++) {
+        double dist = distance.distance(fv, means[i]);
+        if(dist < min1) {
+          minIndex = i;
+          min2 = min1;
+          min1 = dist;
+        }
+        else if(dist < min2) {
+          min2 = dist;
+        }
+      }
+      // make squared Euclidean a metric:
+      if(issquared) {
+        min1 = Math.sqrt(min1);
+        min2 = Math.sqrt(min2);
+      }
+      if(minIndex != cur) {
+        assignment.putInt(id, minIndex);
+        reassign(fv, cur, minIndex);
+        u = min1;
+      }
+      upper.putDouble(id, u);
+      lower.putDouble(id, min2);
+    }
+  }
+}
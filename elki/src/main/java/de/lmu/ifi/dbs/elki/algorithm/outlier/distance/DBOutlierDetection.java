@@ -24,15 +24,13 @@ package de.lmu.ifi.dbs.elki.algorithm.outlier.distance;
  */
 
 import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.QueryUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
-import de.lmu.ifi.dbs.elki.database.ids.KNNList;
-import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
-import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
-import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeCountQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
@@ -98,58 +96,22 @@ public class DBOutlierDetection<O> extends AbstractDBOutlier<O> {
 
   @Override
   protected DoubleDataStore computeOutlierScores(Database database, Relation<O> relation, double neighborhoodSize) {
-    DistanceQuery<O> distFunc = database.getDistanceQuery(relation, getDistanceFunction());
-    KNNQuery<O> knnQuery = database.getKNNQuery(distFunc, DatabaseQuery.HINT_OPTIMIZED_ONLY);
+    RangeCountQuery<O> countQuery = QueryUtil.getRangeCountQuery(relation, getDistanceFunction(), neighborhoodSize);
 
     // maximum number of objects in the D-neighborhood of an outlier
-    int m = (int) ((distFunc.getRelation().size()) * (1 - p));
+    int m = (int) (relation.size() * (1 - p));
 
-    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(distFunc.getRelation().getDBIDs(), DataStoreFactory.HINT_STATIC);
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
     if(LOG.isVerbose()) {
       LOG.verbose("computing outlier flag");
     }
 
-    FiniteProgress progressOFlags = LOG.isVerbose() ? new FiniteProgress("DBOutlier for objects", distFunc.getRelation().size(), LOG) : null;
-    int counter = 0;
-    // if index exists, kNN query. if the distance to the mth nearest neighbor
-    // is more than d -> object is outlier
-    if(knnQuery != null) {
-      for(DBIDIter iditer = distFunc.getRelation().iterDBIDs(); iditer.valid(); iditer.advance()) {
-        counter++;
-        final KNNList knns = knnQuery.getKNNForDBID(iditer, m);
-        if(LOG.isDebugging()) {
-          LOG.debugFine("distance to mth nearest neighbour" + knns.toString());
-        }
-        if(knns.get(Math.min(m, knns.size()) - 1).doubleValue() <= neighborhoodSize) {
-          // flag as outlier
-          scores.putDouble(iditer, 1.0);
-        }
-        else {
-          // flag as no outlier
-          scores.putDouble(iditer, 0.0);
-        }
-      }
-      if(progressOFlags != null) {
-        progressOFlags.setProcessed(counter, LOG);
-      }
-    }
-    else {
-      // range query for each object. stop if m objects are found
-      for(DBIDIter iditer = distFunc.getRelation().iterDBIDs(); iditer.valid(); iditer.advance()) {
-        counter++;
-        int count = 0;
-        for(DBIDIter iterator = distFunc.getRelation().iterDBIDs(); iterator.valid() && count < m; iterator.advance()) {
-          double currentDistance = distFunc.distance(iditer, iterator);
-          if(currentDistance <= neighborhoodSize) {
-            count++;
-          }
-        }
-        scores.putDouble(iditer, (count < m) ? 1.0 : 0);
-      }
-
-      if(progressOFlags != null) {
-        progressOFlags.setProcessed(counter, LOG);
-      }
+    FiniteProgress progressOFlags = LOG.isVerbose() ? new FiniteProgress("DBOutlier for objects", relation.size(), LOG) : null;
+    // Count the neighbors of each object, but stop once m objects are found.
+    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
+      final int count = countQuery.getRangeCountForDBID(iditer, neighborhoodSize, m);
+      scores.putDouble(iditer, (count < m) ? 1.0 : 0);
+      LOG.incrementProcessed(progressOFlags);
     }
     LOG.ensureCompleted(progressOFlags);
     return scores;
@@ -24,13 +24,13 @@ package de.lmu.ifi.dbs.elki.algorithm.outlier.distance;
  */
 
 import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.QueryUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.DoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
-import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
-import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeCountQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
@@ -85,15 +85,13 @@ public class DBOutlierScore<O> extends AbstractDBOutlier<O> {
 
   @Override
   protected DoubleDataStore computeOutlierScores(Database database, Relation<O> relation, double d) {
-    DistanceQuery<O> distFunc = database.getDistanceQuery(relation, getDistanceFunction());
-    RangeQuery<O> rangeQuery = database.getRangeQuery(distFunc);
-    final double size = distFunc.getRelation().size();
+    RangeCountQuery<O> countQuery = QueryUtil.getRangeCountQuery(relation, getDistanceFunction(), d);
+    final double size = relation.size();
 
-    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(distFunc.getRelation().getDBIDs(), DataStoreFactory.HINT_STATIC);
-    // TODO: use bulk when implemented.
-    for(DBIDIter iditer = distFunc.getRelation().iterDBIDs(); iditer.valid(); iditer.advance()) {
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
+    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
       // compute percentage of neighbors in the given neighborhood with size d
-      double n = (rangeQuery.getRangeForDBID(iditer, d).size()) / size;
+      double n = countQuery.getRangeCountForDBID(iditer, d, Integer.MAX_VALUE) / size;
       scores.putDouble(iditer, 1.0 - n);
     }
     return scores;
@@ -28,11 +28,11 @@ import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.QueryUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
-import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
-import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeCountQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
@@ -93,8 +93,7 @@ public class RangeQuerySelectivity<V extends NumberVector> extends AbstractDista
   }
 
   public Result run(Database database, Relation<V> relation) {
-    DistanceQuery<V> distQuery = database.getDistanceQuery(relation, getDistanceFunction());
-    RangeQuery<V> rangeQuery = database.getRangeQuery(distQuery, radius);
+    RangeCountQuery<V> countQuery = QueryUtil.getRangeCountQuery(relation, getDistanceFunction(), radius);
 
     MeanVariance numres = new MeanVariance();
 
@@ -102,7 +101,7 @@ public class RangeQuerySelectivity<V extends NumberVector> extends AbstractDista
 
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Performing range queries", ids.size(), LOG) : null;
     for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
-      numres.put(rangeQuery.getRangeForDBID(iter, radius).size());
+      numres.put(countQuery.getRangeCountForDBID(iter, radius, Integer.MAX_VALUE));
       LOG.incrementProcessed(prog);
     }
     LOG.ensureCompleted(prog);
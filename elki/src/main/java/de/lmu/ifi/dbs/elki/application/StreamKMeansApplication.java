@@ -0,0 +1,182 @@
+package de.lmu.ifi.dbs.elki.application;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.KMeansMiniBatch;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.model.KMeansModel;
+import de.lmu.ifi.dbs.elki.datasource.AbstractDatabaseConnection;
+import de.lmu.ifi.dbs.elki.datasource.parser.NumberVectorLabelParser;
+import de.lmu.ifi.dbs.elki.datasource.parser.StreamingParser;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.utilities.FileUtil;
+import de.lmu.ifi.dbs.elki.utilities.FormatUtil;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.UnableToComplyException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Estimate k-means cluster centers from a file in a single pass, with
+ * mini-batch k-means. In contrast to running {@link KMeansMiniBatch} as a
+ * regular algorithm, the data is not loaded into a database: the file is
+ * streamed through the parser, and memory is bounded by the batch size.
+ * 
+ * The means are written to the output file, one per line.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.composedOf KMeansMiniBatch
+ */
+public class StreamKMeansApplication extends AbstractApplication {
+  /**
+   * Logging class.
+   */
+  private static final Logging LOG = Logging.getLogger(StreamKMeansApplication.class);
+
+  /**
+   * Input file.
+   */
+  private File infile;
+
+  /**
+   * Streaming parser.
+   */
+  private StreamingParser parser;
+
+  /**
+   * Mini-batch k-means.
+   */
+  private KMeansMiniBatch<?> kmeans;
+
+  /**
+   * Output filename.
+   */
+  private File outfile;
+
+  /**
+   * Constructor.
+   * 
+   * @param infile Input file
+   * @param parser Streaming parser
+   * @param kmeans Mini-batch k-means
+   * @param outfile Output filename
+   */
+  public StreamKMeansApplication(File infile, StreamingParser parser, KMeansMiniBatch<?> kmeans, File outfile) {
+    super();
+    this.infile = infile;
+    this.parser = parser;
+    this.kmeans = kmeans;
+    this.outfile = outfile;
+  }
+
+  @Override
+  public void run() throws UnableToComplyException {
+    if(LOG.isVerbose()) {
+      LOG.verbose("Clustering data stream: " + infile.toString());
+    }
+    Clustering<KMeansModel> result;
+    try (InputStream in = FileUtil.tryGzipInput(new FileInputStream(infile))) {
+      parser.initStream(in);
+      result = kmeans.run(parser);
+      parser.cleanup();
+    }
+    catch(IOException e) {
+      throw new UnableToComplyException("Error reading input file: " + infile, e);
+    }
+    if(LOG.isVerbose()) {
+      LOG.verbose("Writing means to output file: " + outfile.toString());
+    }
+    try (PrintStream out = new PrintStream(new FileOutputStream(outfile))) {
+      for(Cluster<KMeansModel> clus : result.getAllClusters()) {
+        out.println(FormatUtil.format(clus.getModel().getMean().getArrayRef(), " "));
+      }
+    }
+    catch(IOException e) {
+      throw new UnableToComplyException("Error writing output file: " + outfile, e);
+    }
+  }
+
+  /**
+   * Parameterization class.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends AbstractApplication.Parameterizer {
+    /**
+     * Input file.
+     */
+    private File infile;
+
+    /**
+     * Streaming parser.
+     */
+    private StreamingParser parser;
+
+    /**
+     * Mini-batch k-means.
+     */
+    private KMeansMiniBatch<?> kmeans;
+
+    /**
+     * Output filename.
+     */
+    private File outfile;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      infile = super.getParameterInputFile(config, "File to read the data stream from.");
+      ObjectParameter<StreamingParser> parserP = new ObjectParameter<>(AbstractDatabaseConnection.Parameterizer.PARSER_ID, StreamingParser.class, NumberVectorLabelParser.class);
+      if(config.grab(parserP)) {
+        parser = parserP.instantiateClass(config);
+      }
+      kmeans = config.tryInstantiate(KMeansMiniBatch.class);
+      outfile = super.getParameterOutputFile(config, "File to write the means to.");
+    }
+
+    @Override
+    protected StreamKMeansApplication makeInstance() {
+      return new StreamKMeansApplication(infile, parser, kmeans, outfile);
+    }
+  }
+
+  /**
+   * Run command line application.
+   * 
+   * @param args Command line parameters
+   */
+  public static void main(String[] args) {
+    runCLIApplication(StreamKMeansApplication.class, args);
+  }
+}
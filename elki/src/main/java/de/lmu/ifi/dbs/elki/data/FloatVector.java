@@ -114,11 +114,25 @@ public class FloatVector extends AbstractNumberVector {
     return values[dimension];
   }
 
+  @Override
+  public float floatValue(int dimension) {
+    return values[dimension];
+  }
+
   @Override
   public long longValue(int dimension) {
     return (long) values[dimension];
   }
 
+  /**
+   * Get a copy of the raw float[] array.
+   *
+   * @return copy of values array.
+   */
+  public float[] getValues() {
+    return values.clone();
+  }
+
   @Override
   public Vector getColumnVector() {
     return new Vector(ArrayLikeUtil.toPrimitiveDoubleArray(values, ArrayLikeUtil.FLOATARRAYADAPTER));
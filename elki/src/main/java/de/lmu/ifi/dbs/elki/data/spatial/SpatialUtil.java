@@ -483,6 +483,27 @@ public final class SpatialUtil {
     return centroid;
   }
 
+  /**
+   * Compute the corner of a box that is farthest from a point.
+   * 
+   * For distances that increase with the difference in every single
+   * dimension, such as all Lp norms, the distance to this corner is the
+   * maximum distance of the point to the box.
+   * 
+   * @param box Bounding box
+   * @param point Query point
+   * @param out Output array, of the box dimensionality
+   * @return {@code out}
+   */
+  public static double[] farthestCorner(SpatialComparable box, SpatialComparable point, double[] out) {
+    final int dim = box.getDimensionality();
+    for(int d = 0; d < dim; d++) {
+      final double p = point.getMin(d), min = box.getMin(d), max = box.getMax(d);
+      out[d] = (p - min > max - p) ? min : max;
+    }
+    return out;
+  }
+
   /**
    * Test two SpatialComparables for equality.
    * 
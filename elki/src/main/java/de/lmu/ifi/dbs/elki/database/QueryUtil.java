@@ -29,6 +29,8 @@ import de.lmu.ifi.dbs.elki.database.ids.KNNList;
 import de.lmu.ifi.dbs.elki.database.ids.integer.DoubleIntegerDBIDKNNList;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
 import de.lmu.ifi.dbs.elki.database.query.distance.PrimitiveDistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.DistanceBrowsingQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.LinearScanDistanceKNNQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.LinearScanEuclideanDistanceKNNQuery;
@@ -38,7 +40,9 @@ import de.lmu.ifi.dbs.elki.database.query.range.LinearScanEuclideanDistanceRange
 import de.lmu.ifi.dbs.elki.database.query.range.LinearScanPrimitiveDistanceRangeQuery;
 import de.lmu.ifi.dbs.elki.database.query.range.LinearScanPrimitiveSimilarityRangeQuery;
 import de.lmu.ifi.dbs.elki.database.query.range.LinearScanSimilarityRangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeCountQuery;
 import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQueryCountAdapter;
 import de.lmu.ifi.dbs.elki.database.query.rknn.RKNNQuery;
 import de.lmu.ifi.dbs.elki.database.query.similarity.PrimitiveSimilarityQuery;
 import de.lmu.ifi.dbs.elki.database.query.similarity.SimilarityQuery;
@@ -59,7 +63,9 @@ import de.lmu.ifi.dbs.elki.distance.similarityfunction.SimilarityFunction;
  * @apiviz.has DistanceQuery
  * @apiviz.has SimilarityQuery
  * @apiviz.has KNNQuery
+ * @apiviz.has DistanceBrowsingQuery
  * @apiviz.has RangeQuery
+ * @apiviz.has RangeCountQuery
  * @apiviz.has RKNNQuery
  */
 public final class QueryUtil {
@@ -140,6 +146,36 @@ public final class QueryUtil {
     return relation.getKNNQuery(distanceQuery, hints);
   }
 
+  /**
+   * Get an incremental nearest neighbor query, which returns neighbors in
+   * ascending distance without requiring the number of neighbors in advance.
+   *
+   * An index is used when its kNN query supports distance browsing, otherwise
+   * this falls back to a linear scan (unless
+   * {@link de.lmu.ifi.dbs.elki.database.query.DatabaseQuery#HINT_OPTIMIZED_ONLY}
+   * was given).
+   *
+   * @param relation Relation used
+   * @param distanceFunction Distance function
+   * @param hints Optimizer hints
+   *
+   * @param <O> Object type
+   * @return Distance browsing query, or {@code null}
+   */
+  public static <O> DistanceBrowsingQuery<O> getDistanceBrowsingQuery(Relation<O> relation, DistanceFunction<? super O> distanceFunction, Object... hints) {
+    final DistanceQuery<O> distanceQuery = relation.getDistanceQuery(distanceFunction, hints);
+    final KNNQuery<O> knnQuery = relation.getKNNQuery(distanceQuery, hints);
+    if(knnQuery instanceof DistanceBrowsingQuery) {
+      return (DistanceBrowsingQuery<O>) knnQuery;
+    }
+    for(Object hint : hints) {
+      if(hint == DatabaseQuery.HINT_OPTIMIZED_ONLY) {
+        return null;
+      }
+    }
+    return getLinearScanDistanceBrowsingQuery(distanceQuery);
+  }
+
   /**
    * Get a range query object for the given distance function for radius-based
    * neighbor search. (Range queries in ELKI refers to radius-based ranges, not
@@ -192,6 +228,36 @@ public final class QueryUtil {
     return relation.getRangeQuery(distanceQuery, hints);
   }
 
+  /**
+   * Get a range count query object for the given distance function, to count
+   * the neighbors within a radius without materializing them.
+   *
+   * An index is used when possible, but it may fall back to a linear scan. If
+   * the index cannot count, its range query results are counted instead.
+   *
+   * Hints include:
+   * <ul>
+   * <li>Range: maximum range requested</li>
+   * <li>{@link de.lmu.ifi.dbs.elki.database.query.DatabaseQuery#HINT_BULK} bulk
+   * query needed</li>
+   * </ul>
+   *
+   * @param relation Relation used
+   * @param distanceFunction Distance function
+   * @param hints Optimizer hints
+   *
+   * @param <O> Object type
+   * @return Range count query object, or {@code null}
+   */
+  public static <O> RangeCountQuery<O> getRangeCountQuery(Relation<O> relation, DistanceFunction<? super O> distanceFunction, Object... hints) {
+    final DistanceQuery<O> distanceQuery = relation.getDistanceQuery(distanceFunction, hints);
+    final RangeQuery<O> rangeQuery = relation.getRangeQuery(distanceQuery, hints);
+    if(rangeQuery == null || rangeQuery instanceof RangeCountQuery) {
+      return (RangeCountQuery<O>) rangeQuery;
+    }
+    return new RangeQueryCountAdapter<>(rangeQuery);
+  }
+
   /**
    * Get a rKNN query object for the given distance function.
    *
@@ -238,6 +304,19 @@ public final class QueryUtil {
     return new LinearScanDistanceKNNQuery<>(distanceQuery);
   }
 
+  /**
+   * Get a linear scan distance browsing query for the given distance query.
+   *
+   * @param <O> Object type
+   * @param distanceQuery distance query
+   * @return Distance browsing query
+   */
+  @SuppressWarnings("unchecked")
+  public static <O> DistanceBrowsingQuery<O> getLinearScanDistanceBrowsingQuery(DistanceQuery<O> distanceQuery) {
+    // All linear scan kNN queries support distance browsing.
+    return (DistanceBrowsingQuery<O>) getLinearScanKNNQuery(distanceQuery);
+  }
+
   /**
    * Get a linear scan query for the given distance query.
    *
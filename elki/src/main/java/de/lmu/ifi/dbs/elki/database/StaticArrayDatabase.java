@@ -25,7 +25,10 @@ package de.lmu.ifi.dbs.elki.database;
 
 import java.util.Collection;
 
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.SparseNumberVector;
 import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
@@ -35,6 +38,7 @@ import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.relation.DBIDView;
 import de.lmu.ifi.dbs.elki.database.relation.MaterializedRelation;
+import de.lmu.ifi.dbs.elki.database.relation.PackedVectorRelation;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.datasource.DatabaseConnection;
 import de.lmu.ifi.dbs.elki.datasource.FileBasedDatabaseConnection;
@@ -44,7 +48,9 @@ import de.lmu.ifi.dbs.elki.index.IndexFactory;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.statistics.Duration;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectListParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
 
@@ -53,6 +59,9 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
  * dynamic insert, delete and update operations. However, array access is
  * expected to be faster and use less memory.
  *
+ * Optionally, dense vector columns of fixed dimensionality can be stored in a
+ * single contiguous array, see {@link PackedVectorRelation}.
+ *
  * @author Arthur Zimek
  * @author Erich Schubert
  *
@@ -82,6 +91,21 @@ public class StaticArrayDatabase extends AbstractDatabase {
    */
   protected DatabaseConnection databaseConnection;
 
+  /**
+   * Store dense vector columns in packed arrays.
+   */
+  protected boolean packed = false;
+
+  /**
+   * Use single precision for packed arrays.
+   */
+  protected boolean packedFloat = false;
+
+  /**
+   * Storage factory for per-object data stores, may be {@code null}.
+   */
+  protected DataStoreFactory storageFactory = null;
+
   /**
    * Constructor.
    *
@@ -89,7 +113,36 @@ public class StaticArrayDatabase extends AbstractDatabase {
    * @param indexFactories Indexes to add
    */
   public StaticArrayDatabase(DatabaseConnection databaseConnection, Collection<IndexFactory<?, ?>> indexFactories) {
+    this(databaseConnection, indexFactories, false, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param databaseConnection Database connection to get the initial data from.
+   * @param indexFactories Indexes to add
+   * @param packed Store dense vector columns in packed arrays
+   * @param packedFloat Use single precision for packed arrays
+   */
+  public StaticArrayDatabase(DatabaseConnection databaseConnection, Collection<IndexFactory<?, ?>> indexFactories, boolean packed, boolean packedFloat) {
+    this(databaseConnection, indexFactories, packed, packedFloat, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param databaseConnection Database connection to get the initial data from.
+   * @param indexFactories Indexes to add
+   * @param packed Store dense vector columns in packed arrays
+   * @param packedFloat Use single precision for packed arrays
+   * @param storageFactory Storage factory to use for data stores, may be
+   *        {@code null} to keep the current factory
+   */
+  public StaticArrayDatabase(DatabaseConnection databaseConnection, Collection<IndexFactory<?, ?>> indexFactories, boolean packed, boolean packedFloat, DataStoreFactory storageFactory) {
     super();
+    this.storageFactory = storageFactory;
+    this.packed = packed;
+    this.packedFloat = packedFloat;
     this.databaseConnection = databaseConnection;
     this.ids = null;
     this.idrep = null;
@@ -113,6 +166,9 @@ public class StaticArrayDatabase extends AbstractDatabase {
    */
   @Override
   public void initialize() {
+    if(storageFactory != null) {
+      DataStoreUtil.setFactory(storageFactory);
+    }
     if(databaseConnection != null) {
       if(LOG.isDebugging()) {
         LOG.debugFine("Loading data from database connection.");
@@ -147,17 +203,25 @@ public class StaticArrayDatabase extends AbstractDatabase {
         SimpleTypeInformation<?> meta = bundle.meta(i);
         @SuppressWarnings("unchecked")
         SimpleTypeInformation<Object> ometa = (SimpleTypeInformation<Object>) meta;
-        WritableDataStore<Object> store = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, ometa.getRestrictionClass());
-        for(it.seek(0); it.valid(); it.advance()) {
-          store.put(it, bundle.data(it.getOffset(), i));
+        final Relation<?> relation;
+        if(packed && isPackable(meta)) {
+          @SuppressWarnings("unchecked")
+          VectorFieldTypeInformation<? extends NumberVector> vmeta = (VectorFieldTypeInformation<? extends NumberVector>) meta;
+          relation = new PackedVectorRelation(vmeta, ids, bundle.getColumn(i), null, packedFloat);
+        }
+        else {
+          WritableDataStore<Object> store = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, ometa.getRestrictionClass());
+          for(it.seek(0); it.valid(); it.advance()) {
+            store.put(it, bundle.data(it.getOffset(), i));
+          }
+          relation = new MaterializedRelation<>(ometa, ids, null, store);
         }
-        Relation<?> relation = new MaterializedRelation<>(ometa, ids, null, store);
         relations.add(relation);
         getHierarchy().add(this, relation);
 
         // Try to add indexes where appropriate
         for(IndexFactory<?, ?> factory : indexFactories) {
-          if(factory.getInputTypeRestriction().isAssignableFromType(ometa)) {
+          if(factory.getInputTypeRestriction().isAssignableFromType(relation.getDataTypeInformation())) {
             @SuppressWarnings("unchecked")
             final IndexFactory<Object, ?> ofact = (IndexFactory<Object, ?>) factory;
             @SuppressWarnings("unchecked")
@@ -178,6 +242,31 @@ public class StaticArrayDatabase extends AbstractDatabase {
     }
   }
 
+  /**
+   * Test whether a column can be stored in a {@link PackedVectorRelation}.
+   *
+   * @param meta Column type
+   * @return {@code true} for dense numerical vectors of fixed dimensionality
+   */
+  private boolean isPackable(SimpleTypeInformation<?> meta) {
+    if(!(meta instanceof VectorFieldTypeInformation)) {
+      return false;
+    }
+    final Class<?> cls = meta.getRestrictionClass();
+    if(!NumberVector.class.isAssignableFrom(cls) || SparseNumberVector.class.isAssignableFrom(cls)) {
+      return false;
+    }
+    VectorFieldTypeInformation<?> vmeta = (VectorFieldTypeInformation<?>) meta;
+    if(vmeta.mindim() != vmeta.maxdim() || !(vmeta.getFactory() instanceof NumberVector.Factory)) {
+      return false;
+    }
+    if(!PackedVectorRelation.isPackable(ids.size(), vmeta.getDimensionality())) {
+      LOG.warning("Data set too large for packed storage, using individual objects for: " + meta);
+      return false;
+    }
+    return true;
+  }
+
   @Override
   protected Logging getLogger() {
     return LOG;
@@ -201,6 +290,45 @@ public class StaticArrayDatabase extends AbstractDatabase {
      */
     private Collection<IndexFactory<?, ?>> indexFactories;
 
+    /**
+     * Flag to store dense vector columns in packed arrays.
+     * <p>
+     * Key: {@code -db.packed}
+     * </p>
+     */
+    public static final OptionID PACKED_ID = new OptionID("db.packed", "Store dense vector columns in a single contiguous array, instead of individual objects.");
+
+    /**
+     * Flag to use single precision for packed arrays.
+     * <p>
+     * Key: {@code -db.packed.float}
+     * </p>
+     */
+    public static final OptionID PACKED_FLOAT_ID = new OptionID("db.packed.float", "Use single precision for packed vector columns, halving memory usage.");
+
+    /**
+     * Storage factory for per-object data stores.
+     * <p>
+     * Key: {@code -datastore.factory}
+     * </p>
+     */
+    public static final OptionID STORAGE_FACTORY_ID = new OptionID("datastore.factory", "Storage factory for the data stores of the database and the algorithms. If not set, the current factory is kept.");
+
+    /**
+     * Store dense vector columns in packed arrays.
+     */
+    protected boolean packed = false;
+
+    /**
+     * Use single precision for packed arrays.
+     */
+    protected boolean packedFloat = false;
+
+    /**
+     * Storage factory, may be {@code null}.
+     */
+    protected DataStoreFactory storageFactory = null;
+
     @Override
     protected void makeOptions(Parameterization config) {
       super.makeOptions(config);
@@ -214,11 +342,25 @@ public class StaticArrayDatabase extends AbstractDatabase {
       if(config.grab(indexFactoryP)) {
         indexFactories = indexFactoryP.instantiateClasses(config);
       }
+      Flag packedP = new Flag(PACKED_ID);
+      if(config.grab(packedP)) {
+        packed = packedP.isTrue();
+      }
+      if(packed) {
+        Flag floatP = new Flag(PACKED_FLOAT_ID);
+        if(config.grab(floatP)) {
+          packedFloat = floatP.isTrue();
+        }
+      }
+      ObjectParameter<DataStoreFactory> storageP = new ObjectParameter<>(STORAGE_FACTORY_ID, DataStoreFactory.class, true);
+      if(config.grab(storageP)) {
+        storageFactory = storageP.instantiateClass(config);
+      }
     }
 
     @Override
     protected StaticArrayDatabase makeInstance() {
-      return new StaticArrayDatabase(databaseConnection, indexFactories);
+      return new StaticArrayDatabase(databaseConnection, indexFactories, packed, packedFloat, storageFactory);
     }
   }
 }
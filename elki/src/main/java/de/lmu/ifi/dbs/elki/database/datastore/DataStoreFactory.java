@@ -114,6 +114,25 @@ public interface DataStoreFactory {
    */
   public WritableDoubleDataStore makeDoubleStorage(DBIDs ids, int hints, double def);
 
+  /**
+   * Make a new storage, to associate the given ids with a float value.
+   * 
+   * @param ids DBIDs to store data for
+   * @param hints Hints for the storage manager
+   * @return new data store
+   */
+  public WritableFloatDataStore makeFloatStorage(DBIDs ids, int hints);
+
+  /**
+   * Make a new storage, to associate the given ids with a float value.
+   * 
+   * @param ids DBIDs to store data for
+   * @param hints Hints for the storage manager
+   * @param def Default value
+   * @return new data store
+   */
+  public WritableFloatDataStore makeFloatStorage(DBIDs ids, int hints, float def);
+
   /**
    * Make a new storage, to associate the given ids with an object of class
    * dataclass.
@@ -30,8 +30,8 @@ import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 
 /**
- * Storage utility class. Mostly a shorthand for
- * {@link DataStoreFactory#FACTORY}.
+ * Storage utility class. Mostly a shorthand for the current storage factory,
+ * which defaults to {@link DataStoreFactory#FACTORY}.
  *
  * @author Erich Schubert
  *
@@ -39,6 +39,29 @@ import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
  * @apiviz.composedOf de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory
  */
 public final class DataStoreUtil {
+  /**
+   * Storage factory in use.
+   */
+  private static DataStoreFactory factory = DataStoreFactory.FACTORY;
+
+  /**
+   * Get the storage factory in use.
+   *
+   * @return Storage factory
+   */
+  public static DataStoreFactory getFactory() {
+    return factory;
+  }
+
+  /**
+   * Set the storage factory to use for subsequently allocated stores.
+   *
+   * @param factory Storage factory
+   */
+  public static void setFactory(DataStoreFactory factory) {
+    DataStoreUtil.factory = factory;
+  }
+
   /**
    * Make a new storage, to associate the given ids with an object of class
    * dataclass.
@@ -50,7 +73,7 @@ public final class DataStoreUtil {
    * @return new data store
    */
   public static <T> WritableDataStore<T> makeStorage(DBIDs ids, int hints, Class<? super T> dataclass) {
-    return DataStoreFactory.FACTORY.makeStorage(ids, hints, dataclass);
+    return factory.makeStorage(ids, hints, dataclass);
   }
 
   /**
@@ -62,7 +85,7 @@ public final class DataStoreUtil {
    * @return new data store
    */
   public static WritableDBIDDataStore makeDBIDStorage(DBIDs ids, int hints) {
-    return DataStoreFactory.FACTORY.makeDBIDStorage(ids, hints);
+    return factory.makeDBIDStorage(ids, hints);
   }
 
   /**
@@ -74,7 +97,7 @@ public final class DataStoreUtil {
    * @return new data store
    */
   public static WritableDoubleDataStore makeDoubleStorage(DBIDs ids, int hints) {
-    return DataStoreFactory.FACTORY.makeDoubleStorage(ids, hints);
+    return factory.makeDoubleStorage(ids, hints);
   }
 
   /**
@@ -87,7 +110,32 @@ public final class DataStoreUtil {
    * @return new data store
    */
   public static WritableDoubleDataStore makeDoubleStorage(DBIDs ids, int hints, double def) {
-    return DataStoreFactory.FACTORY.makeDoubleStorage(ids, hints, def);
+    return factory.makeDoubleStorage(ids, hints, def);
+  }
+
+  /**
+   * Make a new storage for single precision values, using half the memory of
+   * {@link #makeDoubleStorage}.
+   *
+   * @param ids DBIDs to store data for
+   * @param hints Hints for the storage manager
+   * @return new data store
+   */
+  public static WritableFloatDataStore makeFloatStorage(DBIDs ids, int hints) {
+    return factory.makeFloatStorage(ids, hints);
+  }
+
+  /**
+   * Make a new storage for single precision values, using half the memory of
+   * {@link #makeDoubleStorage}.
+   *
+   * @param ids DBIDs to store data for
+   * @param hints Hints for the storage manager
+   * @param def Default value
+   * @return new data store
+   */
+  public static WritableFloatDataStore makeFloatStorage(DBIDs ids, int hints, float def) {
+    return factory.makeFloatStorage(ids, hints, def);
   }
 
   /**
@@ -99,7 +147,7 @@ public final class DataStoreUtil {
    * @return new data store
    */
   public static WritableIntegerDataStore makeIntegerStorage(DBIDs ids, int hints) {
-    return DataStoreFactory.FACTORY.makeIntegerStorage(ids, hints);
+    return factory.makeIntegerStorage(ids, hints);
   }
 
   /**
@@ -112,7 +160,7 @@ public final class DataStoreUtil {
    * @return new data store
    */
   public static WritableIntegerDataStore makeIntegerStorage(DBIDs ids, int hints, int def) {
-    return DataStoreFactory.FACTORY.makeIntegerStorage(ids, hints, def);
+    return factory.makeIntegerStorage(ids, hints, def);
   }
 
   /**
@@ -125,7 +173,7 @@ public final class DataStoreUtil {
    * @return new record store
    */
   public static WritableRecordStore makeRecordStorage(DBIDs ids, int hints, Class<?>... dataclasses) {
-    return DataStoreFactory.FACTORY.makeRecordStorage(ids, hints, dataclasses);
+    return factory.makeRecordStorage(ids, hints, dataclasses);
   }
 
   /**
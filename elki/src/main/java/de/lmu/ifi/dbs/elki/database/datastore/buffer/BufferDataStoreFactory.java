@@ -0,0 +1,382 @@
+package de.lmu.ifi.dbs.elki.database.datastore.buffer;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDBIDDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableFloatDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableRecordStore;
+import de.lmu.ifi.dbs.elki.database.datastore.memory.MemoryDataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.utilities.io.ByteArrayUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.WrongParameterValueException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.FileParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * Data store factory that uses the storage hints to place primitive stores.
+ * <p>
+ * Stores hinted as {@link #HINT_HOT}, stores without a hint, and stores not
+ * indexed by a {@link DBIDRange} are allocated on the Java heap by the
+ * {@link MemoryDataStoreFactory}. Cold temporary stores ({@link #HINT_TEMP})
+ * use direct (off-heap) buffers, and cold static stores ({@link #HINT_STATIC})
+ * are memory mapped from temporary files, if a spill directory is given.
+ * Small stores always remain on the heap.
+ * <p>
+ * To use this factory, select it with the {@code -datastore.factory} option
+ * of the database, or pass it to
+ * {@link de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil#setFactory}. The
+ * number and size of the allocated stores are logged as statistics after each
+ * algorithm.
+ * <p>
+ * File mappings are released when the store is destroyed; on Java 9 and later,
+ * where this is not possible, they are released by the garbage collector.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.stereotype factory
+ * @apiviz.uses MemoryDataStoreFactory
+ * @apiviz.has BufferDoubleStore oneway - - «create»
+ * @apiviz.has BufferFloatStore oneway - - «create»
+ * @apiviz.has BufferIntegerStore oneway - - «create»
+ */
+public class BufferDataStoreFactory implements DataStoreFactory {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(BufferDataStoreFactory.class);
+
+  /**
+   * Unmapping file mappings early only works up to Java 8.
+   */
+  private static final boolean UNMAP = System.getProperty("java.specification.version", "").startsWith("1.");
+
+  /**
+   * Storage placement.
+   * 
+   * @apiviz.exclude
+   */
+  private static enum Placement {
+    HEAP, OFFHEAP, DISK
+  }
+
+  /**
+   * Factory for on-heap storage.
+   */
+  private final DataStoreFactory heap = new MemoryDataStoreFactory();
+
+  /**
+   * Minimum size (in bytes) of stores to move off the heap.
+   */
+  private final long minBytes;
+
+  /**
+   * Directory for file backed stores, may be {@code null}.
+   */
+  private final File spillDirectory;
+
+  /**
+   * Allocation statistics, by placement: number of stores and bytes.
+   */
+  private final AtomicLong[] count = new AtomicLong[Placement.values().length],
+      bytes = new AtomicLong[Placement.values().length];
+
+  /**
+   * Constructor.
+   * 
+   * @param minBytes Minimum size (in bytes) of stores to move off the heap
+   * @param spillDirectory Directory for file backed stores, may be
+   *        {@code null} to only use direct buffers
+   */
+  public BufferDataStoreFactory(long minBytes, File spillDirectory) {
+    super();
+    this.minBytes = minBytes;
+    this.spillDirectory = spillDirectory;
+    for(int i = 0; i < count.length; i++) {
+      count[i] = new AtomicLong();
+      bytes[i] = new AtomicLong();
+    }
+  }
+
+  /**
+   * Choose the placement of a primitive store.
+   * 
+   * @param ids Object IDs
+   * @param hints Storage hints
+   * @param width Bytes per object
+   * @return Placement
+   */
+  private Placement place(DBIDs ids, int hints, int width) {
+    if(!(ids instanceof DBIDRange) || (hints & HINT_HOT) != 0) {
+      return Placement.HEAP;
+    }
+    final long size = ids.size() * (long) width;
+    if(size < minBytes || size > Integer.MAX_VALUE) {
+      return Placement.HEAP;
+    }
+    if((hints & HINT_STATIC) != 0) {
+      return spillDirectory != null ? Placement.DISK : Placement.OFFHEAP;
+    }
+    return (hints & HINT_TEMP) != 0 ? Placement.OFFHEAP : Placement.HEAP;
+  }
+
+  /**
+   * Map a temporary file into memory.
+   * 
+   * @param size Size in bytes
+   * @return Mapped buffer, or {@code null} if the file could not be created
+   */
+  private MappedByteBuffer map(int size) {
+    MappedByteBuffer buf;
+    try {
+      File tmp = File.createTempFile("elki-store", ".bin", spillDirectory);
+      tmp.deleteOnExit();
+      try (RandomAccessFile file = new RandomAccessFile(tmp, "rw")) {
+        buf = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+      }
+      // The mapping remains valid after closing and deleting the file.
+      if(!tmp.delete() && LOG.isDebugging()) {
+        LOG.debug("Could not delete temporary file: " + tmp);
+      }
+    }
+    catch(IOException e) {
+      LOG.warning("Could not create a file backed store, using a direct buffer instead: " + e.getMessage());
+      return null;
+    }
+    record(Placement.DISK, size);
+    buf.order(ByteOrder.nativeOrder());
+    return buf;
+  }
+
+  /**
+   * Allocate a direct buffer.
+   * 
+   * @param size Size in bytes
+   * @return Byte buffer
+   */
+  private ByteBuffer allocateDirect(int size) {
+    record(Placement.OFFHEAP, size);
+    return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Record an allocation in the statistics.
+   * 
+   * @param placement Placement
+   * @param size Size in bytes
+   */
+  private void record(Placement placement, long size) {
+    final int p = placement.ordinal();
+    count[p].incrementAndGet();
+    bytes[p].addAndGet(size);
+  }
+
+  /**
+   * Log the number and size of the stores allocated so far, by placement.
+   */
+  public void logStatistics() {
+    if(!LOG.isStatistics()) {
+      return;
+    }
+    for(Placement placement : Placement.values()) {
+      final int p = placement.ordinal();
+      final String prefix = BufferDataStoreFactory.class.getName() + "." + placement.name().toLowerCase();
+      LOG.statistics(new LongStatistic(prefix + ".stores", count[p].get()));
+      LOG.statistics(new LongStatistic(prefix + ".bytes", bytes[p].get()));
+    }
+  }
+
+  /**
+   * Release a file mapping created by this factory.
+   * 
+   * @param buf Mapped buffer
+   */
+  protected static void unmap(ByteBuffer buf) {
+    // Free the file mapping early, instead of waiting for the garbage
+    // collector. The store must not access the buffer afterwards!
+    if(UNMAP && buf instanceof MappedByteBuffer) {
+      ByteArrayUtil.unmapByteBuffer((MappedByteBuffer) buf);
+    }
+  }
+
+  /**
+   * Get the number of stores allocated with the given placement.
+   * 
+   * @param offheap {@code true} for off-heap (direct or file backed) stores
+   * @return Number of stores
+   */
+  public long getAllocatedStores(boolean offheap) {
+    return offheap ? count[Placement.OFFHEAP.ordinal()].get() + count[Placement.DISK.ordinal()].get() : count[Placement.HEAP.ordinal()].get();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> WritableDataStore<T> makeStorage(DBIDs ids, int hints, Class<? super T> dataclass) {
+    if(Double.class.equals(dataclass)) {
+      return (WritableDataStore<T>) makeDoubleStorage(ids, hints);
+    }
+    if(Float.class.equals(dataclass)) {
+      return (WritableDataStore<T>) makeFloatStorage(ids, hints);
+    }
+    if(Integer.class.equals(dataclass)) {
+      return (WritableDataStore<T>) makeIntegerStorage(ids, hints);
+    }
+    record(Placement.HEAP, 0);
+    return heap.makeStorage(ids, hints, dataclass);
+  }
+
+  @Override
+  public WritableDBIDDataStore makeDBIDStorage(DBIDs ids, int hints) {
+    record(Placement.HEAP, 0);
+    return heap.makeDBIDStorage(ids, hints);
+  }
+
+  @Override
+  public WritableDoubleDataStore makeDoubleStorage(DBIDs ids, int hints) {
+    return makeDoubleStorage(ids, hints, Double.NaN);
+  }
+
+  @Override
+  public WritableDoubleDataStore makeDoubleStorage(DBIDs ids, int hints, double def) {
+    Placement p = place(ids, hints, 8);
+    if(p == Placement.HEAP) {
+      record(p, ids.size() * 8L);
+      return heap.makeDoubleStorage(ids, hints, def);
+    }
+    final int size = ids.size() << 3;
+    MappedByteBuffer map = p == Placement.DISK ? map(size) : null;
+    return new BufferDoubleStore(map != null ? map : allocateDirect(size), (DBIDRange) ids, def, map != null);
+  }
+
+  @Override
+  public WritableFloatDataStore makeFloatStorage(DBIDs ids, int hints) {
+    return makeFloatStorage(ids, hints, Float.NaN);
+  }
+
+  @Override
+  public WritableFloatDataStore makeFloatStorage(DBIDs ids, int hints, float def) {
+    Placement p = place(ids, hints, 4);
+    if(p == Placement.HEAP) {
+      record(p, ids.size() * 4L);
+      return heap.makeFloatStorage(ids, hints, def);
+    }
+    final int size = ids.size() << 2;
+    MappedByteBuffer map = p == Placement.DISK ? map(size) : null;
+    return new BufferFloatStore(map != null ? map : allocateDirect(size), (DBIDRange) ids, def, map != null);
+  }
+
+  @Override
+  public WritableIntegerDataStore makeIntegerStorage(DBIDs ids, int hints) {
+    return makeIntegerStorage(ids, hints, 0);
+  }
+
+  @Override
+  public WritableIntegerDataStore makeIntegerStorage(DBIDs ids, int hints, int def) {
+    Placement p = place(ids, hints, 4);
+    if(p == Placement.HEAP) {
+      record(p, ids.size() * 4L);
+      return heap.makeIntegerStorage(ids, hints, def);
+    }
+    final int size = ids.size() << 2;
+    MappedByteBuffer map = p == Placement.DISK ? map(size) : null;
+    return new BufferIntegerStore(map != null ? map : allocateDirect(size), (DBIDRange) ids, def, map != null);
+  }
+
+  @Override
+  public WritableRecordStore makeRecordStorage(DBIDs ids, int hints, Class<?>... dataclasses) {
+    record(Placement.HEAP, 0);
+    return heap.makeRecordStorage(ids, hints, dataclasses);
+  }
+
+  /**
+   * Parameterization class.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends AbstractParameterizer {
+    /**
+     * Minimum size of stores to move off the heap.
+     */
+    public static final OptionID MINBYTES_ID = new OptionID("datastore.buffer.minbytes", "Minimum size in bytes of data stores to move off the Java heap.");
+
+    /**
+     * Directory for file backed stores.
+     */
+    public static final OptionID SPILL_ID = new OptionID("datastore.buffer.spill", "Directory for memory mapped temporary files of cold static data stores. If not set, direct buffers are used instead.");
+
+    /**
+     * Minimum size (in bytes) of stores to move off the heap.
+     */
+    protected long minBytes;
+
+    /**
+     * Directory for file backed stores, may be {@code null}.
+     */
+    protected File spillDirectory;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter minBytesP = new IntParameter(MINBYTES_ID, 1 << 20);
+      minBytesP.addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+      if(config.grab(minBytesP)) {
+        minBytes = minBytesP.getValue();
+      }
+      FileParameter spillP = new FileParameter(SPILL_ID, FileParameter.FileType.INPUT_FILE, true);
+      if(config.grab(spillP)) {
+        spillDirectory = spillP.getValue();
+        if(!spillDirectory.isDirectory()) {
+          config.reportError(new WrongParameterValueException(spillP, spillDirectory.getPath(), "Not a directory."));
+          spillDirectory = null;
+        }
+      }
+    }
+
+    @Override
+    protected BufferDataStoreFactory makeInstance() {
+      return new BufferDataStoreFactory(minBytes, spillDirectory);
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package de.lmu.ifi.dbs.elki.database.datastore.buffer;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreIDMap;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+
+/**
+ * Double data store backed by a {@link DoubleBuffer}, which may be a direct
+ * (off-heap) or a memory mapped buffer.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.composedOf de.lmu.ifi.dbs.elki.database.datastore.DataStoreIDMap
+ */
+public class BufferDoubleStore implements WritableDoubleDataStore {
+  /**
+   * Data buffer.
+   */
+  private DoubleBuffer data;
+
+  /**
+   * Underlying byte buffer, for releasing mapped files.
+   */
+  private ByteBuffer bytes;
+
+  /**
+   * Buffer is a file mapping.
+   */
+  private boolean mapped;
+
+  /**
+   * Default value.
+   */
+  private double def;
+
+  /**
+   * DBID to index map
+   */
+  private DataStoreIDMap idmap;
+
+  /**
+   * Constructor.
+   * 
+   * @param bytes Byte buffer, of at least 8 bytes per object
+   * @param idmap ID map
+   * @param def Default value
+   * @param mapped {@code true} if the buffer is a file mapping created by
+   *        {@link BufferDataStoreFactory}, which is unmapped on destruction
+   */
+  public BufferDoubleStore(ByteBuffer bytes, DataStoreIDMap idmap, double def, boolean mapped) {
+    super();
+    this.bytes = bytes;
+    this.mapped = mapped;
+    this.data = bytes.asDoubleBuffer();
+    this.def = def;
+    this.idmap = idmap;
+    if(def != 0) {
+      clear();
+    }
+  }
+
+  @Override
+  @Deprecated
+  public Double get(DBIDRef id) {
+    return Double.valueOf(data.get(idmap.mapDBIDToOffset(id)));
+  }
+
+  @Override
+  @Deprecated
+  public Double put(DBIDRef id, Double value) {
+    final int off = idmap.mapDBIDToOffset(id);
+    final double ret = data.get(off);
+    data.put(off, value.doubleValue());
+    return Double.valueOf(ret);
+  }
+
+  @Override
+  public double doubleValue(DBIDRef id) {
+    return data.get(idmap.mapDBIDToOffset(id));
+  }
+
+  @Override
+  public double putDouble(DBIDRef id, double value) {
+    final int off = idmap.mapDBIDToOffset(id);
+    final double ret = data.get(off);
+    data.put(off, value);
+    return ret;
+  }
+
+  @Override
+  public double put(DBIDRef id, double value) {
+    final int off = idmap.mapDBIDToOffset(id);
+    final double ret = data.get(off);
+    data.put(off, value);
+    return ret;
+  }
+
+  @Override
+  public void increment(DBIDRef id, double value) {
+    final int off = idmap.mapDBIDToOffset(id);
+    data.put(off, data.get(off) + value);
+  }
+
+  @Override
+  public void clear() {
+    for(int i = 0, l = data.capacity(); i < l; i++) {
+      data.put(i, def);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if(mapped) {
+      BufferDataStoreFactory.unmap(bytes);
+    }
+    bytes = null;
+    data = null;
+    idmap = null;
+  }
+
+  @Override
+  public void delete(DBIDRef id) {
+    throw new UnsupportedOperationException("Can't delete from a static array storage.");
+  }
+
+  @Override
+  public String getLongName() {
+    return "raw";
+  }
+
+  @Override
+  public String getShortName() {
+    return "raw";
+  }
+}
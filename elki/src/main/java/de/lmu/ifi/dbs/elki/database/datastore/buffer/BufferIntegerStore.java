@@ -0,0 +1,163 @@
+package de.lmu.ifi.dbs.elki.database.datastore.buffer;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreIDMap;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+
+/**
+ * Integer data store backed by a {@link IntBuffer}, which may be a direct
+ * (off-heap) or a memory mapped buffer.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.composedOf de.lmu.ifi.dbs.elki.database.datastore.DataStoreIDMap
+ */
+public class BufferIntegerStore implements WritableIntegerDataStore {
+  /**
+   * Data buffer.
+   */
+  private IntBuffer data;
+
+  /**
+   * Underlying byte buffer, for releasing mapped files.
+   */
+  private ByteBuffer bytes;
+
+  /**
+   * Buffer is a file mapping.
+   */
+  private boolean mapped;
+
+  /**
+   * Default value.
+   */
+  private int def;
+
+  /**
+   * DBID to index map
+   */
+  private DataStoreIDMap idmap;
+
+  /**
+   * Constructor.
+   * 
+   * @param bytes Byte buffer, of at least 4 bytes per object
+   * @param idmap ID map
+   * @param def Default value
+   * @param mapped {@code true} if the buffer is a file mapping created by
+   *        {@link BufferDataStoreFactory}, which is unmapped on destruction
+   */
+  public BufferIntegerStore(ByteBuffer bytes, DataStoreIDMap idmap, int def, boolean mapped) {
+    super();
+    this.bytes = bytes;
+    this.mapped = mapped;
+    this.data = bytes.asIntBuffer();
+    this.def = def;
+    this.idmap = idmap;
+    if(def != 0) {
+      clear();
+    }
+  }
+
+  @Override
+  @Deprecated
+  public Integer get(DBIDRef id) {
+    return Integer.valueOf(data.get(idmap.mapDBIDToOffset(id)));
+  }
+
+  @Override
+  @Deprecated
+  public Integer put(DBIDRef id, Integer value) {
+    final int off = idmap.mapDBIDToOffset(id);
+    final int ret = data.get(off);
+    data.put(off, value.intValue());
+    return Integer.valueOf(ret);
+  }
+
+  @Override
+  public int intValue(DBIDRef id) {
+    return data.get(idmap.mapDBIDToOffset(id));
+  }
+
+  @Override
+  public int putInt(DBIDRef id, int value) {
+    final int off = idmap.mapDBIDToOffset(id);
+    final int ret = data.get(off);
+    data.put(off, value);
+    return ret;
+  }
+
+  @Override
+  public int put(DBIDRef id, int value) {
+    final int off = idmap.mapDBIDToOffset(id);
+    final int ret = data.get(off);
+    data.put(off, value);
+    return ret;
+  }
+
+  @Override
+  public void increment(DBIDRef id, int value) {
+    final int off = idmap.mapDBIDToOffset(id);
+    data.put(off, data.get(off) + value);
+  }
+
+  /**
+   * Reset all values to the default value.
+   */
+  public void clear() {
+    for(int i = 0, l = data.capacity(); i < l; i++) {
+      data.put(i, def);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if(mapped) {
+      BufferDataStoreFactory.unmap(bytes);
+    }
+    bytes = null;
+    data = null;
+    idmap = null;
+  }
+
+  @Override
+  public void delete(DBIDRef id) {
+    throw new UnsupportedOperationException("Can't delete from a static array storage.");
+  }
+
+  @Override
+  public String getLongName() {
+    return "raw";
+  }
+
+  @Override
+  public String getShortName() {
+    return "raw";
+  }
+}
@@ -0,0 +1,148 @@
+package de.lmu.ifi.dbs.elki.database.datastore.memory;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.Arrays;
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreIDMap;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableFloatDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+
+/**
+ * A class to answer representation queries using the stored Array.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.composedOf de.lmu.ifi.dbs.elki.database.datastore.DataStoreIDMap
+ */
+public class ArrayFloatStore implements WritableFloatDataStore {
+  /**
+   * Data array
+   */
+  private float[] data;
+  
+  /**
+   * Default value.
+   */
+  private float def;
+
+  /**
+   * DBID to index map
+   */
+  private DataStoreIDMap idmap;
+
+  /**
+   * Constructor.
+   * 
+   * @param size Size
+   * @param idmap ID map
+   */
+  public ArrayFloatStore(int size, DataStoreIDMap idmap) {
+    this(size, idmap, Float.NaN);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param size Size
+   * @param idmap ID map
+   * @param def Default value
+   */
+  public ArrayFloatStore(int size, DataStoreIDMap idmap, float def) {
+    super();
+    this.data = new float[size];
+    if(def != 0) {
+      Arrays.fill(this.data, def);
+    }
+    this.def = def;
+    this.idmap = idmap;
+  }
+
+  @Override
+  @Deprecated
+  public Float get(DBIDRef id) {
+    return Float.valueOf(data[idmap.mapDBIDToOffset(id)]);
+  }
+
+  @Override
+  @Deprecated
+  public Float put(DBIDRef id, Float value) {
+    final int off = idmap.mapDBIDToOffset(id);
+    float ret = data[off];
+    data[off] = value.floatValue();
+    return Float.valueOf(ret);
+  }
+
+  @Override
+  public float floatValue(DBIDRef id) {
+    return data[idmap.mapDBIDToOffset(id)];
+  }
+
+  @Override
+  public float putFloat(DBIDRef id, float value) {
+    final int off = idmap.mapDBIDToOffset(id);
+    final float ret = data[off];
+    data[off] = value;
+    return ret;
+  }
+
+  @Override
+  public float put(DBIDRef id, float value) {
+    final int off = idmap.mapDBIDToOffset(id);
+    final float ret = data[off];
+    data[off] = value;
+    return ret;
+  }
+
+  @Override
+  public void increment(DBIDRef id, float value) {
+    data[idmap.mapDBIDToOffset(id)] += value;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(data, def);
+  }
+
+  @Override
+  public void destroy() {
+    data = null;
+    idmap = null;
+  }
+
+  @Override
+  public void delete(DBIDRef id) {
+    throw new UnsupportedOperationException("Can't delete from a static array storage.");
+  }
+
+  @Override
+  public String getLongName() {
+    return "raw";
+  }
+
+  @Override
+  public String getShortName() {
+    return "raw";
+  }
+}
@@ -0,0 +1,326 @@
+package de.lmu.ifi.dbs.elki.database.datastore.memory;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import java.util.Arrays;
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreIDMap;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDPair;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+
+/**
+ * Compact storage for kNN lists, which keeps the neighbor ids and distances
+ * of all objects in two flat arrays, with {@code k} slots per object.
+ * <p>
+ * Lists that do not fit (because of ties, or because they were computed for a
+ * different k) are kept as objects. The lists returned by {@link #get} are
+ * lightweight views onto the arrays: they are only valid until the entry of
+ * the same object is modified or deleted.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.composedOf de.lmu.ifi.dbs.elki.database.datastore.DataStoreIDMap
+ * @apiviz.has View
+ */
+public class ArrayKNNStore implements WritableDataStore<KNNList> {
+  /**
+   * Maximum number of slots supported.
+   */
+  public static final long MAX_SLOTS = Integer.MAX_VALUE - 8;
+
+  /**
+   * Neighbor ids.
+   */
+  private int[] ids;
+
+  /**
+   * Neighbor distances.
+   */
+  private double[] dists;
+
+  /**
+   * List sizes, -1 for unset entries.
+   */
+  private int[] sizes;
+
+  /**
+   * Lists that do not fit into the slots.
+   */
+  private TIntObjectHashMap<KNNList> overflow = new TIntObjectHashMap<>();
+
+  /**
+   * Number of slots per object.
+   */
+  private final int k;
+
+  /**
+   * DBID to index map
+   */
+  private DataStoreIDMap idmap;
+
+  /**
+   * Constructor.
+   * 
+   * @param size Number of objects
+   * @param idmap ID map
+   * @param k Number of neighbors to store per object
+   */
+  public ArrayKNNStore(int size, DataStoreIDMap idmap, int k) {
+    super();
+    assert (size * (long) k <= MAX_SLOTS) : "Too many slots requested.";
+    this.k = k;
+    this.ids = new int[size * k];
+    this.dists = new double[size * k];
+    this.sizes = new int[size];
+    Arrays.fill(sizes, -1);
+    this.idmap = idmap;
+  }
+
+  @Override
+  public KNNList get(DBIDRef id) {
+    final int off = idmap.mapDBIDToOffset(id);
+    final int size = sizes[off];
+    if(size > k) {
+      return overflow.get(off);
+    }
+    return size >= 0 ? new View(ids, dists, off * k, size, k) : null;
+  }
+
+  @Override
+  public KNNList put(DBIDRef id, KNNList value) {
+    final int off = idmap.mapDBIDToOffset(id);
+    if(sizes[off] > k) {
+      overflow.remove(off);
+    }
+    if(value == null) {
+      sizes[off] = -1;
+      return null;
+    }
+    final int size = value.size();
+    if(size > k || value.getK() != k) {
+      overflow.put(off, value);
+      sizes[off] = Integer.MAX_VALUE; // Marker for overflow
+      return null;
+    }
+    int p = off * k;
+    for(DoubleDBIDListIter it = value.iter(); it.valid(); it.advance(), p++) {
+      ids[p] = DBIDUtil.asInteger(it);
+      dists[p] = it.doubleValue();
+    }
+    sizes[off] = size;
+    // Note: for efficiency, we do not return the previous value.
+    return null;
+  }
+
+  @Override
+  public void delete(DBIDRef id) {
+    put(id, null);
+  }
+
+  @Override
+  public void destroy() {
+    ids = null;
+    dists = null;
+    sizes = null;
+    overflow = null;
+    idmap = null;
+  }
+
+  @Override
+  public String getLongName() {
+    return "raw";
+  }
+
+  @Override
+  public String getShortName() {
+    return "raw";
+  }
+
+  /**
+   * Lightweight view of a kNN list stored in flat arrays.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  public static class View implements KNNList {
+    /**
+     * Neighbor ids.
+     */
+    final int[] ids;
+
+    /**
+     * Neighbor distances.
+     */
+    final double[] dists;
+
+    /**
+     * Start offset in the arrays, list size, and k.
+     */
+    final int start, size, k;
+
+    /**
+     * Constructor.
+     * 
+     * @param ids Neighbor ids (as integers)
+     * @param dists Neighbor distances
+     * @param start Start offset
+     * @param size List size
+     * @param k k value of the list
+     */
+    public View(int[] ids, double[] dists, int start, int size, int k) {
+      this.ids = ids;
+      this.dists = dists;
+      this.start = start;
+      this.size = size;
+      this.k = k;
+    }
+
+    @Override
+    public int getK() {
+      return k;
+    }
+
+    @Override
+    public double getKNNDistance() {
+      return size >= k ? dists[start + k - 1] : Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public DoubleDBIDPair get(int index) {
+      assert (index < size) : "Access beyond size of list.";
+      return DBIDUtil.newPair(dists[start + index], DBIDUtil.importInteger(ids[start + index]));
+    }
+
+    @Override
+    public DoubleDBIDListIter iter() {
+      return new Itr();
+    }
+
+    @Override
+    public boolean contains(DBIDRef o) {
+      final int ref = DBIDUtil.asInteger(o);
+      for(int i = start, end = start + size; i < end; i++) {
+        if(ids[i] == ref) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return size == 0;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder buf = new StringBuilder();
+      buf.append("kNNList[");
+      for(DoubleDBIDListIter iter = this.iter(); iter.valid();) {
+        buf.append(iter.doubleValue()).append(':').append(iter.internalGetIndex());
+        iter.advance();
+        if(iter.valid()) {
+          buf.append(',');
+        }
+      }
+      buf.append(']');
+      return buf.toString();
+    }
+
+    /**
+     * Iterator over the view.
+     * 
+     * @author Erich Schubert
+     * 
+     * @apiviz.exclude
+     */
+    private class Itr implements DoubleDBIDListIter {
+      /**
+       * Current position.
+       */
+      private int pos = 0;
+
+      @Override
+      public boolean valid() {
+        return pos < size && pos >= 0;
+      }
+
+      @Override
+      public Itr advance() {
+        pos++;
+        return this;
+      }
+
+      @Override
+      public double doubleValue() {
+        return dists[start + pos];
+      }
+
+      @Override
+      public DoubleDBIDPair getPair() {
+        return get(pos);
+      }
+
+      @Override
+      public int internalGetIndex() {
+        return ids[start + pos];
+      }
+
+      @Override
+      public int getOffset() {
+        return pos;
+      }
+
+      @Override
+      public Itr advance(int count) {
+        pos += count;
+        return this;
+      }
+
+      @Override
+      public Itr retract() {
+        --pos;
+        return this;
+      }
+
+      @Override
+      public Itr seek(int off) {
+        pos = off;
+        return this;
+      }
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package de.lmu.ifi.dbs.elki.database.datastore.memory;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import gnu.trove.map.TIntFloatMap;
+import gnu.trove.map.hash.TIntFloatHashMap;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableFloatDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+
+/**
+ * Writable data store for float values.
+ * 
+ * @author Erich Schubert
+ */
+public class MapIntegerDBIDFloatStore implements WritableFloatDataStore {
+  /**
+   * Data storage.
+   */
+  private TIntFloatMap map;
+
+  /**
+   * Constructor.
+   * 
+   * @param size Expected size
+   */
+  public MapIntegerDBIDFloatStore(int size) {
+    this(size, Float.NaN);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param size Expected size
+   * @param def Default value
+   */
+  public MapIntegerDBIDFloatStore(int size, float def) {
+    super();
+    map = new TIntFloatHashMap(size, 0.5f, Integer.MIN_VALUE, def);
+  }
+
+  @Override
+  @Deprecated
+  public Float get(DBIDRef id) {
+    return Float.valueOf(map.get(DBIDUtil.asInteger(id)));
+  }
+
+  @Override
+  public float floatValue(DBIDRef id) {
+    return map.get(DBIDUtil.asInteger(id));
+  }
+
+  @Override
+  public String getLongName() {
+    return "raw";
+  }
+
+  @Override
+  public String getShortName() {
+    return "raw";
+  }
+
+  @Override
+  @Deprecated
+  public Float put(DBIDRef id, Float value) {
+    return Float.valueOf(map.put(DBIDUtil.asInteger(id), value.floatValue()));
+  }
+
+  @Override
+  public void delete(DBIDRef id) {
+    map.remove(DBIDUtil.asInteger(id));
+  }
+
+  @Override
+  public float putFloat(DBIDRef id, float value) {
+    return map.put(DBIDUtil.asInteger(id), value);
+  }
+
+  @Override
+  public float put(DBIDRef id, float value) {
+    return map.put(DBIDUtil.asInteger(id), value);
+  }
+
+  @Override
+  public void increment(DBIDRef id, float value) {
+    map.adjustOrPutValue(DBIDUtil.asInteger(id), value, map.getNoEntryValue() + value);
+  }
+
+  @Override
+  public void clear() {
+    map.clear();
+  }
+
+  @Override
+  public void destroy() {
+    map.clear();
+    map = null;
+  }
+}
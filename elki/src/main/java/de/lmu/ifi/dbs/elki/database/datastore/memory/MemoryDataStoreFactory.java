@@ -27,6 +27,7 @@ import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDBIDDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableFloatDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableRecordStore;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
@@ -54,6 +55,9 @@ public class MemoryDataStoreFactory implements DataStoreFactory {
     if (Double.class.equals(dataclass)) {
       return (WritableDataStore<T>) makeDoubleStorage(ids, hints);
     }
+    if (Float.class.equals(dataclass)) {
+      return (WritableDataStore<T>) makeFloatStorage(ids, hints);
+    }
     if (Integer.class.equals(dataclass)) {
       return (WritableDataStore<T>) makeIntegerStorage(ids, hints);
     }
@@ -100,6 +104,28 @@ public class MemoryDataStoreFactory implements DataStoreFactory {
     }
   }
 
+  @Override
+  public WritableFloatDataStore makeFloatStorage(DBIDs ids, int hints) {
+    if(ids instanceof DBIDRange) {
+      DBIDRange range = (DBIDRange) ids;
+      return new ArrayFloatStore(range.size(), range);
+    }
+    else {
+      return new MapIntegerDBIDFloatStore(ids.size());
+    }
+  }
+
+  @Override
+  public WritableFloatDataStore makeFloatStorage(DBIDs ids, int hints, float def) {
+    if(ids instanceof DBIDRange) {
+      DBIDRange range = (DBIDRange) ids;
+      return new ArrayFloatStore(range.size(), range, def);
+    }
+    else {
+      return new MapIntegerDBIDFloatStore(ids.size(), def);
+    }
+  }
+
   @Override
   public WritableIntegerDataStore makeIntegerStorage(DBIDs ids, int hints) {
     if(ids instanceof DBIDRange) {
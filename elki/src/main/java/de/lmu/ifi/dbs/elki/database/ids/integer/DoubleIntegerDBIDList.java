@@ -23,6 +23,8 @@ package de.lmu.ifi.dbs.elki.database.ids.integer;
  along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import java.util.Arrays;
+
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDPair;
@@ -136,12 +138,12 @@ class DoubleIntegerDBIDList implements ModifiableDoubleDBIDList, IntegerDBIDs {
    * Grow the data storage.
    */
   protected void grow() {
-    if(dists == EMPTY_DISTS) {
-      dists = new double[INITIAL_SIZE];
-      ids = new int[INITIAL_SIZE];
+    final int len = dists.length;
+    if(len < INITIAL_SIZE) {
+      dists = Arrays.copyOf(dists, INITIAL_SIZE);
+      ids = Arrays.copyOf(ids, INITIAL_SIZE);
       return;
     }
-    final int len = dists.length;
     final int newlength = len + (len >> 1);
     double[] odists = dists;
     dists = new double[newlength];
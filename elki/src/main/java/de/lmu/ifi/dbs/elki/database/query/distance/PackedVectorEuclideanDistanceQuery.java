@@ -0,0 +1,68 @@
+package de.lmu.ifi.dbs.elki.database.query.distance;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.relation.PackedVectorRelation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.SpatialPrimitiveDistanceFunction;
+
+/**
+ * Euclidean distance query, reading the values of a
+ * {@link PackedVectorRelation} directly from the backing array.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.uses PackedVectorRelation
+ */
+public class PackedVectorEuclideanDistanceQuery extends SpatialPrimitiveDistanceQuery<NumberVector> {
+  /**
+   * Packed relation.
+   */
+  private final PackedVectorRelation packed;
+
+  /**
+   * Return squared distances.
+   */
+  private final boolean squared;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Packed relation
+   * @param distanceFunction Euclidean or squared Euclidean distance
+   * @param squared {@code true} for squared Euclidean distance
+   */
+  public PackedVectorEuclideanDistanceQuery(PackedVectorRelation relation, SpatialPrimitiveDistanceFunction<? super NumberVector> distanceFunction, boolean squared) {
+    super(relation, distanceFunction);
+    this.packed = relation;
+    this.squared = squared;
+  }
+
+  @Override
+  public double distance(DBIDRef id1, DBIDRef id2) {
+    final double d = packed.squaredDistance(packed.getOffset(id1), packed.getOffset(id2));
+    return squared ? d : Math.sqrt(d);
+  }
+}
@@ -0,0 +1,122 @@
+package de.lmu.ifi.dbs.elki.database.query.knn;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.database.ids.DBID;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDVar;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleObjectMinHeap;
+
+/**
+ * Abstract base class for best-first distance browsing in hierarchical
+ * indexes.
+ * 
+ * A single priority queue contains both index nodes (keyed by a lower bound
+ * of the distance of their contents) and objects (keyed by their exact
+ * distance). Whenever an object is at the top of the queue, no closer object
+ * can remain in the index, so it is the next neighbor.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.uses DoubleObjectMinHeap
+ */
+public abstract class AbstractDistanceBrowsingIter implements DistanceBrowsingIter {
+  /**
+   * Priority queue of nodes and objects.
+   */
+  protected final DoubleObjectMinHeap<Object> heap = new DoubleObjectMinHeap<>();
+
+  /**
+   * Current neighbor.
+   */
+  private final DBIDVar cur = DBIDUtil.newVar();
+
+  /**
+   * Distance of the current neighbor.
+   */
+  private double curdist = Double.NaN;
+
+  /**
+   * Add an object to the queue.
+   * 
+   * @param dist Exact distance to the query object
+   * @param id Object
+   */
+  protected void addObject(double dist, DBIDRef id) {
+    heap.add(dist, DBIDUtil.deref(id));
+  }
+
+  /**
+   * Add a node to the queue.
+   * 
+   * @param mindist Lower bound for the distance of all contained objects
+   * @param node Node reference, must not be a {@link DBID}.
+   */
+  protected void addNode(double mindist, Object node) {
+    assert (!(node instanceof DBID));
+    heap.add(mindist, node);
+  }
+
+  /**
+   * Expand a node that was removed from the queue.
+   * 
+   * @param mindist Priority the node was queued with
+   * @param node Node reference
+   */
+  protected abstract void expand(double mindist, Object node);
+
+  @Override
+  public DistanceBrowsingIter advance() {
+    while(!heap.isEmpty()) {
+      final double key = heap.peekKey();
+      final Object val = heap.peekValue();
+      heap.poll();
+      if(val instanceof DBID) {
+        cur.set((DBID) val);
+        curdist = key;
+        return this;
+      }
+      expand(key, val);
+    }
+    cur.unset();
+    curdist = Double.NaN;
+    return this;
+  }
+
+  @Override
+  public boolean valid() {
+    return cur.isSet();
+  }
+
+  @Override
+  public double doubleValue() {
+    return curdist;
+  }
+
+  @Override
+  public int internalGetIndex() {
+    return cur.internalGetIndex();
+  }
+}
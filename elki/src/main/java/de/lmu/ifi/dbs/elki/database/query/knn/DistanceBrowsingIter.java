@@ -0,0 +1,47 @@
+package de.lmu.ifi.dbs.elki.database.query.knn;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+
+/**
+ * Lazy iterator over the neighbors of a query object, in ascending order of
+ * distance.
+ * 
+ * Neighbors are only computed as the iterator is advanced, so the caller does
+ * not need to know the number of neighbors it needs in advance.
+ * 
+ * @author Erich Schubert
+ */
+public interface DistanceBrowsingIter extends DBIDIter {
+  /**
+   * Distance of the current neighbor to the query object.
+   * 
+   * @return Distance
+   */
+  double doubleValue();
+
+  @Override
+  DistanceBrowsingIter advance();
+}
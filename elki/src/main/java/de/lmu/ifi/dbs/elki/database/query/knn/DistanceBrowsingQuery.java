@@ -0,0 +1,71 @@
+package de.lmu.ifi.dbs.elki.database.query.knn;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+
+/**
+ * Incremental ("distance browsing") nearest neighbor query.
+ * 
+ * In contrast to {@link KNNQuery}, the number of neighbors does not need to be
+ * known in advance: the returned iterator produces neighbors in ascending
+ * distance until the caller stops advancing it.
+ * 
+ * Reference:
+ * <p>
+ * G. R. Hjaltason, H. Samet<br />
+ * Distance browsing in spatial databases<br />
+ * ACM Transactions on Database Systems (TODS) 24(2)
+ * </p>
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.landmark
+ * @apiviz.has DistanceBrowsingIter oneway - - «create»
+ * 
+ * @param <O> Object type
+ */
+@Reference(authors = "G. R. Hjaltason, H. Samet", //
+title = "Distance browsing in spatial databases", //
+booktitle = "ACM Transactions on Database Systems (TODS) 24(2)", //
+url = "http://dx.doi.org/10.1145/320248.320255")
+public interface DistanceBrowsingQuery<O> extends DatabaseQuery {
+  /**
+   * Get the neighbors of a database object, in ascending distance.
+   * 
+   * @param id query object ID
+   * @return Lazy neighbor iterator
+   */
+  DistanceBrowsingIter getNeighborsForDBID(DBIDRef id);
+
+  /**
+   * Get the neighbors of a query object, in ascending distance.
+   * 
+   * @param obj Query object
+   * @return Lazy neighbor iterator
+   */
+  DistanceBrowsingIter getNeighborsForObject(O obj);
+}
@@ -0,0 +1,123 @@
+package de.lmu.ifi.dbs.elki.database.query.knn;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleIntegerMinHeap;
+
+/**
+ * Distance browsing by linear scan.
+ * 
+ * All distances are computed once, but they are only sorted as far as the
+ * iterator is advanced.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.uses DoubleIntegerMinHeap
+ */
+public class LinearScanDistanceBrowsingIter implements DistanceBrowsingIter {
+  /**
+   * Heap of distances and array offsets.
+   */
+  private final DoubleIntegerMinHeap heap;
+
+  /**
+   * Iterator over the data set.
+   */
+  private final DBIDArrayIter iter;
+
+  /**
+   * Distance of the current neighbor.
+   */
+  private double curdist = Double.NaN;
+
+  /**
+   * Iterator state.
+   */
+  private boolean valid = false;
+
+  /**
+   * Constructor for a query by database object.
+   * 
+   * @param distanceQuery Distance query
+   * @param id Query object ID
+   */
+  public <O> LinearScanDistanceBrowsingIter(DistanceQuery<O> distanceQuery, DBIDRef id) {
+    ArrayDBIDs ids = DBIDUtil.ensureArray(distanceQuery.getRelation().getDBIDs());
+    this.heap = new DoubleIntegerMinHeap(ids.size());
+    this.iter = ids.iter();
+    for(; iter.valid(); iter.advance()) {
+      heap.add(distanceQuery.distance(id, iter), iter.getOffset());
+    }
+    advance();
+  }
+
+  /**
+   * Constructor for a query by object.
+   * 
+   * @param distanceQuery Distance query
+   * @param obj Query object
+   */
+  public <O> LinearScanDistanceBrowsingIter(DistanceQuery<O> distanceQuery, O obj) {
+    ArrayDBIDs ids = DBIDUtil.ensureArray(distanceQuery.getRelation().getDBIDs());
+    this.heap = new DoubleIntegerMinHeap(ids.size());
+    this.iter = ids.iter();
+    for(; iter.valid(); iter.advance()) {
+      heap.add(distanceQuery.distance(obj, iter), iter.getOffset());
+    }
+    advance();
+  }
+
+  @Override
+  public DistanceBrowsingIter advance() {
+    valid = !heap.isEmpty();
+    if(!valid) {
+      curdist = Double.NaN;
+      return this;
+    }
+    curdist = heap.peekKey();
+    iter.seek(heap.peekValue());
+    heap.poll();
+    return this;
+  }
+
+  @Override
+  public boolean valid() {
+    return valid;
+  }
+
+  @Override
+  public double doubleValue() {
+    return curdist;
+  }
+
+  @Override
+  public int internalGetIndex() {
+    return iter.internalGetIndex();
+  }
+}
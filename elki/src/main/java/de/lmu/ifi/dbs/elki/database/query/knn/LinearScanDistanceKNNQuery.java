@@ -43,7 +43,7 @@ import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
  * @apiviz.landmark
  * @apiviz.has DistanceQuery
  */
-public class LinearScanDistanceKNNQuery<O> extends AbstractDistanceKNNQuery<O> implements LinearScanQuery {
+public class LinearScanDistanceKNNQuery<O> extends AbstractDistanceKNNQuery<O> implements DistanceBrowsingQuery<O>, LinearScanQuery {
   /**
    * Constructor.
    * 
@@ -79,6 +79,16 @@ public class LinearScanDistanceKNNQuery<O> extends AbstractDistanceKNNQuery<O> i
     return heap.toKNNList();
   }
 
+  @Override
+  public DistanceBrowsingIter getNeighborsForDBID(DBIDRef id) {
+    return new LinearScanDistanceBrowsingIter(distanceQuery, id);
+  }
+
+  @Override
+  public DistanceBrowsingIter getNeighborsForObject(O obj) {
+    return new LinearScanDistanceBrowsingIter(distanceQuery, obj);
+  }
+
   @Override
   public List<KNNList> getKNNForBulkDBIDs(ArrayDBIDs ids, int k) {
     final int size = ids.size();
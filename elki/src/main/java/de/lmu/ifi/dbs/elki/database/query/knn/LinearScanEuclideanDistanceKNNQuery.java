@@ -29,6 +29,7 @@ import java.util.List;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.database.QueryUtil;
 import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
@@ -36,7 +37,9 @@ import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
 import de.lmu.ifi.dbs.elki.database.ids.KNNList;
 import de.lmu.ifi.dbs.elki.database.query.LinearScanQuery;
 import de.lmu.ifi.dbs.elki.database.query.distance.PrimitiveDistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.PackedVectorRelation;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
 
@@ -46,6 +49,14 @@ import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanD
  * This is a subtle optimization: for primitive queries, it is clearly faster to
  * retrieve the query object from the relation only once!
  * 
+ * Bulk queries on vectors of fixed dimensionality are processed in tiles:
+ * blocks of candidates are copied into a contiguous array, along with their
+ * norms. By the triangle inequality, | ||x|| - ||y|| | is a lower bound of the
+ * distance; entire tiles are skipped for a query when this bound exceeds the
+ * current k-distance for all candidates, and single candidates are skipped at
+ * constant cost. Remaining candidates use the exact distance, so results are
+ * identical to the naive scan.
+ * 
  * @author Erich Schubert
  * 
  * @apiviz.uses PrimitiveDistanceQuery
@@ -58,6 +69,22 @@ public class LinearScanEuclideanDistanceKNNQuery<O extends NumberVector> extends
    */
   private static final SquaredEuclideanDistanceFunction SQUARED = SquaredEuclideanDistanceFunction.STATIC;
 
+  /**
+   * Target size of a candidate tile, in doubles (16 KB, to stay in L1 cache).
+   */
+  private static final int TILE_SIZE = 2048;
+
+  /**
+   * Minimum number of candidates per tile.
+   */
+  private static final int MIN_BLOCK = 16;
+
+  /**
+   * Relative tolerance of the norm bound, per dimension. This is very
+   * conservative compared to the machine precision.
+   */
+  private static final double EPSILON = 1e-12;
+
   /**
    * Constructor.
    * 
@@ -89,8 +116,11 @@ public class LinearScanEuclideanDistanceKNNQuery<O extends NumberVector> extends
    */
   private KNNHeap linearScan(Relation<? extends O> relation, DBIDIter iter, final O obj, KNNHeap heap) {
     double max = Double.POSITIVE_INFINITY;
+    // Fast path, reading the packed array directly.
+    final PackedVectorRelation packed = PackedVectorRelation.asPacked(relation, obj.getDimensionality());
+    final double[] vec = packed != null ? obj.getColumnVector().getArrayRef() : null;
     while(iter.valid()) {
-      final double dist = SQUARED.distance(obj, relation.get(iter));
+      final double dist = packed != null ? packed.squaredDistance(iter, vec) : SQUARED.distance(obj, relation.get(iter));
       if(dist <= max) {
         max = heap.insert(dist, iter);
       }
@@ -125,6 +155,11 @@ public class LinearScanEuclideanDistanceKNNQuery<O extends NumberVector> extends
    */
   @Override
   protected void linearScanBatchKNN(List<O> objs, List<KNNHeap> heaps) {
+    final int dim = RelationUtil.dimensionality(relation);
+    if(dim > 0) {
+      tiledBatchKNN(objs, heaps, dim);
+      return;
+    }
     final int size = objs.size();
     // Linear scan style KNN.
     for(DBIDIter iter = relation.getDBIDs().iter(); iter.valid(); iter.advance()) {
@@ -138,4 +173,87 @@ public class LinearScanEuclideanDistanceKNNQuery<O extends NumberVector> extends
       }
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Tiled batch kNN, for vectors of fixed dimensionality.
+   * 
+   * @param objs Objects list
+   * @param heaps Heaps array
+   * @param dim Dimensionality
+   */
+  private void tiledBatchKNN(List<O> objs, List<KNNHeap> heaps, final int dim) {
+    final int size = objs.size();
+    // Copy the query objects into a contiguous array, and compute their norms.
+    final double[] qtile = new double[size * dim], qnorm = new double[size];
+    for(int q = 0, off = 0; q < size; q++) {
+      final O obj = objs.get(q);
+      double n = 0.;
+      for(int d = 0; d < dim; d++, off++) {
+        final double v = obj.doubleValue(d);
+        qtile[off] = v;
+        n += v * v;
+      }
+      qnorm[q] = Math.sqrt(n);
+    }
+    // Safety factor for the lower bound, to account for rounding.
+    final double tol = 1. - EPSILON * dim;
+    final int block = Math.max(MIN_BLOCK, TILE_SIZE / dim);
+    final double[] ctile = new double[block * dim], cnorm = new double[block];
+    final ArrayDBIDs cids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final DBIDArrayIter iter = cids.iter();
+    final int csize = cids.size();
+    final PackedVectorRelation packed = PackedVectorRelation.asPacked(relation, dim);
+    for(int start = 0; start < csize; start += block) {
+      final int len = Math.min(block, csize - start);
+      // Copy the candidate block, and track the range of norms.
+      double minn = Double.POSITIVE_INFINITY, maxn = 0.;
+      iter.seek(start);
+      for(int c = 0, off = 0; c < len; c++, iter.advance()) {
+        double n = 0.;
+        if(packed != null) {
+          packed.copyRow(packed.getOffset(iter), ctile, off);
+          for(int d = 0; d < dim; d++, off++) {
+            n += ctile[off] * ctile[off];
+          }
+        }
+        else {
+          final O cand = relation.get(iter);
+          for(int d = 0; d < dim; d++, off++) {
+            final double v = cand.doubleValue(d);
+            ctile[off] = v;
+            n += v * v;
+          }
+        }
+        final double sn = Math.sqrt(n);
+        cnorm[c] = sn;
+        minn = sn < minn ? sn : minn;
+        maxn = sn > maxn ? sn : maxn;
+      }
+      for(int q = 0, qoff = 0; q < size; q++, qoff += dim) {
+        final KNNHeap heap = heaps.get(q);
+        double kdist = heap.getKNNDistance();
+        final double sq = qnorm[q];
+        // Lower bound of all distances in this tile: | ||x|| - ||y|| |
+        final double lb = sq < minn ? minn - sq : sq > maxn ? sq - maxn : 0.;
+        if(lb * lb * tol > kdist) {
+          continue;
+        }
+        for(int c = 0, coff = 0; c < len; c++, coff += dim) {
+          // Same bound for the single candidate, at constant cost.
+          final double clb = sq - cnorm[c];
+          if(clb * clb * tol > kdist) {
+            continue;
+          }
+          double dist = 0.;
+          for(int d = 0; d < dim; d++) {
+            final double delta = qtile[qoff + d] - ctile[coff + d];
+            dist += delta * delta;
+          }
+          if(dist <= kdist) {
+            kdist = heap.insert(dist, iter.seek(start + c));
+          }
+        }
+      }
+    }
+  }
+}
@@ -48,7 +48,7 @@ import de.lmu.ifi.dbs.elki.distance.distancefunction.PrimitiveDistanceFunction;
  * @apiviz.uses PrimitiveDistanceQuery
  * @apiviz.uses PrimitiveDistanceFunction
  */
-public class LinearScanPrimitiveDistanceKNNQuery<O> extends AbstractDistanceKNNQuery<O> implements LinearScanQuery {
+public class LinearScanPrimitiveDistanceKNNQuery<O> extends AbstractDistanceKNNQuery<O> implements DistanceBrowsingQuery<O>, LinearScanQuery {
   /**
    * Unboxed distance function.
    */
@@ -74,6 +74,16 @@ public class LinearScanPrimitiveDistanceKNNQuery<O> extends AbstractDistanceKNNQ
     return linearScan(relation, relation.iterDBIDs(), obj, DBIDUtil.newHeap(k)).toKNNList();
   }
 
+  @Override
+  public DistanceBrowsingIter getNeighborsForDBID(DBIDRef id) {
+    return new LinearScanDistanceBrowsingIter(distanceQuery, relation.get(id));
+  }
+
+  @Override
+  public DistanceBrowsingIter getNeighborsForObject(O obj) {
+    return new LinearScanDistanceBrowsingIter(distanceQuery, obj);
+  }
+
   /**
    * Main loop of the linear scan.
    * 
@@ -41,7 +41,7 @@ import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
  * 
  * @param <O> Database object type
  */
-public class LinearScanDistanceRangeQuery<O> extends AbstractDistanceRangeQuery<O> implements LinearScanQuery {
+public class LinearScanDistanceRangeQuery<O> extends AbstractDistanceRangeQuery<O> implements RangeCountQuery<O>, LinearScanQuery {
   /**
    * Constructor.
    * 
@@ -96,4 +96,26 @@ public class LinearScanDistanceRangeQuery<O> extends AbstractDistanceRangeQuery<
       }
     }
   }
-}
\ No newline at end of file
+
+  @Override
+  public int getRangeCountForDBID(DBIDRef id, double range, int max) {
+    int count = 0;
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid() && count < max; iter.advance()) {
+      if(distanceQuery.distance(id, iter) <= range) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public int getRangeCountForObject(O obj, double range, int max) {
+    int count = 0;
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid() && count < max; iter.advance()) {
+      if(distanceQuery.distance(obj, iter) <= range) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
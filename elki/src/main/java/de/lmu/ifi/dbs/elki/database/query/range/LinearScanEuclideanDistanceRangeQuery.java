@@ -30,6 +30,7 @@ import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
 import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
 import de.lmu.ifi.dbs.elki.database.query.distance.PrimitiveDistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.PackedVectorRelation;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
 
@@ -85,6 +86,25 @@ public class LinearScanEuclideanDistanceRangeQuery<O extends NumberVector> exten
     linearScan(relation, relation.iterDBIDs(), obj, range, neighbors);
   }
 
+  @Override
+  public int getRangeCountForObject(O obj, double range, int max) {
+    // Avoid a loss in numerical precision when using the squared radius:
+    final double upper = range * 1.0000001;
+    final double sqrange = upper * upper;
+    int count = 0;
+    DBIDIter iter = relation.iterDBIDs();
+    // Fast path, reading the packed array directly.
+    final PackedVectorRelation packed = PackedVectorRelation.asPacked(relation, obj.getDimensionality());
+    final double[] vec = packed != null ? obj.getColumnVector().getArrayRef() : null;
+    for(; iter.valid() && count < max; iter.advance()) {
+      final double sqdistance = packed != null ? packed.squaredDistance(iter, vec) : SQUARED.distance(obj, relation.get(iter));
+      if(sqdistance <= sqrange && Math.sqrt(sqdistance) <= range) {
+        count++;
+      }
+    }
+    return count;
+  }
+
   /**
    * Main loop for linear scan,
    * 
@@ -100,8 +120,11 @@ public class LinearScanEuclideanDistanceRangeQuery<O extends NumberVector> exten
     // This should be more precise, but slower:
     // upper = MathUtil.floatToDoubleUpper((float)range);
     final double sqrange = upper * upper;
+    // Fast path, reading the packed array directly.
+    final PackedVectorRelation packed = PackedVectorRelation.asPacked(relation, obj.getDimensionality());
+    final double[] vec = packed != null ? obj.getColumnVector().getArrayRef() : null;
     while(iter.valid()) {
-      final double sqdistance = SQUARED.distance(obj, relation.get(iter));
+      final double sqdistance = packed != null ? packed.squaredDistance(iter, vec) : SQUARED.distance(obj, relation.get(iter));
       if(sqdistance <= sqrange) {
         final double dist = Math.sqrt(sqdistance);
         if(dist <= range) { // double check, as we increased the radius above
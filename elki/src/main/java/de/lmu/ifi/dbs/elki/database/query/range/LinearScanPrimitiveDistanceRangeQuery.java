@@ -44,7 +44,7 @@ import de.lmu.ifi.dbs.elki.distance.distancefunction.PrimitiveDistanceFunction;
  * 
  * @param <O> Database object type
  */
-public class LinearScanPrimitiveDistanceRangeQuery<O> extends AbstractDistanceRangeQuery<O> {
+public class LinearScanPrimitiveDistanceRangeQuery<O> extends AbstractDistanceRangeQuery<O> implements RangeCountQuery<O> {
   /**
    * Unboxed distance function.
    */
@@ -88,6 +88,22 @@ public class LinearScanPrimitiveDistanceRangeQuery<O> extends AbstractDistanceRa
     linearScan(relation, relation.iterDBIDs(), obj, range, neighbors);
   }
 
+  @Override
+  public int getRangeCountForDBID(DBIDRef id, double range, int max) {
+    return getRangeCountForObject(relation.get(id), range, max);
+  }
+
+  @Override
+  public int getRangeCountForObject(O obj, double range, int max) {
+    int count = 0;
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid() && count < max; iter.advance()) {
+      if(rawdist.distance(obj, relation.get(iter)) <= range) {
+        count++;
+      }
+    }
+    return count;
+  }
+
   /**
    * Main loop for linear scan,
    * 
@@ -0,0 +1,63 @@
+package de.lmu.ifi.dbs.elki.database.query.range;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+
+/**
+ * Query to count the number of neighbors within a radius, without
+ * materializing the neighbors.
+ * 
+ * Counting may stop early once a threshold is reached, e.g. when only
+ * "at least minpts neighbors" needs to be decided. Pass
+ * {@link Integer#MAX_VALUE} to obtain the exact count.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.landmark
+ * 
+ * @param <O> Object type
+ */
+public interface RangeCountQuery<O> extends DatabaseQuery {
+  /**
+   * Count the neighbors of a particular id within a given query range.
+   * 
+   * @param id query object ID
+   * @param range Query range
+   * @param max Stop counting at this threshold
+   * @return Number of neighbors, but at most {@code max}
+   */
+  int getRangeCountForDBID(DBIDRef id, double range, int max);
+
+  /**
+   * Count the neighbors of a particular object within a given query range.
+   * 
+   * @param obj Query object
+   * @param range Query range
+   * @param max Stop counting at this threshold
+   * @return Number of neighbors, but at most {@code max}
+   */
+  int getRangeCountForObject(O obj, double range, int max);
+}
@@ -0,0 +1,63 @@
+package de.lmu.ifi.dbs.elki.database.query.range;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+
+/**
+ * Range count query for indexes that can only answer full range queries: the
+ * neighbors are materialized and then counted.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.uses RangeQuery
+ * 
+ * @param <O> Object type
+ */
+public class RangeQueryCountAdapter<O> implements RangeCountQuery<O> {
+  /**
+   * Range query to use.
+   */
+  private final RangeQuery<O> rangeQuery;
+
+  /**
+   * Constructor.
+   * 
+   * @param rangeQuery Range query to use
+   */
+  public RangeQueryCountAdapter(RangeQuery<O> rangeQuery) {
+    super();
+    this.rangeQuery = rangeQuery;
+  }
+
+  @Override
+  public int getRangeCountForDBID(DBIDRef id, double range, int max) {
+    return Math.min(rangeQuery.getRangeForDBID(id, range).size(), max);
+  }
+
+  @Override
+  public int getRangeCountForObject(O obj, double range, int max) {
+    return Math.min(rangeQuery.getRangeForObject(obj, range).size(), max);
+  }
+}
@@ -0,0 +1,596 @@
+package de.lmu.ifi.dbs.elki.database.relation;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.data.AbstractNumberVector;
+import de.lmu.ifi.dbs.elki.data.FeatureVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.StaticDBIDs;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.PackedVectorEuclideanDistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.SpatialPrimitiveDistanceQuery;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.Vector;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arraylike.ArrayAdapter;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arraylike.NumberArrayAdapter;
+import de.lmu.ifi.dbs.elki.utilities.io.ByteBufferSerializer;
+
+/**
+ * Static relation storing dense vectors of a fixed dimensionality in a single
+ * contiguous array (row-major), in double or single precision.
+ *
+ * Objects returned by {@link #get} are lightweight views onto the shared array,
+ * which avoids the per-object header and array of a {@code DoubleVector}.
+ * Performance critical code can access the array more directly using
+ * {@link #getOffset}, {@link #copyRow} and {@link #squaredDistance}.
+ *
+ * Because the views are not instances of the original vector class, the type
+ * information of this relation is a {@link NumberVector} field. New vectors
+ * created with the factory are still of the original type.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has View
+ * @apiviz.uses PackedVectorEuclideanDistanceQuery
+ */
+public class PackedVectorRelation extends AbstractRelation<NumberVector> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(PackedVectorRelation.class);
+
+  /**
+   * Type information.
+   */
+  private final VectorFieldTypeInformation<NumberVector> type;
+
+  /**
+   * The DBIDs this is defined for.
+   */
+  private final StaticDBIDs ids;
+
+  /**
+   * The DBIDs as range, if possible.
+   */
+  private final DBIDRange range;
+
+  /**
+   * Offset map, if the DBIDs are not a range.
+   */
+  private final WritableIntegerDataStore offsets;
+
+  /**
+   * Dimensionality.
+   */
+  private final int dim;
+
+  /**
+   * Data storage, double precision; {@code null} when using floats.
+   */
+  private final double[] ddata;
+
+  /**
+   * Data storage, single precision; {@code null} when using doubles.
+   */
+  private final float[] fdata;
+
+  /**
+   * The relation name.
+   */
+  private String name;
+
+  /**
+   * Constructor.
+   *
+   * @param type Type information of the input data
+   * @param ids Object IDs, in the order of the data
+   * @param data Vector data, must be of fixed dimensionality
+   * @param name Relation name (may be {@code null})
+   * @param useFloat Use single precision storage
+   */
+  public PackedVectorRelation(VectorFieldTypeInformation<? extends NumberVector> type, ArrayDBIDs ids, List<?> data, String name, boolean useFloat) {
+    super();
+    this.dim = type.getDimensionality();
+    this.ids = DBIDUtil.makeUnmodifiable(ids);
+    this.name = name;
+    String[] labels = new String[dim];
+    for(int d = 0; d < dim; d++) {
+      labels[d] = type.getLabel(d);
+    }
+    ViewFactory factory = new ViewFactory(type.getFactory());
+    this.type = new VectorFieldTypeInformation<NumberVector>(factory, dim, labels[0] != null ? labels : null, factory.getDefaultSerializer());
+    final long len = ids.size() * (long) dim;
+    if(!isPackable(ids.size(), dim)) {
+      throw new IllegalArgumentException("Too much data for a single array: " + len);
+    }
+    if(ids instanceof DBIDRange) {
+      this.range = (DBIDRange) ids;
+      this.offsets = null;
+    }
+    else {
+      this.range = null;
+      this.offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_DB | DataStoreFactory.HINT_STATIC, -1);
+      int i = 0;
+      for(DBIDIter it = ids.iter(); it.valid(); it.advance(), i++) {
+        offsets.putInt(it, i);
+      }
+    }
+    this.ddata = useFloat ? null : new double[(int) len];
+    this.fdata = useFloat ? new float[(int) len] : null;
+    int p = 0;
+    for(int i = 0; i < ids.size(); i++) {
+      final NumberVector v = (NumberVector) data.get(i);
+      assert(v.getDimensionality() == dim) : "Vector of unexpected dimensionality.";
+      if(useFloat) {
+        for(int d = 0; d < dim; d++, p++) {
+          fdata[p] = v.floatValue(d);
+        }
+      }
+      else {
+        for(int d = 0; d < dim; d++, p++) {
+          ddata[p] = v.doubleValue(d);
+        }
+      }
+    }
+  }
+
+  /**
+   * Test if a column of the given size can be packed into a single array.
+   *
+   * @param size Number of objects
+   * @param dim Dimensionality
+   * @return {@code true} if the data fits into a single array
+   */
+  public static boolean isPackable(int size, int dim) {
+    return dim > 0 && size * (long) dim <= Integer.MAX_VALUE - 8;
+  }
+
+  /**
+   * Get a relation as packed relation, to use the direct access methods.
+   *
+   * @param relation Relation
+   * @param dim Dimensionality of the vectors to compare with
+   * @return Packed relation, or {@code null} if the relation is not packed or
+   *         of a different dimensionality
+   */
+  public static PackedVectorRelation asPacked(Relation<?> relation, int dim) {
+    if(!(relation instanceof PackedVectorRelation)) {
+      return null;
+    }
+    final PackedVectorRelation packed = (PackedVectorRelation) relation;
+    return packed.dim == dim ? packed : null;
+  }
+
+  @Override
+  public NumberVector get(DBIDRef id) {
+    return new View(getOffset(id));
+  }
+
+  /**
+   * Get the row number of an object.
+   *
+   * @param id Object ID
+   * @return Row number
+   */
+  public int getOffset(DBIDRef id) {
+    return range != null ? range.getOffset(id) : offsets.intValue(id);
+  }
+
+  /**
+   * Get the dimensionality of the vectors.
+   *
+   * @return Dimensionality
+   */
+  public int getDimensionality() {
+    return dim;
+  }
+
+  /**
+   * Test whether the data is stored in single precision.
+   *
+   * @return {@code true} for float storage.
+   */
+  public boolean isFloat() {
+    return fdata != null;
+  }
+
+  /**
+   * Get a single value.
+   *
+   * @param row Row number
+   * @param d Dimension
+   * @return Value
+   */
+  public double doubleValue(int row, int d) {
+    final int p = row * dim + d;
+    return ddata != null ? ddata[p] : fdata[p];
+  }
+
+  /**
+   * Copy a row into an array.
+   *
+   * @param row Row number
+   * @param dst Destination array
+   * @param off Offset in the destination array
+   */
+  public void copyRow(int row, double[] dst, int off) {
+    final int p = row * dim;
+    if(ddata != null) {
+      System.arraycopy(ddata, p, dst, off, dim);
+      return;
+    }
+    for(int d = 0; d < dim; d++) {
+      dst[off + d] = fdata[p + d];
+    }
+  }
+
+  /**
+   * Add a row to an array, e.g. to compute sums.
+   *
+   * @param row Row number
+   * @param dst Destination array, of length dim
+   */
+  public void addRow(int row, double[] dst) {
+    final int p = row * dim;
+    if(ddata != null) {
+      for(int d = 0; d < dim; d++) {
+        dst[d] += ddata[p + d];
+      }
+      return;
+    }
+    for(int d = 0; d < dim; d++) {
+      dst[d] += fdata[p + d];
+    }
+  }
+
+  /**
+   * Add an object to an array, e.g. to compute sums.
+   *
+   * @param id Object ID
+   * @param dst Destination array, of length dim
+   */
+  public void addRow(DBIDRef id, double[] dst) {
+    addRow(getOffset(id), dst);
+  }
+
+  /**
+   * Squared Euclidean distance of two rows.
+   *
+   * @param row1 First row
+   * @param row2 Second row
+   * @return Squared Euclidean distance
+   */
+  public double squaredDistance(int row1, int row2) {
+    final int p1 = row1 * dim, p2 = row2 * dim;
+    double agg = 0.;
+    if(ddata != null) {
+      for(int d = 0; d < dim; d++) {
+        final double delta = ddata[p1 + d] - ddata[p2 + d];
+        agg += delta * delta;
+      }
+      return agg;
+    }
+    for(int d = 0; d < dim; d++) {
+      final double delta = (double) fdata[p1 + d] - (double) fdata[p2 + d];
+      agg += delta * delta;
+    }
+    return agg;
+  }
+
+  /**
+   * Squared Euclidean distance of a row to a vector.
+   *
+   * @param row Row
+   * @param vec Vector, of length dim
+   * @return Squared Euclidean distance
+   */
+  public double squaredDistance(int row, double[] vec) {
+    final int p = row * dim;
+    double agg = 0.;
+    if(ddata != null) {
+      for(int d = 0; d < dim; d++) {
+        final double delta = ddata[p + d] - vec[d];
+        agg += delta * delta;
+      }
+      return agg;
+    }
+    for(int d = 0; d < dim; d++) {
+      final double delta = fdata[p + d] - vec[d];
+      agg += delta * delta;
+    }
+    return agg;
+  }
+
+  /**
+   * Squared Euclidean distance of an object to a vector.
+   *
+   * @param id Object ID
+   * @param vec Vector, of length dim
+   * @return Squared Euclidean distance
+   */
+  public double squaredDistance(DBIDRef id, double[] vec) {
+    return squaredDistance(getOffset(id), vec);
+  }
+
+  @Override
+  public DistanceQuery<NumberVector> getDistanceQuery(DistanceFunction<? super NumberVector> distanceFunction, Object... hints) {
+    DistanceQuery<NumberVector> dq = super.getDistanceQuery(distanceFunction, hints);
+    // Replace the default distance query with one reading the array directly.
+    if(dq != null && dq.getClass() == SpatialPrimitiveDistanceQuery.class) {
+      if(SquaredEuclideanDistanceFunction.STATIC.equals(distanceFunction)) {
+        return new PackedVectorEuclideanDistanceQuery(this, SquaredEuclideanDistanceFunction.STATIC, true);
+      }
+      if(EuclideanDistanceFunction.STATIC.equals(distanceFunction)) {
+        return new PackedVectorEuclideanDistanceQuery(this, EuclideanDistanceFunction.STATIC, false);
+      }
+    }
+    return dq;
+  }
+
+  @Override
+  public SimpleTypeInformation<NumberVector> getDataTypeInformation() {
+    return type;
+  }
+
+  @Override
+  public StaticDBIDs getDBIDs() {
+    return ids;
+  }
+
+  @Override
+  public DBIDIter iterDBIDs() {
+    return ids.iter();
+  }
+
+  /**
+   * Get an array iterator, where the offset equals the row number.
+   *
+   * @return Iterator
+   */
+  public DBIDArrayIter iterRows() {
+    return DBIDUtil.ensureArray(ids).iter();
+  }
+
+  @Override
+  public int size() {
+    return ids.size();
+  }
+
+  @Override
+  public String getLongName() {
+    return (name != null) ? name : type.toString();
+  }
+
+  @Override
+  public String getShortName() {
+    return "relation";
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Lightweight view onto a row of the packed array.
+   *
+   * @author Erich Schubert
+   */
+  protected class View extends AbstractNumberVector {
+    /**
+     * Row number.
+     */
+    private final int row;
+
+    /**
+     * Constructor.
+     *
+     * @param row Row number
+     */
+    protected View(int row) {
+      super();
+      this.row = row;
+    }
+
+    @Override
+    public int getDimensionality() {
+      return dim;
+    }
+
+    @Override
+    public double doubleValue(int dimension) {
+      return ddata != null ? ddata[row * dim + dimension] : fdata[row * dim + dimension];
+    }
+
+    @Override
+    public float floatValue(int dimension) {
+      return ddata != null ? (float) ddata[row * dim + dimension] : fdata[row * dim + dimension];
+    }
+
+    @Override
+    public long longValue(int dimension) {
+      return (long) doubleValue(dimension);
+    }
+
+    @Deprecated
+    @Override
+    public Double getValue(int dimension) {
+      return Double.valueOf(doubleValue(dimension));
+    }
+
+    @Override
+    public Vector getColumnVector() {
+      double[] copy = new double[dim];
+      copyRow(row, copy, 0);
+      return new Vector(copy);
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder featureLine = new StringBuilder();
+      for(int i = 0; i < dim; i++) {
+        featureLine.append(doubleValue(i));
+        if(i + 1 < dim) {
+          featureLine.append(ATTRIBUTE_SEPARATOR);
+        }
+      }
+      return featureLine.toString();
+    }
+  }
+
+  /**
+   * Factory for the type information, creating vectors of the original type.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private static class ViewFactory implements NumberVector.Factory<NumberVector> {
+    /**
+     * Factory of the original vector type.
+     */
+    private final NumberVector.Factory<?> inner;
+
+    /**
+     * Serializer, converting to the original vector type.
+     */
+    private final ByteBufferSerializer<NumberVector> serializer;
+
+    /**
+     * Constructor.
+     *
+     * @param inner Factory of the original vector type
+     */
+    ViewFactory(FeatureVector.Factory<?, ?> inner) {
+      this.inner = (NumberVector.Factory<?>) inner;
+      this.serializer = ViewSerializer.make(this.inner);
+    }
+
+    @Override
+    public <A> NumberVector newFeatureVector(A array, ArrayAdapter<? extends Number, A> adapter) {
+      return inner.newFeatureVector(array, adapter);
+    }
+
+    @Override
+    public NumberVector newNumberVector(double[] values) {
+      return inner.newNumberVector(values);
+    }
+
+    @Override
+    public NumberVector newNumberVector(NumberVector values) {
+      return inner.newNumberVector(values);
+    }
+
+    @Override
+    public <A> NumberVector newNumberVector(A array, NumberArrayAdapter<?, ? super A> adapter) {
+      return inner.newNumberVector(array, adapter);
+    }
+
+    @Override
+    public ByteBufferSerializer<NumberVector> getDefaultSerializer() {
+      return serializer;
+    }
+
+    @Override
+    public Class<? super NumberVector> getRestrictionClass() {
+      return NumberVector.class;
+    }
+  }
+
+  /**
+   * Serializer for views, converting them to the original vector type.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <V> Original vector type
+   */
+  private static class ViewSerializer<V extends NumberVector> implements ByteBufferSerializer<NumberVector> {
+    /**
+     * Factory of the original vector type.
+     */
+    private final NumberVector.Factory<V> factory;
+
+    /**
+     * Serializer of the original vector type.
+     */
+    private final ByteBufferSerializer<V> inner;
+
+    /**
+     * Constructor.
+     *
+     * @param factory Factory of the original vector type
+     * @param inner Serializer of the original vector type
+     */
+    ViewSerializer(NumberVector.Factory<V> factory, ByteBufferSerializer<V> inner) {
+      this.factory = factory;
+      this.inner = inner;
+    }
+
+    /**
+     * Wrap the default serializer of a vector factory.
+     *
+     * @param factory Factory of the original vector type
+     * @return Serializer, or {@code null} if the original type has none
+     */
+    static <V extends NumberVector> ByteBufferSerializer<NumberVector> make(NumberVector.Factory<V> factory) {
+      ByteBufferSerializer<V> inner = factory.getDefaultSerializer();
+      return inner != null ? new ViewSerializer<>(factory, inner) : null;
+    }
+
+    @Override
+    public NumberVector fromByteBuffer(ByteBuffer buffer) throws IOException, UnsupportedOperationException {
+      return inner.fromByteBuffer(buffer);
+    }
+
+    @Override
+    public void toByteBuffer(ByteBuffer buffer, NumberVector object) throws IOException, UnsupportedOperationException {
+      inner.toByteBuffer(buffer, factory.newNumberVector(object));
+    }
+
+    @Override
+    public int getByteSize(NumberVector object) throws IOException, UnsupportedOperationException {
+      return inner.getByteSize(factory.newNumberVector(object));
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.data.FloatVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.utilities.Alias;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+
+/**
+ * Squared Euclidean distance, computed in single precision for pairs of {@link FloatVector}s.
+ *
+ * This trades some accuracy for speed when the data is stored as floats. For
+ * all other vector types, the regular double precision computation is used.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.uses FloatVector
+ */
+@Alias({ "floatsquaredeuclidean" })
+public class FloatSquaredEuclideanDistanceFunction extends SquaredEuclideanDistanceFunction {
+  /**
+   * Static instance. Use this!
+   */
+  public static final FloatSquaredEuclideanDistanceFunction STATIC = new FloatSquaredEuclideanDistanceFunction();
+
+  /**
+   * Constructor - use {@link #STATIC} instead.
+   *
+   * @deprecated Use static instance!
+   */
+  @Deprecated
+  public FloatSquaredEuclideanDistanceFunction() {
+    super();
+  }
+
+  @Override
+  public double distance(NumberVector v1, NumberVector v2) {
+    if(v1 instanceof FloatVector && v2 instanceof FloatVector) {
+      final FloatVector f1 = (FloatVector) v1, f2 = (FloatVector) v2;
+      final int dim = f1.getDimensionality();
+      if(dim == f2.getDimensionality()) {
+        float agg = 0.f;
+        for(int d = 0; d < dim; d++) {
+          final float delta = f1.floatValue(d) - f2.floatValue(d);
+          agg += delta * delta;
+        }
+        return agg;
+      }
+    }
+    return super.distance(v1, v2);
+  }
+
+  @Override
+  public double norm(NumberVector v) {
+    if(v instanceof FloatVector) {
+      final FloatVector f = (FloatVector) v;
+      final int dim = f.getDimensionality();
+      float agg = 0.f;
+      for(int d = 0; d < dim; d++) {
+        final float x = f.floatValue(d);
+        agg += x * x;
+      }
+      return agg;
+    }
+    return super.norm(v);
+  }
+
+  @Override
+  public String toString() {
+    return "FloatSquaredEuclideanDistance";
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj != null && this.getClass().equals(obj.getClass());
+  }
+
+  @Override
+  public int hashCode() {
+    return getClass().hashCode();
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  public static class Parameterizer extends AbstractParameterizer {
+    @Override
+    protected FloatSquaredEuclideanDistanceFunction makeInstance() {
+      return FloatSquaredEuclideanDistanceFunction.STATIC;
+    }
+  }
+}
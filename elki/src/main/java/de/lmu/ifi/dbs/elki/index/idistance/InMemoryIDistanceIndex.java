@@ -23,15 +23,20 @@ package de.lmu.ifi.dbs.elki.index.idistance;
  along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.KMedoidsInitialization;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.HashSetModifiableDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
 import de.lmu.ifi.dbs.elki.database.ids.KNNList;
 import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
@@ -41,6 +46,7 @@ import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.index.AbstractRefiningIndex;
+import de.lmu.ifi.dbs.elki.index.DynamicIndex;
 import de.lmu.ifi.dbs.elki.index.IndexFactory;
 import de.lmu.ifi.dbs.elki.index.KNNIndex;
 import de.lmu.ifi.dbs.elki.index.RangeIndex;
@@ -72,6 +78,11 @@ import de.lmu.ifi.dbs.elki.utilities.pairs.DoubleIntPair;
  * essentially here, you only need to query every reference point list, not just
  * the best.
  * 
+ * Dynamic updates are supported without rebuilding the index: new objects are
+ * collected in a small unsorted buffer per reference point, which is merged
+ * into the sorted list once it grows too large. Deleted objects are marked
+ * with a tombstone, and removed from the sorted lists in the next merge.
+ * 
  * Reference:
  * <p>
  * C. Yu, B. C. Ooi, K. L. Tan, H. V. Jagadish<br />
@@ -91,12 +102,17 @@ import de.lmu.ifi.dbs.elki.utilities.pairs.DoubleIntPair;
  * @param <O> Object type
  */
 @Reference(authors = "C. Yu, B. C. Ooi, K. L. Tan, H. V. Jagadish", title = "Indexing the distance: An efficient method to knn processing", booktitle = "In Proceedings of the 27th International Conference on Very Large Data Bases", url = "http://www.vldb.org/conf/2001/P421.pdf")
-public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implements RangeIndex<O>, KNNIndex<O> {
+public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implements RangeIndex<O>, KNNIndex<O>, DynamicIndex {
   /**
    * Class logger.
    */
   private static final Logging LOG = Logging.getLogger(InMemoryIDistanceIndex.class);
 
+  /**
+   * Minimum size of the insertion buffers and tombstone counts before merging.
+   */
+  private static final int MIN_MERGE_SIZE = 32;
+
   /**
    * Distance query.
    */
@@ -113,15 +129,31 @@ public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implemen
   private int numref;
 
   /**
-   * Reference points.
+   * Reference points. We keep the objects, as they may be deleted from the
+   * relation later.
    */
-  private ArrayDBIDs referencepoints;
+  private List<O> referencepoints;
 
   /**
    * The actual index.
    */
   private ModifiableDoubleDBIDList[] index;
 
+  /**
+   * Recently inserted objects, not yet merged into the sorted index.
+   */
+  private ModifiableDoubleDBIDList[] pending;
+
+  /**
+   * Deleted objects still contained in the sorted index.
+   */
+  private HashSetModifiableDBIDs tombstones;
+
+  /**
+   * Number of tombstones in each sorted list.
+   */
+  private int[] numtombstones;
+
   /**
    * Second reference, for documentation generation.
    */
@@ -150,14 +182,25 @@ public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implemen
 
   @Override
   public void initialize() {
-    referencepoints = DBIDUtil.ensureArray(initialization.chooseInitialMedoids(numref, relation.getDBIDs(), distanceQuery));
-    final int k = referencepoints.size(); // should be the same k anyway.
+    if(relation.size() == 0) {
+      return; // No reference points yet, build on the first insertion.
+    }
+    ArrayDBIDs refids = DBIDUtil.ensureArray(initialization.chooseInitialMedoids(numref, relation.getDBIDs(), distanceQuery));
+    final int k = refids.size(); // should be the same k anyway.
+    referencepoints = new ArrayList<>(k);
     index = new ModifiableDoubleDBIDList[k];
+    pending = new ModifiableDoubleDBIDList[k];
+    numtombstones = new int[k];
+    tombstones = DBIDUtil.newHashSet();
     for(int i = 0; i < k; i++) {
       index[i] = DBIDUtil.newDistanceDBIDList(relation.size() / (2 * k));
+      pending[i] = DBIDUtil.newDistanceDBIDList();
     }
     // TODO: add optimized codepath for primitive distances.
-    DBIDArrayIter riter = referencepoints.iter();
+    DBIDArrayIter riter = refids.iter();
+    for(; riter.valid(); riter.advance()) {
+      referencepoints.add(relation.get(riter));
+    }
     for(DBIDIter oiter = relation.iterDBIDs(); oiter.valid(); oiter.advance()) {
       double bestd = Double.POSITIVE_INFINITY;
       int besti = -1;
@@ -178,6 +221,154 @@ public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implemen
     }
   }
 
+  @Override
+  public void insert(DBIDRef id) {
+    if(index == null) {
+      initialize();
+      return;
+    }
+    if(tombstones.contains(id)) {
+      // A reused DBID must not resurrect the stale entry.
+      for(int i = 0; i < index.length; i++) {
+        merge(i);
+      }
+    }
+    final O obj = relation.get(id);
+    double bestd = Double.POSITIVE_INFINITY;
+    int besti = -1;
+    for(int i = 0; i < referencepoints.size(); i++) {
+      double dist = distanceQuery.distance(obj, referencepoints.get(i));
+      if(dist < bestd) {
+        bestd = dist;
+        besti = i;
+      }
+    }
+    pending[besti].add(bestd, id);
+    if(pending[besti].size() > mergeThreshold(besti)) {
+      merge(besti);
+    }
+  }
+
+  @Override
+  public void insertAll(DBIDs ids) {
+    if(index == null) {
+      initialize(); // Indexes all objects, including the new ones.
+      return;
+    }
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      insert(iter);
+    }
+  }
+
+  @Override
+  public boolean delete(DBIDRef id) {
+    if(index == null) {
+      return true; // Not yet built, objects are not stored.
+    }
+    final O obj = relation.get(id);
+    final DoubleIntPair[] priority = rankReferencePoints(distanceQuery, obj, referencepoints);
+    for(DoubleIntPair pair : priority) {
+      // Objects are assigned to the closest reference point (or a tie).
+      if(pair.first > priority[0].first) {
+        break;
+      }
+      final int i = pair.second;
+      // Recent insertions can be removed immediately.
+      for(DoubleDBIDListIter iter = pending[i].iter(); iter.valid(); iter.advance()) {
+        if(DBIDUtil.equal(iter, id)) {
+          pending[i].removeSwap(iter.getOffset());
+          return true;
+        }
+      }
+      // Objects in the sorted list are marked as deleted.
+      if(contains(index[i], pair.first, id) && tombstones.add(id)) {
+        if(++numtombstones[i] > mergeThreshold(i)) {
+          merge(i);
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void deleteAll(DBIDs ids) {
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      delete(iter);
+    }
+  }
+
+  /**
+   * Maximum number of pending insertions or tombstones of a list before
+   * merging.
+   * 
+   * @param i List number
+   * @return Threshold
+   */
+  private int mergeThreshold(int i) {
+    return Math.max(MIN_MERGE_SIZE, index[i].size() >>> 4);
+  }
+
+  /**
+   * Test whether an object in the sorted lists was deleted.
+   * 
+   * @param id Object
+   * @return {@code true} when deleted
+   */
+  private boolean isDeleted(DBIDRef id) {
+    return !tombstones.isEmpty() && tombstones.contains(id);
+  }
+
+  /**
+   * Test whether a sorted list contains the given object.
+   * 
+   * @param list Sorted list
+   * @param dist Distance of the object to the reference point
+   * @param id Object
+   * @return {@code true} when contained
+   */
+  private static boolean contains(ModifiableDoubleDBIDList list, double dist, DBIDRef id) {
+    if(list.size() == 0) {
+      return false;
+    }
+    DoubleDBIDListIter iter = list.iter();
+    binarySearch(list, iter, dist);
+    final int start = iter.getOffset();
+    for(; iter.valid() && iter.doubleValue() >= dist; iter.retract()) {
+      if(DBIDUtil.equal(iter, id)) {
+        return true;
+      }
+    }
+    for(iter.seek(start + 1); iter.valid() && iter.doubleValue() <= dist; iter.advance()) {
+      if(DBIDUtil.equal(iter, id)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Merge the insertion buffer into a sorted list, and remove tombstones.
+   * 
+   * @param i List number
+   */
+  private void merge(int i) {
+    final ModifiableDoubleDBIDList list = index[i], buffer = pending[i];
+    buffer.sort();
+    ModifiableDoubleDBIDList merged = DBIDUtil.newDistanceDBIDList(list.size() + buffer.size() - numtombstones[i]);
+    DoubleDBIDListIter a = list.iter(), b = buffer.iter();
+    while(a.valid() || b.valid()) {
+      final DoubleDBIDListIter next = !b.valid() || (a.valid() && a.doubleValue() <= b.doubleValue()) ? a : b;
+      if(next == b || !tombstones.remove(next)) {
+        merged.add(next.doubleValue(), next);
+      }
+      next.advance();
+    }
+    index[i] = merged;
+    buffer.clear();
+    numtombstones[i] = 0;
+  }
+
   @Override
   public KNNQuery<O> getKNNQuery(DistanceQuery<O> distanceQuery, Object... hints) {
     // Query on the relation we index
@@ -237,9 +428,12 @@ public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implemen
   @Override
   public void logStatistics() {
     super.logStatistics();
+    if(index == null) {
+      return;
+    }
     MeanVarianceMinMax mm = new MeanVarianceMinMax();
     for(int i = 0; i < index.length; i++) {
-      mm.put(index[i].size());
+      mm.put(index[i].size() + pending[i].size() - numtombstones[i]);
     }
     LOG.statistics(new LongStatistic(InMemoryIDistanceIndex.class.getName() + ".size.min", (int) mm.getMin()));
     LOG.statistics(new DoubleStatistic(InMemoryIDistanceIndex.class.getName() + ".size.mean", mm.getMean()));
@@ -251,15 +445,14 @@ public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implemen
    * 
    * @param distanceQuery Distance query
    * @param obj Query object
-   * @param referencepoints Iterator for reference points
+   * @param referencepoints Reference points
    * @return Sorted array.
    */
-  protected static <O> DoubleIntPair[] rankReferencePoints(DistanceQuery<O> distanceQuery, O obj, ArrayDBIDs referencepoints) {
+  protected static <O> DoubleIntPair[] rankReferencePoints(DistanceQuery<O> distanceQuery, O obj, List<O> referencepoints) {
     DoubleIntPair[] priority = new DoubleIntPair[referencepoints.size()];
     // Compute distances to reference points.
-    for(DBIDArrayIter iter = referencepoints.iter(); iter.valid(); iter.advance()) {
-      final int i = iter.getOffset();
-      final double dist = distanceQuery.distance(obj, iter);
+    for(int i = 0; i < priority.length; i++) {
+      final double dist = distanceQuery.distance(obj, referencepoints.get(i));
       priority[i] = new DoubleIntPair(dist, i);
     }
     Arrays.sort(priority);
@@ -315,9 +508,15 @@ public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implemen
 
     @Override
     public KNNList getKNNForObject(O obj, int k) {
+      KNNHeap heap = DBIDUtil.newHeap(k);
+      if(index == null) {
+        for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+          heap.insert(refine(iter, obj), iter);
+        }
+        return heap.toKNNList();
+      }
       DoubleIntPair[] priority = rankReferencePoints(distanceQuery, obj, referencepoints);
       // Approximate kNN search. We do not check _every_ list.
-      KNNHeap heap = DBIDUtil.newHeap(k);
 
       for(DoubleIntPair pair : priority) {
         final ModifiableDoubleDBIDList nindex = index[pair.second];
@@ -345,26 +544,40 @@ public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implemen
           }
           // Careful: NaN handling: not NaN and not worse than fwd (may be NaN).
           if(lbfwd <= kdist && !(lbfwd > lbbwd)) {
-            final double dist = refine(ifwd, obj);
-            if(dist <= kdist) {
-              heap.insert(dist, ifwd);
-              kdist = heap.getKNNDistance();
+            if(!isDeleted(ifwd)) {
+              final double dist = refine(ifwd, obj);
+              if(dist <= kdist) {
+                heap.insert(dist, ifwd);
+                kdist = heap.getKNNDistance();
+              }
             }
             // Advance iterator:
             ifwd.advance();
             lbfwd = ifwd.valid() ? Math.abs(ifwd.doubleValue() - refd) : Double.NaN;
           }
           if(lbbwd <= kdist && !(lbbwd > lbfwd)) {
-            final double dist = refine(ibwd, obj);
-            if(dist <= kdist) {
-              heap.insert(dist, ibwd);
-              kdist = heap.getKNNDistance();
+            if(!isDeleted(ibwd)) {
+              final double dist = refine(ibwd, obj);
+              if(dist <= kdist) {
+                heap.insert(dist, ibwd);
+                kdist = heap.getKNNDistance();
+              }
             }
             // Retract iterator:
             ibwd.retract();
             lbbwd = ibwd.valid() ? Math.abs(ibwd.doubleValue() - refd) : Double.NaN;
           }
         }
+        // Recently inserted objects, not yet sorted:
+        for(DoubleDBIDListIter iter = pending[pair.second].iter(); iter.valid(); iter.advance()) {
+          if(Math.abs(iter.doubleValue() - refd) <= kdist) {
+            final double dist = refine(iter, obj);
+            if(dist <= kdist) {
+              heap.insert(dist, iter);
+              kdist = heap.getKNNDistance();
+            }
+          }
+        }
       }
 
       return heap.toKNNList();
@@ -390,6 +603,15 @@ public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implemen
 
     @Override
     public void getRangeForObject(O obj, double range, ModifiableDoubleDBIDList result) {
+      if(index == null) {
+        for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+          final double dist = refine(iter, obj);
+          if(dist <= range) {
+            result.add(dist, iter);
+          }
+        }
+        return;
+      }
       DoubleIntPair[] priority = rankReferencePoints(distanceQuery, obj, referencepoints);
       for(DoubleIntPair pair : priority) {
         final ModifiableDoubleDBIDList nindex = index[pair.second];
@@ -415,24 +637,37 @@ public class InMemoryIDistanceIndex<O> extends AbstractRefiningIndex<O> implemen
           }
           // Careful: NaN handling: not NaN and not worse than fwd (may be NaN).
           if(lbfwd <= range && !(lbfwd > lbbwd)) {
-            final double dist = refine(ifwd, obj);
-            if(dist <= range) {
-              result.add(dist, ifwd);
+            if(!isDeleted(ifwd)) {
+              final double dist = refine(ifwd, obj);
+              if(dist <= range) {
+                result.add(dist, ifwd);
+              }
             }
             // Advance iterator:
             ifwd.advance();
             lbfwd = ifwd.valid() ? Math.abs(ifwd.doubleValue() - refd) : Double.NaN;
           }
           if(lbbwd <= range && !(lbbwd > lbfwd)) {
-            final double dist = refine(ibwd, obj);
-            if(dist <= range) {
-              result.add(dist, ibwd);
+            if(!isDeleted(ibwd)) {
+              final double dist = refine(ibwd, obj);
+              if(dist <= range) {
+                result.add(dist, ibwd);
+              }
             }
             // Retract iterator:
             ibwd.retract();
             lbbwd = ibwd.valid() ? Math.abs(ibwd.doubleValue() - refd) : Double.NaN;
           }
         }
+        // Recently inserted objects, not yet sorted:
+        for(DoubleDBIDListIter iter = pending[pair.second].iter(); iter.valid(); iter.advance()) {
+          if(Math.abs(iter.doubleValue() - refd) <= range) {
+            final double dist = refine(iter, obj);
+            if(dist <= range) {
+              result.add(dist, iter);
+            }
+          }
+        }
       }
     }
   }
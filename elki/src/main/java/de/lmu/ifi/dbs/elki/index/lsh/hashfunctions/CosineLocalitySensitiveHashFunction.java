@@ -38,13 +38,17 @@ import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
  * Proc. 34th ACM Symposium on Theory of computing, STOC'02
  * </p>
  *
+ * Multi-probe queries flip the bits of the hyperplanes closest to the query.
+ *
  * @author Evgeniy Faerman
+ *
+ * @apiviz.uses ProbeSequence
  */
 @Reference(authors = "M.S. Charikar", //
 title = "Similarity estimation techniques from rounding algorithms", //
 booktitle = "Proc. 34th ACM Symposium on Theory of computing, STOC'02", //
 url = "https://dx.doi.org/10.1145/509907.509965")
-public class CosineLocalitySensitiveHashFunction implements LocalitySensitiveHashFunction<NumberVector> {
+public class CosineLocalitySensitiveHashFunction implements MultiProbeHashFunction<NumberVector> {
   /**
    * Projection function.
    */
@@ -83,6 +87,31 @@ public class CosineLocalitySensitiveHashFunction implements LocalitySensitiveHas
     return hashValue;
   }
 
+  @Override
+  public int hashObjectProbes(NumberVector obj, double[] buf, int[] hashes) {
+    hashes[0] = hashObject(obj, buf);
+    if(hashes.length == 1) {
+      return 1;
+    }
+    ProbeSequence probes = new ProbeSequence(buf.length);
+    for(int i = 0; i < buf.length; i++) {
+      probes.add(buf[i] * buf[i], i, 1);
+    }
+    int n = 1;
+    for(; n < hashes.length; n++) {
+      final int[] set = probes.next();
+      if(set == null) {
+        break;
+      }
+      int hashValue = hashes[0];
+      for(int j : set) {
+        hashValue ^= 1 << probes.dim[j];
+      }
+      hashes[n] = hashValue;
+    }
+    return n;
+  }
+
   @Override
   public int getNumberOfProjections() {
     return projection.getOutputDimensionality();
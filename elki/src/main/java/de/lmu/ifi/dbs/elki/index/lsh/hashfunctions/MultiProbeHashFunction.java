@@ -0,0 +1,45 @@
+package de.lmu.ifi.dbs.elki.index.lsh.hashfunctions;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Hash functions that can also produce the hash codes of neighboring buckets,
+ * for multi-probe LSH.
+ *
+ * @author Erich Schubert
+ *
+ * @param <V> Data type to hash.
+ */
+public interface MultiProbeHashFunction<V> extends LocalitySensitiveHashFunction<V> {
+  /**
+   * Compute the hash value of an object, followed by the hash values of the
+   * buckets most likely to contain near neighbors, in probing order.
+   *
+   * @param obj Object to hash
+   * @param buf Buffer, sized according to the number of projections.
+   * @param hashes Output array, its length is the maximum number of probes.
+   * @return Number of hash values produced, at least 1.
+   */
+  int hashObjectProbes(V obj, double[] buf, int[] hashes);
+}
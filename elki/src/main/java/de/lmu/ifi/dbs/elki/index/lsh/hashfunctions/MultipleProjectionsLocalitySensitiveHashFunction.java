@@ -40,13 +40,18 @@ import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
  * Proc. 20th annual symposium on Computational geometry<br />
  * </p>
  *
+ * Multi-probe queries perturb the slot of a projection by one, preferring the
+ * projections where the query is closest to the slot boundary.
+ *
  * @author Erich Schubert
+ *
+ * @apiviz.uses ProbeSequence
  */
 @Reference(authors = "M. Datar and N. Immorlica and P. Indyk and V. S. Mirrokni", //
 title = "Locality-sensitive hashing scheme based on p-stable distributions", //
 booktitle = "Proc. 20th annual symposium on Computational geometry", //
 url = "http://dx.doi.org/10.1145/997817.997857")
-public class MultipleProjectionsLocalitySensitiveHashFunction implements LocalitySensitiveHashFunction<NumberVector> {
+public class MultipleProjectionsLocalitySensitiveHashFunction implements MultiProbeHashFunction<NumberVector> {
   /**
    * Projection matrix.
    */
@@ -120,6 +125,37 @@ public class MultipleProjectionsLocalitySensitiveHashFunction implements Localit
     return fastModPrime(t1sum);
   }
 
+  @Override
+  public int hashObjectProbes(NumberVector vec, double[] buf, int[] hashes) {
+    // Project the vector:
+    projection.project(vec, buf);
+    ProbeSequence probes = hashes.length > 1 ? new ProbeSequence(shift.length << 1) : null;
+    long t1sum = 0L;
+    for(int i = 0; i < shift.length; i++) {
+      final double x = (buf[i] + shift[i]) * iwidth, f = Math.floor(x);
+      t1sum += (randoms1[i] & MASK32) * (int) f; // unsigned math!
+      if(probes != null) {
+        final double frac = x - f;
+        probes.add(frac * frac, i, -1);
+        probes.add((1 - frac) * (1 - frac), i, +1);
+      }
+    }
+    hashes[0] = fastModPrime(t1sum);
+    int n = 1;
+    for(; n < hashes.length; n++) {
+      final int[] set = probes.next();
+      if(set == null) {
+        break;
+      }
+      long t = t1sum;
+      for(int j : set) {
+        t += (randoms1[probes.dim[j]] & MASK32) * probes.delta[j];
+      }
+      hashes[n] = fastModPrime(t);
+    }
+    return n;
+  }
+
   /**
    * Fast modulo operation for the largest unsigned integer prime.
    *
@@ -0,0 +1,160 @@
+package de.lmu.ifi.dbs.elki.index.lsh.hashfunctions;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleObjectMinHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+
+/**
+ * Query-directed probing sequence for multi-probe LSH.
+ *
+ * Each perturbation moves the query in one projection to a neighboring slot,
+ * and is scored by the squared distance of the query to that slot boundary.
+ * Sets of perturbations are generated in increasing order of their total
+ * score using the "shift" and "expand" operations on a heap.
+ *
+ * Reference:
+ * <p>
+ * Q. Lv, W. Josephson, Z. Wang, M. Charikar, K. Li<br />
+ * Multi-probe LSH: efficient indexing for high-dimensional similarity
+ * search<br />
+ * Proc. 33rd Int. Conf. on Very Large Data Bases (VLDB 2007)
+ * </p>
+ *
+ * @author Erich Schubert
+ */
+@Reference(authors = "Q. Lv, W. Josephson, Z. Wang, M. Charikar, K. Li", //
+title = "Multi-probe LSH: efficient indexing for high-dimensional similarity search", //
+booktitle = "Proc. 33rd Int. Conf. on Very Large Data Bases (VLDB 2007)", //
+url = "http://www.vldb.org/conf/2007/papers/research/p950-lv.pdf")
+class ProbeSequence {
+  /**
+   * Perturbation scores.
+   */
+  double[] score;
+
+  /**
+   * Perturbed projection.
+   */
+  int[] dim;
+
+  /**
+   * Perturbation direction.
+   */
+  int[] delta;
+
+  /**
+   * Number of perturbations.
+   */
+  int size = 0;
+
+  /**
+   * Heap of perturbation sets, each sorted ascending.
+   */
+  private DoubleObjectMinHeap<int[]> heap;
+
+  /**
+   * Constructor.
+   *
+   * @param capacity Maximum number of perturbations.
+   */
+  ProbeSequence(int capacity) {
+    super();
+    score = new double[capacity];
+    dim = new int[capacity];
+    delta = new int[capacity];
+  }
+
+  /**
+   * Add a single perturbation.
+   *
+   * @param s Score
+   * @param d Projection
+   * @param dir Direction
+   */
+  void add(double s, int d, int dir) {
+    // Insertion sort, the number of projections is small.
+    int i = size++;
+    for(; i > 0 && score[i - 1] > s; i--) {
+      score[i] = score[i - 1];
+      dim[i] = dim[i - 1];
+      delta[i] = delta[i - 1];
+    }
+    score[i] = s;
+    dim[i] = d;
+    delta[i] = dir;
+  }
+
+  /**
+   * Get the next perturbation set.
+   *
+   * @return Indexes of the perturbations, or {@code null} if exhausted.
+   */
+  int[] next() {
+    if(heap == null) {
+      heap = new DoubleObjectMinHeap<>();
+      if(size > 0) {
+        heap.add(score[0], new int[] { 0 });
+      }
+    }
+    while(!heap.isEmpty()) {
+      final double s = heap.peekKey();
+      final int[] set = heap.peekValue();
+      heap.poll();
+      final int last = set[set.length - 1];
+      if(last + 1 < size) {
+        // Shift: replace the last perturbation with the next one.
+        int[] shift = set.clone();
+        shift[set.length - 1] = last + 1;
+        heap.add(s - score[last] + score[last + 1], shift);
+        // Expand: add the next perturbation.
+        int[] expand = new int[set.length + 1];
+        System.arraycopy(set, 0, expand, 0, set.length);
+        expand[set.length] = last + 1;
+        heap.add(s + score[last + 1], expand);
+      }
+      if(isValid(set)) {
+        return set;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * A set is valid, if it perturbs every projection at most once.
+   *
+   * @param set Perturbation set
+   * @return {@code true} when valid
+   */
+  private boolean isValid(int[] set) {
+    for(int i = 1; i < set.length; i++) {
+      for(int j = 0; j < i; j++) {
+        if(dim[set[i]] == dim[set[j]]) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+}
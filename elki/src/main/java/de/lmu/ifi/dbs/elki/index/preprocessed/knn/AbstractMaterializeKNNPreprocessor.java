@@ -26,7 +26,10 @@ package de.lmu.ifi.dbs.elki.index.preprocessed.knn;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.memory.ArrayKNNStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.KNNList;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
@@ -122,9 +125,18 @@ public abstract class AbstractMaterializeKNNPreprocessor<O> extends AbstractPrep
 
   /**
    * Create the default storage.
+   * 
+   * For static ranges of DBIDs, the kNN lists are stored in flat arrays to
+   * avoid millions of small objects. The lists obtained from this storage are
+   * only valid until the neighbors of the same object are updated.
    */
-  void createStorage() {
-    storage = DataStoreUtil.makeStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT, KNNList.class);
+  protected void createStorage() {
+    DBIDs ids = relation.getDBIDs();
+    if(ids instanceof DBIDRange && ids.size() * (long) k <= ArrayKNNStore.MAX_SLOTS) {
+      storage = new ArrayKNNStore(ids.size(), (DBIDRange) ids, k);
+      return;
+    }
+    storage = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_HOT, KNNList.class);
   }
 
   @Override
@@ -0,0 +1,186 @@
+package de.lmu.ifi.dbs.elki.index.preprocessed.knn;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.SpatialPrimitiveDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.kd.KDTreeKNNJoin;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.kd.MinimalisticMemoryKDTree;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.kd.SmallMemoryKDTree;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.Duration;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * Materialize the kNN of all objects with a dual-tree join on an in-memory
+ * k-d-tree, instead of running one query per object.
+ *
+ * The tree is only built for the join and discarded afterwards.
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.uses SmallMemoryKDTree
+ * @apiviz.uses KDTreeKNNJoin
+ *
+ * @param <O> Vector type
+ */
+@Title("k-d-tree kNN join preprocessor")
+@Description("Materializes the k nearest neighbors of all objects using a dual-tree traversal of a k-d-tree.")
+public class KDTreeKNNJoinPreprocessor<O extends NumberVector> extends AbstractMaterializeKNNPreprocessor<O> {
+  /**
+   * Logging class.
+   */
+  private static final Logging LOG = Logging.getLogger(KDTreeKNNJoinPreprocessor.class);
+
+  /**
+   * Maximum size of leaf nodes.
+   */
+  private final int leafsize;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Relation to index
+   * @param distanceFunction Distance function
+   * @param k k
+   * @param leafsize Maximum size of leaf nodes
+   */
+  public KDTreeKNNJoinPreprocessor(Relation<O> relation, DistanceFunction<? super O> distanceFunction, int k, int leafsize) {
+    super(relation, distanceFunction, k);
+    this.leafsize = leafsize;
+  }
+
+  @Override
+  protected void preprocess() {
+    if(!(distanceFunction instanceof SpatialPrimitiveDistanceFunction)) {
+      throw new IllegalStateException("Distance Function must be an instance of " + SpatialPrimitiveDistanceFunction.class.getName());
+    }
+    @SuppressWarnings("unchecked")
+    SpatialPrimitiveDistanceFunction<? super O> df = (SpatialPrimitiveDistanceFunction<? super O>) distanceFunction;
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(this.getClass().getName() + ".k", k));
+    }
+    Duration duration = LOG.isStatistics() ? LOG.newDuration(this.getClass().getName() + ".precomputation-time").begin() : null;
+    createStorage();
+    SmallMemoryKDTree<O> tree = new SmallMemoryKDTree<>(relation, leafsize);
+    tree.initialize();
+    tree.getKNNJoin(df).run(k, storage);
+    if(duration != null) {
+      LOG.statistics(duration.end());
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  @Override
+  public String getLongName() {
+    return "k-d-tree knn-join materialized neighbors";
+  }
+
+  @Override
+  public String getShortName() {
+    return "kd-knn-join";
+  }
+
+  @Override
+  public void logStatistics() {
+    // No statistics to log.
+  }
+
+  /**
+   * The parameterizable factory.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.stereotype factory
+   * @apiviz.uses KDTreeKNNJoinPreprocessor oneway - - «create»
+   *
+   * @param <O> The object type
+   */
+  public static class Factory<O extends NumberVector> extends AbstractMaterializeKNNPreprocessor.Factory<O> {
+    /**
+     * Maximum size of leaf nodes.
+     */
+    int leafsize;
+
+    /**
+     * Constructor.
+     *
+     * @param k K
+     * @param distanceFunction distance function
+     * @param leafsize Maximum size of leaf nodes
+     */
+    public Factory(int k, DistanceFunction<? super O> distanceFunction, int leafsize) {
+      super(k, distanceFunction);
+      this.leafsize = leafsize;
+    }
+
+    @Override
+    public KDTreeKNNJoinPreprocessor<O> instantiate(Relation<O> relation) {
+      return new KDTreeKNNJoinPreprocessor<>(relation, distanceFunction, k, leafsize);
+    }
+
+    /**
+     * Parameterization class
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     *
+     * @param <O> Object type
+     */
+    public static class Parameterizer<O extends NumberVector> extends AbstractMaterializeKNNPreprocessor.Factory.Parameterizer<O> {
+      /**
+       * Maximum size of leaf nodes.
+       */
+      int leafsize;
+
+      @Override
+      protected void makeOptions(Parameterization config) {
+        super.makeOptions(config);
+        // Larger leaves than for single queries work better for joins.
+        IntParameter leafP = new IntParameter(MinimalisticMemoryKDTree.Factory.Parameterizer.LEAFSIZE_P, 8) //
+        .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+        if(config.grab(leafP)) {
+          leafsize = leafP.intValue();
+        }
+      }
+
+      @Override
+      protected KDTreeKNNJoinPreprocessor.Factory<O> makeInstance() {
+        return new KDTreeKNNJoinPreprocessor.Factory<>(k, distanceFunction, leafsize);
+      }
+    }
+  }
+}
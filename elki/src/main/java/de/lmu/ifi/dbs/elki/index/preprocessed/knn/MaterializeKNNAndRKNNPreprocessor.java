@@ -96,6 +96,15 @@ public class MaterializeKNNAndRKNNPreprocessor<O> extends MaterializeKNNPreproce
     super(relation, distanceFunction, k);
   }
 
+  /**
+   * Create object storage: removed kNN lists are still used after deletion,
+   * which the flat array storage does not allow.
+   */
+  @Override
+  protected void createStorage() {
+    storage = DataStoreUtil.makeStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT, KNNList.class);
+  }
+
   @Override
   protected void preprocess() {
     createStorage();
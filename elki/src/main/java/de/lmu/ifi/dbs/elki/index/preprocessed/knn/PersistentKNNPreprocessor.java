@@ -0,0 +1,414 @@
+package de.lmu.ifi.dbs.elki.index.preprocessed.knn;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.memory.ArrayKNNStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.Duration;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.Parameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.EmptyParameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.TrackParameters;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.TrackedParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.FileParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Parameter;
+
+/**
+ * kNN preprocessor that stores the materialized neighborhoods in a binary
+ * file, and reloads them in later runs.
+ * <p>
+ * The file is keyed by a fingerprint of the relation (object values in
+ * iteration order), the distance function and its parameters, and k. Neighbors
+ * are stored by their position in the relation, so the file remains valid when
+ * the object ids change between runs. If any of these does not match, or the
+ * file is damaged, the kNN are recomputed and the file is replaced.
+ * <p>
+ * The distance function is described by the parameters it was configured
+ * with. Distance functions whose parameters are not known (e.g., passed as a
+ * pre-configured instance) are not cached, as parameters such as the exponent
+ * of an L<sub>p</sub> norm or a weight vector would otherwise not be part of
+ * the key.
+ * 
+ * @author Erich Schubert
+ * 
+ * @param <O> Object type
+ */
+@Title("Persistent kNN preprocessor")
+@Description("Materializes the k nearest neighbors of objects, and caches them in a file for later runs.")
+public class PersistentKNNPreprocessor<O> extends MaterializeKNNPreprocessor<O> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(PersistentKNNPreprocessor.class);
+
+  /**
+   * File format magic.
+   */
+  public static final int KNN_FILE_MAGIC = 0x4B4E4E31; // "KNN1"
+
+  /**
+   * Cache file.
+   */
+  private File file;
+
+  /**
+   * Description of the distance function and its parameters, may be
+   * {@code null}.
+   */
+  private String distance;
+
+  /**
+   * Constructor.
+   * 
+   * @param relation Relation to preprocess
+   * @param distanceFunction the distance function to use
+   * @param k query k
+   * @param file Cache file
+   * @param distance Description of the distance function and its parameters;
+   *        {@code null} to only cache distance functions without parameters.
+   */
+  public PersistentKNNPreprocessor(Relation<O> relation, DistanceFunction<? super O> distanceFunction, int k, File file, String distance) {
+    super(relation, distanceFunction, k);
+    this.file = file;
+    this.distance = distance != null ? distance : describeParameterless(distanceFunction);
+  }
+
+  @Override
+  protected void preprocess() {
+    if(distance == null) {
+      LOG.warning("The parameters of " + distanceFunction.getClass().getName() + " are not known, the kNN will not be cached.");
+      super.preprocess();
+      return;
+    }
+    final long fingerprint = fingerprint();
+    if(file.exists()) {
+      Duration duration = LOG.isStatistics() ? LOG.newDuration(this.getClass().getName() + ".load-time").begin() : null;
+      try {
+        if(load(fingerprint, distance)) {
+          if(duration != null) {
+            LOG.statistics(duration.end());
+          }
+          return;
+        }
+      }
+      catch(IOException e) {
+        LOG.warning("Could not load kNN file " + file + ": " + e.getMessage());
+      }
+    }
+    super.preprocess();
+    try {
+      save(fingerprint, distance);
+    }
+    catch(IOException e) {
+      LOG.warning("Could not write kNN file " + file + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Compute a fingerprint of the relation.
+   * <p>
+   * For number vectors, all values are included; for other objects their
+   * hash code is used, which may cause the cache to never be reused.
+   * 
+   * @return Fingerprint
+   */
+  protected long fingerprint() {
+    long h = 0xcbf29ce484222325L ^ relation.size();
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+      O obj = relation.get(iter);
+      if(obj instanceof NumberVector) {
+        NumberVector vec = (NumberVector) obj;
+        for(int d = 0, dim = vec.getDimensionality(); d < dim; d++) {
+          h = (h ^ Double.doubleToLongBits(vec.doubleValue(d))) * 0x100000001b3L;
+        }
+      }
+      else {
+        h = (h ^ (obj != null ? obj.hashCode() : 0)) * 0x100000001b3L;
+      }
+    }
+    return h;
+  }
+
+  /**
+   * Describe a distance function by its class name, if it does not have any
+   * parameters.
+   * 
+   * @param distanceFunction Distance function
+   * @return Class name, or {@code null} if the distance function has
+   *         parameters.
+   */
+  protected static String describeParameterless(DistanceFunction<?> distanceFunction) {
+    final Class<?> cls = distanceFunction.getClass();
+    Parameterizer par = ClassGenericsUtil.getParameterizer(cls);
+    if(par != null) {
+      // Track the parameters requested with an empty configuration.
+      TrackParameters track = new TrackParameters(new EmptyParameterization());
+      par.configure(track);
+      if(!track.getAllParameters().isEmpty()) {
+        return null;
+      }
+    }
+    return cls.getName();
+  }
+
+  /**
+   * Load the kNN lists from the file.
+   * 
+   * @param fingerprint Relation fingerprint
+   * @param distance Distance description
+   * @return {@code false} if the file does not match
+   * @throws IOException on I/O errors
+   */
+  private boolean load(long fingerprint, String distance) throws IOException {
+    final int n = relation.size();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+      if(in.readInt() != KNN_FILE_MAGIC || in.readLong() != fingerprint || in.readInt() != k //
+          || !distance.equals(in.readUTF()) || in.readInt() != n) {
+        LOG.verbose("kNN file " + file + " does not match the data, recomputing.");
+        return false;
+      }
+      createStorage();
+      ArrayDBIDs aids = DBIDUtil.ensureArray(relation.getDBIDs());
+      DBIDArrayIter ref = aids.iter();
+      for(DBIDIter iter = aids.iter(); iter.valid(); iter.advance()) {
+        final int size = in.readInt();
+        if(size < 0 || size > n) {
+          throw new IOException("Corrupt kNN file, invalid list size " + size);
+        }
+        int[] ids = new int[size];
+        double[] dists = new double[size];
+        for(int i = 0; i < size; i++) {
+          final int off = in.readInt();
+          if(off < 0 || off >= n) {
+            throw new IOException("Corrupt kNN file, invalid offset " + off);
+          }
+          ids[i] = ref.seek(off).internalGetIndex();
+        }
+        for(int i = 0; i < size; i++) {
+          dists[i] = in.readDouble();
+        }
+        storage.put(iter, new ArrayKNNStore.View(ids, dists, 0, size, k));
+      }
+    }
+    LOG.verbose("Loaded kNN from " + file);
+    return true;
+  }
+
+  /**
+   * Save the kNN lists to the file.
+   * 
+   * @param fingerprint Relation fingerprint
+   * @param distance Distance description
+   * @throws IOException on I/O errors
+   */
+  private void save(long fingerprint, String distance) throws IOException {
+    // Write to a temporary file first, to not leave partial files behind.
+    File tmp = new File(file.getPath() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+      out.writeInt(KNN_FILE_MAGIC);
+      out.writeLong(fingerprint);
+      out.writeInt(k);
+      out.writeUTF(distance);
+      out.writeInt(relation.size());
+      // Map object ids to positions.
+      ArrayDBIDs aids = DBIDUtil.ensureArray(relation.getDBIDs());
+      WritableIntegerDataStore offsets = DataStoreUtil.makeIntegerStorage(aids, DataStoreFactory.HINT_TEMP);
+      for(DBIDArrayIter iter = aids.iter(); iter.valid(); iter.advance()) {
+        offsets.putInt(iter, iter.getOffset());
+      }
+      for(DBIDIter iter = aids.iter(); iter.valid(); iter.advance()) {
+        KNNList knn = storage.get(iter);
+        out.writeInt(knn.size());
+        for(DoubleDBIDListIter it = knn.iter(); it.valid(); it.advance()) {
+          out.writeInt(offsets.intValue(it));
+        }
+        for(DoubleDBIDListIter it = knn.iter(); it.valid(); it.advance()) {
+          out.writeDouble(it.doubleValue());
+        }
+      }
+    }
+    if(file.exists() && !file.delete()) {
+      throw new IOException("Cannot replace " + file);
+    }
+    if(!tmp.renameTo(file)) {
+      throw new IOException("Cannot rename " + tmp + " to " + file);
+    }
+  }
+
+  @Override
+  public String getLongName() {
+    return "Persistent kNN Preprocessor";
+  }
+
+  @Override
+  public String getShortName() {
+    return "persistent-knn";
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * The parameterizable factory.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.stereotype factory
+   * @apiviz.uses PersistentKNNPreprocessor oneway - - «create»
+   * 
+   * @param <O> The object type
+   */
+  public static class Factory<O> extends AbstractMaterializeKNNPreprocessor.Factory<O> {
+    /**
+     * Cache file.
+     */
+    private File file;
+
+    /**
+     * Description of the distance function and its parameters.
+     */
+    private String distance;
+
+    /**
+     * Index factory.
+     * 
+     * @param k k parameter
+     * @param distanceFunction distance function
+     * @param file Cache file
+     * @param distance Description of the distance function and its
+     *        parameters; {@code null} to only cache distance functions without
+     *        parameters.
+     */
+    public Factory(int k, DistanceFunction<? super O> distanceFunction, File file, String distance) {
+      super(k, distanceFunction);
+      this.file = file;
+      this.distance = distance;
+    }
+
+    @Override
+    public PersistentKNNPreprocessor<O> instantiate(Relation<O> relation) {
+      return new PersistentKNNPreprocessor<>(relation, distanceFunction, k, file, distance);
+    }
+
+    /**
+     * Parameterization class.
+     * 
+     * @author Erich Schubert
+     * 
+     * @apiviz.exclude
+     */
+    public static class Parameterizer<O> extends AbstractMaterializeKNNPreprocessor.Factory.Parameterizer<O> {
+      /**
+       * File to store the materialized kNN in.
+       * <p>
+       * Key: {@code -materialize.file}
+       * </p>
+       */
+      public static final OptionID FILE_ID = new OptionID("materialize.file", "File to store the materialized kNN in, for reuse in later runs.");
+
+      /**
+       * Cache file.
+       */
+      private File file;
+
+      /**
+       * Description of the distance function and its parameters.
+       */
+      private String distance;
+
+      @Override
+      protected void makeOptions(Parameterization config) {
+        // Track the parameters of the distance function.
+        TrackParameters track = new TrackParameters(config);
+        super.makeOptions(track);
+        distance = describeParameters(track);
+        final FileParameter fileP = new FileParameter(FILE_ID, FileParameter.FileType.OUTPUT_FILE);
+        if(config.grab(fileP)) {
+          file = fileP.getValue();
+        }
+      }
+
+      /**
+       * Describe the distance function by the parameters it was configured
+       * with.
+       * 
+       * @param track Tracked parameters
+       * @return Description, or {@code null} if the parameters of the distance
+       *         function were not tracked.
+       */
+      private String describeParameters(TrackParameters track) {
+        if(distanceFunction == null) {
+          return null;
+        }
+        StringBuilder buf = new StringBuilder();
+        int sub = 0;
+        for(TrackedParameter tracked : track.getAllParameters()) {
+          final Parameter<?> param = tracked.getParameter();
+          if(!param.isDefined()) {
+            continue;
+          }
+          final OptionID id = param.getOptionID();
+          if(id != K_ID && id != DISTANCE_FUNCTION_ID) {
+            ++sub;
+          }
+          buf.append(id.getName()).append('=').append(param.getValueAsString()).append(' ');
+        }
+        // A pre-configured instance does not report its parameters.
+        return sub > 0 ? buf.toString() : describeParameterless(distanceFunction);
+      }
+
+      @Override
+      protected Factory<O> makeInstance() {
+        return new Factory<>(k, distanceFunction, file, distance);
+      }
+    }
+  }
+}
@@ -22,25 +22,36 @@ package de.lmu.ifi.dbs.elki.index.tree.metrical.covertree;
  along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
 import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.index.AbstractIndex;
 import de.lmu.ifi.dbs.elki.index.IndexFactory;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.LoggingUtil;
-import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.logging.statistics.AtomicLongCounter;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
 
@@ -52,6 +63,11 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
  * @param <O> Object type
  */
 public abstract class AbstractCoverTree<O> extends AbstractIndex<O> {
+  /**
+   * Number of queries to process in a single task in bulk queries.
+   */
+  protected static final int PARALLEL_QUERY_BLOCK = 64;
+
   /**
    * Constant expansion rate. 2 would be the intuitive value, but the original
    * version used 1.3, so we copy this. This means that in every level, the
@@ -80,15 +96,32 @@ public abstract class AbstractCoverTree<O> extends AbstractIndex<O> {
   private DistanceQuery<O> distanceQuery;
 
   /**
-   * Distance computations performed.
+   * Distance computations performed, only counted when logging statistics (the
+   * shared counter would be contended by parallel construction and queries).
    */
-  protected long distComputations = 0L;
+  protected final AtomicLongCounter distComputations;
 
   /**
    * Stop refining the tree at this size, but build a leaf.
    */
   protected int truncate = 10;
 
+  /**
+   * Build independent subtrees and answer bulk queries in parallel.
+   */
+  protected boolean parallel = false;
+
+  /**
+   * Minimum number of candidates to build a subtree in a separate task.
+   */
+  protected int parallelSubtreeSize = 1000;
+
+  /**
+   * Number of subtrees built in a separate task, only counted when logging
+   * statistics.
+   */
+  protected final AtomicLongCounter forkedSubtrees;
+
   /**
    * Constructor.
    *
@@ -98,13 +131,32 @@ public abstract class AbstractCoverTree<O> extends AbstractIndex<O> {
    * @param truncate Truncate branches with less than this number of instances.
    */
   public AbstractCoverTree(Relation<O> relation, DistanceFunction<? super O> distanceFunction, double expansion, int truncate) {
+    this(relation, distanceFunction, expansion, truncate, false, 1000);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param relation Data relation
+   * @param distanceFunction Distance function
+   * @param expansion Expansion rate
+   * @param truncate Truncate branches with less than this number of instances.
+   * @param parallel Build subtrees and answer bulk queries in parallel
+   * @param parallelSubtreeSize Minimum size of a subtree built in a separate
+   *        task
+   */
+  public AbstractCoverTree(Relation<O> relation, DistanceFunction<? super O> distanceFunction, double expansion, int truncate, boolean parallel, int parallelSubtreeSize) {
     super(relation);
+    this.parallel = parallel;
+    this.parallelSubtreeSize = parallelSubtreeSize;
     this.distanceFunction = distanceFunction;
     this.distanceQuery = distanceFunction.instantiate(relation);
     this.truncate = truncate;
     this.expansion = expansion;
     this.invLogExpansion = 1. / Math.log(expansion);
     this.scaleBottom = (int) Math.ceil(Math.log(Double.MIN_NORMAL) * invLogExpansion);
+    this.distComputations = getLogger().isStatistics() ? new AtomicLongCounter(this.getClass().getName() + ".distance-computations") : null;
+    this.forkedSubtrees = parallel && getLogger().isStatistics() ? new AtomicLongCounter(this.getClass().getName() + ".forked-subtrees") : null;
   }
 
   /**
@@ -150,7 +202,9 @@ public abstract class AbstractCoverTree<O> extends AbstractIndex<O> {
    * @return Distance
    */
   protected double distance(DBIDRef a, DBIDRef b) {
-    ++distComputations;
+    if(distComputations != null) {
+      distComputations.increment();
+    }
     return distanceQuery.distance(a, b);
   }
 
@@ -162,7 +216,9 @@ public abstract class AbstractCoverTree<O> extends AbstractIndex<O> {
    * @return Distance
    */
   protected double distance(O a, DBIDRef b) {
-    ++distComputations;
+    if(distComputations != null) {
+      distComputations.increment();
+    }
     return distanceQuery.distance(a, b);
   }
 
@@ -209,9 +265,46 @@ public abstract class AbstractCoverTree<O> extends AbstractIndex<O> {
     }
   }
 
+  /**
+   * Test whether a subtree of the given size should be built in a separate
+   * task. This is only the case within a fork-join pool.
+   *
+   * @param size Number of candidates of the subtree
+   * @return {@code true} if the subtree should be forked
+   */
+  protected boolean forkSubtree(int size) {
+    if(parallel && size >= parallelSubtreeSize && ForkJoinTask.inForkJoinPool()) {
+      if(forkedSubtrees != null) {
+        forkedSubtrees.increment();
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Answer a batch of kNN queries in parallel, using the shared fork-join
+   * pool. Idle workers steal pending blocks of queries.
+   *
+   * @param knnq Thread-safe kNN query
+   * @param ids Query objects
+   * @param k Number of neighbors
+   * @return kNN lists, in the order of the query objects
+   */
+  protected List<KNNList> parallelKNN(KNNQuery<O> knnq, ArrayDBIDs ids, int k) {
+    KNNList[] result = new KNNList[ids.size()];
+    ParallelCore.getCore().getForkJoinPool().invoke(new BulkKNNTask<>(knnq, ids, k, result, 0, ids.size()));
+    return Arrays.asList(result);
+  }
+
   @Override
   public void logStatistics() {
-    getLogger().statistics(new LongStatistic(this.getClass().getName() + ".distance-computations", distComputations));
+    if(distComputations != null) {
+      getLogger().statistics(distComputations);
+    }
+    if(forkedSubtrees != null) {
+      getLogger().statistics(forkedSubtrees);
+    }
   }
 
   /**
@@ -231,6 +324,79 @@ public abstract class AbstractCoverTree<O> extends AbstractIndex<O> {
     return "cover-tree";
   }
 
+  /**
+   * Task to run a block of kNN queries, split recursively.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   *
+   * @param <O> Object type
+   */
+  private static class BulkKNNTask<O> extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * kNN query.
+     */
+    private final KNNQuery<O> knnq;
+
+    /**
+     * Query objects.
+     */
+    private final ArrayDBIDs ids;
+
+    /**
+     * Number of neighbors.
+     */
+    private final int k;
+
+    /**
+     * Output array.
+     */
+    private final KNNList[] result;
+
+    /**
+     * Range to process.
+     */
+    private final int start, end;
+
+    /**
+     * Constructor.
+     *
+     * @param knnq kNN query
+     * @param ids Query objects
+     * @param k Number of neighbors
+     * @param result Output array
+     * @param start First query
+     * @param end End of range (exclusive)
+     */
+    BulkKNNTask(KNNQuery<O> knnq, ArrayDBIDs ids, int k, KNNList[] result, int start, int end) {
+      this.knnq = knnq;
+      this.ids = ids;
+      this.k = k;
+      this.result = result;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if(end - start > PARALLEL_QUERY_BLOCK) {
+        final int mid = (start + end) >>> 1;
+        invokeAll(new BulkKNNTask<>(knnq, ids, k, result, start, mid), new BulkKNNTask<>(knnq, ids, k, result, mid, end));
+        return;
+      }
+      DBIDArrayIter iter = ids.iter();
+      for(iter.seek(start); iter.getOffset() < end; iter.advance()) {
+        result[iter.getOffset()] = knnq.getKNNForDBID(iter, k);
+      }
+    }
+  }
+
   /**
    * Index factory.
    * 
@@ -256,6 +422,16 @@ public abstract class AbstractCoverTree<O> extends AbstractIndex<O> {
      */
     protected int truncate;
 
+    /**
+     * Build subtrees and answer bulk queries in parallel.
+     */
+    protected boolean parallel;
+
+    /**
+     * Minimum size of a subtree built in a separate task.
+     */
+    protected int parallelSubtreeSize;
+
     /**
      * Constructor.
      *
@@ -265,10 +441,27 @@ public abstract class AbstractCoverTree<O> extends AbstractIndex<O> {
      *        instances.
      */
     public Factory(DistanceFunction<? super O> distanceFunction, double expansion, int truncate) {
+      this(distanceFunction, expansion, truncate, false, 1000);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param distanceFunction Distance function
+     * @param expansion Expansion rate
+     * @param truncate Truncate branches with less than this number of
+     *        instances.
+     * @param parallel Build subtrees and answer bulk queries in parallel
+     * @param parallelSubtreeSize Minimum size of a subtree built in a separate
+     *        task
+     */
+    public Factory(DistanceFunction<? super O> distanceFunction, double expansion, int truncate, boolean parallel, int parallelSubtreeSize) {
       super();
       this.distanceFunction = distanceFunction;
       this.expansion = expansion;
       this.truncate = truncate;
+      this.parallel = parallel;
+      this.parallelSubtreeSize = parallelSubtreeSize;
     }
 
     @Override
@@ -311,6 +504,25 @@ public abstract class AbstractCoverTree<O> extends AbstractIndex<O> {
        */
       public static final OptionID EXPANSION_ID = new OptionID("covertree.expansionrate", "Expansion rate of the tree (Default: 1.3).");
 
+      /**
+       * Flag to build independent subtrees and answer bulk kNN queries using
+       * multiple threads.
+       * <p>
+       * Key: {@code -covertree.parallel}
+       * </p>
+       */
+      public static final OptionID PARALLEL_ID = new OptionID("covertree.parallel", "Build independent subtrees and answer bulk kNN queries using multiple threads.");
+
+      /**
+       * Minimum number of candidates of a subtree to build it in a separate
+       * task.
+       * <p>
+       * Key: {@code -covertree.parallel.subtree}<br />
+       * Default: 1000
+       * </p>
+       */
+      public static final OptionID PARALLEL_SUBTREE_ID = new OptionID("covertree.parallel.subtree", "Minimum number of candidates of a subtree to build it in a separate task.");
+
       /**
        * Holds the instance of the trees distance function.
        */
@@ -326,6 +538,16 @@ public abstract class AbstractCoverTree<O> extends AbstractIndex<O> {
        */
       protected double expansion = 1.3;
 
+      /**
+       * Build subtrees and answer bulk queries in parallel.
+       */
+      protected boolean parallel = false;
+
+      /**
+       * Minimum size of a subtree built in a separate task.
+       */
+      protected int parallelSubtreeSize = 1000;
+
       @Override
       protected void makeOptions(Parameterization config) {
         super.makeOptions(config);
@@ -346,6 +568,17 @@ public abstract class AbstractCoverTree<O> extends AbstractIndex<O> {
         if(config.grab(expansionP)) {
           expansion = expansionP.doubleValue();
         }
+        Flag parallelF = new Flag(PARALLEL_ID);
+        if(config.grab(parallelF)) {
+          parallel = parallelF.isTrue();
+        }
+        if(parallel) {
+          IntParameter subtreeP = new IntParameter(PARALLEL_SUBTREE_ID, 1000)//
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+          if(config.grab(subtreeP)) {
+            parallelSubtreeSize = subtreeP.intValue();
+          }
+        }
       }
     }
   }
@@ -24,7 +24,10 @@ package de.lmu.ifi.dbs.elki.index.tree.metrical.covertree;
  */
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
 
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBID;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
@@ -36,9 +39,13 @@ import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
 import de.lmu.ifi.dbs.elki.database.ids.KNNList;
 import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.AbstractDistanceBrowsingIter;
 import de.lmu.ifi.dbs.elki.database.query.knn.AbstractDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.DistanceBrowsingIter;
+import de.lmu.ifi.dbs.elki.database.query.knn.DistanceBrowsingQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
 import de.lmu.ifi.dbs.elki.database.query.range.AbstractDistanceRangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeCountQuery;
 import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
@@ -47,6 +54,7 @@ import de.lmu.ifi.dbs.elki.index.RangeIndex;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
 import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleObjectMinHeap;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 
@@ -73,6 +81,7 @@ import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
  *
  * @apiviz.has CoverTreeRangeQuery
  * @apiviz.has CoverTreeKNNQuery
+ * @apiviz.has CoverTreeDistanceBrowsingIter
  */
 @Reference(authors = "A. Beygelzimer, S. Kakade, J. Langford", //
 title = "Cover trees for nearest neighbor", //
@@ -101,6 +110,21 @@ public class CoverTree<O> extends AbstractCoverTree<O>implements RangeIndex<O>,
     super(relation, distanceFunction, expansion, truncate);
   }
 
+  /**
+   * Constructor.
+   *
+   * @param relation data relation
+   * @param distanceFunction distance function
+   * @param expansion Expansion rate
+   * @param truncate Truncate branches with less than this number of instances.
+   * @param parallel Build subtrees and answer bulk queries in parallel
+   * @param parallelSubtreeSize Minimum size of a subtree built in a separate
+   *        task
+   */
+  public CoverTree(Relation<O> relation, DistanceFunction<? super O> distanceFunction, double expansion, int truncate, boolean parallel, int parallelSubtreeSize) {
+    super(relation, distanceFunction, expansion, truncate, parallel, parallelSubtreeSize);
+  }
+
   /**
    * Node object.
    *
@@ -129,6 +153,11 @@ public class CoverTree<O> extends AbstractCoverTree<O>implements RangeIndex<O>,
      */
     ArrayList<Node> children;
 
+    /**
+     * Number of objects in this subtree, computed on demand.
+     */
+    int size = -1;
+
     /**
      * Expansion scale.
      */
@@ -177,6 +206,25 @@ public class CoverTree<O> extends AbstractCoverTree<O>implements RangeIndex<O>,
     public boolean isLeaf() {
       return children == null || children.size() == 0;
     }
+
+    /**
+     * Number of objects in this subtree.
+     *
+     * @return Subtree size
+     */
+    public int size() {
+      if(size < 0) {
+        int s = singletons.size();
+        if(!isLeaf()) {
+          --s; // The routing object is repeated in a child.
+          for(Node c : children) {
+            s += c.size();
+          }
+        }
+        size = s;
+      }
+      return size;
+    }
   }
 
   @Override
@@ -210,7 +258,12 @@ public class CoverTree<O> extends AbstractCoverTree<O>implements RangeIndex<O>,
     for(it.advance(); it.valid(); it.advance()) {
       candidates.add(distance(first, it), it);
     }
-    root = bulkConstruct(first, Integer.MAX_VALUE, 0., candidates);
+    if(parallel) {
+      root = ParallelCore.getCore().getForkJoinPool().invoke(new BuildTask(first, Integer.MAX_VALUE, 0., candidates));
+    }
+    else {
+      root = bulkConstruct(first, Integer.MAX_VALUE, 0., candidates);
+    }
   }
 
   /**
@@ -246,9 +299,18 @@ public class CoverTree<O> extends AbstractCoverTree<O>implements RangeIndex<O>,
     Node node = new Node(cur, max, parentDist);
     // Routing element now is a singleton:
     final boolean curSingleton = elems.size() == 0;
+    // Subtrees built in parallel, joined in order below.
+    ArrayList<BuildTask> tasks = null;
     if(!curSingleton) {
       // Add node for the routing object:
-      node.children.add(bulkConstruct(cur, nextScale, 0, elems));
+      if(forkSubtree(elems.size())) {
+        tasks = new ArrayList<>();
+        tasks.add(forkChild(node, cur, nextScale, 0., elems));
+        elems = DBIDUtil.newDistanceDBIDList();
+      }
+      else {
+        node.children.add(bulkConstruct(cur, nextScale, 0, elems));
+      }
     }
     final double fmax = scaleToDist(nextScale);
     // Build additional cover nodes:
@@ -263,11 +325,23 @@ public class CoverTree<O> extends AbstractCoverTree<O>implements RangeIndex<O>,
       }
       else {
         // Build a full child node:
-        node.children.add(bulkConstruct(it, nextScale, it.doubleValue(), elems));
+        if(forkSubtree(elems.size())) {
+          if(tasks == null) {
+            tasks = new ArrayList<>();
+          }
+          tasks.add(forkChild(node, t, nextScale, it.doubleValue(), elems));
+          elems = DBIDUtil.newDistanceDBIDList();
+        }
+        else {
+          node.children.add(bulkConstruct(it, nextScale, it.doubleValue(), elems));
+        }
       }
       candidates.removeSwap(0);
     }
     assert(candidates.size() == 0);
+    if(tasks != null) {
+      joinChildren(node, tasks);
+    }
     // Routing object is not yet handled:
     if(curSingleton) {
       if(node.isLeaf()) {
@@ -281,6 +355,94 @@ public class CoverTree<O> extends AbstractCoverTree<O>implements RangeIndex<O>,
     return node;
   }
 
+  /**
+   * Fork the construction of a child subtree, adding a placeholder to the
+   * children of the node.
+   *
+   * @param node Parent node
+   * @param cur Routing object of the child
+   * @param maxScale Maximum scale
+   * @param parentDist Distance to parent
+   * @param elems Candidates, must not be reused by the caller
+   * @return Task
+   */
+  private BuildTask forkChild(Node node, DBIDRef cur, int maxScale, double parentDist, ModifiableDoubleDBIDList elems) {
+    node.children.add(null); // Placeholder
+    BuildTask task = new BuildTask(DBIDUtil.deref(cur), maxScale, parentDist, elems);
+    task.fork();
+    return task;
+  }
+
+  /**
+   * Join forked subtrees, replacing the placeholders in order.
+   *
+   * @param node Parent node
+   * @param tasks Forked tasks
+   */
+  private void joinChildren(Node node, List<BuildTask> tasks) {
+    int i = 0;
+    for(int j = 0; j < node.children.size(); j++) {
+      if(node.children.get(j) == null) {
+        node.children.set(j, tasks.get(i++).join());
+      }
+    }
+    assert(i == tasks.size());
+  }
+
+  /**
+   * Task to build a subtree in parallel.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class BuildTask extends RecursiveTask<Node> {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Routing object.
+     */
+    private final DBID cur;
+
+    /**
+     * Maximum scale.
+     */
+    private final int maxScale;
+
+    /**
+     * Distance to parent.
+     */
+    private final double parentDist;
+
+    /**
+     * Candidates.
+     */
+    private final ModifiableDoubleDBIDList elems;
+
+    /**
+     * Constructor.
+     *
+     * @param cur Routing object
+     * @param maxScale Maximum scale
+     * @param parentDist Distance to parent
+     * @param elems Candidates
+     */
+    BuildTask(DBID cur, int maxScale, double parentDist, ModifiableDoubleDBIDList elems) {
+      this.cur = cur;
+      this.maxScale = maxScale;
+      this.parentDist = parentDist;
+      this.elems = elems;
+    }
+
+    @Override
+    protected Node compute() {
+      return bulkConstruct(cur, maxScale, parentDist, elems);
+    }
+  }
+
   /**
    * Collect some statistics on the tree.
    *
@@ -343,7 +505,7 @@ public class CoverTree<O> extends AbstractCoverTree<O>implements RangeIndex<O>,
    *
    * @author Erich Schubert
    */
-  public class CoverTreeRangeQuery extends AbstractDistanceRangeQuery<O>implements RangeQuery<O> {
+  public class CoverTreeRangeQuery extends AbstractDistanceRangeQuery<O>implements RangeQuery<O>, RangeCountQuery<O> {
     /**
      * Constructor.
      *
@@ -393,6 +555,56 @@ public class CoverTree<O> extends AbstractCoverTree<O>implements RangeIndex<O>,
         }
       }
     }
+
+    @Override
+    public int getRangeCountForDBID(DBIDRef id, double range, int max) {
+      return getRangeCountForObject(relation.get(id), range, max);
+    }
+
+    @Override
+    public int getRangeCountForObject(O obj, double range, int max) {
+      int count = 0;
+      ArrayList<Node> open = new ArrayList<Node>(); // LIFO stack
+      open.add(root);
+      while(!open.isEmpty() && count < max) {
+        final Node cur = open.remove(open.size() - 1); // pop()
+        final DoubleDBIDListIter it = cur.singletons.iter();
+        final double d = distance(obj, it);
+        // Covered area not in range (metric assumption!):
+        if(d - cur.maxDist > range) {
+          continue;
+        }
+        // Covered area completely in range: count without descending.
+        if(d + cur.maxDist <= range) {
+          count += cur.size();
+          continue;
+        }
+        if(!cur.isLeaf()) { // Inner node:
+          for(Node c : cur.children) {
+            if(d - c.maxDist - c.parentDist <= range) {
+              open.add(c);
+            }
+          }
+        }
+        else { // Leaf node
+          // Consider routing object, too:
+          if(d <= range) {
+            count++;
+          }
+        }
+        it.advance(); // Skip routing object.
+        for(; it.valid(); it.advance()) {
+          final double pd = it.doubleValue();
+          if(d + pd <= range) {
+            count++; // Within range by triangle inequality
+          }
+          else if(d - pd <= range && distance(obj, it) <= range) {
+            count++;
+          }
+        }
+      }
+      return Math.min(count, max);
+    }
   }
 
   /**
@@ -400,7 +612,7 @@ public class CoverTree<O> extends AbstractCoverTree<O>implements RangeIndex<O>,
    *
    * @author Erich Schubert
    */
-  public class CoverTreeKNNQuery extends AbstractDistanceKNNQuery<O>implements KNNQuery<O> {
+  public class CoverTreeKNNQuery extends AbstractDistanceKNNQuery<O>implements KNNQuery<O>, DistanceBrowsingQuery<O> {
     /**
      * Constructor.
      *
@@ -471,6 +683,73 @@ public class CoverTree<O> extends AbstractCoverTree<O>implements RangeIndex<O>,
       }
       return knnList.toKNNList();
     }
+
+    @Override
+    public List<? extends KNNList> getKNNForBulkDBIDs(ArrayDBIDs ids, int k) {
+      if(!parallel) {
+        return super.getKNNForBulkDBIDs(ids, k);
+      }
+      return parallelKNN(this, ids, k);
+    }
+
+    @Override
+    public DistanceBrowsingIter getNeighborsForDBID(DBIDRef id) {
+      return getNeighborsForObject(relation.get(id));
+    }
+
+    @Override
+    public DistanceBrowsingIter getNeighborsForObject(O obj) {
+      return new CoverTreeDistanceBrowsingIter(obj);
+    }
+  }
+
+  /**
+   * Incremental nearest neighbor search: nodes are queued with the minimum
+   * distance of their cover, objects with their exact distance.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  protected class CoverTreeDistanceBrowsingIter extends AbstractDistanceBrowsingIter {
+    /**
+     * Query object.
+     */
+    private final O obj;
+
+    /**
+     * Constructor.
+     *
+     * @param obj Query object
+     */
+    protected CoverTreeDistanceBrowsingIter(O obj) {
+      super();
+      this.obj = obj;
+      final double rootdist = distance(obj, root.singletons.iter());
+      addNode(rootdist - root.maxDist, root);
+      advance();
+    }
+
+    @Override
+    protected void expand(double mindist, Object node) {
+      final Node cur = (Node) node;
+      final double d = mindist + cur.maxDist; // Restore distance to center.
+      final DoubleDBIDListIter it = cur.singletons.iter();
+      if(!cur.isLeaf()) { // Inner node:
+        for(Node c : cur.children) {
+          final DoubleDBIDListIter f = c.singletons.iter();
+          final double dist = DBIDUtil.equal(f, it) ? d : distance(obj, f);
+          addNode(dist - c.maxDist, c);
+        }
+      }
+      else { // Leaf node: the routing object is a neighbor, too
+        addObject(d, it);
+      }
+      it.advance(); // Skip routing object.
+      for(; it.valid(); it.advance()) {
+        addObject(distance(obj, it), it);
+      }
+    }
   }
 
   /**
@@ -495,9 +774,24 @@ public class CoverTree<O> extends AbstractCoverTree<O>implements RangeIndex<O>,
       super(distanceFunction, expansion, truncate);
     }
 
+    /**
+     * Constructor.
+     *
+     * @param distanceFunction Distance function
+     * @param expansion Expansion rate
+     * @param truncate Truncate branches with less than this number of
+     *        instances.
+     * @param parallel Build subtrees and answer bulk queries in parallel
+     * @param parallelSubtreeSize Minimum size of a subtree built in a separate
+     *        task
+     */
+    public Factory(DistanceFunction<? super O> distanceFunction, double expansion, int truncate, boolean parallel, int parallelSubtreeSize) {
+      super(distanceFunction, expansion, truncate, parallel, parallelSubtreeSize);
+    }
+
     @Override
     public CoverTree<O> instantiate(Relation<O> relation) {
-      return new CoverTree<O>(relation, distanceFunction, expansion, truncate);
+      return new CoverTree<O>(relation, distanceFunction, expansion, truncate, parallel, parallelSubtreeSize);
     }
 
     /**
@@ -510,7 +804,7 @@ public class CoverTree<O> extends AbstractCoverTree<O>implements RangeIndex<O>,
     public static class Parameterizer<O> extends AbstractCoverTree.Factory.Parameterizer<O> {
       @Override
       protected CoverTree.Factory<O> makeInstance() {
-        return new CoverTree.Factory<>(distanceFunction, expansion, truncate);
+        return new CoverTree.Factory<>(distanceFunction, expansion, truncate, parallel, parallelSubtreeSize);
       }
     }
   }
@@ -24,11 +24,15 @@ package de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.query;
  */
 
 import de.lmu.ifi.dbs.elki.database.ids.DBID;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
 import de.lmu.ifi.dbs.elki.database.ids.KNNList;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.AbstractDistanceBrowsingIter;
 import de.lmu.ifi.dbs.elki.database.query.knn.AbstractDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.DistanceBrowsingIter;
+import de.lmu.ifi.dbs.elki.database.query.knn.DistanceBrowsingQuery;
 import de.lmu.ifi.dbs.elki.index.tree.DirectoryEntry;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.AbstractMTree;
 import de.lmu.ifi.dbs.elki.index.tree.metrical.mtreevariants.AbstractMTreeNode;
@@ -43,10 +47,11 @@ import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.ComparableMinHeap;
  * 
  * @apiviz.uses AbstractMTree
  * @apiviz.uses DoubleMTreeDistanceSearchCandidate
+ * @apiviz.has MTreeDistanceBrowsingIter
  * 
  * @param <O> Object type
  */
-public class MetricalIndexKNNQuery<O> extends AbstractDistanceKNNQuery<O> {
+public class MetricalIndexKNNQuery<O> extends AbstractDistanceKNNQuery<O> implements DistanceBrowsingQuery<O> {
   /**
    * The index to use
    */
@@ -135,4 +140,67 @@ public class MetricalIndexKNNQuery<O> extends AbstractDistanceKNNQuery<O> {
     }
     return knnList.toKNNList();
   }
+
+  @Override
+  public DistanceBrowsingIter getNeighborsForDBID(DBIDRef id) {
+    return getNeighborsForObject(relation.get(id));
+  }
+
+  @Override
+  public DistanceBrowsingIter getNeighborsForObject(O obj) {
+    index.statistics.countKNNQuery();
+    return new MTreeDistanceBrowsingIter(obj);
+  }
+
+  /**
+   * Incremental nearest neighbor search: routing objects are queued with the
+   * minimum distance of their covering ball, leaf entries with their exact
+   * distance.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  protected class MTreeDistanceBrowsingIter extends AbstractDistanceBrowsingIter {
+    /**
+     * Query object.
+     */
+    private final O q;
+
+    /**
+     * Constructor.
+     * 
+     * @param q Query object
+     */
+    protected MTreeDistanceBrowsingIter(O q) {
+      super();
+      this.q = q;
+      expand(0., new DoubleMTreeDistanceSearchCandidate(0., index.getRootID(), null, 0.));
+      advance();
+    }
+
+    @Override
+    protected void expand(double mindist, Object cand) {
+      AbstractMTreeNode<?, ?, ?> node = index.getNode(((DoubleMTreeDistanceSearchCandidate) cand).nodeID);
+      // directory node
+      if(!node.isLeaf()) {
+        for(int i = 0; i < node.getNumEntries(); i++) {
+          MTreeEntry entry = node.getEntry(i);
+          DBID o_r = entry.getRoutingObjectID();
+          double d3 = distanceQuery.distance(o_r, q);
+          index.statistics.countDistanceCalculation();
+          double d_min = Math.max(d3 - entry.getCoveringRadius(), 0.);
+          addNode(d_min, new DoubleMTreeDistanceSearchCandidate(d_min, ((DirectoryEntry) entry).getPageID(), o_r, d3));
+        }
+      }
+      // data node
+      else {
+        for(int i = 0; i < node.getNumEntries(); i++) {
+          DBID o_j = node.getEntry(i).getRoutingObjectID();
+          addObject(distanceQuery.distance(o_j, q), o_j);
+          index.statistics.countDistanceCalculation();
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,459 @@
+package de.lmu.ifi.dbs.elki.index.tree.spatial.kd;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.SpatialPrimitiveDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.Counter;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+
+/**
+ * Dual-tree all-k-nearest-neighbors join on the serialized k-d-trees of
+ * {@link SmallMemoryKDTree} and {@link MinimalisticMemoryKDTree}.
+ *
+ * Both trees store the data in one array, where the node covering the interval
+ * {@code [left, right)} has its splitting element at
+ * {@code middle = (left + right) >>> 1}, and the children
+ * {@code [left, middle)} and {@code [middle + 1, right)}. Intervals of at most
+ * {@code leafsize} elements are leaves.
+ *
+ * The query tree and the reference tree (which are the same tree here) are
+ * traversed simultaneously: a pair of nodes is pruned when the minimum
+ * distance of their bounding boxes exceeds the largest current k-distance of
+ * any query point in the query node. Bounding boxes and k-distance bounds are
+ * stored in flat arrays, indexed by the position of the splitting element
+ * (inner nodes) or the first element (leaves).
+ *
+ * Reference:
+ * <p>
+ * A. G. Gray and A. W. Moore<br />
+ * N-Body Problems in Statistical Learning<br />
+ * Advances in Neural Information Processing Systems 13 (NIPS 2000)
+ * </p>
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.uses SpatialPrimitiveDistanceFunction
+ *
+ * @param <O> Vector type
+ */
+@Reference(authors = "A. G. Gray, A. W. Moore", //
+title = "N-Body Problems in Statistical Learning", //
+booktitle = "Advances in Neural Information Processing Systems 13 (NIPS 2000)", //
+url = "http://papers.nips.cc/paper/1930-n-body-problems-in-statistical-learning")
+public class KDTreeKNNJoin<O extends NumberVector> {
+  /**
+   * Class logger
+   */
+  private static final Logging LOG = Logging.getLogger(KDTreeKNNJoin.class);
+
+  /**
+   * Object IDs, in tree order.
+   */
+  private final ArrayModifiableDBIDs ids;
+
+  /**
+   * Vectors, in tree order.
+   */
+  private final ArrayList<O> vecs;
+
+  /**
+   * Maximum size of leaf nodes.
+   */
+  private final int leafsize;
+
+  /**
+   * Dimensionality.
+   */
+  private final int dims;
+
+  /**
+   * Distance function.
+   */
+  private final SpatialPrimitiveDistanceFunction<? super O> distanceFunction;
+
+  /**
+   * Bounding boxes of the nodes, dims values per node.
+   */
+  private double[] mins, maxs;
+
+  /**
+   * Upper bound of the k-distances within each inner node.
+   */
+  private double[] bounds;
+
+  /**
+   * kNN heaps, in tree order.
+   */
+  private KNNHeap[] heaps;
+
+  /**
+   * Reusable bounding box views.
+   */
+  private final BoxView qbox = new BoxView(), rbox = new BoxView();
+
+  /**
+   * Counter for distance computations.
+   */
+  private final Counter distcalc;
+
+  /**
+   * Counter for pruned node pairs.
+   */
+  private final Counter pruned;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Data relation
+   * @param iter Iterator over the tree in serialized order
+   * @param size Tree size
+   * @param leafsize Maximum leaf size used by the tree
+   * @param distanceFunction Distance function; must be consistent with
+   *        {@link SpatialPrimitiveDistanceFunction#minDist}.
+   */
+  public KDTreeKNNJoin(Relation<? extends O> relation, DBIDArrayIter iter, int size, int leafsize, SpatialPrimitiveDistanceFunction<? super O> distanceFunction) {
+    super();
+    this.leafsize = leafsize;
+    this.dims = RelationUtil.dimensionality(relation);
+    this.distanceFunction = distanceFunction;
+    this.ids = DBIDUtil.newArray(size);
+    this.vecs = new ArrayList<>(size);
+    for(iter.seek(0); iter.getOffset() < size; iter.advance()) {
+      ids.add(iter);
+      vecs.add(relation.get(iter));
+    }
+    if(LOG.isStatistics()) {
+      String prefix = this.getClass().getName();
+      this.distcalc = LOG.newCounter(prefix + ".distancecalcs");
+      this.pruned = LOG.newCounter(prefix + ".pruned-pairs");
+    }
+    else {
+      this.distcalc = null;
+      this.pruned = null;
+    }
+  }
+
+  /**
+   * Compute the k nearest neighbors of every object in the tree.
+   *
+   * @param k Number of neighbors, including the query object itself
+   * @return kNN lists
+   */
+  public WritableDataStore<KNNList> run(int k) {
+    WritableDataStore<KNNList> knnLists = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_STATIC, KNNList.class);
+    run(k, knnLists);
+    return knnLists;
+  }
+
+  /**
+   * Compute the k nearest neighbors of every object in the tree.
+   *
+   * @param k Number of neighbors, including the query object itself
+   * @param knnLists Output storage
+   */
+  public void run(int k, WritableDataStore<KNNList> knnLists) {
+    final int size = ids.size();
+    heaps = new KNNHeap[size];
+    for(int i = 0; i < size; i++) {
+      heaps[i] = DBIDUtil.newHeap(k);
+    }
+    if(size > 0) {
+      mins = new double[size * dims];
+      maxs = new double[size * dims];
+      bounds = new double[size];
+      Arrays.fill(bounds, Double.POSITIVE_INFINITY);
+      buildBoxes(0, size);
+      dualTree(0, size, 0, size);
+    }
+    DBIDArrayIter iter = ids.iter();
+    for(int i = 0; i < size; i++, iter.advance()) {
+      knnLists.put(iter, heaps[i].toKNNList());
+      heaps[i] = null;
+    }
+    heaps = null;
+    mins = maxs = bounds = null;
+    if(distcalc != null) {
+      LOG.statistics(distcalc);
+      LOG.statistics(pruned);
+    }
+  }
+
+  /**
+   * Node key: the splitting element for inner nodes, the first element for
+   * leaves.
+   *
+   * @param left Interval begin
+   * @param right Interval end (exclusive)
+   * @return Key
+   */
+  private int key(int left, int right) {
+    return (right - left > leafsize) ? (left + right) >>> 1 : left;
+  }
+
+  /**
+   * Compute the bounding boxes of all nodes, bottom-up.
+   *
+   * @param left Interval begin
+   * @param right Interval end (exclusive)
+   */
+  private void buildBoxes(int left, int right) {
+    if(right - left == 1) {
+      return; // Single points use the vector itself.
+    }
+    final int off = key(left, right) * dims;
+    if(right - left <= leafsize) {
+      NumberVector first = vecs.get(left);
+      for(int d = 0; d < dims; d++) {
+        mins[off + d] = maxs[off + d] = first.doubleValue(d);
+      }
+      for(int i = left + 1; i < right; i++) {
+        extend(off, vecs.get(i));
+      }
+      return;
+    }
+    final int middle = (left + right) >>> 1;
+    NumberVector split = vecs.get(middle);
+    for(int d = 0; d < dims; d++) {
+      mins[off + d] = maxs[off + d] = split.doubleValue(d);
+    }
+    buildBoxes(left, middle);
+    extend(off, left, middle);
+    if(middle + 1 < right) {
+      buildBoxes(middle + 1, right);
+      extend(off, middle + 1, right);
+    }
+  }
+
+  /**
+   * Extend a bounding box by a vector.
+   *
+   * @param off Box offset
+   * @param vec Vector
+   */
+  private void extend(int off, NumberVector vec) {
+    for(int d = 0; d < dims; d++) {
+      final double v = vec.doubleValue(d);
+      mins[off + d] = (v < mins[off + d]) ? v : mins[off + d];
+      maxs[off + d] = (v > maxs[off + d]) ? v : maxs[off + d];
+    }
+  }
+
+  /**
+   * Extend a bounding box by a child node.
+   *
+   * @param off Box offset
+   * @param left Child interval begin
+   * @param right Child interval end (exclusive)
+   */
+  private void extend(int off, int left, int right) {
+    if(right - left == 1) {
+      extend(off, vecs.get(left));
+      return;
+    }
+    final int coff = key(left, right) * dims;
+    for(int d = 0; d < dims; d++) {
+      mins[off + d] = Math.min(mins[off + d], mins[coff + d]);
+      maxs[off + d] = Math.max(maxs[off + d], maxs[coff + d]);
+    }
+  }
+
+  /**
+   * Get the bounding box of a node.
+   *
+   * @param left Interval begin
+   * @param right Interval end (exclusive)
+   * @param view Reusable view
+   * @return Bounding box
+   */
+  private SpatialComparable box(int left, int right, BoxView view) {
+    if(right - left == 1) {
+      return vecs.get(left);
+    }
+    view.off = key(left, right) * dims;
+    return view;
+  }
+
+  /**
+   * Get the upper bound of the k-distances within a query node.
+   *
+   * @param left Interval begin
+   * @param right Interval end (exclusive)
+   * @return Bound
+   */
+  private double bound(int left, int right) {
+    if(right - left > leafsize) {
+      return bounds[(left + right) >>> 1];
+    }
+    double max = heaps[left].getKNNDistance();
+    for(int i = left + 1; i < right; i++) {
+      max = Math.max(max, heaps[i].getKNNDistance());
+    }
+    return max;
+  }
+
+  /**
+   * Minimum distance of two nodes.
+   *
+   * @param ql Query interval begin
+   * @param qr Query interval end (exclusive)
+   * @param rl Reference interval begin
+   * @param rr Reference interval end (exclusive)
+   * @return Minimum distance
+   */
+  private double minDist(int ql, int qr, int rl, int rr) {
+    return distanceFunction.minDist(box(ql, qr, qbox), box(rl, rr, rbox));
+  }
+
+  /**
+   * Simultaneous traversal of the query and reference nodes.
+   *
+   * @param ql Query interval begin
+   * @param qr Query interval end (exclusive)
+   * @param rl Reference interval begin
+   * @param rr Reference interval end (exclusive)
+   */
+  private void dualTree(int ql, int qr, int rl, int rr) {
+    if(minDist(ql, qr, rl, rr) > bound(ql, qr)) {
+      if(pruned != null) {
+        pruned.increment();
+      }
+      return;
+    }
+    final boolean qleaf = qr - ql <= leafsize, rleaf = rr - rl <= leafsize;
+    if(qleaf && rleaf) {
+      DBIDArrayIter iter = ids.iter();
+      for(int q = ql; q < qr; q++) {
+        final O qvec = vecs.get(q);
+        final KNNHeap heap = heaps[q];
+        for(int r = rl; r < rr; r++) {
+          final double dist = distanceFunction.distance(qvec, vecs.get(r));
+          if(dist <= heap.getKNNDistance()) {
+            heap.insert(dist, iter.seek(r));
+          }
+        }
+        if(distcalc != null) {
+          distcalc.increment(rr - rl);
+        }
+      }
+      return;
+    }
+    // Descend into the larger node.
+    if(qleaf || (!rleaf && rr - rl >= qr - ql)) {
+      descendReference(ql, qr, rl, rr);
+    }
+    else {
+      descendQuery(ql, qr, rl, rr);
+    }
+  }
+
+  /**
+   * Descend into the children of the query node, then update its bound.
+   *
+   * @param ql Query interval begin
+   * @param qr Query interval end (exclusive)
+   * @param rl Reference interval begin
+   * @param rr Reference interval end (exclusive)
+   */
+  private void descendQuery(int ql, int qr, int rl, int rr) {
+    final int middle = (ql + qr) >>> 1;
+    dualTree(ql, middle, rl, rr);
+    dualTree(middle, middle + 1, rl, rr);
+    double max = Math.max(bound(ql, middle), heaps[middle].getKNNDistance());
+    if(middle + 1 < qr) {
+      dualTree(middle + 1, qr, rl, rr);
+      max = Math.max(max, bound(middle + 1, qr));
+    }
+    bounds[middle] = max;
+  }
+
+  /**
+   * Descend into the children of the reference node, closest first.
+   *
+   * @param ql Query interval begin
+   * @param qr Query interval end (exclusive)
+   * @param rl Reference interval begin
+   * @param rr Reference interval end (exclusive)
+   */
+  private void descendReference(int ql, int qr, int rl, int rr) {
+    final int middle = (rl + rr) >>> 1;
+    dualTree(ql, qr, middle, middle + 1);
+    if(middle + 1 >= rr) {
+      dualTree(ql, qr, rl, middle);
+      return;
+    }
+    if(minDist(ql, qr, rl, middle) <= minDist(ql, qr, middle + 1, rr)) {
+      dualTree(ql, qr, rl, middle);
+      dualTree(ql, qr, middle + 1, rr);
+    }
+    else {
+      dualTree(ql, qr, middle + 1, rr);
+      dualTree(ql, qr, rl, middle);
+    }
+  }
+
+  /**
+   * View of a stored bounding box.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private class BoxView implements SpatialComparable {
+    /**
+     * Offset in the bounding box arrays.
+     */
+    int off;
+
+    @Override
+    public int getDimensionality() {
+      return dims;
+    }
+
+    @Override
+    public double getMin(int dimension) {
+      return mins[off + dimension];
+    }
+
+    @Override
+    public double getMax(int dimension) {
+      return maxs[off + dimension];
+    }
+  }
+}
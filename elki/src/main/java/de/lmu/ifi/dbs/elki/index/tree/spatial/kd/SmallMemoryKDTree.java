@@ -23,11 +23,16 @@ package de.lmu.ifi.dbs.elki.index.tree.spatial.kd;
  along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import gnu.trove.list.array.TIntArrayList;
+import de.lmu.ifi.dbs.elki.data.ModifiableHyperBoundingBox;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.spatial.SpatialUtil;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListMIter;
 import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
@@ -37,21 +42,25 @@ import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.AbstractDistanceKNNQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
 import de.lmu.ifi.dbs.elki.database.query.range.AbstractDistanceRangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeCountQuery;
 import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.Norm;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.SpatialPrimitiveDistanceFunction;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.LPNormDistanceFunction;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SparseLPNormDistanceFunction;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
 import de.lmu.ifi.dbs.elki.index.AbstractIndex;
+import de.lmu.ifi.dbs.elki.index.DynamicIndex;
 import de.lmu.ifi.dbs.elki.index.IndexFactory;
 import de.lmu.ifi.dbs.elki.index.KNNIndex;
 import de.lmu.ifi.dbs.elki.index.RangeIndex;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.statistics.Counter;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
+import de.lmu.ifi.dbs.elki.utilities.BitsUtil;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.QuickSelect;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
@@ -60,10 +69,14 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameteriz
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
 
 /**
- * Simple implementation of a static in-memory K-D-tree. Does not support
- * dynamic updates or anything, but also is very simple and memory efficient:
- * all it uses is one {@link ModifiableDoubleDBIDList} to sort the data in a
- * serialized tree and store the current attribute value.
+ * Simple implementation of an in-memory K-D-tree. It is very simple and memory
+ * efficient: all it uses is one {@link ModifiableDoubleDBIDList} to sort the
+ * data in a serialized tree and store the current attribute value.
+ *
+ * Dynamic updates use the logarithmic method: inserted objects are appended
+ * as new subtrees, and trailing subtrees of similar size are merged and
+ * rebuilt. Deleted objects are only marked, and the tree is rebuilt when too
+ * many objects were deleted.
  *
  * It needs about 3 times as much memory as {@link MinimalisticMemoryKDTree} but
  * it is also considerably faster because it does not need to lookup this value
@@ -82,6 +95,7 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
  *
  * @apiviz.has KDTreeKNNQuery
  * @apiviz.has KDTreeRangeQuery
+ * @apiviz.uses KDTreeKNNJoin
  *
  * @param <O> Vector type
  */
@@ -89,7 +103,7 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
 title = "Multidimensional binary search trees used for associative searching", //
 booktitle = "Communications of the ACM, Vol. 18 Issue 9, Sept. 1975", //
 url = "http://dx.doi.org/10.1145/361002.361007")
-public class SmallMemoryKDTree<O extends NumberVector> extends AbstractIndex<O>implements KNNIndex<O>, RangeIndex<O> {
+public class SmallMemoryKDTree<O extends NumberVector> extends AbstractIndex<O>implements KNNIndex<O>, RangeIndex<O>, DynamicIndex {
   /**
    * Class logger
    */
@@ -100,6 +114,21 @@ public class SmallMemoryKDTree<O extends NumberVector> extends AbstractIndex<O>i
    */
   ModifiableDoubleDBIDList sorted = null;
 
+  /**
+   * Start offsets of the independent subtrees in the sorted array.
+   */
+  TIntArrayList runs = new TIntArrayList();
+
+  /**
+   * Bitmask of deleted entries.
+   */
+  long[] deleted = null;
+
+  /**
+   * Number of deleted entries.
+   */
+  int numdeleted = 0;
+
   /**
    * The number of dimensions.
    */
@@ -148,7 +177,178 @@ public class SmallMemoryKDTree<O extends NumberVector> extends AbstractIndex<O>i
     for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
       sorted.add(Double.NaN, it);
     }
-    buildTree(0, sorted.size(), 0, sorted.iter());
+    deleted = BitsUtil.zero(sorted.size());
+    runs.add(0);
+    if(sorted.size() > 0) {
+      buildTree(0, sorted.size(), 0, sorted.iter());
+    }
+  }
+
+  @Override
+  public void insert(DBIDRef id) {
+    sorted.add(Double.NaN, id);
+    runs.add(sorted.size() - 1);
+    mergeRuns();
+  }
+
+  @Override
+  public void insertAll(DBIDs ids) {
+    if(ids.isEmpty()) {
+      return;
+    }
+    runs.add(sorted.size());
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+      sorted.add(Double.NaN, it);
+    }
+    mergeRuns();
+  }
+
+  @Override
+  public boolean delete(DBIDRef id) {
+    final O obj = relation.get(id);
+    DoubleDBIDListIter iter = sorted.iter();
+    for(int r = 0; r < runs.size(); r++) {
+      final int pos = findPosition(runs.get(r), runEnd(r), 0, obj, id, iter);
+      if(pos >= 0) {
+        if(pos >= (deleted.length << 6)) {
+          deleted = BitsUtil.copy(deleted, Math.max(pos + 1, deleted.length << 7));
+        }
+        BitsUtil.setI(deleted, pos);
+        if(++numdeleted > (sorted.size() >>> 2)) {
+          runs.resetQuick();
+          runs.add(0);
+          rebuild(0);
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void deleteAll(DBIDs ids) {
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      delete(iter);
+    }
+  }
+
+  /**
+   * End of a subtree in the sorted array.
+   *
+   * @param r Subtree number
+   * @return End offset (exclusive)
+   */
+  int runEnd(int r) {
+    return r + 1 < runs.size() ? runs.get(r + 1) : sorted.size();
+  }
+
+  /**
+   * Test whether an entry has been deleted.
+   *
+   * @param pos Position in the sorted array
+   * @return {@code true} when deleted
+   */
+  boolean isDeleted(int pos) {
+    return numdeleted > 0 && BitsUtil.get(deleted, pos);
+  }
+
+  /**
+   * Count the entries in a range that have not been deleted.
+   *
+   * @param left Begin
+   * @param right End (exclusive)
+   * @return Number of live entries
+   */
+  int countLive(int left, int right) {
+    int count = right - left;
+    if(numdeleted > 0) {
+      for(int i = BitsUtil.nextSetBit(deleted, left); i >= 0 && i < right; i = BitsUtil.nextSetBit(deleted, i + 1)) {
+        --count;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Merge the trailing subtrees while the previous one is not larger than the
+   * merged subtree, and rebuild them.
+   */
+  private void mergeRuns() {
+    final int end = sorted.size();
+    int last = runs.size() - 1;
+    while(last > 0 && runs.get(last) - runs.get(last - 1) <= end - runs.get(last)) {
+      runs.removeAt(last--);
+    }
+    rebuild(runs.get(last));
+  }
+
+  /**
+   * Rebuild the last subtree, removing deleted entries.
+   *
+   * @param left Start of the last subtree
+   */
+  private void rebuild(int left) {
+    final int right = sorted.size();
+    int keep = left;
+    DoubleDBIDListMIter iter = sorted.iter(), out = sorted.iter();
+    for(iter.seek(left); iter.getOffset() < right; iter.advance()) {
+      final int pos = iter.getOffset();
+      if(isDeleted(pos)) {
+        BitsUtil.clearI(deleted, pos);
+        --numdeleted;
+        continue;
+      }
+      if(pos > keep) {
+        out.seek(keep);
+        out.setDBID(iter);
+      }
+      ++keep;
+    }
+    for(int i = right - 1; i >= keep; i--) {
+      sorted.remove(i);
+    }
+    if(keep > left) {
+      buildTree(left, keep, 0, iter);
+    }
+    else if(left > 0) {
+      runs.removeAt(runs.size() - 1);
+    }
+  }
+
+  /**
+   * Find the position of an object in a subtree.
+   *
+   * @param left Subtree begin
+   * @param right Subtree end (exclusive)
+   * @param axis Current splitting axis
+   * @param obj Object to find
+   * @param id Object id
+   * @param iter Iterator variable
+   * @return Position, or -1 if not found
+   */
+  private int findPosition(int left, int right, int axis, O obj, DBIDRef id, DoubleDBIDListIter iter) {
+    if(right - left <= leafsize) {
+      for(iter.seek(left); iter.getOffset() < right; iter.advance()) {
+        if(DBIDUtil.equal(iter, id) && !isDeleted(iter.getOffset())) {
+          return iter.getOffset();
+        }
+      }
+      return -1;
+    }
+    final int middle = (left + right) >>> 1;
+    if(DBIDUtil.equal(iter.seek(middle), id) && !isDeleted(middle)) {
+      return middle;
+    }
+    final double delta = iter.doubleValue() - obj.doubleValue(axis);
+    final int next = (axis + 1) % dims;
+    int pos = -1;
+    if(delta >= 0 && left < middle) {
+      pos = findPosition(left, middle, next, obj, id, iter);
+    }
+    if(pos < 0 && delta <= 0 && middle + 1 < right) {
+      pos = findPosition(middle + 1, right, next, obj, id, iter);
+    }
+    return pos;
   }
 
   /**
@@ -253,6 +453,22 @@ public class SmallMemoryKDTree<O extends NumberVector> extends AbstractIndex<O>i
     return null;
   }
 
+  /**
+   * Get a dual-tree join to compute the k nearest neighbors of all indexed
+   * objects at once.
+   *
+   * @param distanceFunction Distance function
+   * @return kNN join
+   */
+  public KDTreeKNNJoin<O> getKNNJoin(SpatialPrimitiveDistanceFunction<? super O> distanceFunction) {
+    if(runs.size() > 1 || numdeleted > 0) {
+      runs.resetQuick();
+      runs.add(0);
+      rebuild(0);
+    }
+    return new KDTreeKNNJoin<>(relation, sorted.iter(), sorted.size(), leafsize, distanceFunction);
+  }
+
   /**
    * kNN query for the k-d-tree.
    *
@@ -278,7 +494,11 @@ public class SmallMemoryKDTree<O extends NumberVector> extends AbstractIndex<O>i
     @Override
     public KNNList getKNNForObject(O obj, int k) {
       final KNNHeap knns = DBIDUtil.newHeap(k);
-      kdKNNSearch(0, sorted.size(), 0, obj, knns, sorted.iter(), Double.POSITIVE_INFINITY);
+      DoubleDBIDListIter iter = sorted.iter();
+      double maxdist = Double.POSITIVE_INFINITY;
+      for(int r = 0; r < runs.size(); r++) {
+        maxdist = kdKNNSearch(runs.get(r), runEnd(r), 0, obj, knns, iter, maxdist);
+      }
       return knns.toKNNList();
     }
 
@@ -297,6 +517,9 @@ public class SmallMemoryKDTree<O extends NumberVector> extends AbstractIndex<O>i
     private double kdKNNSearch(int left, int right, int axis, O query, KNNHeap knns, DoubleDBIDListIter iter, double maxdist) {
       if(right - left <= leafsize) {
         for(iter.seek(left); iter.getOffset() < right; iter.advance()) {
+          if(isDeleted(iter.getOffset())) {
+            continue;
+          }
           double dist = norm.distance(query, relation.get(iter));
           countObjectAccess();
           countDistanceComputation();
@@ -312,7 +535,7 @@ public class SmallMemoryKDTree<O extends NumberVector> extends AbstractIndex<O>i
 
       // Distance to axis:
       final double delta = iter.seek(middle).doubleValue() - query.doubleValue(axis);
-      assert(iter.doubleValue() == relation.get(iter).doubleValue(axis)) : "Tree inconsistent " + left + " < " + middle + " < " + right + ": " + iter.doubleValue() + " != " + relation.get(iter).doubleValue(axis) + " " + relation.get(iter);
+      assert(isDeleted(middle) || iter.doubleValue() == relation.get(iter).doubleValue(axis)) : "Tree inconsistent " + left + " < " + middle + " < " + right + ": " + iter.doubleValue() + " != " + relation.get(iter).doubleValue(axis) + " " + relation.get(iter);
       final boolean onleft = (delta >= 0);
       final boolean onright = (delta <= 0);
 
@@ -322,14 +545,16 @@ public class SmallMemoryKDTree<O extends NumberVector> extends AbstractIndex<O>i
       // Exact match chance (delta == 0)!
       // process first, then descend both sides.
       if(onleft && onright) {
-        O split = relation.get(iter.seek(middle));
-        countObjectAccess();
-        double dist = norm.distance(query, split);
-        countDistanceComputation();
-        if(dist <= maxdist) {
-          assert(iter.getOffset() == middle);
-          knns.insert(dist, iter /* .seek(middle) */);
-          maxdist = knns.getKNNDistance();
+        if(!isDeleted(middle)) {
+          O split = relation.get(iter.seek(middle));
+          countObjectAccess();
+          double dist = norm.distance(query, split);
+          countDistanceComputation();
+          if(dist <= maxdist) {
+            assert(iter.getOffset() == middle);
+            knns.insert(dist, iter /* .seek(middle) */);
+            maxdist = knns.getKNNDistance();
+          }
         }
         if(left < middle) {
           maxdist = kdKNNSearch(left, middle, next, query, knns, iter, maxdist);
@@ -344,7 +569,7 @@ public class SmallMemoryKDTree<O extends NumberVector> extends AbstractIndex<O>i
             maxdist = kdKNNSearch(left, middle, next, query, knns, iter, maxdist);
           }
           // Look at splitting element (unless already above):
-          if(Math.abs(delta) <= maxdist) {
+          if(Math.abs(delta) <= maxdist && !isDeleted(middle)) {
             O split = relation.get(iter.seek(middle));
             countObjectAccess();
             double dist = norm.distance(query, split);
@@ -364,7 +589,7 @@ public class SmallMemoryKDTree<O extends NumberVector> extends AbstractIndex<O>i
             maxdist = kdKNNSearch(middle + 1, right, next, query, knns, iter, maxdist);
           }
           // Look at splitting element (unless already above):
-          if(Math.abs(delta) <= maxdist) {
+          if(Math.abs(delta) <= maxdist && !isDeleted(middle)) {
             O split = relation.get(iter.seek(middle));
             countObjectAccess();
             double dist = norm.distance(query, split);
@@ -389,12 +614,18 @@ public class SmallMemoryKDTree<O extends NumberVector> extends AbstractIndex<O>i
    *
    * @author Erich Schubert
    */
-  public class KDTreeRangeQuery extends AbstractDistanceRangeQuery<O> {
+  public class KDTreeRangeQuery extends AbstractDistanceRangeQuery<O>implements RangeCountQuery<O> {
     /**
      * Norm to use.
      */
     private Norm<? super O> norm;
 
+    /**
+     * Norm as spatial distance, if cells completely within the radius can be
+     * counted at once; {@code null} otherwise.
+     */
+    private SpatialPrimitiveDistanceFunction<? super O> spatial = null;
+
     /**
      * Constructor.
      *
@@ -404,11 +635,19 @@ public class SmallMemoryKDTree<O extends NumberVector> extends AbstractIndex<O>i
     public KDTreeRangeQuery(DistanceQuery<O> distanceQuery, Norm<? super O> norm) {
       super(distanceQuery);
       this.norm = norm;
+      if(norm instanceof LPNormDistanceFunction || norm instanceof SquaredEuclideanDistanceFunction) {
+        @SuppressWarnings("unchecked")
+        SpatialPrimitiveDistanceFunction<? super O> snorm = (SpatialPrimitiveDistanceFunction<? super O>) norm;
+        this.spatial = snorm;
+      }
     }
 
     @Override
     public void getRangeForObject(O obj, double range, ModifiableDoubleDBIDList result) {
-      kdRangeSearch(0, sorted.size(), 0, obj, result, sorted.iter(), range);
+      DoubleDBIDListIter iter = sorted.iter();
+      for(int r = 0; r < runs.size(); r++) {
+        kdRangeSearch(runs.get(r), runEnd(r), 0, obj, result, iter, range);
+      }
     }
 
     /**
@@ -425,6 +664,9 @@ public class SmallMemoryKDTree<O extends NumberVector> extends AbstractIndex<O>i
     private void kdRangeSearch(int left, int right, int axis, O query, ModifiableDoubleDBIDList res, DoubleDBIDListIter iter, double radius) {
       if(right - left <= leafsize) {
         for(iter.seek(left); iter.getOffset() < right; iter.advance()) {
+          if(isDeleted(iter.getOffset())) {
+            continue;
+          }
           double dist = norm.distance(query, relation.get(iter));
           countObjectAccess();
           countDistanceComputation();
@@ -447,7 +689,7 @@ public class SmallMemoryKDTree<O extends NumberVector> extends AbstractIndex<O>i
       final int next = (axis + 1) % dims;
 
       // Current object:
-      if(close) {
+      if(close && !isDeleted(middle)) {
         O split = relation.get(iter.seek(middle));
         countObjectAccess();
         double dist = norm.distance(query, split);
@@ -464,6 +706,115 @@ public class SmallMemoryKDTree<O extends NumberVector> extends AbstractIndex<O>i
         kdRangeSearch(middle + 1, right, next, query, res, iter, radius);
       }
     }
+
+    @Override
+    public int getRangeCountForDBID(DBIDRef id, double range, int max) {
+      return getRangeCountForObject(relation.get(id), range, max);
+    }
+
+    @Override
+    public int getRangeCountForObject(O obj, double range, int max) {
+      DoubleDBIDListIter iter = sorted.iter();
+      // Bounds of the current cell, starting unbounded:
+      ModifiableHyperBoundingBox cell = null, cornerbox = null;
+      double[] corner = null;
+      if(spatial != null && dims > 0) {
+        cell = new ModifiableHyperBoundingBox(dims, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        corner = new double[dims];
+        cornerbox = new ModifiableHyperBoundingBox(corner, corner);
+      }
+      int count = 0;
+      for(int r = 0; r < runs.size() && count < max; r++) {
+        count += kdRangeCount(runs.get(r), runEnd(r), 0, obj, iter, range, max - count, cell, corner, cornerbox);
+      }
+      return Math.min(count, max);
+    }
+
+    /**
+     * Count the neighbors within a radius in the kd-tree.
+     *
+     * Cells that are completely within the radius are counted without
+     * computing distances.
+     *
+     * @param left Subtree begin
+     * @param right Subtree end (exclusive)
+     * @param axis Current splitting axis
+     * @param query Query object
+     * @param iter Iterator variable (reduces memory footprint!)
+     * @param radius Query radius
+     * @param max Stop counting at this threshold
+     * @param cell Bounds of the current cell, may be {@code null}
+     * @param corner Buffer for the farthest corner of the cell
+     * @param cornerbox Farthest corner, wrapped as box
+     * @return Number of neighbors found
+     */
+    private int kdRangeCount(int left, int right, int axis, O query, DoubleDBIDListIter iter, double radius, int max, ModifiableHyperBoundingBox cell, double[] corner, ModifiableHyperBoundingBox cornerbox) {
+      if(cell != null) {
+        // Entire cell within the radius?
+        SpatialUtil.farthestCorner(cell, query, corner);
+        if(spatial.minDist(query, cornerbox) <= radius) {
+          return countLive(left, right);
+        }
+      }
+      int count = 0;
+      if(right - left <= leafsize) {
+        for(iter.seek(left); iter.getOffset() < right && count < max; iter.advance()) {
+          if(isDeleted(iter.getOffset())) {
+            continue;
+          }
+          countObjectAccess();
+          countDistanceComputation();
+          if(norm.distance(query, relation.get(iter)) <= radius) {
+            ++count;
+          }
+        }
+        return count;
+      }
+      // Look at current node:
+      final int middle = (left + right) >>> 1;
+      final double split = iter.seek(middle).doubleValue();
+      countObjectAccess();
+
+      // Distance to axis:
+      final double delta = split - query.doubleValue(axis);
+      final boolean onleft = (delta >= 0);
+      final boolean onright = (delta <= 0);
+      final boolean close = (Math.abs(delta) <= radius);
+
+      // Next axis:
+      final int next = (axis + 1) % dims;
+
+      // Current object:
+      if(close && !isDeleted(middle)) {
+        countDistanceComputation();
+        if(norm.distance(query, relation.get(iter.seek(middle))) <= radius) {
+          ++count;
+        }
+      }
+      if(left < middle && (onleft || close) && count < max) {
+        // Left cell: upper bound is the split value.
+        final double old = cell != null ? cell.getMax(axis) : 0.;
+        if(cell != null) {
+          cell.setMax(axis, Math.min(old, split));
+        }
+        count += kdRangeCount(left, middle, next, query, iter, radius, max - count, cell, corner, cornerbox);
+        if(cell != null) {
+          cell.setMax(axis, old);
+        }
+      }
+      if(middle + 1 < right && (onright || close) && count < max) {
+        // Right cell: lower bound is the split value.
+        final double old = cell != null ? cell.getMin(axis) : 0.;
+        if(cell != null) {
+          cell.setMin(axis, Math.max(old, split));
+        }
+        count += kdRangeCount(middle + 1, right, next, query, iter, radius, max - count, cell, corner, cornerbox);
+        if(cell != null) {
+          cell.setMin(axis, old);
+        }
+      }
+      return count;
+    }
   }
 
   /**
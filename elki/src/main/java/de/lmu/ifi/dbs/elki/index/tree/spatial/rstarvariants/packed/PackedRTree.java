@@ -0,0 +1,625 @@
+package de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.packed;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.QueryUtil;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBID;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.AbstractDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.AbstractDistanceRangeQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.AbstractIndex;
+import de.lmu.ifi.dbs.elki.index.IndexFactory;
+import de.lmu.ifi.dbs.elki.index.KNNIndex;
+import de.lmu.ifi.dbs.elki.index.RangeIndex;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.SpatialPair;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.AbstractRStarTreeFactory;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.strategies.bulk.BulkSplit;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.strategies.bulk.SortTileRecursiveBulkSplit;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.Counter;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.utilities.Alias;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleLongMinHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Packed, read-only R-tree for static data, bulk-loaded with a
+ * {@link BulkSplit} strategy (by default Sort-Tile-Recursive).
+ *
+ * Instead of node and entry objects, every level of the tree is stored as one
+ * contiguous {@code double[]} of bounding boxes (all minima of a node, followed
+ * by all maxima), and one {@code int[]} of child ranges in the level below.
+ * The data points are copied into a flat coordinate array in leaf order, so
+ * queries do not need to access the relation. Queries are best-first (kNN)
+ * and depth-first (range) searches that scan these arrays directly.
+ *
+ * Only Euclidean and squared Euclidean distance are supported. The tree does
+ * not support updates; use {@link de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.rstar.RStarTreeIndex}
+ * for dynamic data.
+ *
+ * Reference:
+ * <p>
+ * Leutenegger, S.T. and Lopez, M.A. and Edgington, J.:<br />
+ * STR: A simple and efficient algorithm for R-tree packing<br />
+ * In: Proc. 13th International Conference on Data Engineering, 1997
+ * </p>
+ *
+ * @author Erich Schubert
+ *
+ * @apiviz.has PackedRTreeKNNQuery
+ * @apiviz.has PackedRTreeRangeQuery
+ *
+ * @param <O> Vector type
+ */
+@Reference(authors = "Leutenegger, S.T. and Lopez, M.A. and Edgington, J.", //
+title = "STR: A simple and efficient algorithm for R-tree packing", //
+booktitle = "Proc. 13th International Conference on Data Engineering, 1997", //
+url = "http://dx.doi.org/10.1109/ICDE.1997.582015")
+public class PackedRTree<O extends NumberVector> extends AbstractIndex<O>implements KNNIndex<O>, RangeIndex<O> {
+  /**
+   * Class logger
+   */
+  private static final Logging LOG = Logging.getLogger(PackedRTree.class);
+
+  /**
+   * Number of bits used to encode the level in heap entries.
+   */
+  private static final int LEVEL_BITS = 6;
+
+  /**
+   * Bulk split strategy.
+   */
+  BulkSplit bulkSplitter;
+
+  /**
+   * Maximum number of entries per node.
+   */
+  int fanout;
+
+  /**
+   * Dimensionality.
+   */
+  int dims = -1;
+
+  /**
+   * Object ids, in leaf order.
+   */
+  ArrayModifiableDBIDs ids;
+
+  /**
+   * Object coordinates, in leaf order.
+   */
+  double[] points;
+
+  /**
+   * Bounding boxes of each level, the leaves are at level 0.
+   */
+  double[][] mbrs;
+
+  /**
+   * Child ranges of each level: node i covers the children
+   * {@code offsets[l][2*i]} (inclusive) to {@code offsets[l][2*i+1]}
+   * (exclusive).
+   */
+  int[][] offsets;
+
+  /**
+   * Counter for distance computations.
+   */
+  final Counter distcalc;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Relation to index
+   * @param bulkSplitter Bulk split strategy
+   * @param fanout Maximum number of entries per node
+   */
+  public PackedRTree(Relation<O> relation, BulkSplit bulkSplitter, int fanout) {
+    super(relation);
+    this.bulkSplitter = bulkSplitter;
+    this.fanout = fanout;
+    this.distcalc = LOG.isStatistics() ? LOG.newCounter(this.getClass().getName() + ".distancecalcs") : null;
+  }
+
+  @Override
+  public void initialize() {
+    dims = RelationUtil.dimensionality(relation);
+    final int size = relation.size();
+    ids = DBIDUtil.newArray(size);
+    points = new double[size * dims];
+    if(size == 0) {
+      mbrs = new double[0][];
+      offsets = new int[0][];
+      return;
+    }
+    final int minEntries = Math.max(1, (int) (fanout * .4));
+    // Leaf level: partition and copy the data points.
+    List<SpatialPair<DBID, O>> objs = new ArrayList<>(size);
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+      objs.add(new SpatialPair<>(DBIDUtil.deref(iter), relation.get(iter)));
+    }
+    List<List<SpatialPair<DBID, O>>> groups = bulkSplitter.partition(objs, Math.min(minEntries, size), fanout);
+    List<BuildNode> nodes = new ArrayList<>(groups.size());
+    for(List<SpatialPair<DBID, O>> group : groups) {
+      BuildNode node = new BuildNode(dims, ids.size(), ids.size() + group.size());
+      for(SpatialPair<DBID, O> pair : group) {
+        final int off = ids.size() * dims;
+        for(int d = 0; d < dims; d++) {
+          points[off + d] = pair.second.doubleValue(d);
+        }
+        node.extend(pair.second);
+        ids.add(pair.first);
+      }
+      nodes.add(node);
+    }
+    // Directory levels: partition the nodes of the previous level.
+    List<double[]> lmbrs = new ArrayList<>();
+    List<int[]> loffsets = new ArrayList<>();
+    while(true) {
+      List<List<BuildNode>> ngroups = nodes.size() > 1 ? bulkSplitter.partition(nodes, Math.min(minEntries, nodes.size()), fanout) : null;
+      List<BuildNode> order = nodes;
+      if(ngroups != null) {
+        order = new ArrayList<>(nodes.size());
+        for(List<BuildNode> group : ngroups) {
+          order.addAll(group);
+        }
+      }
+      // Serialize the current level, in the order of the parent level.
+      double[] mbr = new double[order.size() * 2 * dims];
+      int[] off = new int[order.size() << 1];
+      for(int i = 0; i < order.size(); i++) {
+        BuildNode node = order.get(i);
+        System.arraycopy(node.min, 0, mbr, i * 2 * dims, dims);
+        System.arraycopy(node.max, 0, mbr, i * 2 * dims + dims, dims);
+        off[i << 1] = node.start;
+        off[(i << 1) + 1] = node.end;
+      }
+      lmbrs.add(mbr);
+      loffsets.add(off);
+      if(ngroups == null) {
+        break;
+      }
+      List<BuildNode> parents = new ArrayList<>(ngroups.size());
+      int start = 0;
+      for(List<BuildNode> group : ngroups) {
+        BuildNode parent = new BuildNode(dims, start, start + group.size());
+        for(BuildNode child : group) {
+          parent.extend(child);
+        }
+        parents.add(parent);
+        start += group.size();
+      }
+      nodes = parents;
+    }
+    mbrs = lmbrs.toArray(new double[lmbrs.size()][]);
+    offsets = loffsets.toArray(new int[loffsets.size()][]);
+  }
+
+  /**
+   * Node representation used during construction only.
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.exclude
+   */
+  private static class BuildNode implements SpatialComparable {
+    /**
+     * Bounding box.
+     */
+    double[] min, max;
+
+    /**
+     * Child range.
+     */
+    int start, end;
+
+    /**
+     * Constructor.
+     *
+     * @param dims Dimensionality
+     * @param start First child
+     * @param end End of children (exclusive)
+     */
+    BuildNode(int dims, int start, int end) {
+      this.min = new double[dims];
+      this.max = new double[dims];
+      this.start = start;
+      this.end = end;
+      for(int d = 0; d < dims; d++) {
+        min[d] = Double.POSITIVE_INFINITY;
+        max[d] = Double.NEGATIVE_INFINITY;
+      }
+    }
+
+    /**
+     * Extend the bounding box.
+     *
+     * @param obj Object to include
+     */
+    void extend(SpatialComparable obj) {
+      for(int d = 0; d < min.length; d++) {
+        min[d] = Math.min(min[d], obj.getMin(d));
+        max[d] = Math.max(max[d], obj.getMax(d));
+      }
+    }
+
+    @Override
+    public int getDimensionality() {
+      return min.length;
+    }
+
+    @Override
+    public double getMin(int dimension) {
+      return min[dimension];
+    }
+
+    @Override
+    public double getMax(int dimension) {
+      return max[dimension];
+    }
+  }
+
+  /**
+   * Squared Euclidean minimum distance of a query to a bounding box.
+   *
+   * @param query Query vector
+   * @param mbr Bounding box array
+   * @param off Offset of the bounding box
+   * @return Squared minimum distance
+   */
+  private double squaredMinDist(NumberVector query, double[] mbr, int off) {
+    double agg = 0.;
+    for(int d = 0, m = off + dims; d < dims; d++) {
+      final double v = query.doubleValue(d), min = mbr[off + d];
+      double delta = min - v;
+      if(delta < 0.) {
+        delta = v - mbr[m + d];
+      }
+      if(delta > 0.) {
+        agg += delta * delta;
+      }
+    }
+    return agg;
+  }
+
+  /**
+   * Squared Euclidean distance of a query to a data point.
+   *
+   * @param query Query vector
+   * @param i Point number
+   * @return Squared distance
+   */
+  private double squaredDistance(NumberVector query, int i) {
+    double agg = 0.;
+    for(int d = 0, off = i * dims; d < dims; d++) {
+      final double delta = points[off + d] - query.doubleValue(d);
+      agg += delta * delta;
+    }
+    countDistanceComputation();
+    return agg;
+  }
+
+  /**
+   * Count a distance computation.
+   */
+  protected void countDistanceComputation() {
+    if(distcalc != null) {
+      distcalc.increment();
+    }
+  }
+
+  @Override
+  public String getLongName() {
+    return "packed R-tree";
+  }
+
+  @Override
+  public String getShortName() {
+    return "packed-rtree";
+  }
+
+  @Override
+  public void logStatistics() {
+    if(distcalc != null) {
+      LOG.statistics(distcalc);
+    }
+    LOG.statistics(new LongStatistic(this.getClass().getName() + ".height", mbrs.length));
+  }
+
+  @Override
+  public KNNQuery<O> getKNNQuery(DistanceQuery<O> distanceQuery, Object... hints) {
+    if(distanceQuery.getRelation() != relation) {
+      return null;
+    }
+    DistanceFunction<? super O> df = distanceQuery.getDistanceFunction();
+    if(df instanceof EuclideanDistanceFunction) {
+      return new PackedRTreeKNNQuery(distanceQuery, true);
+    }
+    if(df instanceof SquaredEuclideanDistanceFunction) {
+      return new PackedRTreeKNNQuery(distanceQuery, false);
+    }
+    return null;
+  }
+
+  @Override
+  public RangeQuery<O> getRangeQuery(DistanceQuery<O> distanceQuery, Object... hints) {
+    if(distanceQuery.getRelation() != relation) {
+      return null;
+    }
+    DistanceFunction<? super O> df = distanceQuery.getDistanceFunction();
+    if(df instanceof EuclideanDistanceFunction) {
+      return new PackedRTreeRangeQuery(distanceQuery, true);
+    }
+    if(df instanceof SquaredEuclideanDistanceFunction) {
+      return new PackedRTreeRangeQuery(distanceQuery, false);
+    }
+    return null;
+  }
+
+  /**
+   * kNN query for the packed R-tree, using best-first search.
+   *
+   * Reference:
+   * <p>
+   * G. R. Hjaltason, H. Samet<br />
+   * Ranking in spatial databases<br />
+   * In: 4th Symposium on Advances in Spatial Databases, SSD'95
+   * </p>
+   *
+   * @author Erich Schubert
+   */
+  @Reference(authors = "G. R. Hjaltason, H. Samet", //
+  title = "Ranking in spatial databases", //
+  booktitle = "Advances in Spatial Databases - 4th Symposium, SSD'95", //
+  url = "http://dx.doi.org/10.1007/3-540-60159-7_6")
+  public class PackedRTreeKNNQuery extends AbstractDistanceKNNQuery<O> {
+    /**
+     * Take the square root of the results (Euclidean distance).
+     */
+    private boolean sqrt;
+
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     * @param sqrt Take the square root of the results
+     */
+    public PackedRTreeKNNQuery(DistanceQuery<O> distanceQuery, boolean sqrt) {
+      super(distanceQuery);
+      this.sqrt = sqrt;
+    }
+
+    @Override
+    public KNNList getKNNForObject(O obj, int k) {
+      final KNNHeap knns = DBIDUtil.newHeap(k);
+      if(mbrs.length == 0) {
+        return knns.toKNNList();
+      }
+      final DBIDArrayIter iter = ids.iter();
+      final DoubleLongMinHeap pq = new DoubleLongMinHeap(Math.max(k << 1, 21));
+      pq.add(0., mbrs.length - 1); // Root node.
+      double maxdist = Double.POSITIVE_INFINITY;
+      while(!pq.isEmpty() && pq.peekKey() <= maxdist) {
+        final long val = pq.peekValue();
+        pq.poll();
+        final int level = (int) (val & ((1 << LEVEL_BITS) - 1));
+        final int node = (int) (val >>> LEVEL_BITS);
+        final int start = offsets[level][node << 1], end = offsets[level][(node << 1) + 1];
+        if(level == 0) {
+          for(int i = start; i < end; i++) {
+            final double dist = squaredDistance(obj, i);
+            if(dist <= maxdist) {
+              maxdist = knns.insert(dist, iter.seek(i));
+            }
+          }
+          continue;
+        }
+        final double[] cmbrs = mbrs[level - 1];
+        for(int i = start; i < end; i++) {
+          final double mindist = squaredMinDist(obj, cmbrs, i * 2 * dims);
+          if(mindist <= maxdist) {
+            pq.add(mindist, (((long) i) << LEVEL_BITS) | (level - 1));
+          }
+        }
+      }
+      return sqrt ? QueryUtil.applySqrt(knns.toKNNList()) : knns.toKNNList();
+    }
+  }
+
+  /**
+   * Range query for the packed R-tree.
+   *
+   * @author Erich Schubert
+   */
+  public class PackedRTreeRangeQuery extends AbstractDistanceRangeQuery<O> {
+    /**
+     * Euclidean distance (rather than squared Euclidean).
+     */
+    private boolean sqrt;
+
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     * @param sqrt Euclidean distance (rather than squared Euclidean)
+     */
+    public PackedRTreeRangeQuery(DistanceQuery<O> distanceQuery, boolean sqrt) {
+      super(distanceQuery);
+      this.sqrt = sqrt;
+    }
+
+    @Override
+    public void getRangeForObject(O obj, double range, ModifiableDoubleDBIDList result) {
+      if(mbrs.length == 0) {
+        return;
+      }
+      rangeSearch(mbrs.length - 1, 0, obj, sqrt ? range * range : range, result, ids.iter());
+    }
+
+    /**
+     * Perform a range search on a node.
+     *
+     * @param level Level of the node
+     * @param node Node number
+     * @param query Query vector
+     * @param sqrange Squared query radius
+     * @param result Output list
+     * @param iter Iterator variable
+     */
+    private void rangeSearch(int level, int node, NumberVector query, double sqrange, ModifiableDoubleDBIDList result, DBIDArrayIter iter) {
+      final int start = offsets[level][node << 1], end = offsets[level][(node << 1) + 1];
+      if(level == 0) {
+        for(int i = start; i < end; i++) {
+          final double dist = squaredDistance(query, i);
+          if(dist <= sqrange) {
+            result.add(sqrt ? Math.sqrt(dist) : dist, iter.seek(i));
+          }
+        }
+        return;
+      }
+      final double[] cmbrs = mbrs[level - 1];
+      for(int i = start; i < end; i++) {
+        if(squaredMinDist(query, cmbrs, i * 2 * dims) <= sqrange) {
+          rangeSearch(level - 1, i, query, sqrange, result, iter);
+        }
+      }
+    }
+  }
+
+  /**
+   * Factory class
+   *
+   * @author Erich Schubert
+   *
+   * @apiviz.stereotype factory
+   * @apiviz.has PackedRTree
+   *
+   * @param <O> Vector type
+   */
+  @Alias({ "packedrtree" })
+  public static class Factory<O extends NumberVector> implements IndexFactory<O, PackedRTree<O>> {
+    /**
+     * Bulk split strategy.
+     */
+    BulkSplit bulkSplitter;
+
+    /**
+     * Maximum number of entries per node.
+     */
+    int fanout;
+
+    /**
+     * Constructor.
+     *
+     * @param bulkSplitter Bulk split strategy
+     * @param fanout Maximum number of entries per node
+     */
+    public Factory(BulkSplit bulkSplitter, int fanout) {
+      super();
+      this.bulkSplitter = bulkSplitter;
+      this.fanout = fanout;
+    }
+
+    @Override
+    public PackedRTree<O> instantiate(Relation<O> relation) {
+      return new PackedRTree<>(relation, bulkSplitter, fanout);
+    }
+
+    @Override
+    public TypeInformation getInputTypeRestriction() {
+      return TypeUtil.NUMBER_VECTOR_FIELD;
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     *
+     * @apiviz.exclude
+     */
+    public static class Parameterizer<O extends NumberVector> extends AbstractParameterizer {
+      /**
+       * Option for the maximum number of entries per node.
+       */
+      public static final OptionID FANOUT_ID = new OptionID("packedrtree.fanout", "Maximum number of entries per node of the packed R-tree.");
+
+      /**
+       * Bulk split strategy.
+       */
+      BulkSplit bulkSplitter;
+
+      /**
+       * Maximum number of entries per node.
+       */
+      int fanout;
+
+      @Override
+      protected void makeOptions(Parameterization config) {
+        super.makeOptions(config);
+        ObjectParameter<BulkSplit> bulkSplitP = new ObjectParameter<>(AbstractRStarTreeFactory.Parameterizer.BULK_SPLIT_ID, BulkSplit.class, SortTileRecursiveBulkSplit.class);
+        if(config.grab(bulkSplitP)) {
+          bulkSplitter = bulkSplitP.instantiateClass(config);
+        }
+        IntParameter fanoutP = new IntParameter(FANOUT_ID, 32) //
+        .addConstraint(CommonConstraints.GREATER_THAN_ONE_INT);
+        if(config.grab(fanoutP)) {
+          fanout = fanoutP.intValue();
+        }
+      }
+
+      @Override
+      protected Factory<O> makeInstance() {
+        return new Factory<>(bulkSplitter, fanout);
+      }
+    }
+  }
+}
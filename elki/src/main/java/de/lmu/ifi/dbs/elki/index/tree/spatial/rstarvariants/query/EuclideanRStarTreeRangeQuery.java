@@ -25,7 +25,9 @@ package de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.query;
 
 import java.util.Arrays;
 
+import de.lmu.ifi.dbs.elki.data.ModifiableHyperBoundingBox;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.spatial.SpatialUtil;
 import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
@@ -109,4 +111,54 @@ public class EuclideanRStarTreeRangeQuery<O extends NumberVector> extends RStarT
       }
     }
   }
-}
\ No newline at end of file
+
+  @Override
+  public int getRangeCountForObject(O object, double range, int max) {
+    tree.statistics.countRangeQuery();
+    final double sqepsilon = range * range;
+    final double[] corner = new double[object.getDimensionality()];
+    final ModifiableHyperBoundingBox cornerbox = new ModifiableHyperBoundingBox(corner, corner);
+    int count = 0;
+
+    // Processing queue.
+    int[] pq = new int[101];
+    int ps = 0;
+    pq[ps++] = tree.getRootID();
+
+    // search in tree
+    while(ps > 0 && count < max) {
+      int pqNode = pq[--ps]; // Pop last.
+      AbstractRStarTreeNode<?, ?> node = tree.getNode(pqNode);
+      final int numEntries = node.getNumEntries();
+
+      if(node.isLeaf()) {
+        for(int i = 0; i < numEntries; i++) {
+          double distance = SQUARED.minDist(object, node.getEntry(i));
+          tree.statistics.countDistanceCalculation();
+          if(distance <= sqepsilon) {
+            count++;
+          }
+        }
+      }
+      else {
+        for(int i = 0; i < numEntries; i++) {
+          SpatialDirectoryEntry entry = (SpatialDirectoryEntry) node.getEntry(i);
+          double distance = SQUARED.minDist(object, entry);
+          if(distance <= sqepsilon) {
+            // Entire subtree within the radius?
+            SpatialUtil.farthestCorner(entry, object, corner);
+            if(SQUARED.minDist(object, cornerbox) <= sqepsilon) {
+              count += countSubtree(entry.getEntryID());
+              continue;
+            }
+            if(ps == pq.length) { // Resize:
+              pq = Arrays.copyOf(pq, pq.length + (pq.length >>> 1));
+            }
+            pq[ps++] = entry.getEntryID();
+          }
+        }
+      }
+    }
+    return Math.min(count, max);
+  }
+}
@@ -40,6 +40,9 @@ import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.KNNHeap;
 import de.lmu.ifi.dbs.elki.database.ids.KNNList;
 import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.query.knn.AbstractDistanceBrowsingIter;
+import de.lmu.ifi.dbs.elki.database.query.knn.DistanceBrowsingIter;
+import de.lmu.ifi.dbs.elki.database.query.knn.DistanceBrowsingQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.SpatialPrimitiveDistanceFunction;
@@ -69,12 +72,13 @@ import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
  * @apiviz.uses AbstractRStarTree
  * @apiviz.uses SpatialPrimitiveDistanceFunction
  * @apiviz.uses DoubleDistanceSearchCandidate
+ * @apiviz.has RStarTreeDistanceBrowsingIter
  */
 @Reference(authors = "G. R. Hjaltason, H. Samet", //
 title = "Ranking in spatial databases", //
 booktitle = "Advances in Spatial Databases - 4th Symposium, SSD'95", //
 url = "http://dx.doi.org/10.1007/3-540-60159-7_6")
-public class RStarTreeKNNQuery<O extends SpatialComparable> implements KNNQuery<O> {
+public class RStarTreeKNNQuery<O extends SpatialComparable> implements KNNQuery<O>, DistanceBrowsingQuery<O> {
   /**
    * The index to use
    */
@@ -167,6 +171,72 @@ public class RStarTreeKNNQuery<O extends SpatialComparable> implements KNNQuery<
     return maxDist;
   }
 
+  @Override
+  public DistanceBrowsingIter getNeighborsForDBID(DBIDRef id) {
+    return getNeighborsForObject(relation.get(id));
+  }
+
+  @Override
+  public DistanceBrowsingIter getNeighborsForObject(O obj) {
+    tree.statistics.countKNNQuery();
+    return new RStarTreeDistanceBrowsingIter(obj);
+  }
+
+  /**
+   * Incremental nearest neighbor search: directory entries are queued with
+   * their minimum distance, leaf entries with their exact distance.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  protected class RStarTreeDistanceBrowsingIter extends AbstractDistanceBrowsingIter {
+    /**
+     * Query object.
+     */
+    private final O obj;
+
+    /**
+     * Constructor.
+     * 
+     * @param obj Query object
+     */
+    protected RStarTreeDistanceBrowsingIter(O obj) {
+      super();
+      this.obj = obj;
+      expandNode(tree.getRootID());
+      advance();
+    }
+
+    @Override
+    protected void expand(double mindist, Object node) {
+      expandNode(((SpatialDirectoryEntry) node).getPageID());
+    }
+
+    /**
+     * Queue the entries of a node.
+     * 
+     * @param nodeID Node to expand
+     */
+    private void expandNode(int nodeID) {
+      AbstractRStarTreeNode<?, ?> node = tree.getNode(nodeID);
+      if(node.isLeaf()) {
+        for(int i = 0; i < node.getNumEntries(); i++) {
+          SpatialPointLeafEntry entry = (SpatialPointLeafEntry) node.getEntry(i);
+          addObject(distanceFunction.minDist(entry, obj), entry.getDBID());
+          tree.statistics.countDistanceCalculation();
+        }
+      }
+      else {
+        for(int i = 0; i < node.getNumEntries(); i++) {
+          SpatialDirectoryEntry entry = (SpatialDirectoryEntry) node.getEntry(i);
+          addNode(distanceFunction.minDist(entry, obj), entry);
+          tree.statistics.countDistanceCalculation();
+        }
+      }
+    }
+  }
+
   /**
    * Performs a batch knn query.
    * 
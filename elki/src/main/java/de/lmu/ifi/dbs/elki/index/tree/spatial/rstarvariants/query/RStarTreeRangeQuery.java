@@ -25,14 +25,19 @@ package de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.query;
 
 import java.util.Arrays;
 
+import de.lmu.ifi.dbs.elki.data.ModifiableHyperBoundingBox;
 import de.lmu.ifi.dbs.elki.data.spatial.SpatialComparable;
+import de.lmu.ifi.dbs.elki.data.spatial.SpatialUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
 import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeCountQuery;
 import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.SpatialPrimitiveDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.LPNormDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
 import de.lmu.ifi.dbs.elki.index.tree.spatial.SpatialDirectoryEntry;
 import de.lmu.ifi.dbs.elki.index.tree.spatial.SpatialPointLeafEntry;
 import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.AbstractRStarTree;
@@ -56,7 +61,7 @@ import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
  * @apiviz.uses SpatialPrimitiveDistanceFunction
  */
 @Reference(authors = "J. Kuan, P. Lewis", title = "Fast k nearest neighbour search for R-tree family", booktitle = "Proc. Int. Conf Information, Communications and Signal Processing, ICICS 1997", url = "http://dx.doi.org/10.1109/ICICS.1997.652114")
-public class RStarTreeRangeQuery<O extends SpatialComparable> implements RangeQuery<O> {
+public class RStarTreeRangeQuery<O extends SpatialComparable> implements RangeQuery<O>, RangeCountQuery<O> {
   /**
    * The index to use
    */
@@ -146,4 +151,79 @@ public class RStarTreeRangeQuery<O extends SpatialComparable> implements RangeQu
       }
     }
   }
-}
\ No newline at end of file
+
+  @Override
+  public int getRangeCountForDBID(DBIDRef id, double range, int max) {
+    return getRangeCountForObject(relation.get(id), range, max);
+  }
+
+  @Override
+  public int getRangeCountForObject(O obj, double range, int max) {
+    tree.statistics.countRangeQuery();
+    // For Lp norms, we can count whole subtrees within the radius.
+    final boolean contain = distanceFunction instanceof LPNormDistanceFunction || distanceFunction instanceof SquaredEuclideanDistanceFunction;
+    final double[] corner = contain ? new double[obj.getDimensionality()] : null;
+    final ModifiableHyperBoundingBox cornerbox = contain ? new ModifiableHyperBoundingBox(corner, corner) : null;
+    int count = 0;
+
+    // Processing queue.
+    int[] pq = new int[101];
+    int ps = 0;
+    pq[ps++] = tree.getRootID();
+
+    // search in tree
+    while(ps > 0 && count < max) {
+      int pqNode = pq[--ps]; // Pop last.
+      AbstractRStarTreeNode<?, ?> node = tree.getNode(pqNode);
+      final int numEntries = node.getNumEntries();
+
+      if(node.isLeaf()) {
+        for(int i = 0; i < numEntries; i++) {
+          double distance = distanceFunction.minDist(obj, node.getEntry(i));
+          tree.statistics.countDistanceCalculation();
+          if(distance <= range) {
+            count++;
+          }
+        }
+      }
+      else {
+        for(int i = 0; i < numEntries; i++) {
+          SpatialDirectoryEntry entry = (SpatialDirectoryEntry) node.getEntry(i);
+          double distance = distanceFunction.minDist(obj, entry);
+          if(distance <= range) {
+            if(contain) {
+              SpatialUtil.farthestCorner(entry, obj, corner);
+              if(distanceFunction.minDist(obj, cornerbox) <= range) {
+                count += countSubtree(entry.getEntryID());
+                continue;
+              }
+            }
+            if(ps == pq.length) {
+              pq = Arrays.copyOf(pq, pq.length + (pq.length >>> 1));
+            }
+            pq[ps++] = entry.getEntryID();
+          }
+        }
+      }
+    }
+    return Math.min(count, max);
+  }
+
+  /**
+   * Count the number of objects in a subtree, without computing distances.
+   * 
+   * @param nodeID Subtree root
+   * @return Number of leaf entries
+   */
+  protected int countSubtree(int nodeID) {
+    AbstractRStarTreeNode<?, ?> node = tree.getNode(nodeID);
+    if(node.isLeaf()) {
+      return node.getNumEntries();
+    }
+    int count = 0;
+    for(int i = 0; i < node.getNumEntries(); i++) {
+      count += countSubtree(((SpatialDirectoryEntry) node.getEntry(i)).getEntryID());
+    }
+    return count;
+  }
+}
@@ -24,6 +24,7 @@ package de.lmu.ifi.dbs.elki.parallel;
  */
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -53,6 +54,11 @@ public class ParallelCore {
    */
   ThreadPoolExecutor executor;
 
+  /**
+   * Work-stealing pool, see {@link WorkStealingExecutor}.
+   */
+  private volatile ForkJoinPool forkjoin;
+
   /**
    * Number of connected submitters.
    */
@@ -89,6 +95,25 @@ public class ParallelCore {
     return executor.getMaximumPoolSize();
   }
 
+  /**
+   * Get the shared work-stealing pool, using the same number of threads.
+   * 
+   * Worker threads of a {@link ForkJoinPool} are started on demand and
+   * terminate when idle, so this does not require connecting.
+   * 
+   * @return Fork-join pool
+   */
+  public ForkJoinPool getForkJoinPool() {
+    if(forkjoin == null) {
+      synchronized(this) {
+        if(forkjoin == null) {
+          forkjoin = new ForkJoinPool(processors);
+        }
+      }
+    }
+    return forkjoin;
+  }
+
   /**
    * Submit a task to the executor core.
    * 
@@ -43,6 +43,9 @@ import de.lmu.ifi.dbs.elki.parallel.variables.SharedVariable.Instance;
  * 
  * TODO: add progress
  * 
+ * For workloads with strongly varying cost per object, see
+ * {@link WorkStealingExecutor}, which adapts the block sizes at runtime.
+ * 
  * @author Erich Schubert
  * 
  * @apiviz.has BlockArrayRunner
@@ -64,7 +67,7 @@ public class ParallelExecutor {
       core.connect();
       int numparts = core.getParallelism();
       // TODO: are there better heuristics for choosing this?
-      numparts = (size > numparts * numparts * 16) ? numparts * numparts - 1 : numparts;
+      numparts = (numparts > 1 && size > numparts * numparts * 16) ? numparts * numparts - 1 : numparts;
 
       final int blocksize = (size + (numparts - 1)) / numparts;
       List<Future<ArrayDBIDs>> parts = new ArrayList<>(numparts);
@@ -148,7 +151,7 @@ public class ParallelExecutor {
 
       DBIDArrayIter iter = ids.iter();
       iter.seek(start);
-      for(int c = end - start; iter.valid() && c >= 0; iter.advance(), c--) {
+      for(int c = end - start; iter.valid() && c > 0; iter.advance(), c--) {
         for(int i = 0; i < instances.length; i++) {
           instances[i].map(iter);
         }
@@ -0,0 +1,506 @@
+package de.lmu.ifi.dbs.elki.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedVariable;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedVariable.Instance;
+
+/**
+ * Class to run processors in parallel, using a {@link ForkJoinPool}.
+ * 
+ * In contrast to {@link ParallelExecutor}, the ranges are not split into a
+ * fixed number of blocks up front. Instead, ranges are split recursively as
+ * long as the local work queue of the worker is short, and idle workers steal
+ * the pending halves. This adapts the block size to skewed per-object costs,
+ * e.g. kNN queries in dense regions of an index.
+ * 
+ * Processor instances (and shared variables) are created once per worker
+ * thread, not once per block; cleanup is invoked once all blocks have been
+ * processed.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.has RangeTask
+ * @apiviz.has Worker
+ * @apiviz.has Statistics
+ * @apiviz.uses ParallelCore
+ */
+public class WorkStealingExecutor {
+  /**
+   * Default minimum block size.
+   */
+  public static final int DEFAULT_MINIMUM_BLOCKSIZE = 16;
+
+  /**
+   * Number of surplus tasks in the local queue, below which we keep splitting.
+   */
+  private static final int SURPLUS_THRESHOLD = 2;
+
+  /**
+   * Number of threads to use.
+   */
+  private int parallelism;
+
+  /**
+   * Minimum block size, ranges smaller than this will not be split.
+   */
+  private int minblock;
+
+  /**
+   * Constructor, using all available processors.
+   */
+  public WorkStealingExecutor() {
+    this(ParallelCore.ALL_PROCESSORS, DEFAULT_MINIMUM_BLOCKSIZE);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param parallelism Number of threads to use
+   */
+  public WorkStealingExecutor(int parallelism) {
+    this(parallelism, DEFAULT_MINIMUM_BLOCKSIZE);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param parallelism Number of threads to use
+   * @param minblock Minimum block size
+   */
+  public WorkStealingExecutor(int parallelism, int minblock) {
+    super();
+    if(parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1.");
+    }
+    this.parallelism = parallelism;
+    this.minblock = minblock > 1 ? minblock : 1;
+  }
+
+  /**
+   * Run a task on all available CPUs.
+   * 
+   * @param ids IDs to process
+   * @param procs Processors to run
+   * @return Execution statistics
+   */
+  public static final Statistics run(DBIDs ids, Processor... procs) {
+    return new WorkStealingExecutor().execute(ids, procs);
+  }
+
+  /**
+   * Run a task with the configured parallelism.
+   * 
+   * @param ids IDs to process
+   * @param procs Processors to run
+   * @return Execution statistics
+   */
+  public Statistics execute(DBIDs ids, Processor... procs) {
+    ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
+    final ParallelCore core = ParallelCore.getCore();
+    final boolean shared = parallelism == ParallelCore.ALL_PROCESSORS;
+    final ForkJoinPool pool = shared ? core.getForkJoinPool() : new ForkJoinPool(parallelism);
+    ConcurrentHashMap<Thread, Worker> workers = new ConcurrentHashMap<>();
+    final long starttime = System.nanoTime();
+    final long steals = pool.getStealCount();
+    try {
+      pool.invoke(new RangeTask(aids, 0, aids.size(), minblock, procs, workers));
+    }
+    finally {
+      if(!shared) {
+        pool.shutdown();
+      }
+    }
+    Statistics stats = new Statistics(workers.size(), pool.getStealCount() - steals, System.nanoTime() - starttime);
+    // Cleanup, after all blocks have been processed.
+    for(Worker worker : workers.values()) {
+      for(int i = 0; i < procs.length; i++) {
+        procs[i].cleanup(worker.instances[i]);
+      }
+      stats.add(worker);
+    }
+    return stats;
+  }
+
+  /**
+   * Recursively splitting range task.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.uses Worker
+   */
+  protected static class RangeTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Array IDs to process
+     */
+    private ArrayDBIDs ids;
+
+    /**
+     * Start position
+     */
+    private int start;
+
+    /**
+     * End position
+     */
+    private int end;
+
+    /**
+     * Minimum block size.
+     */
+    private int minblock;
+
+    /**
+     * The processor masters that own the instances.
+     */
+    private Processor[] procs;
+
+    /**
+     * Per-thread worker state.
+     */
+    private ConcurrentHashMap<Thread, Worker> workers;
+
+    /**
+     * Next forked task, to be joined.
+     */
+    private RangeTask next;
+
+    /**
+     * Constructor.
+     * 
+     * @param ids IDs to process
+     * @param start Starting position
+     * @param end End position
+     * @param minblock Minimum block size
+     * @param procs Processors to run
+     * @param workers Per-thread worker state
+     */
+    protected RangeTask(ArrayDBIDs ids, int start, int end, int minblock, Processor[] procs, ConcurrentHashMap<Thread, Worker> workers) {
+      super();
+      this.ids = ids;
+      this.start = start;
+      this.end = end;
+      this.minblock = minblock;
+      this.procs = procs;
+      this.workers = workers;
+    }
+
+    @Override
+    protected void compute() {
+      // Split off the upper halves while we do not have enough queued work.
+      RangeTask forked = null;
+      int e = end;
+      while(e - start > minblock && getSurplusQueuedTaskCount() <= SURPLUS_THRESHOLD) {
+        final int mid = (start + e) >>> 1;
+        RangeTask right = new RangeTask(ids, mid, e, minblock, procs, workers);
+        right.next = forked;
+        forked = right;
+        right.fork();
+        e = mid;
+      }
+      getWorker().process(ids, start, e);
+      // Join in reverse order, process locally what has not been stolen.
+      for(; forked != null; forked = forked.next) {
+        if(forked.tryUnfork()) {
+          forked.invoke();
+        }
+        else {
+          forked.join();
+        }
+      }
+    }
+
+    /**
+     * Get the worker state for the current thread.
+     * 
+     * @return Worker
+     */
+    private Worker getWorker() {
+      final Thread thread = Thread.currentThread();
+      Worker worker = workers.get(thread);
+      if(worker == null) {
+        worker = new Worker(procs);
+        workers.put(thread, worker);
+      }
+      return worker;
+    }
+  }
+
+  /**
+   * State of a single worker thread.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.uses Processor
+   */
+  protected static class Worker implements Executor {
+    /**
+     * Processor instances of this worker.
+     */
+    private Processor.Instance[] instances;
+
+    /**
+     * Variables map.
+     */
+    private HashMap<SharedVariable<?>, SharedVariable.Instance<?>> variables = new HashMap<>();
+
+    /**
+     * Number of blocks processed.
+     */
+    private long tasks = 0;
+
+    /**
+     * Number of objects processed.
+     */
+    private long objects = 0;
+
+    /**
+     * Time spent processing, in nanoseconds.
+     */
+    private long time = 0;
+
+    /**
+     * Constructor.
+     * 
+     * @param procs Processors to instantiate
+     */
+    protected Worker(Processor[] procs) {
+      super();
+      instances = new Processor.Instance[procs.length];
+      for(int i = 0; i < procs.length; i++) {
+        instances[i] = procs[i].instantiate(this);
+      }
+    }
+
+    /**
+     * Process a range of objects.
+     * 
+     * @param ids IDs
+     * @param start Start position
+     * @param end End position
+     */
+    protected void process(ArrayDBIDs ids, int start, int end) {
+      final long begin = System.nanoTime();
+      DBIDArrayIter iter = ids.iter();
+      iter.seek(start);
+      for(int c = end - start; iter.valid() && c > 0; iter.advance(), c--) {
+        for(int i = 0; i < instances.length; i++) {
+          instances[i].map(iter);
+        }
+      }
+      time += System.nanoTime() - begin;
+      objects += end - start;
+      ++tasks;
+    }
+
+    @Override
+    public <I extends Instance<?>> I getInstance(SharedVariable<I> parent) {
+      @SuppressWarnings("unchecked")
+      I inst = (I) variables.get(parent);
+      if(inst == null) {
+        inst = parent.instantiate();
+        variables.put(parent, inst);
+      }
+      return inst;
+    }
+  }
+
+  /**
+   * Statistics of a single run.
+   * 
+   * Note: the number of steals is obtained from the pool, and thus only an
+   * estimate when the pool is used concurrently.
+   * 
+   * @author Erich Schubert
+   */
+  public static class Statistics {
+    /**
+     * Number of blocks processed, per worker.
+     */
+    private long[] tasks;
+
+    /**
+     * Number of objects processed, per worker.
+     */
+    private long[] objects;
+
+    /**
+     * Processing time in nanoseconds, per worker.
+     */
+    private long[] times;
+
+    /**
+     * Number of workers added.
+     */
+    private int size = 0;
+
+    /**
+     * Number of tasks stolen.
+     */
+    private long steals;
+
+    /**
+     * Total wall clock time in nanoseconds.
+     */
+    private long walltime;
+
+    /**
+     * Constructor.
+     * 
+     * @param workers Number of workers
+     * @param steals Number of steals
+     * @param walltime Wall clock time
+     */
+    protected Statistics(int workers, long steals, long walltime) {
+      super();
+      this.tasks = new long[workers];
+      this.objects = new long[workers];
+      this.times = new long[workers];
+      this.steals = steals;
+      this.walltime = walltime;
+    }
+
+    /**
+     * Add the statistics of a worker.
+     * 
+     * @param worker Worker
+     */
+    protected void add(Worker worker) {
+      tasks[size] = worker.tasks;
+      objects[size] = worker.objects;
+      times[size] = worker.time;
+      ++size;
+    }
+
+    /**
+     * Get the number of workers that participated.
+     * 
+     * @return Number of workers
+     */
+    public int getNumWorkers() {
+      return size;
+    }
+
+    /**
+     * Get the total number of blocks processed.
+     * 
+     * @return Number of blocks
+     */
+    public long getTasks() {
+      long sum = 0;
+      for(int i = 0; i < size; i++) {
+        sum += tasks[i];
+      }
+      return sum;
+    }
+
+    /**
+     * Get the number of blocks processed by a worker.
+     * 
+     * @param worker Worker number
+     * @return Number of blocks
+     */
+    public long getTasks(int worker) {
+      return tasks[worker];
+    }
+
+    /**
+     * Get the number of objects processed by a worker.
+     * 
+     * @param worker Worker number
+     * @return Number of objects
+     */
+    public long getObjects(int worker) {
+      return objects[worker];
+    }
+
+    /**
+     * Get the processing time of a worker.
+     * 
+     * @param worker Worker number
+     * @return Time in nanoseconds
+     */
+    public long getTime(int worker) {
+      return times[worker];
+    }
+
+    /**
+     * Get the (estimated) number of steals.
+     * 
+     * @return Steals
+     */
+    public long getSteals() {
+      return steals;
+    }
+
+    /**
+     * Get the wall clock time of the run.
+     * 
+     * @return Time in nanoseconds
+     */
+    public long getWallTime() {
+      return walltime;
+    }
+
+    /**
+     * Log the statistics.
+     * 
+     * @param log Logger
+     * @param key Statistics key prefix
+     */
+    public void logStatistics(Logging log, String key) {
+      if(!log.isStatistics()) {
+        return;
+      }
+      log.statistics(new LongStatistic(key + ".workers", getNumWorkers()));
+      log.statistics(new LongStatistic(key + ".tasks", getTasks()));
+      log.statistics(new LongStatistic(key + ".steals", steals));
+      log.statistics(new LongStatistic(key + ".walltime.ms", walltime / 1000000L));
+      for(int i = 0; i < size; i++) {
+        final String prefix = key + ".worker-" + i;
+        log.statistics(new LongStatistic(prefix + ".tasks", tasks[i]));
+        log.statistics(new LongStatistic(prefix + ".objects", objects[i]));
+        log.statistics(new DoubleStatistic(prefix + ".time.ms", times[i] * 1e-6));
+      }
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package de.lmu.ifi.dbs.elki.parallel.processor;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+
+/**
+ * Processor to compute a row of a distance matrix, i.e. the distances of each
+ * object to a fixed array of objects (the columns).
+ * 
+ * A new array is produced for every object, so the rows may be stored, e.g.
+ * using {@link WriteDataStoreProcessor}.
+ * 
+ * @author Erich Schubert
+ * 
+ * @param <O> Object type
+ * 
+ * @apiviz.has Instance
+ * @apiviz.uses DistanceQuery
+ * @apiviz.uses SharedObject
+ */
+public class DistanceRowProcessor<O> implements Processor {
+  /**
+   * Column objects
+   */
+  ArrayDBIDs columns;
+
+  /**
+   * Distance query object
+   */
+  DistanceQuery<O> distq;
+
+  /**
+   * Output channel to write to
+   */
+  SharedObject<double[]> out;
+
+  /**
+   * Constructor.
+   * 
+   * @param columns Objects to compute the distances to
+   * @param distq Distance query to use
+   */
+  public DistanceRowProcessor(ArrayDBIDs columns, DistanceQuery<O> distq) {
+    super();
+    this.columns = columns;
+    this.distq = distq;
+  }
+
+  /**
+   * Connect the output channel.
+   * 
+   * @param output Output channel
+   */
+  public void connectRowOutput(SharedObject<double[]> output) {
+    this.out = output;
+  }
+
+  @Override
+  public Instance<O> instantiate(Executor executor) {
+    return new Instance<>(columns, distq, executor.getInstance(out));
+  }
+
+  @Override
+  public void cleanup(Processor.Instance inst) {
+    // Nothing to do.
+  }
+
+  /**
+   * Instance for computing the distance rows.
+   * 
+   * @author Erich Schubert
+   */
+  public static class Instance<O> implements Processor.Instance {
+    /**
+     * Iterator over the column objects (not shared across threads)
+     */
+    DBIDArrayIter col;
+
+    /**
+     * Number of columns
+     */
+    int size;
+
+    /**
+     * Distance query
+     */
+    DistanceQuery<O> distq;
+
+    /**
+     * Output channel
+     */
+    SharedObject.Instance<double[]> out;
+
+    /**
+     * Constructor.
+     * 
+     * @param columns Column objects
+     * @param distq Distance query
+     * @param out Output channel to write to
+     */
+    protected Instance(ArrayDBIDs columns, DistanceQuery<O> distq, SharedObject.Instance<double[]> out) {
+      super();
+      this.col = columns.iter();
+      this.size = columns.size();
+      this.distq = distq;
+      this.out = out;
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      double[] row = new double[size];
+      int i = 0;
+      for(col.seek(0); col.valid(); col.advance(), i++) {
+        row[i] = distq.distance(id, col);
+      }
+      out.set(row);
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package de.lmu.ifi.dbs.elki.parallel.processor;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+
+/**
+ * Processor to compute the range query (epsilon neighborhood) of each object.
+ * 
+ * @author Erich Schubert
+ * 
+ * @param <O> Object type
+ * 
+ * @apiviz.has Instance
+ * @apiviz.uses RangeQuery
+ * @apiviz.uses SharedObject
+ * @apiviz.has DoubleDBIDList
+ */
+public class RangeProcessor<O> implements Processor {
+  /**
+   * Query radius
+   */
+  double radius;
+
+  /**
+   * Range query object
+   */
+  RangeQuery<O> rangeq;
+
+  /**
+   * Output channel to write to
+   */
+  SharedObject<DoubleDBIDList> out;
+
+  /**
+   * Constructor.
+   * 
+   * @param radius Query radius
+   * @param rangeq Range query to use
+   */
+  public RangeProcessor(double radius, RangeQuery<O> rangeq) {
+    super();
+    this.radius = radius;
+    this.rangeq = rangeq;
+  }
+
+  /**
+   * Connect the output channel.
+   * 
+   * @param output Output channel
+   */
+  public void connectRangeOutput(SharedObject<DoubleDBIDList> output) {
+    this.out = output;
+  }
+
+  @Override
+  public Instance<O> instantiate(Executor executor) {
+    return new Instance<>(radius, rangeq, executor.getInstance(out));
+  }
+
+  @Override
+  public void cleanup(Processor.Instance inst) {
+    // Nothing to do.
+  }
+
+  /**
+   * Instance for computing the range query results.
+   * 
+   * @author Erich Schubert
+   */
+  public static class Instance<O> implements Processor.Instance {
+    /**
+     * Query radius
+     */
+    double radius;
+
+    /**
+     * Range query
+     */
+    RangeQuery<O> rangeq;
+
+    /**
+     * Output channel
+     */
+    SharedObject.Instance<DoubleDBIDList> out;
+
+    /**
+     * Constructor.
+     * 
+     * @param radius Query radius
+     * @param rangeq Range query
+     * @param out Output channel to write to
+     */
+    protected Instance(double radius, RangeQuery<O> rangeq, SharedObject.Instance<DoubleDBIDList> out) {
+      super();
+      this.radius = radius;
+      this.rangeq = rangeq;
+      this.out = out;
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      out.set(rangeq.getRangeForDBID(id, radius));
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package de.lmu.ifi.dbs.elki.parallel.processor;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import gnu.trove.iterator.TIntIntIterator;
+import gnu.trove.map.hash.TIntIntHashMap;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.parallel.Executor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+
+/**
+ * Sink counting how often each object occurs in the neighbor sets of other
+ * objects, i.e. the reverse k nearest neighbor count (the in-degree of the kNN
+ * graph).
+ * 
+ * Each instance counts into a sparse map, containing only the neighbors of its
+ * block of the data; these counts are added to the output data store on
+ * cleanup, so the (unsynchronized) output data store is not written
+ * concurrently.
+ * 
+ * Needs the neighbors as input, for example from {@link KNNProcessor} or
+ * {@link RangeProcessor}. The output data store must be initialized (usually
+ * to 0) by the caller.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.has Instance
+ * @apiviz.uses SharedObject
+ */
+public class ReverseKNNCountProcessor implements Processor {
+  /**
+   * Output data store
+   */
+  WritableIntegerDataStore counts;
+
+  /**
+   * Ignore the query object itself.
+   */
+  boolean noself;
+
+  /**
+   * Input channel
+   */
+  SharedObject<? extends DBIDs> input;
+
+  /**
+   * Constructor.
+   * 
+   * @param counts Output data store, must be initialized
+   * @param noself Do not count the query object itself
+   */
+  public ReverseKNNCountProcessor(WritableIntegerDataStore counts, boolean noself) {
+    super();
+    this.counts = counts;
+    this.noself = noself;
+  }
+
+  /**
+   * Connect the input channel.
+   * 
+   * @param input Input channel
+   */
+  public void connectKNNInput(SharedObject<? extends DBIDs> input) {
+    this.input = input;
+  }
+
+  @Override
+  public Instance instantiate(Executor executor) {
+    return new Instance(noself, executor.getInstance(input));
+  }
+
+  @Override
+  public void cleanup(Processor.Instance inst) {
+    merge(((Instance) inst).counts);
+  }
+
+  /**
+   * Add the counts of an instance.
+   * 
+   * @param local Counts of the instance
+   */
+  protected synchronized void merge(TIntIntHashMap local) {
+    for(TIntIntIterator iter = local.iterator(); iter.hasNext();) {
+      iter.advance();
+      counts.increment(DBIDUtil.importInteger(iter.key()), iter.value());
+    }
+  }
+
+  /**
+   * Instance for a particular sub-channel / part of the data set.
+   * 
+   * @author Erich Schubert
+   */
+  private static class Instance implements Processor.Instance {
+    /**
+     * Local counts, by integer DBID.
+     */
+    private TIntIntHashMap counts = new TIntIntHashMap();
+
+    /**
+     * Ignore the query object itself.
+     */
+    private boolean noself;
+
+    /**
+     * Input channel instance
+     */
+    private SharedObject.Instance<? extends DBIDs> input;
+
+    /**
+     * Constructor.
+     * 
+     * @param noself Ignore the query object itself
+     * @param input Input channel instance
+     */
+    public Instance(boolean noself, SharedObject.Instance<? extends DBIDs> input) {
+      super();
+      this.noself = noself;
+      this.input = input;
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      for(DBIDIter nei = input.get().iter(); nei.valid(); nei.advance()) {
+        if(noself && DBIDUtil.equal(id, nei)) {
+          continue;
+        }
+        counts.adjustOrPutValue(DBIDUtil.asInteger(nei), 1, 1);
+      }
+    }
+  }
+}
@@ -0,0 +1,676 @@
+package de.lmu.ifi.dbs.elki.persistent;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.lmu.ifi.dbs.elki.index.tree.Node;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.AtomicLongCounter;
+import de.lmu.ifi.dbs.elki.logging.statistics.Counter;
+import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+
+/**
+ * Lock-striped page cache with a scan resistant 2Q replacement policy.
+ * <p>
+ * Pages are distributed over a number of independent segments by their page
+ * id, so concurrent readers only contend when they access the same segment.
+ * Within each segment, pages seen for the first time enter a small FIFO queue
+ * (A1in). Only pages that are referenced again after falling out of this queue
+ * (tracked by their ids in the ghost queue A1out) are promoted to the main LRU
+ * queue (Am). A single sequential scan thus only cycles through A1in, and
+ * cannot flush the frequently used pages from the cache.
+ * <p>
+ * Optionally, directory pages of index trees (non-leaf {@link Node}s) are
+ * pinned, i.e. never evicted. At most half of the cache capacity is used for
+ * pinned pages, further directory pages are handled like any other page until
+ * a pin becomes available.
+ * <p>
+ * Access to the backing page file is serialized, as page files are not
+ * thread-safe in general. Cache misses are read without holding the segment
+ * lock, so hits in the same segment are not blocked by file access; concurrent
+ * misses on the same page wait for a single read.
+ * <p>
+ * Reference:
+ * <p>
+ * T. Johnson, D. Shasha<br />
+ * 2Q: A Low Overhead High Performance Buffer Management Replacement
+ * Algorithm<br />
+ * In: Proc. 20th Int. Conf. on Very Large Data Bases (VLDB'94)
+ * </p>
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.uses PageFile
+ * @apiviz.composedOf Segment
+ * @apiviz.has PendingRead
+ * 
+ * @param <P> Page type
+ */
+public class ConcurrentPageCache<P extends Page> extends AbstractPageFile<P> {
+  /**
+   * Our class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ConcurrentPageCache.class);
+
+  /**
+   * Maximum number of segments.
+   */
+  private static final int MAX_SEGMENTS = 16;
+
+  /**
+   * Minimum number of pages per segment.
+   */
+  private static final int MIN_SEGMENT_SIZE = 8;
+
+  /**
+   * Cache size in bytes.
+   */
+  protected int cacheSizeBytes;
+
+  /**
+   * The maximum number of pages in this cache.
+   */
+  protected int cacheSize;
+
+  /**
+   * Pin directory pages.
+   */
+  protected boolean pinDirectory;
+
+  /**
+   * The cache segments.
+   */
+  private List<Segment> segments;
+
+  /**
+   * Bit mask to map page ids to segments.
+   */
+  private int segmentMask;
+
+  /**
+   * The underlying file of this cache. If a page is dropped it is written to
+   * the file. Also used for synchronization of backing file access.
+   */
+  protected PageFile<P> file;
+
+  /**
+   * Cache hit and miss counters.
+   */
+  private Counter hits, misses;
+
+  /**
+   * Constructor.
+   * 
+   * @param cacheSizeBytes the maximum number of bytes for this cache
+   * @param file the underlying file of this cache, if a page is dropped it is
+   *        written to the file
+   * @param pinDirectory Pin directory pages in the cache
+   */
+  public ConcurrentPageCache(int cacheSizeBytes, PageFile<P> file, boolean pinDirectory) {
+    super();
+    this.file = file;
+    this.cacheSizeBytes = cacheSizeBytes;
+    this.pinDirectory = pinDirectory;
+    this.hits = LOG.isStatistics() ? new AtomicLongCounter(this.getClass().getName() + ".hits") : null;
+    this.misses = LOG.isStatistics() ? new AtomicLongCounter(this.getClass().getName() + ".misses") : null;
+  }
+
+  /**
+   * Get the segment responsible for a page.
+   * 
+   * @param pageID Page id
+   * @return Segment
+   */
+  private Segment segmentFor(int pageID) {
+    // Spread the bits, page ids are usually allocated sequentially.
+    int h = pageID * 0x9E3779B9;
+    return segments.get((h ^ (h >>> 16)) & segmentMask);
+  }
+
+  /**
+   * Retrieves a page from the cache, or loads it from the backing file.
+   * 
+   * @param pageID the id of the page to be returned
+   * @return the page associated to the id
+   */
+  @Override
+  public P readPage(int pageID) {
+    countRead();
+    return segmentFor(pageID).read(pageID);
+  }
+
+  @Override
+  protected void writePage(int pageID, P page) {
+    countWrite();
+    page.setDirty(true);
+    segmentFor(pageID).write(pageID, page);
+    if(LOG.isDebuggingFine()) {
+      LOG.debugFine("Write to cache: " + pageID);
+    }
+  }
+
+  @Override
+  public void deletePage(int pageID) {
+    countWrite();
+    segmentFor(pageID).remove(pageID);
+    synchronized(file) {
+      file.deletePage(pageID);
+    }
+  }
+
+  /**
+   * Write page through to disk, if it was modified.
+   * 
+   * @param page page
+   */
+  protected void expirePage(P page) {
+    if(LOG.isDebuggingFine()) {
+      LOG.debugFine("Write to backing: " + page.getPageID());
+    }
+    if(page.isDirty()) {
+      synchronized(file) {
+        file.writePage(page);
+      }
+    }
+  }
+
+  /**
+   * Test whether a page should be pinned in the cache.
+   * 
+   * @param page Page
+   * @return {@code true} for directory pages, when pinning is enabled.
+   */
+  protected boolean isPinnable(P page) {
+    return pinDirectory && page instanceof Node && !((Node<?>) page).isLeaf();
+  }
+
+  @Override
+  public int setPageID(P page) {
+    synchronized(file) {
+      return file.setPageID(page);
+    }
+  }
+
+  @Override
+  public int getNextPageID() {
+    return file.getNextPageID();
+  }
+
+  @Override
+  public void setNextPageID(int nextPageID) {
+    file.setNextPageID(nextPageID);
+  }
+
+  @Override
+  public int getPageSize() {
+    return file.getPageSize();
+  }
+
+  @Override
+  public boolean initialize(PageHeader header) {
+    boolean created = file.initialize(header);
+    // Compute the actual cache size.
+    this.cacheSize = cacheSizeBytes / header.getPageSize();
+    if(this.cacheSize <= 0) {
+      throw new AbortException("Invalid cache size: " + cacheSizeBytes + " / " + header.getPageSize() + " = " + cacheSize);
+    }
+    int numseg = 1;
+    while(numseg < MAX_SEGMENTS && cacheSize / (numseg << 1) >= MIN_SEGMENT_SIZE) {
+      numseg <<= 1;
+    }
+    if(LOG.isDebugging()) {
+      LOG.debug("2Q cache size is " + cacheSize + " pages in " + numseg + " segments.");
+    }
+    this.segments = new ArrayList<>(numseg);
+    for(int i = 0; i < numseg; i++) {
+      // Distribute the remainder over the first segments.
+      segments.add(new Segment(cacheSize / numseg + (i < cacheSize % numseg ? 1 : 0)));
+    }
+    this.segmentMask = numseg - 1;
+    return created;
+  }
+
+  @Override
+  public void close() {
+    flush();
+    file.close();
+  }
+
+  /**
+   * Flushes this cache by writing any modified page to the underlying file.
+   */
+  public void flush() {
+    for(Segment seg : segments) {
+      seg.flush();
+    }
+  }
+
+  /**
+   * Clears this cache.
+   */
+  @Override
+  public void clear() {
+    for(Segment seg : segments) {
+      seg.clear();
+    }
+  }
+
+  /**
+   * Get the number of pages currently in the cache.
+   * 
+   * @return Number of cached pages
+   */
+  public int size() {
+    int size = 0;
+    for(Segment seg : segments) {
+      size += seg.size();
+    }
+    return size;
+  }
+
+  @Override
+  public void logStatistics() {
+    super.logStatistics();
+    if(hits != null && misses != null) {
+      LOG.statistics(hits);
+      LOG.statistics(misses);
+      final long h = hits.getValue(), total = h + misses.getValue();
+      LOG.statistics(new DoubleStatistic(this.getClass().getName() + ".hitratio", total > 0 ? h / (double) total : 0.));
+    }
+    file.logStatistics();
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * A single cache segment, with its own lock and 2Q queues.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  private class Segment {
+    /**
+     * Capacity of this segment, and of its FIFO and ghost queues.
+     */
+    final int capacity, kin, kout;
+
+    /**
+     * Maximum number of pinned pages.
+     */
+    final int maxpinned;
+
+    /**
+     * FIFO queue of pages seen once (insertion order).
+     */
+    final LinkedHashMap<Integer, P> a1in;
+
+    /**
+     * Main LRU queue (access order).
+     */
+    final LinkedHashMap<Integer, P> am;
+
+    /**
+     * Ghost queue of recently evicted page ids.
+     */
+    final LinkedHashMap<Integer, Boolean> a1out;
+
+    /**
+     * Pinned pages.
+     */
+    final HashMap<Integer, P> pinned;
+
+    /**
+     * Pages currently being read from the backing file.
+     */
+    final HashMap<Integer, PendingRead> loading;
+
+    /**
+     * Constructor.
+     * 
+     * @param capacity Segment capacity
+     */
+    Segment(int capacity) {
+      this.capacity = capacity;
+      // Parameters recommended by Johnson and Shasha.
+      this.kin = Math.max(1, capacity >> 2);
+      this.kout = Math.max(1, capacity >> 1);
+      this.maxpinned = capacity >> 1;
+      this.a1in = new LinkedHashMap<>();
+      this.am = new LinkedHashMap<>(16, .75f, true);
+      this.a1out = new LinkedHashMap<>();
+      this.pinned = new HashMap<>();
+      this.loading = new HashMap<>();
+    }
+
+    /**
+     * Read a page, from the cache or the backing file.
+     * 
+     * @param pageID Page id
+     * @return Page
+     */
+    P read(int pageID) {
+      final Integer key = pageID;
+      PendingRead pending;
+      synchronized(this) {
+        P page = lookup(key);
+        if(page != null) {
+          if(hits != null) {
+            hits.increment();
+          }
+          return page;
+        }
+        pending = loading.get(key);
+        if(pending != null) {
+          if(hits != null) {
+            hits.increment();
+          }
+        }
+        else {
+          pending = new PendingRead();
+          loading.put(key, pending);
+          pending.owner = Thread.currentThread();
+          if(misses != null) {
+            misses.increment();
+          }
+        }
+      }
+      if(pending.owner != Thread.currentThread()) {
+        // Another thread is reading this page already.
+        return pending.await() ? pending.page : read(pageID);
+      }
+      if(LOG.isDebuggingFine()) {
+        LOG.debugFine("Read from backing: " + pageID);
+      }
+      P page = null;
+      boolean success = false;
+      try {
+        synchronized(file) {
+          page = file.readPage(pageID);
+        }
+        success = true;
+      }
+      finally {
+        if(success) {
+          synchronized(this) {
+            // Do not insert when the page was removed meanwhile.
+            if(loading.get(key) == pending) {
+              loading.remove(key);
+              if(page != null) {
+                // A concurrent write takes precedence.
+                P cur = lookup(key);
+                if(cur == null) {
+                  insert(key, page);
+                }
+                else {
+                  page = cur;
+                }
+              }
+            }
+          }
+        }
+        else {
+          synchronized(this) {
+            if(loading.get(key) == pending) {
+              loading.remove(key);
+            }
+          }
+        }
+        pending.complete(page, success);
+      }
+      return page;
+    }
+
+    /**
+     * Find a page in the cache, and pin it if possible.
+     * 
+     * @param key Page id
+     * @return Page, or {@code null}
+     */
+    private P lookup(Integer key) {
+      P page = pinned.get(key);
+      if(page != null) {
+        return page;
+      }
+      page = am.get(key); // Moves page to MRU position.
+      if(page == null) {
+        // Do not reorder: the FIFO queue only reflects the first access.
+        page = a1in.get(key);
+      }
+      if(page != null && pinned.size() < maxpinned && isPinnable(page)) {
+        if(am.remove(key) == null) {
+          a1in.remove(key);
+        }
+        pinned.put(key, page);
+      }
+      return page;
+    }
+
+    /**
+     * Store a page in the cache.
+     * 
+     * @param pageID Page id
+     * @param page Page
+     */
+    synchronized void write(int pageID, P page) {
+      final Integer key = pageID;
+      final boolean pinnable = isPinnable(page);
+      if(pinned.containsKey(key)) {
+        if(pinnable) {
+          pinned.put(key, page);
+          return;
+        }
+        // No longer a directory page.
+        pinned.remove(key);
+        am.put(key, page);
+        reclaim();
+        return;
+      }
+      final boolean inam = am.containsKey(key);
+      if(inam || a1in.containsKey(key)) {
+        if(pinnable && pinned.size() < maxpinned) {
+          if(inam) {
+            am.remove(key);
+          }
+          else {
+            a1in.remove(key);
+          }
+          pinned.put(key, page);
+        }
+        else if(inam) {
+          am.put(key, page);
+        }
+        else {
+          a1in.put(key, page);
+        }
+        return;
+      }
+      insert(key, page);
+    }
+
+    /**
+     * Insert a page that is not yet in the cache.
+     * 
+     * @param key Page id
+     * @param page Page
+     */
+    private void insert(Integer key, P page) {
+      if(pinned.size() < maxpinned && isPinnable(page)) {
+        a1out.remove(key);
+        pinned.put(key, page);
+        return;
+      }
+      if(a1out.remove(key) != null) {
+        // Second reference: promote to the main queue.
+        am.put(key, page);
+      }
+      else {
+        a1in.put(key, page);
+      }
+      reclaim();
+    }
+
+    /**
+     * Evict pages until the segment capacity constraints are satisfied.
+     */
+    private void reclaim() {
+      final int avail = Math.max(1, capacity - pinned.size());
+      while(a1in.size() + am.size() > avail) {
+        if(a1in.size() > kin || am.isEmpty()) {
+          Iterator<Map.Entry<Integer, P>> it = a1in.entrySet().iterator();
+          Map.Entry<Integer, P> eldest = it.next();
+          it.remove();
+          expirePage(eldest.getValue());
+          a1out.put(eldest.getKey(), Boolean.TRUE);
+          if(a1out.size() > kout) {
+            Iterator<Integer> oit = a1out.keySet().iterator();
+            oit.next();
+            oit.remove();
+          }
+        }
+        else {
+          Iterator<P> it = am.values().iterator();
+          P eldest = it.next();
+          it.remove();
+          expirePage(eldest);
+        }
+      }
+    }
+
+    /**
+     * Remove a page from the cache, without writing it.
+     * 
+     * @param pageID Page id
+     */
+    synchronized void remove(int pageID) {
+      final Integer key = pageID;
+      loading.remove(key);
+      if(pinned.remove(key) == null && am.remove(key) == null && a1in.remove(key) == null) {
+        a1out.remove(key);
+      }
+    }
+
+    /**
+     * Write all modified pages to the backing file, and empty the segment.
+     */
+    synchronized void flush() {
+      List<P> pages = new ArrayList<>(pinned.size() + am.size() + a1in.size());
+      pages.addAll(pinned.values());
+      pages.addAll(am.values());
+      pages.addAll(a1in.values());
+      for(P page : pages) {
+        expirePage(page);
+      }
+      clear();
+    }
+
+    /**
+     * Empty the segment, without writing.
+     */
+    synchronized void clear() {
+      pinned.clear();
+      am.clear();
+      a1in.clear();
+      a1out.clear();
+      loading.clear();
+    }
+
+    /**
+     * Number of pages in this segment.
+     * 
+     * @return Size
+     */
+    synchronized int size() {
+      return pinned.size() + am.size() + a1in.size();
+    }
+  }
+
+  /**
+   * Placeholder for a page that is being read from the backing file.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  private class PendingRead {
+    /**
+     * Thread performing the read.
+     */
+    Thread owner;
+
+    /**
+     * Page read.
+     */
+    P page;
+
+    /**
+     * Completion and success flags.
+     */
+    boolean done, success;
+
+    /**
+     * Publish the result of the read.
+     * 
+     * @param page Page read
+     * @param success {@code false} when reading failed
+     */
+    synchronized void complete(P page, boolean success) {
+      this.page = page;
+      this.success = success;
+      this.done = true;
+      notifyAll();
+    }
+
+    /**
+     * Wait for the read to complete.
+     * 
+     * @return {@code false} when reading failed
+     */
+    synchronized boolean await() {
+      boolean interrupted = false;
+      while(!done) {
+        try {
+          wait();
+        }
+        catch(InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if(interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      return success;
+    }
+  }
+}
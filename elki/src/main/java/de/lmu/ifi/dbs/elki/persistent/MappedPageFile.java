@@ -0,0 +1,458 @@
+package de.lmu.ifi.dbs.elki.persistent;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import de.lmu.ifi.dbs.elki.index.tree.TreeIndexHeader;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.io.ByteArrayUtil;
+import de.lmu.ifi.dbs.elki.utilities.io.ByteBufferInputStream;
+
+/**
+ * A page file using a memory mapped file, or positional I/O on a
+ * {@link FileChannel}.
+ * <p>
+ * The file format is the same as used by {@link PersistentPageFile}, but pages
+ * are deserialized directly from the mapped buffers, which are grown in chunks
+ * as pages are added. Reading pages does not modify any shared file position,
+ * so concurrent readers are supported in both modes.
+ * 
+ * @author Erich Schubert
+ * 
+ * @apiviz.composedOf PageHeader
+ * @apiviz.composedOf FileChannel
+ * 
+ * @param <P> Page type
+ */
+public class MappedPageFile<P extends ExternalizablePage> extends AbstractStoringPageFile<P> {
+  /**
+   * Our logger
+   */
+  private static final Logging LOG = Logging.getLogger(MappedPageFile.class);
+
+  /**
+   * Indicates an empty page.
+   */
+  private static final int EMPTY_PAGE = 0;
+
+  /**
+   * Indicates a filled page.
+   */
+  private static final int FILLED_PAGE = 1;
+
+  /**
+   * Size of mapped chunks, in bytes (rounded down to a multiple of the page
+   * size).
+   */
+  private static final int CHUNK_SIZE = 1 << 22;
+
+  /**
+   * The file storing the pages.
+   */
+  private final RandomAccessFile file;
+
+  /**
+   * File channel.
+   */
+  private final FileChannel channel;
+
+  /**
+   * Use positional reads and writes instead of memory mapping.
+   */
+  private final boolean positional;
+
+  /**
+   * Mapped chunks.
+   */
+  private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+
+  /**
+   * Number of pages per chunk.
+   */
+  private int pagesPerChunk;
+
+  /**
+   * Offset of the first page in the file.
+   */
+  private long dataOffset;
+
+  /**
+   * The header of this page file.
+   */
+  protected PageHeader header;
+
+  /**
+   * The type of pages we use.
+   */
+  protected final Class<P> pageclass;
+
+  /**
+   * Whether we are initializing from an existing file.
+   */
+  private boolean existed;
+
+  /**
+   * Constructor.
+   * 
+   * @param pageSize the page size
+   * @param fileName File name
+   * @param pageclass the class of pages to be used
+   * @param positional Use positional I/O instead of memory mapping
+   */
+  public MappedPageFile(int pageSize, String fileName, Class<P> pageclass, boolean positional) {
+    super(pageSize);
+    this.pageclass = pageclass;
+    this.positional = positional;
+    File f = new File(fileName);
+    existed = f.exists();
+    try {
+      file = new RandomAccessFile(f, "rw");
+      channel = file.getChannel();
+    }
+    catch(IOException e) {
+      throw new AbortException("IO error in loading persistent page file.", e);
+    }
+  }
+
+  /**
+   * Get a buffer positioned at the given page, limited to the page size.
+   * 
+   * @param pageID Page id
+   * @return Buffer, independent of the shared chunk buffer positions.
+   * @throws IOException on mapping errors
+   */
+  private ByteBuffer pageBuffer(int pageID) throws IOException {
+    final int c = pageID / pagesPerChunk;
+    MappedByteBuffer[] chunks = this.chunks;
+    MappedByteBuffer chunk = c < chunks.length ? chunks[c] : null;
+    if(chunk == null) {
+      chunk = mapChunk(c);
+    }
+    ByteBuffer buf = chunk.duplicate();
+    final int off = (pageID % pagesPerChunk) * pageSize;
+    buf.limit(off + pageSize).position(off);
+    return buf;
+  }
+
+  /**
+   * Map a chunk of the file, growing the file if necessary.
+   * 
+   * @param c Chunk number
+   * @return Mapped buffer
+   * @throws IOException on mapping errors
+   */
+  private synchronized MappedByteBuffer mapChunk(int c) throws IOException {
+    MappedByteBuffer[] chunks = this.chunks;
+    if(c >= chunks.length) {
+      chunks = Arrays.copyOf(chunks, Math.max(c + 1, chunks.length << 1));
+    }
+    if(chunks[c] == null) {
+      final long size = pagesPerChunk * (long) pageSize;
+      chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, dataOffset + c * size, size);
+    }
+    this.chunks = chunks;
+    return chunks[c];
+  }
+
+  /**
+   * Read the raw data of a page.
+   * 
+   * @param pageID Page id
+   * @return Buffer containing the page data
+   * @throws IOException on read errors
+   */
+  private ByteBuffer readBuffer(int pageID) throws IOException {
+    if(!positional) {
+      return pageBuffer(pageID);
+    }
+    ByteBuffer buf = ByteBuffer.allocate(pageSize);
+    long pos = dataOffset + pageID * (long) pageSize;
+    while(buf.hasRemaining()) {
+      if(channel.read(buf, pos + buf.position()) < 0) {
+        break; // Beyond the end of file.
+      }
+    }
+    buf.flip();
+    return buf;
+  }
+
+  /**
+   * Write the raw data of a page.
+   * 
+   * @param pageID Page id
+   * @param array Page data
+   * @throws IOException on write errors
+   */
+  private void writeBuffer(int pageID, byte[] array) throws IOException {
+    if(!positional) {
+      pageBuffer(pageID).put(array);
+      return;
+    }
+    ByteBuffer buf = ByteBuffer.wrap(array);
+    long pos = dataOffset + pageID * (long) pageSize;
+    while(buf.hasRemaining()) {
+      channel.write(buf, pos + buf.position());
+    }
+  }
+
+  @Override
+  public P readPage(int pageID) {
+    try {
+      countRead();
+      return bufferToPage(readBuffer(pageID));
+    }
+    catch(IOException e) {
+      throw new RuntimeException("IOException occurred during reading of page " + pageID + "\n", e);
+    }
+  }
+
+  @Override
+  public void deletePage(int pageID) {
+    try {
+      // put id to empty pages list
+      super.deletePage(pageID);
+      countWrite();
+      writeBuffer(pageID, pageToByteArray(null));
+    }
+    catch(IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public void writePage(int pageID, P page) {
+    try {
+      countWrite();
+      writeBuffer(pageID, pageToByteArray(page));
+      page.setDirty(false);
+    }
+    catch(IOException e) {
+      throw new RuntimeException("Error writing to page file.", e);
+    }
+  }
+
+  /**
+   * Closes this file.
+   */
+  @Override
+  public void close() {
+    try {
+      super.close();
+      for(MappedByteBuffer chunk : chunks) {
+        if(chunk != null) {
+          chunk.force();
+          ByteArrayUtil.unmapByteBuffer(chunk);
+        }
+      }
+      chunks = new MappedByteBuffer[0];
+      // Strip the unused part of the last mapped chunk, if possible.
+      try {
+        file.setLength(dataOffset + nextPageID * (long) pageSize);
+      }
+      catch(IOException e) {
+        LOG.warning("Could not truncate mapped page file: " + e.getMessage());
+      }
+      if(header instanceof TreeIndexHeader) {
+        TreeIndexHeader tiHeader = (TreeIndexHeader) header;
+        if(!emptyPages.isEmpty()) {
+          // write the list of empty pages to the end of the file
+          tiHeader.writeEmptyPages(emptyPages, file);
+        }
+        tiHeader.setLargestPageID(nextPageID);
+      }
+      header.writeHeader(file);
+      file.close();
+    }
+    catch(IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Clears this PageFile.
+   */
+  @Override
+  public void clear() {
+    // Keep the mapped region, but mark all pages as empty.
+    try {
+      byte[] empty = pageToByteArray(null);
+      for(int i = 0; i < nextPageID; i++) {
+        writeBuffer(i, empty);
+      }
+    }
+    catch(IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Reconstruct a page from the specified buffer.
+   * 
+   * @param buffer the buffer from which the page should be reconstructed
+   * @return the page, or {@code null} for empty pages
+   */
+  private P bufferToPage(ByteBuffer buffer) {
+    try {
+      ObjectInputStream ois = new ObjectInputStream(new ByteBufferInputStream(buffer));
+      int type = ois.readInt();
+      if(type == EMPTY_PAGE) {
+        return null;
+      }
+      else if(type == FILLED_PAGE) {
+        P page;
+        try {
+          page = pageclass.newInstance();
+          page.readExternal(ois);
+        }
+        catch(InstantiationException | IllegalAccessException | ClassNotFoundException e) {
+          throw new AbortException("Error instanciating an index page", e);
+        }
+        return page;
+      }
+      else {
+        throw new IllegalArgumentException("Unknown type: " + type);
+      }
+    }
+    catch(IOException e) {
+      throw new AbortException("IO Error in page file", e);
+    }
+  }
+
+  /**
+   * Serializes a page into a byte array of the page size.
+   * 
+   * @param page the page to be serialized, may be {@code null}
+   * @return the byte array
+   */
+  private byte[] pageToByteArray(P page) {
+    try {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream(pageSize);
+      ObjectOutputStream oos = new ObjectOutputStream(baos);
+      oos.writeInt(page == null ? EMPTY_PAGE : FILLED_PAGE);
+      if(page != null) {
+        page.writeExternal(oos);
+      }
+      oos.close();
+      byte[] array = baos.toByteArray();
+      if(array.length > pageSize) {
+        throw new IllegalArgumentException("Size of page " + page + " is greater than specified" + " pagesize: " + array.length + " > " + pageSize);
+      }
+      return array.length == pageSize ? array : Arrays.copyOf(array, pageSize);
+    }
+    catch(IOException e) {
+      throw new RuntimeException("IOException occurred! ", e);
+    }
+  }
+
+  /**
+   * Get the header of this page file.
+   * 
+   * @return the header used by this page file
+   */
+  public PageHeader getHeader() {
+    return header;
+  }
+
+  /**
+   * Set the next page id to the given value, discarding empty pages beyond.
+   * 
+   * @param next_page_id the id of the next page to be inserted (if there are no
+   *        more empty pages to be filled)
+   */
+  @Override
+  public void setNextPageID(int next_page_id) {
+    this.nextPageID = next_page_id;
+    while(!emptyPages.isEmpty() && emptyPages.peek() >= this.nextPageID) {
+      emptyPages.pop();
+    }
+  }
+
+  @Override
+  public boolean initialize(PageHeader header) {
+    this.header = header;
+    try {
+      if(existed) {
+        LOG.debug("Initializing from an existing page file.");
+        header.readHeader(file);
+      }
+      else {
+        LOG.debug("Initializing with a new page file.");
+        header.writeHeader(file);
+      }
+      this.pageSize = header.getPageSize();
+      this.dataOffset = header.getReservedPages() * (long) pageSize;
+      this.pagesPerChunk = Math.max(1, CHUNK_SIZE / pageSize);
+      if(existed) {
+        if(header instanceof TreeIndexHeader) {
+          TreeIndexHeader tiHeader = (TreeIndexHeader) header;
+          nextPageID = tiHeader.getLargestPageID();
+          try {
+            emptyPages = tiHeader.readEmptyPages(file);
+          }
+          catch(ClassNotFoundException e) {
+            throw new RuntimeException("ClassNotFoundException occurred when reading empty pages.", e);
+          }
+          // Remove the empty pages listing, it will be rewritten on close.
+          file.setLength(dataOffset + nextPageID * (long) pageSize);
+        }
+        else { // must scan complete file
+          final long length = file.length();
+          for(int i = 0; dataOffset + (i + 1) * (long) pageSize <= length; i++) {
+            ObjectInputStream ois = new ObjectInputStream(new ByteBufferInputStream(readBuffer(i)));
+            int type = ois.readInt();
+            if(type == EMPTY_PAGE) {
+              emptyPages.push(i);
+            }
+            else if(type == FILLED_PAGE) {
+              nextPageID = i + 1;
+            }
+            else {
+              throw new IllegalArgumentException("Unknown type: " + type);
+            }
+          }
+        }
+      }
+    }
+    catch(IOException e) {
+      throw new RuntimeException("IOException occurred.", e);
+    }
+    return existed;
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+}
@@ -0,0 +1,202 @@
+package de.lmu.ifi.dbs.elki.utilities.datastructures.unionfind;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.StaticDBIDs;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+
+/**
+ * Lock-free union-find for {@link StaticDBIDs}, which may be used by multiple
+ * threads concurrently.
+ *
+ * To instantiate, use {@link UnionFindUtil#makeConcurrent}.
+ *
+ * Roots are always linked to the root with the smaller offset using a
+ * compare-and-set operation, which retries if the root was linked by another
+ * thread in the meantime. This total order prevents cycles without requiring
+ * locks or weights. Path halving is also performed with compare-and-set, and
+ * thus can only shorten paths.
+ *
+ * Reference:
+ * <p>
+ * R. J. Anderson, H. Woll<br />
+ * Wait-free parallel algorithms for the union-find problem<br />
+ * Proc. 23rd ACM Symposium on Theory of Computing (STOC 1991)
+ * </p>
+ *
+ * @author Erich Schubert
+ */
+@Reference(authors = "R. J. Anderson, H. Woll", //
+title = "Wait-free parallel algorithms for the union-find problem", //
+booktitle = "Proc. 23rd ACM Symposium on Theory of Computing (STOC 1991)", //
+url = "http://dx.doi.org/10.1145/103418.103458")
+public class ConcurrentUnionFindStaticDBIDs implements UnionFind {
+  /**
+   * Object IDs.
+   */
+  private ArrayDBIDs ids;
+
+  /**
+   * Object ID range, if available (no index needed then).
+   */
+  private DBIDRange range;
+
+  /**
+   * Index, to map DBID to offset.
+   */
+  private WritableIntegerDataStore index;
+
+  /**
+   * Parent element
+   */
+  private AtomicIntegerArray parent;
+
+  /**
+   * Constructor (package private, use {@link UnionFindUtil#makeConcurrent}).
+   *
+   * @param ids IDs to use
+   */
+  ConcurrentUnionFindStaticDBIDs(StaticDBIDs ids) {
+    this.ids = DBIDUtil.ensureArray(ids);
+    if(ids instanceof DBIDRange) {
+      range = (DBIDRange) ids;
+    }
+    else {
+      index = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
+      int j = 0;
+      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+        index.put(iter, j++);
+      }
+    }
+    final int size = ids.size();
+    parent = new AtomicIntegerArray(size);
+    for(int i = 0; i < size; i++) {
+      parent.set(i, i);
+    }
+  }
+
+  /**
+   * Get the offset of an object, in the order of the static DBIDs.
+   *
+   * @param element Element
+   * @return Offset
+   */
+  public int getOffset(DBIDRef element) {
+    return range != null ? range.getOffset(element) : index.intValue(element);
+  }
+
+  @Override
+  public int find(DBIDRef element) {
+    return find(getOffset(element));
+  }
+
+  /**
+   * Find the component ID of an element, by offset.
+   *
+   * @param cur Element offset
+   * @return Component id
+   */
+  public int find(int cur) {
+    assert (cur >= 0 && cur < parent.length());
+    int p = parent.get(cur);
+    while(cur != p) {
+      final int gp = parent.get(p);
+      // Path halving; may fail if another thread changed the parent.
+      parent.compareAndSet(cur, p, gp);
+      cur = gp;
+      p = parent.get(cur);
+    }
+    return cur;
+  }
+
+  @Override
+  public int union(DBIDRef first, DBIDRef second) {
+    return union(getOffset(first), getOffset(second));
+  }
+
+  /**
+   * Join the components of two elements, by offset.
+   *
+   * @param first First element offset
+   * @param second Second element offset
+   * @return Component id
+   */
+  public int union(int first, int second) {
+    while(true) {
+      int c1 = find(first), c2 = find(second);
+      if(c1 == c2) {
+        return c1;
+      }
+      // Always link the larger offset to the smaller offset.
+      if(c1 < c2) {
+        final int tmp = c1;
+        c1 = c2;
+        c2 = tmp;
+      }
+      if(parent.compareAndSet(c1, c1, c2)) {
+        return c2;
+      }
+      // Another thread has linked c1 in the meantime, retry.
+    }
+  }
+
+  @Override
+  public boolean isConnected(DBIDRef first, DBIDRef second) {
+    final int o1 = getOffset(first), o2 = getOffset(second);
+    while(true) {
+      final int c1 = find(o1), c2 = find(o2);
+      if(c1 == c2) {
+        return true;
+      }
+      // Only valid if c1 still is a root; otherwise retry.
+      if(parent.get(c1) == c1) {
+        return false;
+      }
+    }
+  }
+
+  @Override
+  public DBIDs getRoots() {
+    ArrayModifiableDBIDs roots = DBIDUtil.newArray();
+    for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      if(parent.get(iter.getOffset()) == iter.getOffset()) {
+        roots.add(iter);
+      }
+    }
+    return roots;
+  }
+}
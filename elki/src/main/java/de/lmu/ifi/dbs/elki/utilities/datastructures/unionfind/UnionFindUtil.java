@@ -43,4 +43,14 @@ public class UnionFindUtil {
     }
     return new WeightedQuickUnionStaticDBIDs(ids);
   }
+
+  /**
+   * Make a new instance that can be used by multiple threads concurrently.
+   *
+   * @param ids ID set
+   * @return Concurrent union find algorithm
+   */
+  public static ConcurrentUnionFindStaticDBIDs makeConcurrent(StaticDBIDs ids) {
+    return new ConcurrentUnionFindStaticDBIDs(ids);
+  }
 }
@@ -27,6 +27,9 @@ import java.util.List;
 
 import de.lmu.ifi.dbs.elki.algorithm.Algorithm;
 import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.buffer.BufferDataStoreFactory;
 import de.lmu.ifi.dbs.elki.index.Index;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.LoggingConfiguration;
@@ -117,6 +120,10 @@ public class AlgorithmStep implements WorkflowStep {
           }
           ((Index) it.get()).logStatistics();
         }
+        DataStoreFactory storage = DataStoreUtil.getFactory();
+        if(storage instanceof BufferDataStoreFactory) {
+          ((BufferDataStoreFactory) storage).logStatistics();
+        }
       }
       if(res != null) {
         // Make sure the result is attached, but usually this is a noop:
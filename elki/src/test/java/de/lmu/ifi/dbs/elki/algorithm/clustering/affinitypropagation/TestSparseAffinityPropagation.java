@@ -0,0 +1,116 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.affinitypropagation;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.model.MedoidModel;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.distance.similarityfunction.kernel.PolynomialKernelFunction;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.ParameterException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Test sparse Affinity Propagation
+ *
+ * @author Erich Schubert
+ */
+public class TestSparseAffinityPropagation extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  /**
+   * Run SparseAffinityPropagation with fixed parameters and compare the result
+   * to a golden standard.
+   *
+   * @throws ParameterException
+   */
+  @Test
+  public void testSparseAffinityPropagationResults() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+
+    // setup algorithm
+    ListParameterization params = new ListParameterization();
+    params.addParameter(SparseAffinityPropagation.Parameterizer.K_ID, 50);
+    params.addParameter(AffinityPropagationInitialization.QUANTILE_ID, 0.05);
+    SparseAffinityPropagation<DoubleVector> apc = ClassGenericsUtil.parameterizeOrAbort(SparseAffinityPropagation.class, params);
+    testParameterizationOk(params);
+
+    // run SparseAffinityPropagation on database
+    Clustering<MedoidModel> result = apc.run(db);
+
+    testFMeasure(db, result, 0.725979894);
+    testClusterSizes(result, new int[] { 2, 3, 3, 3, 3, 4, 4, 4, 37, 44, 52, 70, 101 });
+  }
+
+  /**
+   * With all neighbors retained, sparse Affinity Propagation must produce the
+   * same result as the dense {@link AffinityPropagationClusteringAlgorithm}.
+   *
+   * @throws ParameterException
+   */
+  @Test
+  public void testSparseAffinityPropagationAllNeighbors() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+
+    // setup algorithm
+    ListParameterization params = new ListParameterization();
+    params.addParameter(SparseAffinityPropagation.Parameterizer.K_ID, 329);
+    SparseAffinityPropagation<DoubleVector> apc = ClassGenericsUtil.parameterizeOrAbort(SparseAffinityPropagation.class, params);
+    testParameterizationOk(params);
+
+    // run SparseAffinityPropagation on database
+    Clustering<MedoidModel> result = apc.run(db);
+
+    testFMeasure(db, result, 0.957227259);
+    testClusterSizes(result, new int[] { 5, 5, 7, 55, 105, 153 });
+  }
+
+  /**
+   * Run SparseAffinityPropagation with fixed parameters and compare the result
+   * to a golden standard.
+   *
+   * @throws ParameterException
+   */
+  @Test
+  public void testSparseAffinityPropagationSimilarity() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+
+    // Setup algorithm
+    ListParameterization params = new ListParameterization();
+    params.addParameter(AffinityPropagationClusteringAlgorithm.Parameterizer.INITIALIZATION_ID, SimilarityBasedInitializationWithMedian.class);
+    params.addParameter(SimilarityBasedInitializationWithMedian.Parameterizer.SIMILARITY_ID, PolynomialKernelFunction.class);
+    params.addParameter(SparseAffinityPropagation.Parameterizer.K_ID, 50);
+    params.addParameter(AffinityPropagationInitialization.QUANTILE_ID, 0.01);
+    SparseAffinityPropagation<DoubleVector> apc = ClassGenericsUtil.parameterizeOrAbort(SparseAffinityPropagation.class, params);
+    testParameterizationOk(params);
+
+    // run SparseAffinityPropagation on database
+    Clustering<MedoidModel> result = apc.run(db);
+    testFMeasure(db, result, 0.161156338);
+    testClusterSizes(result, new int[] { 6, 10, 11, 12, 12, 12, 13, 13, 13, 13, 13, 13, 14, 15, 15, 15, 15, 15, 15, 15, 15, 15, 16, 16, 16, 16, 17, 17, 17, 17, 18, 18, 18, 19, 19, 21, 21, 23, 26, 33 });
+  }
+}
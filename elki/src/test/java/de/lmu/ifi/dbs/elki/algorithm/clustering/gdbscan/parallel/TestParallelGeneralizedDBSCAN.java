@@ -0,0 +1,136 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.gdbscan.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.DBSCAN;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.gdbscan.GeneralizedDBSCAN;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.model.Model;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.ParameterException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Test that the concurrent union-find of {@link ParallelGeneralizedDBSCAN}
+ * yields the same clustering as the sequential {@link GeneralizedDBSCAN}, no
+ * matter in which order the threads merge the core points.
+ * 
+ * @author Erich Schubert
+ */
+public class TestParallelGeneralizedDBSCAN extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  /**
+   * Run parallel Generalized DBSCAN with fixed parameters and compare the result to a
+   * golden standard.
+   * 
+   * @throws ParameterException
+   */
+  @Test
+  public void testParallelDBSCANResults() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+
+    // setup algorithm
+    ListParameterization params = new ListParameterization();
+    params.addParameter(DBSCAN.Parameterizer.EPSILON_ID, 0.04);
+    params.addParameter(DBSCAN.Parameterizer.MINPTS_ID, 20);
+    ParallelGeneralizedDBSCAN dbscan = ClassGenericsUtil.parameterizeOrAbort(ParallelGeneralizedDBSCAN.class, params);
+    testParameterizationOk(params);
+
+    // run DBSCAN on database
+    Clustering<Model> result = dbscan.run(db);
+
+    testFMeasure(db, result, 0.996413);
+    testClusterSizes(result, new int[] { 29, 50, 101, 150 });
+  }
+
+  /**
+   * Run parallel Generalized DBSCAN with fixed parameters and compare the result to a
+   * golden standard.
+   * 
+   * @throws ParameterException
+   */
+  @Test
+  public void testParallelDBSCANOnSingleLinkDataset() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+
+    // Setup algorithm
+    ListParameterization params = new ListParameterization();
+    params.addParameter(DBSCAN.Parameterizer.EPSILON_ID, 11.5);
+    params.addParameter(DBSCAN.Parameterizer.MINPTS_ID, 120);
+    ParallelGeneralizedDBSCAN dbscan = ClassGenericsUtil.parameterizeOrAbort(ParallelGeneralizedDBSCAN.class, params);
+    testParameterizationOk(params);
+
+    // run DBSCAN on database
+    Clustering<Model> result = dbscan.run(db);
+    testFMeasure(db, result, 0.954382);
+    testClusterSizes(result, new int[] { 11, 200, 203, 224 });
+  }
+
+  /**
+   * Repeatedly run the parallel variant, and compare each result to the
+   * sequential algorithm object by object.
+   */
+  @Test
+  public void testSameAsSequential() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+
+    ListParameterization params = new ListParameterization();
+    params.addParameter(DBSCAN.Parameterizer.EPSILON_ID, 0.04);
+    params.addParameter(DBSCAN.Parameterizer.MINPTS_ID, 20);
+    GeneralizedDBSCAN seq = ClassGenericsUtil.parameterizeOrAbort(GeneralizedDBSCAN.class, params);
+    testParameterizationOk(params);
+    Clustering<Model> expected = seq.run(db);
+
+    params = new ListParameterization();
+    params.addParameter(DBSCAN.Parameterizer.EPSILON_ID, 0.04);
+    params.addParameter(DBSCAN.Parameterizer.MINPTS_ID, 20);
+    ParallelGeneralizedDBSCAN par = ClassGenericsUtil.parameterizeOrAbort(ParallelGeneralizedDBSCAN.class, params);
+    testParameterizationOk(params);
+    for(int i = 0; i < 10; i++) {
+      Clustering<Model> result = par.run(db);
+      assertEquals("Number of clusters differs.", expected.getAllClusters().size(), result.getAllClusters().size());
+      for(Cluster<Model> c : result.getAllClusters()) {
+        Cluster<Model> match = null;
+        for(Cluster<Model> e : expected.getAllClusters()) {
+          if(e.isNoise() == c.isNoise() && DBIDUtil.intersectionSize(e.getIDs(), c.getIDs()) > 0) {
+            match = e;
+            break;
+          }
+        }
+        assertNotNull("Cluster not found in the sequential result.", match);
+        assertEquals("Cluster size differs.", match.size(), c.size());
+        assertEquals("Cluster members differ.", c.size(), DBIDUtil.intersectionSize(match.getIDs(), c.getIDs()));
+      }
+    }
+  }
+}
\ No newline at end of file
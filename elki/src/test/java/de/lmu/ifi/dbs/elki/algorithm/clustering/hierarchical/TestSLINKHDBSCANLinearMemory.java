@@ -0,0 +1,64 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.extraction.HDBSCANHierarchyExtraction;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+import de.lmu.ifi.dbs.elki.workflow.AlgorithmStep;
+
+/**
+ * Regression test for SLINKHDBSCANLinearMemory.
+ *
+ * @author Erich Schubert
+ */
+public class TestSLINKHDBSCANLinearMemory extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  /**
+   * Run SLINKHDBSCANLinearMemory with fixed parameters and compare the result to a golden
+   * standard.
+   */
+  @Test
+  public void testSLINKHDBSCANLinearMemoryResults() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+
+    // Setup algorithm
+    ListParameterization params = new ListParameterization();
+    params.addParameter(HDBSCANHierarchyExtraction.Parameterizer.MINCLUSTERSIZE_ID, 20);
+    params.addParameter(AlgorithmStep.Parameterizer.ALGORITHM_ID, SLINKHDBSCANLinearMemory.class);
+    params.addParameter(AbstractHDBSCAN.Parameterizer.MIN_PTS_ID, 20);
+    HDBSCANHierarchyExtraction hdbscan = ClassGenericsUtil.parameterizeOrAbort(HDBSCANHierarchyExtraction.class, params);
+    testParameterizationOk(params);
+
+    // run SLINKHDBSCANLinearMemory on database
+    Clustering<?> clustering = hdbscan.run(db);
+    testFMeasure(db, clustering, 0.97218034);
+    testClusterSizes(clustering, new int[] { 21, 54, 103, 152 });
+  }
+}
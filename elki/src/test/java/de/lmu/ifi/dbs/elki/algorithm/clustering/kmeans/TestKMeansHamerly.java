@@ -62,4 +62,27 @@ public class TestKMeansHamerly extends AbstractSimpleAlgorithmTest implements JU
     testFMeasure(db, result, 0.998005);
     testClusterSizes(result, new int[] { 199, 200, 200, 200, 201 });
   }
-}
\ No newline at end of file
+
+  /**
+   * Run KMeans with single precision bounds, which must not change the result.
+   *
+   * @throws ParameterException
+   */
+  @Test
+  public void testKMeansHamerlyFloat() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+
+    // Setup algorithm
+    ListParameterization params = new ListParameterization();
+    params.addParameter(KMeans.K_ID, 5);
+    params.addParameter(KMeans.SEED_ID, 2);
+    params.addFlag(KMeansLloyd.Parameterizer.FLOAT_ID);
+    AbstractKMeans<DoubleVector, ?> kmeans = ClassGenericsUtil.parameterizeOrAbort(KMeansHamerly.class, params);
+    testParameterizationOk(params);
+
+    // run KMeans on database
+    Clustering<?> result = kmeans.run(db);
+    testFMeasure(db, result, 0.998005);
+    testClusterSizes(result, new int[] { 199, 200, 200, 200, 201 });
+  }
+}
@@ -0,0 +1,140 @@
+package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.model.KMeansModel;
+import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+import de.lmu.ifi.dbs.elki.datasource.parser.NumberVectorLabelParser;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.FormatUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.ParameterException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Regression test for mini-batch k-means.
+ *
+ * @author Erich Schubert
+ */
+public class TestKMeansMiniBatch extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  /**
+   * Maximum distance of the estimated means to the cluster centers.
+   */
+  private static final double TOLERANCE = 1.5;
+
+  /**
+   * Run KMeans with fixed parameters and compare the result to a golden
+   * standard.
+   *
+   * @throws ParameterException
+   */
+  @Test
+  public void testKMeansMiniBatch() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+
+    // Setup algorithm
+    ListParameterization params = new ListParameterization();
+    params.addParameter(KMeans.K_ID, 5);
+    params.addParameter(KMeans.SEED_ID, 2);
+    params.addParameter(KMeansMiniBatch.Parameterizer.BATCHSIZE_ID, 100);
+    params.addParameter(KMeansMiniBatch.Parameterizer.RANDOM_ID, 0);
+    params.addParameter(KMeans.MAXITER_ID, 20);
+    AbstractKMeans<DoubleVector, ?> kmeans = ClassGenericsUtil.parameterizeOrAbort(KMeansMiniBatch.class, params);
+    testParameterizationOk(params);
+
+    // run KMeans on database
+    Clustering<?> result = kmeans.run(db);
+    testFMeasure(db, result, 0.998005);
+    testClusterSizes(result, new int[] { 199, 200, 200, 200, 201 });
+  }
+
+  /**
+   * Estimate the means from a data stream.
+   *
+   * @throws IOException on errors reading the test data
+   */
+  @Test
+  public void testKMeansMiniBatchStream() throws IOException {
+    ListParameterization params = new ListParameterization();
+    params.addParameter(KMeans.K_ID, 5);
+    params.addParameter(KMeans.SEED_ID, 2);
+    params.addParameter(KMeansMiniBatch.Parameterizer.BATCHSIZE_ID, 100);
+    KMeansMiniBatch<DoubleVector> kmeans = ClassGenericsUtil.parameterizeOrAbort(KMeansMiniBatch.class, params);
+    testParameterizationOk(params);
+
+    // The file is sorted by cluster, the stream must not be.
+    MultipleObjectsBundle bundle;
+    try (InputStream in = new FileInputStream(UNITTEST + "different-densities-2d-no-noise.ascii")) {
+      bundle = new NumberVectorLabelParser<>(DoubleVector.FACTORY).parse(in);
+    }
+    List<DoubleVector> data = new ArrayList<>(bundle.dataLength());
+    for(int i = 0; i < bundle.dataLength(); i++) {
+      data.add((DoubleVector) bundle.data(i, 0));
+    }
+    Collections.shuffle(data, new Random(0L));
+    Clustering<KMeansModel> result = kmeans.run(MultipleObjectsBundle.makeSimple(new VectorFieldTypeInformation<>(DoubleVector.FACTORY, 2), data).asStream());
+
+    // Means of the generating distributions:
+    double[][] expected = { { 67.011, 32.640 }, { 67.377, 86.978 }, { 24.564, 38.553 }, { 66.271, 56.363 }, { 19.602, 75.135 } };
+    List<Cluster<KMeansModel>> clusters = result.getAllClusters();
+    assertEquals("Number of means", expected.length, clusters.size());
+    boolean[] found = new boolean[expected.length];
+    for(Cluster<KMeansModel> clus : clusters) {
+      double[] mean = clus.getModel().getMean().getArrayRef();
+      int best = -1;
+      double bestd = Double.POSITIVE_INFINITY;
+      for(int i = 0; i < expected.length; i++) {
+        double dx = mean[0] - expected[i][0], dy = mean[1] - expected[i][1];
+        double d = Math.sqrt(dx * dx + dy * dy);
+        if(d < bestd) {
+          bestd = d;
+          best = i;
+        }
+      }
+      assertTrue("Mean " + FormatUtil.format(mean) + " is far from the clusters: " + bestd, bestd < TOLERANCE);
+      assertFalse("Two means in the same cluster.", found[best]);
+      found[best] = true;
+    }
+  }
+}
@@ -29,8 +29,12 @@ import de.lmu.ifi.dbs.elki.JUnit4Test;
 import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
 import de.lmu.ifi.dbs.elki.data.DoubleVector;
 import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.index.preprocessed.knn.KDTreeKNNJoinPreprocessor;
+import de.lmu.ifi.dbs.elki.index.preprocessed.knn.MaterializeKNNPreprocessor;
 import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
 import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
 
 /**
@@ -41,7 +45,41 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParamet
 public class TestLOF extends AbstractSimpleAlgorithmTest implements JUnit4Test {
   @Test
   public void testLOF() {
-    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345);
+    testLOF(new ListParameterization());
+  }
+
+  @Test
+  public void testLOFMaterialized() {
+    // Use a materialized kNN index, with compact storage.
+    testLOF(MaterializeKNNPreprocessor.Factory.class, MaterializeKNNPreprocessor.Factory.K_ID);
+  }
+
+  @Test
+  public void testLOFKDTreeJoin() {
+    // Materialize the kNN with a dual-tree join on a k-d-tree.
+    testLOF(KDTreeKNNJoinPreprocessor.Factory.class, KDTreeKNNJoinPreprocessor.Factory.K_ID);
+  }
+
+  /**
+   * Run LOF on a database with a kNN index.
+   *
+   * @param factory Index factory class
+   * @param kid Option ID of the index k parameter
+   */
+  private void testLOF(Class<?> factory, OptionID kid) {
+    ListParameterization dbparams = new ListParameterization();
+    dbparams.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, factory);
+    dbparams.addParameter(kid, 11);
+    testLOF(dbparams);
+  }
+
+  /**
+   * Run LOF and compare the result to a golden standard.
+   *
+   * @param dbparams Database parameters
+   */
+  private void testLOF(ListParameterization dbparams) {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345, dbparams, null);
 
     // Parameterization
     ListParameterization params = new ListParameterization();
@@ -57,4 +95,4 @@ public class TestLOF extends AbstractSimpleAlgorithmTest implements JUnit4Test {
     testSingleScore(result, 1293, 1.1945314199156365);
     testAUC(db, "Noise", result, 0.8921680672268908);
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,147 @@
+package de.lmu.ifi.dbs.elki.database.datastore.buffer;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.memory.ArrayDoubleStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Test the placement and behavior of buffer backed data stores.
+ * 
+ * @author Erich Schubert
+ */
+public class TestBufferDataStoreFactory extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  @Test
+  public void testPlacement() {
+    BufferDataStoreFactory factory = new BufferDataStoreFactory(0, new File(System.getProperty("java.io.tmpdir")));
+    DBIDRange ids = DBIDUtil.generateStaticDBIDRange(1000);
+
+    WritableDoubleDataStore hot = factory.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
+    assertTrue("Hot store not on heap.", hot instanceof ArrayDoubleStore);
+    WritableDoubleDataStore temp = factory.makeDoubleStorage(ids, DataStoreFactory.HINT_TEMP, 1.);
+    assertTrue("Temporary store not off heap.", temp instanceof BufferDoubleStore);
+    WritableIntegerDataStore stat = factory.makeIntegerStorage(ids, DataStoreFactory.HINT_STATIC, -1);
+    assertTrue("Static store not off heap.", stat instanceof BufferIntegerStore);
+    assertEquals("Heap stores", 1, factory.getAllocatedStores(false));
+    assertEquals("Off-heap stores", 2, factory.getAllocatedStores(true));
+
+    int i = 0;
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance(), i++) {
+      assertEquals("Default value", 1., temp.doubleValue(it), 0.);
+      assertEquals("Default value", -1, stat.intValue(it));
+      temp.increment(it, i);
+      stat.putInt(it, i * 2);
+    }
+    i = 0;
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance(), i++) {
+      assertEquals("Stored value", i + 1., temp.doubleValue(it), 0.);
+      assertEquals("Stored value", i * 2, stat.intValue(it));
+    }
+    temp.clear();
+    assertEquals("Cleared value", 1., temp.doubleValue(ids.iter()), 0.);
+    temp.destroy();
+    stat.destroy();
+  }
+
+  @Test
+  public void testParameterization() {
+    ListParameterization params = new ListParameterization();
+    params.addParameter(BufferDataStoreFactory.Parameterizer.MINBYTES_ID, 4000);
+    params.addParameter(BufferDataStoreFactory.Parameterizer.SPILL_ID, System.getProperty("java.io.tmpdir"));
+    BufferDataStoreFactory factory = ClassGenericsUtil.parameterizeOrAbort(BufferDataStoreFactory.class, params);
+    params.failOnErrors();
+    DBIDRange small = DBIDUtil.generateStaticDBIDRange(100), large = DBIDUtil.generateStaticDBIDRange(1000);
+
+    WritableDoubleDataStore s = factory.makeDoubleStorage(small, DataStoreFactory.HINT_STATIC);
+    assertTrue("Small store not on heap.", s instanceof ArrayDoubleStore);
+    WritableDoubleDataStore l = factory.makeDoubleStorage(large, DataStoreFactory.HINT_STATIC);
+    assertTrue("Large store not off heap.", l instanceof BufferDoubleStore);
+    l.putDouble(large.iter(), 1.);
+    assertEquals("Stored value", 1., l.doubleValue(large.iter()), 0.);
+    s.destroy();
+    l.destroy();
+    factory.logStatistics();
+  }
+
+  @Test
+  public void testSpillDirectory() throws IOException {
+    File file = File.createTempFile("elki-test", ".bin");
+    try {
+      ListParameterization params = new ListParameterization();
+      params.addParameter(BufferDataStoreFactory.Parameterizer.SPILL_ID, file);
+      params.tryInstantiate(BufferDataStoreFactory.class);
+      assertTrue("A regular file was accepted as spill directory.", params.hasErrors());
+    }
+    finally {
+      assertTrue(file.delete());
+    }
+  }
+
+  @Test
+  public void testDatabaseOption() {
+    DataStoreFactory previous = DataStoreUtil.getFactory();
+    try {
+      ListParameterization params = new ListParameterization();
+      params.addParameter(StaticArrayDatabase.Parameterizer.STORAGE_FACTORY_ID, BufferDataStoreFactory.class);
+      params.addParameter(BufferDataStoreFactory.Parameterizer.MINBYTES_ID, 0);
+      Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330, params, null);
+      assertTrue("Storage factory not selected.", DataStoreUtil.getFactory() instanceof BufferDataStoreFactory);
+      BufferDataStoreFactory factory = (BufferDataStoreFactory) DataStoreUtil.getFactory();
+      assertTrue("Database stores not on the heap.", factory.getAllocatedStores(false) > 0);
+
+      Relation<?> rel = db.getRelation(TypeUtil.ANY);
+      DBIDs ids = rel.getDBIDs();
+      WritableDoubleDataStore temp = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_TEMP);
+      assertTrue("Temporary store not off heap.", temp instanceof BufferDoubleStore);
+      assertEquals("Off-heap stores", 1, factory.getAllocatedStores(true));
+      temp.destroy();
+    }
+    finally {
+      DataStoreUtil.setFactory(previous);
+    }
+  }
+}
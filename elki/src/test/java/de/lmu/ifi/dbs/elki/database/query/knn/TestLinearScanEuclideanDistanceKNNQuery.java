@@ -0,0 +1,80 @@
+package de.lmu.ifi.dbs.elki.database.query.knn;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+
+/**
+ * Test the tiled bulk kNN queries against individual queries.
+ *
+ * @author Erich Schubert
+ */
+public class TestLinearScanEuclideanDistanceKNNQuery extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  /**
+   * Compare bulk and single queries.
+   */
+  @Test
+  public void testBulkQueries() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    DistanceQuery<NumberVector> dq = db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC);
+    KNNQuery<NumberVector> knnq = db.getKNNQuery(dq, 10);
+    assertTrue("Unexpected query class: " + knnq.getClass(), knnq instanceof LinearScanEuclideanDistanceKNNQuery);
+
+    ArrayDBIDs ids = DBIDUtil.ensureArray(rel.getDBIDs());
+    for(int k : new int[] { 1, 10, 50 }) {
+      List<? extends KNNList> bulk = knnq.getKNNForBulkDBIDs(ids, k);
+      assertEquals("Number of results does not match.", ids.size(), bulk.size());
+      int i = 0;
+      for(DBIDIter it = ids.iter(); it.valid(); it.advance(), i++) {
+        KNNList single = knnq.getKNNForDBID(it, k), batch = bulk.get(i);
+        assertEquals("kNN sizes do not agree.", single.size(), batch.size());
+        DoubleDBIDListIter a = single.iter(), b = batch.iter();
+        for(; a.valid(); a.advance(), b.advance()) {
+          assertEquals("kNN distances do not agree.", a.doubleValue(), b.doubleValue(), 0.);
+        }
+        assertEquals("k-distance does not agree.", single.getKNNDistance(), batch.getKNNDistance(), 0.);
+      }
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package de.lmu.ifi.dbs.elki.database.relation;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.PackedVectorEuclideanDistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.utilities.io.ByteBufferSerializer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Test the packed vector storage against regular storage.
+ *
+ * @author Erich Schubert
+ */
+public class TestPackedVectorRelation extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  /**
+   * Data set to use.
+   */
+  private static final String DATA = UNITTEST + "3clusters-and-noise-2d.csv";
+
+  /**
+   * Test double precision storage.
+   */
+  @Test
+  public void testDouble() throws IOException {
+    testPacked(false, 0.);
+  }
+
+  /**
+   * Test single precision storage.
+   */
+  @Test
+  public void testFloat() throws IOException {
+    testPacked(true, 1e-5);
+  }
+
+  /**
+   * Compare packed and regular storage.
+   *
+   * @param useFloat Single precision
+   * @param tol Tolerance
+   */
+  private void testPacked(boolean useFloat, double tol) throws IOException {
+    Database db = makeSimpleDatabase(DATA, 330);
+    ListParameterization params = new ListParameterization();
+    params.addFlag(StaticArrayDatabase.Parameterizer.PACKED_ID);
+    if(useFloat) {
+      params.addFlag(StaticArrayDatabase.Parameterizer.PACKED_FLOAT_ID);
+    }
+    Database pdb = makeSimpleDatabase(DATA, 330, params, null);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    Relation<NumberVector> prel = pdb.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    assertTrue("Not packed: " + prel.getClass(), prel instanceof PackedVectorRelation);
+    assertEquals("Float storage not used.", useFloat, ((PackedVectorRelation) prel).isFloat());
+    assertTrue("Packed relation not recognized.", PackedVectorRelation.asPacked(prel, 2) == prel);
+    assertNull("Dimensionality not checked.", PackedVectorRelation.asPacked(prel, 3));
+    assertNull("Regular relation used as packed.", PackedVectorRelation.asPacked(rel, 2));
+
+    DistanceQuery<NumberVector> pdq = pdb.getDistanceQuery(prel, EuclideanDistanceFunction.STATIC);
+    assertTrue("Fast distance query not used.", pdq instanceof PackedVectorEuclideanDistanceQuery);
+    DistanceQuery<NumberVector> dq = db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC);
+    ByteBufferSerializer<? super NumberVector> ser = prel.getDataTypeInformation().getSerializer();
+    assertNotNull("No serializer.", ser);
+    ByteBuffer buf = ByteBuffer.allocate(1024);
+
+    KNNQuery<NumberVector> knnq = db.getKNNQuery(dq, 10), pknnq = pdb.getKNNQuery(pdq, 10);
+
+    for(DBIDIter it = rel.iterDBIDs(), pit = prel.iterDBIDs(); it.valid(); it.advance(), pit.advance()) {
+      NumberVector v = rel.get(it), pv = prel.get(pit);
+      assertEquals("Dimensionality differs.", v.getDimensionality(), pv.getDimensionality());
+      for(int d = 0; d < v.getDimensionality(); d++) {
+        assertEquals("Value differs.", v.doubleValue(d), pv.doubleValue(d), tol * Math.abs(v.doubleValue(d)));
+      }
+      buf.clear();
+      ser.toByteBuffer(buf, pv);
+      assertEquals("Serialized size differs.", ser.getByteSize(pv), buf.position());
+      buf.flip();
+      NumberVector sv = (NumberVector) ser.fromByteBuffer(buf);
+      for(int d = 0; d < v.getDimensionality(); d++) {
+        assertEquals("Serialized value differs.", pv.doubleValue(d), sv.doubleValue(d), 0.);
+      }
+      KNNList knn = knnq.getKNNForDBID(it, 10), pknn = pknnq.getKNNForDBID(pit, 10);
+      assertEquals("kNN size differs.", knn.size(), pknn.size());
+      for(DoubleDBIDListIter a = knn.iter(), b = pknn.iter(); a.valid(); a.advance(), b.advance()) {
+        assertEquals("kNN distance differs.", a.doubleValue(), b.doubleValue(), tol * (1 + a.doubleValue()));
+      }
+      assertEquals("Distance differs.", dq.distance(it, knn.iter()), pdq.distance(pit, knn.iter()), tol);
+    }
+  }
+}
@@ -25,19 +25,34 @@ package de.lmu.ifi.dbs.elki.index;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import de.lmu.ifi.dbs.elki.JUnit4Test;
 import de.lmu.ifi.dbs.elki.data.DoubleVector;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.HashmapDatabase;
+import de.lmu.ifi.dbs.elki.database.QueryUtil;
 import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.UpdatableDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
 import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
 import de.lmu.ifi.dbs.elki.database.ids.KNNList;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.DistanceBrowsingIter;
+import de.lmu.ifi.dbs.elki.database.query.knn.DistanceBrowsingQuery;
 import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeCountQuery;
 import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.datasource.FileBasedDatabaseConnection;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.CosineDistanceFunction;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
 import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
@@ -145,6 +160,9 @@ public abstract class AbstractTestIndexStructures implements JUnit4Test {
         DoubleVector c2 = new DoubleVector(shouldc[i]);
         assertEquals("Expected vector doesn't match: " + c.toString(), 0.0, dist.distance(c, c2), 1e-15);
       }
+      if(knnq instanceof DistanceBrowsingQuery) {
+        testDistanceBrowsing((DistanceBrowsingQuery<DoubleVector>) knnq, rep, dist, shouldd, shouldc);
+      }
     }
     if(expectRangeQuery != null) {
       // Do a range query
@@ -164,6 +182,9 @@ public abstract class AbstractTestIndexStructures implements JUnit4Test {
         DoubleVector c2 = new DoubleVector(shouldc[i]);
         assertEquals("Expected vector doesn't match: " + c.toString(), 0.0, dist.distance(c, c2), 1e-15);
       }
+      if(rangeq instanceof RangeCountQuery) {
+        testRangeCount((RangeCountQuery<DoubleVector>) rangeq, rangeq, dv, eps);
+      }
     }
   }
 
@@ -202,6 +223,9 @@ public abstract class AbstractTestIndexStructures implements JUnit4Test {
         DoubleVector c2 = new DoubleVector(cosshouldc[i]);
         assertEquals("Expected vector doesn't match: " + c.toString(), 0.0, dist.distance(c, c2), 1e-15);
       }
+      if(knnq instanceof DistanceBrowsingQuery) {
+        testDistanceBrowsing((DistanceBrowsingQuery<DoubleVector>) knnq, rep, dist, cosshouldd, cosshouldc);
+      }
     }
     if(expectRangeQuery != null) {
       // Do a range query
@@ -221,6 +245,109 @@ public abstract class AbstractTestIndexStructures implements JUnit4Test {
         DoubleVector c2 = new DoubleVector(cosshouldc[i]);
         assertEquals("Expected vector doesn't match: " + c.toString(), 0.0, dist.distance(c, c2), 1e-15);
       }
+      if(rangeq instanceof RangeCountQuery) {
+        testRangeCount((RangeCountQuery<DoubleVector>) rangeq, rangeq, dv, coseps);
+      }
+    }
+  }
+
+  /**
+   * Verify range counts against range query results, for different radii and
+   * thresholds.
+   * 
+   * @param countq Range count query
+   * @param rangeq Range query for reference
+   * @param dv Query object
+   * @param eps Base radius
+   */
+  private void testRangeCount(RangeCountQuery<DoubleVector> countq, RangeQuery<DoubleVector> rangeq, DoubleVector dv, double eps) {
+    for(double r : new double[] { 0., eps, 2 * eps, 5 * eps, 1000 * eps }) {
+      final int size = rangeq.getRangeForObject(dv, r).size();
+      assertEquals("Range count does not match.", size, countq.getRangeCountForObject(dv, r, Integer.MAX_VALUE));
+      assertEquals("Range count threshold not respected.", Math.min(size, 5), countq.getRangeCountForObject(dv, r, 5));
+    }
+  }
+
+  /**
+   * Verify that distance browsing starts with the expected neighbors, and then
+   * enumerates the remaining data set in ascending order.
+   * 
+   * @param browseq Distance browsing query
+   * @param rep Data relation
+   * @param dist Distance query
+   * @param expectd Expected distances
+   * @param expectc Expected neighbors
+   */
+  private void testDistanceBrowsing(DistanceBrowsingQuery<DoubleVector> browseq, Relation<DoubleVector> rep, DistanceQuery<DoubleVector> dist, double[] expectd, double[][] expectc) {
+    int i = 0;
+    double last = Double.NEGATIVE_INFINITY;
+    for(DistanceBrowsingIter res = browseq.getNeighborsForObject(new DoubleVector(querypoint)); res.valid(); res.advance(), i++) {
+      if(i < expectd.length) {
+        assertEquals("Expected distance doesn't match.", expectd[i], res.doubleValue(), 1e-10);
+        DoubleVector c = rep.get(res);
+        assertEquals("Expected vector doesn't match: " + c.toString(), 0.0, dist.distance(c, new DoubleVector(expectc[i])), 1e-15);
+      }
+      assertTrue("Neighbors not in ascending order.", last <= res.doubleValue() + 1e-15);
+      last = res.doubleValue();
+    }
+    assertEquals("Distance browsing did not return all objects.", shoulds, i);
+  }
+
+  /**
+   * Test routine for dynamic indexes: insert and delete objects in a
+   * {@link HashmapDatabase}, and compare the results to a linear scan.
+   * 
+   * @param inputparams Parameters
+   * @param expectKNNQuery Expected kNN query class
+   * @param expectRangeQuery Expected range query class
+   */
+  protected void testDynamicEuclidean(ListParameterization inputparams, Class<?> expectKNNQuery, Class<?> expectRangeQuery) {
+    inputparams.addParameter(FileBasedDatabaseConnection.Parameterizer.INPUT_ID, dataset);
+
+    // get database
+    UpdatableDatabase db = ClassGenericsUtil.parameterizeOrAbort(HashmapDatabase.class, inputparams);
+    db.initialize();
+    Relation<DoubleVector> rep = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dist = db.getDistanceQuery(rep, EuclideanDistanceFunction.STATIC);
+    KNNQuery<DoubleVector> knnq = db.getKNNQuery(dist, k);
+    assertTrue("Returned knn query is not of expected class: expected " + expectKNNQuery + " got " + knnq.getClass(), expectKNNQuery.isAssignableFrom(knnq.getClass()));
+    RangeQuery<DoubleVector> rangeq = db.getRangeQuery(dist, eps);
+    assertTrue("Returned range query is not of expected class: expected " + expectRangeQuery + " got " + rangeq.getClass(), expectRangeQuery.isAssignableFrom(rangeq.getClass()));
+    KNNQuery<DoubleVector> linknn = QueryUtil.getLinearScanKNNQuery(dist);
+    RangeQuery<DoubleVector> linrange = QueryUtil.getLinearScanRangeQuery(dist);
+
+    Random rnd = new Random(0L);
+    ArrayModifiableDBIDs ids = DBIDUtil.newArray(rep.getDBIDs());
+    DBIDUtil.randomShuffle(ids, rnd);
+    DBIDArrayIter last = ids.iter();
+    for(int round = 0; round < 5; round++) {
+      // Insert a batch of new objects.
+      List<DoubleVector> vecs = new ArrayList<>();
+      for(int i = 0; i < 50; i++) {
+        vecs.add(new DoubleVector(new double[] { rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble() }));
+      }
+      ids.addDBIDs(db.insert(MultipleObjectsBundle.makeSimple(rep.getDataTypeInformation(), vecs)));
+      // Delete some objects, including new ones.
+      for(int i = 0; i < 80; i++) {
+        ids.swap(rnd.nextInt(ids.size()), ids.size() - 1);
+        db.delete(last.seek(ids.size() - 1));
+        ids.remove(ids.size() - 1);
+      }
+      assertEquals("Database size does not match.", ids.size(), rep.size());
+
+      for(int q = 0; q < 20; q++) {
+        DoubleVector dv = q == 0 ? new DoubleVector(querypoint) : new DoubleVector(new double[] { rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble() });
+        KNNList exp = linknn.getKNNForObject(dv, k), got = knnq.getKNNForObject(dv, k);
+        assertEquals("kNN sizes do not agree.", exp.size(), got.size());
+        for(int i = 0; i < exp.size(); i++) {
+          assertEquals("kNN distances do not agree.", exp.get(i).doubleValue(), got.get(i).doubleValue(), 1e-15);
+        }
+        DoubleDBIDList rexp = linrange.getRangeForObject(dv, eps), rgot = rangeq.getRangeForObject(dv, eps);
+        assertEquals("Range query sizes do not agree.", rexp.size(), rgot.size());
+        if(rangeq instanceof RangeCountQuery) {
+          testRangeCount((RangeCountQuery<DoubleVector>) rangeq, linrange, dv, eps);
+        }
+      }
     }
   }
 }
@@ -26,6 +26,7 @@ package de.lmu.ifi.dbs.elki.index.idistance;
 import org.junit.Test;
 
 import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.FarthestPointsInitialMeans;
+import de.lmu.ifi.dbs.elki.database.HashmapDatabase;
 import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
 import de.lmu.ifi.dbs.elki.index.AbstractTestIndexStructures;
@@ -49,4 +50,17 @@ public class TestIDistance extends AbstractTestIndexStructures {
     spatparams.addParameter(InMemoryIDistanceIndex.Factory.Parameterizer.REFERENCE_ID, FarthestPointsInitialMeans.class);
     testExactEuclidean(spatparams, InMemoryIDistanceIndex.IDistanceKNNQuery.class, InMemoryIDistanceIndex.IDistanceRangeQuery.class);
   }
+
+  /**
+   * Test {@link InMemoryIDistanceIndex} with insertions and deletions.
+   */
+  @Test
+  public void testDynamicIDistance() {
+    ListParameterization spatparams = new ListParameterization();
+    spatparams.addParameter(HashmapDatabase.Parameterizer.INDEX_ID, InMemoryIDistanceIndex.Factory.class);
+    spatparams.addParameter(InMemoryIDistanceIndex.Factory.Parameterizer.K_ID, 4);
+    spatparams.addParameter(InMemoryIDistanceIndex.Factory.Parameterizer.DISTANCE_ID, EuclideanDistanceFunction.class);
+    spatparams.addParameter(InMemoryIDistanceIndex.Factory.Parameterizer.REFERENCE_ID, FarthestPointsInitialMeans.class);
+    testDynamicEuclidean(spatparams, InMemoryIDistanceIndex.IDistanceKNNQuery.class, InMemoryIDistanceIndex.IDistanceRangeQuery.class);
+  }
 }
@@ -0,0 +1,93 @@
+package de.lmu.ifi.dbs.elki.index.lsh;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.QueryUtil;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.index.lsh.hashfamilies.EuclideanHashFunctionFamily;
+import de.lmu.ifi.dbs.elki.math.random.RandomFactory;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Test the LSH index, with and without multi-probe queries.
+ *
+ * @author Erich Schubert
+ */
+public class TestInMemoryLSHIndex extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  @Test
+  public void testMultiProbeRecall() {
+    double single = recall(1), multi = recall(16);
+    assertTrue("Multi-probe did not improve recall: " + single + " >= " + multi, multi > single);
+    assertEquals("Recall with a single probe changed.", 0.1735, single, 1e-4);
+    assertEquals("Recall with multiple probes changed.", 0.4136, multi, 1e-4);
+  }
+
+  /**
+   * Compute the average 10NN recall.
+   *
+   * @param probes Number of probes
+   * @return Average recall
+   */
+  private double recall(int probes) {
+    ListParameterization params = new ListParameterization();
+    params.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, InMemoryLSHIndex.class);
+    params.addParameter(InMemoryLSHIndex.Parameterizer.FAMILY_ID, EuclideanHashFunctionFamily.class);
+    params.addParameter(InMemoryLSHIndex.Parameterizer.L_ID, 2);
+    params.addParameter(InMemoryLSHIndex.Parameterizer.PROBES_ID, probes);
+    params.addParameter(EuclideanHashFunctionFamily.Parameterizer.NUMPROJ_ID, 6);
+    params.addParameter(EuclideanHashFunctionFamily.Parameterizer.WIDTH_ID, 4.);
+    params.addParameter(EuclideanHashFunctionFamily.Parameterizer.RANDOM_ID, RandomFactory.get(0L));
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345, params, null);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    DistanceQuery<NumberVector> dq = db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC);
+    KNNQuery<NumberVector> approx = db.getKNNQuery(dq, 10, DatabaseQuery.HINT_OPTIMIZED_ONLY);
+    assertTrue("LSH index not used.", approx instanceof InMemoryLSHIndex.Instance.LSHKNNQuery);
+    KNNQuery<NumberVector> exact = QueryUtil.getLinearScanKNNQuery(dq);
+    double sum = 0.;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      KNNList ex = exact.getKNNForDBID(it, 10), ap = approx.getKNNForDBID(it, 10);
+      assertTrue("Query object not found.", ap.contains(it));
+      sum += DBIDUtil.intersectionSize(ex, ap) / (double) ex.size();
+    }
+    return sum / rel.size();
+  }
+}
@@ -0,0 +1,196 @@
+package de.lmu.ifi.dbs.elki.index.preprocessed.knn;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.outlier.lof.LOF;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.LPIntegerNormDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.LPNormDistanceFunction;
+import de.lmu.ifi.dbs.elki.result.outlier.OutlierResult;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Test that the persistent kNN preprocessor produces the same results when
+ * computing and when reloading the neighbors.
+ * 
+ * @author Erich Schubert
+ */
+public class TestPersistentKNNPreprocessor extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  @Test
+  public void testPersistentLOF() throws IOException {
+    File tmp = File.createTempFile("elki-knn", ".bin");
+    assertTrue(tmp.delete());
+    tmp.deleteOnExit();
+    try {
+      // First run computes the kNN, second run loads them.
+      for(int run = 0; run < 2; run++) {
+        ListParameterization dbparams = new ListParameterization();
+        dbparams.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, PersistentKNNPreprocessor.Factory.class);
+        dbparams.addParameter(PersistentKNNPreprocessor.Factory.K_ID, 11);
+        dbparams.addParameter(PersistentKNNPreprocessor.Factory.Parameterizer.FILE_ID, tmp);
+        Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345, dbparams, null);
+        assertTrue("kNN file was not written.", tmp.exists());
+
+        ListParameterization params = new ListParameterization();
+        params.addParameter(LOF.Parameterizer.K_ID, 10);
+        LOF<DoubleVector> lof = ClassGenericsUtil.parameterizeOrAbort(LOF.class, params);
+        testParameterizationOk(params);
+
+        OutlierResult result = lof.run(db);
+        testSingleScore(result, 1293, 1.1945314199156365);
+        testAUC(db, "Noise", result, 0.8921680672268908);
+        if(run == 0) {
+          // Mark the file, to detect if it is rewritten.
+          assertTrue(tmp.setLastModified(0));
+        }
+        else {
+          assertEquals("kNN file was recomputed.", 0, tmp.lastModified());
+        }
+      }
+    }
+    finally {
+      tmp.delete();
+    }
+  }
+
+  /**
+   * Distance functions with different parameters must not share the cache.
+   */
+  @Test
+  public void testParameterMismatch() throws IOException {
+    Relation<NumberVector> relation = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345).getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    File tmp = File.createTempFile("elki-knn", ".bin");
+    assertTrue(tmp.delete());
+    tmp.deleteOnExit();
+    try {
+      makePreprocessor(relation, tmp, 3);
+      assertTrue("kNN file was not written.", tmp.exists());
+      assertTrue(tmp.setLastModified(0));
+      // Different exponent: must be recomputed.
+      assertSameKNN(relation, makePreprocessor(relation, tmp, 5), 5);
+      assertNotEquals("kNN file was reused for a different exponent.", 0, tmp.lastModified());
+      // Same exponent: must be reused.
+      assertTrue(tmp.setLastModified(0));
+      assertSameKNN(relation, makePreprocessor(relation, tmp, 5), 5);
+      assertEquals("kNN file was recomputed.", 0, tmp.lastModified());
+    }
+    finally {
+      tmp.delete();
+    }
+  }
+
+  /**
+   * Damaged files must be recomputed.
+   */
+  @Test
+  public void testCorruptFile() throws IOException {
+    Relation<NumberVector> relation = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345).getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    File tmp = File.createTempFile("elki-knn", ".bin");
+    assertTrue(tmp.delete());
+    tmp.deleteOnExit();
+    try {
+      makePreprocessor(relation, tmp, 3);
+      final long length = tmp.length();
+      // Invalid offsets and list sizes in the second half.
+      try (RandomAccessFile file = new RandomAccessFile(tmp, "rw")) {
+        file.seek(length >> 1);
+        for(long i = length >> 1; i < length; i++) {
+          file.write(0xFF);
+        }
+      }
+      assertSameKNN(relation, makePreprocessor(relation, tmp, 3), 3);
+      assertEquals("kNN file was not rewritten.", length, tmp.length());
+      // Truncated file.
+      try (RandomAccessFile file = new RandomAccessFile(tmp, "rw")) {
+        file.setLength(length >> 1);
+      }
+      assertSameKNN(relation, makePreprocessor(relation, tmp, 3), 3);
+      assertEquals("kNN file was not rewritten.", length, tmp.length());
+    }
+    finally {
+      tmp.delete();
+    }
+  }
+
+  /**
+   * Build a persistent kNN preprocessor with an L_p norm.
+   * 
+   * @param relation Relation
+   * @param file Cache file
+   * @param p Exponent
+   * @return Initialized preprocessor
+   */
+  private PersistentKNNPreprocessor<NumberVector> makePreprocessor(Relation<NumberVector> relation, File file, int p) {
+    ListParameterization params = new ListParameterization();
+    params.addParameter(PersistentKNNPreprocessor.Factory.K_ID, 11);
+    params.addParameter(PersistentKNNPreprocessor.Factory.DISTANCE_FUNCTION_ID, LPIntegerNormDistanceFunction.class);
+    params.addParameter(LPNormDistanceFunction.Parameterizer.P_ID, p);
+    params.addParameter(PersistentKNNPreprocessor.Factory.Parameterizer.FILE_ID, file);
+    PersistentKNNPreprocessor.Factory<NumberVector> factory = ClassGenericsUtil.parameterizeOrAbort(PersistentKNNPreprocessor.Factory.class, params);
+    testParameterizationOk(params);
+    PersistentKNNPreprocessor<NumberVector> preproc = factory.instantiate(relation);
+    preproc.initialize();
+    return preproc;
+  }
+
+  /**
+   * Compare the kNN distances to a non-persistent preprocessor.
+   * 
+   * @param relation Relation
+   * @param preproc Preprocessor to check
+   * @param p Exponent
+   */
+  private void assertSameKNN(Relation<NumberVector> relation, PersistentKNNPreprocessor<NumberVector> preproc, int p) {
+    MaterializeKNNPreprocessor<NumberVector> ref = new MaterializeKNNPreprocessor<>(relation, new LPIntegerNormDistanceFunction(p), 11);
+    ref.initialize();
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+      KNNList a = preproc.get(iter), b = ref.get(iter);
+      assertEquals("kNN size differs.", b.size(), a.size());
+      for(DoubleDBIDListIter ia = a.iter(), ib = b.iter(); ia.valid(); ia.advance(), ib.advance()) {
+        assertEquals("kNN distance differs.", ib.doubleValue(), ia.doubleValue(), 1e-12);
+      }
+    }
+  }
+}
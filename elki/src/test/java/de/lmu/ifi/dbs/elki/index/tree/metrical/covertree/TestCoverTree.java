@@ -23,11 +23,31 @@ package de.lmu.ifi.dbs.elki.index.tree.metrical.covertree;
  along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.logging.Logger;
+
 import org.junit.Test;
 
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.FileBasedDatabaseConnection;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
 import de.lmu.ifi.dbs.elki.index.AbstractTestIndexStructures;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.utilities.ClassGenericsUtil;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
 
 /**
@@ -46,4 +66,63 @@ public class TestCoverTree extends AbstractTestIndexStructures {
     metparams.addParameter(CoverTree.Factory.Parameterizer.DISTANCE_FUNCTION_ID, EuclideanDistanceFunction.class);
     testExactEuclidean(metparams, CoverTree.CoverTreeKNNQuery.class, CoverTree.CoverTreeRangeQuery.class);
   }
+
+  /**
+   * Test {@link CoverTree} with parallel construction and bulk queries.
+   */
+  @Test
+  public void testCovertreeParallel() {
+    ListParameterization metparams = new ListParameterization();
+    metparams.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, CoverTree.Factory.class);
+    metparams.addParameter(CoverTree.Factory.Parameterizer.DISTANCE_FUNCTION_ID, EuclideanDistanceFunction.class);
+    metparams.addFlag(CoverTree.Factory.Parameterizer.PARALLEL_ID);
+    metparams.addParameter(CoverTree.Factory.Parameterizer.PARALLEL_SUBTREE_ID, 20);
+    testExactEuclidean(metparams, CoverTree.CoverTreeKNNQuery.class, CoverTree.CoverTreeRangeQuery.class);
+  }
+
+  /**
+   * Parallel construction must yield the same tree, and parallel bulk queries
+   * the same results as single queries.
+   */
+  @Test
+  public void testParallelBulkKNN() {
+    ListParameterization params = new ListParameterization();
+    params.addParameter(FileBasedDatabaseConnection.Parameterizer.INPUT_ID, "data/testdata/unittests/outlier-axis-subspaces-6d.ascii");
+    Database db = ClassGenericsUtil.parameterizeOrAbort(StaticArrayDatabase.class, params);
+    db.initialize();
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dq = db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC);
+
+    // Distance computations are only counted when logging statistics.
+    Logger logger = Logger.getLogger(CoverTree.class.getName());
+    java.util.logging.Level level = logger.getLevel();
+    logger.setLevel(Logging.Level.STATISTICS);
+    CoverTree<DoubleVector> seq, par;
+    try {
+      seq = new CoverTree<>(rel, EuclideanDistanceFunction.STATIC, 1.3, 10);
+      seq.initialize();
+      // Fork small subtrees, so that the data set splits into many tasks.
+      par = new CoverTree<>(rel, EuclideanDistanceFunction.STATIC, 1.3, 10, true, 20);
+      par.initialize();
+    }
+    finally {
+      logger.setLevel(level);
+    }
+    assertTrue("Too few subtrees were built in parallel.", par.forkedSubtrees.getValue() >= 10);
+    assertEquals("Parallel construction computed a different number of distances.", seq.distComputations.getValue(), par.distComputations.getValue());
+
+    KNNQuery<DoubleVector> seqq = seq.getKNNQuery(dq), parq = par.getKNNQuery(dq);
+    ArrayDBIDs ids = DBIDUtil.ensureArray(rel.getDBIDs());
+    List<? extends KNNList> bulk = parq.getKNNForBulkDBIDs(ids, 10);
+    assertEquals(ids.size(), bulk.size());
+    int i = 0;
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance(), i++) {
+      KNNList exp = seqq.getKNNForDBID(it, 10), got = bulk.get(i);
+      assertEquals("Neighborhood size does not match.", exp.size(), got.size());
+      DoubleDBIDListIter ei = exp.iter(), gi = got.iter();
+      for(; ei.valid(); ei.advance(), gi.advance()) {
+        assertEquals("Distances do not match.", ei.doubleValue(), gi.doubleValue(), 0.);
+      }
+    }
+  }
 }
@@ -46,4 +46,17 @@ public class TestSimplifiedCoverTree extends AbstractTestIndexStructures {
     metparams.addParameter(SimplifiedCoverTree.Factory.Parameterizer.DISTANCE_FUNCTION_ID, EuclideanDistanceFunction.class);
     testExactEuclidean(metparams, SimplifiedCoverTree.CoverTreeKNNQuery.class, SimplifiedCoverTree.CoverTreeRangeQuery.class);
   }
+
+  /**
+   * Test {@link SimplifiedCoverTree} with parallel construction.
+   */
+  @Test
+  public void testSimplifiedCovertreeParallel() {
+    ListParameterization metparams = new ListParameterization();
+    metparams.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, SimplifiedCoverTree.Factory.class);
+    metparams.addParameter(SimplifiedCoverTree.Factory.Parameterizer.DISTANCE_FUNCTION_ID, EuclideanDistanceFunction.class);
+    metparams.addFlag(SimplifiedCoverTree.Factory.Parameterizer.PARALLEL_ID);
+    metparams.addParameter(SimplifiedCoverTree.Factory.Parameterizer.PARALLEL_SUBTREE_ID, 20);
+    testExactEuclidean(metparams, SimplifiedCoverTree.CoverTreeKNNQuery.class, SimplifiedCoverTree.CoverTreeRangeQuery.class);
+  }
 }
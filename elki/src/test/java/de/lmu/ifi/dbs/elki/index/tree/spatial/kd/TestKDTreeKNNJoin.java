@@ -0,0 +1,89 @@
+package de.lmu.ifi.dbs.elki.index.tree.spatial.kd;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.KNNList;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.LinearScanDistanceKNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.SpatialPrimitiveDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.ManhattanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+
+/**
+ * Test the dual-tree kNN join against a linear scan.
+ *
+ * @author Erich Schubert
+ */
+public class TestKDTreeKNNJoin extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  @Test
+  public void testKNNJoin() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    for(int leafsize : new int[] { 1, 2, 8 }) {
+      SmallMemoryKDTree<DoubleVector> small = new SmallMemoryKDTree<>(rel, leafsize);
+      small.initialize();
+      MinimalisticMemoryKDTree<DoubleVector> mini = new MinimalisticMemoryKDTree<>(rel, leafsize);
+      mini.initialize();
+      testJoin(rel, small.getKNNJoin(EuclideanDistanceFunction.STATIC).run(10), EuclideanDistanceFunction.STATIC, 10);
+      testJoin(rel, small.getKNNJoin(SquaredEuclideanDistanceFunction.STATIC).run(7), SquaredEuclideanDistanceFunction.STATIC, 7);
+      testJoin(rel, mini.getKNNJoin(ManhattanDistanceFunction.STATIC).run(10), ManhattanDistanceFunction.STATIC, 10);
+    }
+  }
+
+  /**
+   * Compare the join result to a linear scan.
+   *
+   * @param rel Relation
+   * @param join Join result
+   * @param df Distance function
+   * @param k Number of neighbors
+   */
+  private void testJoin(Relation<DoubleVector> rel, WritableDataStore<KNNList> join, SpatialPrimitiveDistanceFunction<? super DoubleVector> df, int k) {
+    DistanceQuery<DoubleVector> dq = rel.getDistanceQuery(df);
+    KNNQuery<DoubleVector> lin = new LinearScanDistanceKNNQuery<>(dq);
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      KNNList exp = lin.getKNNForDBID(it, k), got = join.get(it);
+      assertEquals("Neighborhood size does not match.", exp.size(), got.size());
+      DoubleDBIDListIter ei = exp.iter(), gi = got.iter();
+      for(; ei.valid(); ei.advance(), gi.advance()) {
+        assertEquals("Distances do not match.", ei.doubleValue(), gi.doubleValue(), 1e-15);
+      }
+    }
+  }
+}
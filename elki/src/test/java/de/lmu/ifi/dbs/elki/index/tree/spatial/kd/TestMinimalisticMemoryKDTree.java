@@ -25,6 +25,7 @@ package de.lmu.ifi.dbs.elki.index.tree.spatial.kd;
 
 import org.junit.Test;
 
+import de.lmu.ifi.dbs.elki.database.HashmapDatabase;
 import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
 import de.lmu.ifi.dbs.elki.index.AbstractTestIndexStructures;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
@@ -44,4 +45,15 @@ public class TestMinimalisticMemoryKDTree extends AbstractTestIndexStructures {
     spatparams.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, MinimalisticMemoryKDTree.Factory.class);
     testExactEuclidean(spatparams, MinimalisticMemoryKDTree.KDTreeKNNQuery.class, MinimalisticMemoryKDTree.KDTreeRangeQuery.class);
   }
+
+  /**
+   * Test {@link MinimalisticMemoryKDTree} with insertions and deletions.
+   */
+  @Test
+  public void testDynamicMinimalisticMemoryKDTree() {
+    ListParameterization spatparams = new ListParameterization();
+    spatparams.addParameter(HashmapDatabase.Parameterizer.INDEX_ID, MinimalisticMemoryKDTree.Factory.class);
+    spatparams.addParameter(MinimalisticMemoryKDTree.Factory.Parameterizer.LEAFSIZE_P, 4);
+    testDynamicEuclidean(spatparams, MinimalisticMemoryKDTree.KDTreeKNNQuery.class, MinimalisticMemoryKDTree.KDTreeRangeQuery.class);
+  }
 }
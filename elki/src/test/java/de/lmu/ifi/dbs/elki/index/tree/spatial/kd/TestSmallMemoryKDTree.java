@@ -25,6 +25,7 @@ package de.lmu.ifi.dbs.elki.index.tree.spatial.kd;
 
 import org.junit.Test;
 
+import de.lmu.ifi.dbs.elki.database.HashmapDatabase;
 import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
 import de.lmu.ifi.dbs.elki.index.AbstractTestIndexStructures;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
@@ -44,4 +45,14 @@ public class TestSmallMemoryKDTree extends AbstractTestIndexStructures {
     spatparams.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, SmallMemoryKDTree.Factory.class);
     testExactEuclidean(spatparams, SmallMemoryKDTree.KDTreeKNNQuery.class, SmallMemoryKDTree.KDTreeRangeQuery.class);
   }
+
+  /**
+   * Test {@link SmallMemoryKDTree} with insertions and deletions.
+   */
+  @Test
+  public void testDynamicSmallMemoryKDTree() {
+    ListParameterization spatparams = new ListParameterization();
+    spatparams.addParameter(HashmapDatabase.Parameterizer.INDEX_ID, SmallMemoryKDTree.Factory.class);
+    testDynamicEuclidean(spatparams, SmallMemoryKDTree.KDTreeKNNQuery.class, SmallMemoryKDTree.KDTreeRangeQuery.class);
+  }
 }
@@ -0,0 +1,66 @@
+package de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.packed;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
+import de.lmu.ifi.dbs.elki.index.AbstractTestIndexStructures;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.AbstractRStarTreeFactory;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.strategies.bulk.OneDimSortBulkSplit;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
+
+/**
+ * Unit test for the packed R-tree.
+ *
+ * @author Erich Schubert
+ */
+public class TestPackedRTree extends AbstractTestIndexStructures {
+  /**
+   * Test {@link PackedRTree} using a file based database connection.
+   */
+  @Test
+  public void testPackedRTree() {
+    ListParameterization spatparams = new ListParameterization();
+    spatparams.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, PackedRTree.Factory.class);
+    testExactEuclidean(spatparams, PackedRTree.PackedRTreeKNNQuery.class, PackedRTree.PackedRTreeRangeQuery.class);
+    // Small nodes, for a deeper tree:
+    spatparams = new ListParameterization();
+    spatparams.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, PackedRTree.Factory.class);
+    spatparams.addParameter(PackedRTree.Factory.Parameterizer.FANOUT_ID, 3);
+    testExactEuclidean(spatparams, PackedRTree.PackedRTreeKNNQuery.class, PackedRTree.PackedRTreeRangeQuery.class);
+  }
+
+  /**
+   * Test {@link PackedRTree} with a different bulk loading strategy.
+   */
+  @Test
+  public void testPackedRTreeOneDimSort() {
+    ListParameterization spatparams = new ListParameterization();
+    spatparams.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, PackedRTree.Factory.class);
+    spatparams.addParameter(AbstractRStarTreeFactory.Parameterizer.BULK_SPLIT_ID, OneDimSortBulkSplit.class);
+    spatparams.addParameter(PackedRTree.Factory.Parameterizer.FANOUT_ID, 8);
+    testExactEuclidean(spatparams, PackedRTree.PackedRTreeKNNQuery.class, PackedRTree.PackedRTreeRangeQuery.class);
+  }
+}
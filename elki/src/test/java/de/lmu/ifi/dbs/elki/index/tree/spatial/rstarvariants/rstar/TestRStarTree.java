@@ -23,10 +23,14 @@ package de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.rstar;
  along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import java.io.File;
+import java.io.IOException;
+
 import org.junit.Test;
 
 import de.lmu.ifi.dbs.elki.database.StaticArrayDatabase;
 import de.lmu.ifi.dbs.elki.index.AbstractTestIndexStructures;
+import de.lmu.ifi.dbs.elki.index.PagedIndexFactory;
 import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.AbstractRStarTreeFactory;
 import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.query.RStarTreeKNNQuery;
 import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.query.RStarTreeRangeQuery;
@@ -47,6 +51,13 @@ import de.lmu.ifi.dbs.elki.math.spacefillingcurves.HilbertSpatialSorter;
 import de.lmu.ifi.dbs.elki.math.spacefillingcurves.PeanoSpatialSorter;
 import de.lmu.ifi.dbs.elki.math.spacefillingcurves.ZCurveSpatialSorter;
 import de.lmu.ifi.dbs.elki.persistent.AbstractPageFileFactory;
+import de.lmu.ifi.dbs.elki.persistent.ConcurrentPageCache;
+import de.lmu.ifi.dbs.elki.persistent.ConcurrentPageCacheFactory;
+import de.lmu.ifi.dbs.elki.persistent.LRUCachePageFileFactory;
+import de.lmu.ifi.dbs.elki.persistent.MappedPageFile;
+import de.lmu.ifi.dbs.elki.persistent.MappedPageFileFactory;
+import de.lmu.ifi.dbs.elki.persistent.MemoryPageFileFactory;
+import de.lmu.ifi.dbs.elki.persistent.PersistentPageFileFactory;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.ListParameterization;
 
 /**
@@ -93,6 +104,48 @@ public class TestRStarTree extends AbstractTestIndexStructures {
     testExactCosine(spatparams, RStarTreeKNNQuery.class, RStarTreeRangeQuery.class);
   }
 
+  /**
+   * Test {@link RStarTree} with a small {@link ConcurrentPageCache}, such that
+   * pages are evicted and reloaded during the queries.
+   */
+  @Test
+  public void testRStarTreeConcurrentCache() {
+    ListParameterization spatparams = new ListParameterization();
+    spatparams.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, RStarTreeFactory.class);
+    spatparams.addParameter(PagedIndexFactory.Parameterizer.PAGEFILE_ID, ConcurrentPageCacheFactory.class);
+    spatparams.addParameter(LRUCachePageFileFactory.Parameterizer.PAGEFILE_ID, MemoryPageFileFactory.class);
+    spatparams.addParameter(LRUCachePageFileFactory.Parameterizer.CACHE_SIZE_ID, 300 * 32);
+    spatparams.addFlag(ConcurrentPageCacheFactory.Parameterizer.PIN_DIRECTORY_ID);
+    spatparams.addParameter(AbstractPageFileFactory.Parameterizer.PAGE_SIZE_ID, 300);
+    testExactEuclidean(spatparams, RStarTreeKNNQuery.class, RStarTreeRangeQuery.class);
+  }
+
+  /**
+   * Test {@link RStarTree} stored in a {@link MappedPageFile}, both memory
+   * mapped and using positional I/O.
+   * 
+   * @throws IOException on temporary file errors
+   */
+  @Test
+  public void testRStarTreeMappedPageFile() throws IOException {
+    for(boolean positional : new boolean[] { false, true }) {
+      File tmp = File.createTempFile("elki-rstar", ".idx");
+      tmp.delete(); // Page file must not exist yet.
+      tmp.deleteOnExit();
+      ListParameterization spatparams = new ListParameterization();
+      spatparams.addParameter(StaticArrayDatabase.Parameterizer.INDEX_ID, RStarTreeFactory.class);
+      spatparams.addParameter(PagedIndexFactory.Parameterizer.PAGEFILE_ID, MappedPageFileFactory.class);
+      spatparams.addParameter(PersistentPageFileFactory.Parameterizer.FILE_ID, tmp);
+      if(positional) {
+        spatparams.addFlag(MappedPageFileFactory.Parameterizer.POSITIONAL_ID);
+      }
+      // Leave room for the serialization overhead.
+      spatparams.addParameter(AbstractPageFileFactory.Parameterizer.PAGE_SIZE_ID, 1000);
+      testExactEuclidean(spatparams, RStarTreeKNNQuery.class, RStarTreeRangeQuery.class);
+      tmp.delete();
+    }
+  }
+
   /**
    * Test {@link RStarTree} using {@link RTreeLinearSplit}
    */
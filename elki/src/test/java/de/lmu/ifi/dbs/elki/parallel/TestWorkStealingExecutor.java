@@ -0,0 +1,103 @@
+package de.lmu.ifi.dbs.elki.parallel;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.math.DoubleMinMax;
+import de.lmu.ifi.dbs.elki.parallel.processor.DoubleMinMaxProcessor;
+import de.lmu.ifi.dbs.elki.parallel.processor.Processor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedDouble;
+
+/**
+ * Test the work-stealing executor.
+ * 
+ * @author Erich Schubert
+ */
+public class TestWorkStealingExecutor implements JUnit4Test {
+  /**
+   * Number of objects to process.
+   */
+  final int SIZE = 10007;
+
+  @Test
+  public void testAllProcessedOnce() {
+    testExecutor(new WorkStealingExecutor());
+    testExecutor(new WorkStealingExecutor(3, 1));
+    testExecutor(new WorkStealingExecutor(1, 100));
+  }
+
+  private void testExecutor(WorkStealingExecutor exec) {
+    DBIDRange ids = DBIDUtil.generateStaticDBIDRange(SIZE);
+    final WritableIntegerDataStore counts = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP, 0);
+    final SharedDouble value = new SharedDouble();
+    // Count each object, and produce a value for the min-max sink.
+    Processor counter = new Processor() {
+      @Override
+      public Instance instantiate(Executor executor) {
+        final SharedDouble.Instance out = executor.getInstance(value);
+        return new Instance() {
+          @Override
+          public void map(DBIDRef id) {
+            counts.increment(id, 1);
+            out.set(DBIDUtil.asInteger(id));
+          }
+        };
+      }
+
+      @Override
+      public void cleanup(Instance inst) {
+        // Nothing to do.
+      }
+    };
+    DoubleMinMaxProcessor mm = new DoubleMinMaxProcessor();
+    mm.connectInput(value);
+
+    WorkStealingExecutor.Statistics stats = exec.execute(ids, counter, mm);
+
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      assertEquals("Object not processed exactly once.", 1, counts.intValue(iter));
+    }
+    DoubleMinMax minmax = mm.getMinMax();
+    DBIDArrayIter it = ids.iter();
+    assertEquals("Minimum not correct.", DBIDUtil.asInteger(it.seek(0)), minmax.getMin(), 0.);
+    assertEquals("Maximum not correct.", DBIDUtil.asInteger(it.seek(SIZE - 1)), minmax.getMax(), 0.);
+    long objects = 0;
+    for(int i = 0; i < stats.getNumWorkers(); i++) {
+      objects += stats.getObjects(i);
+    }
+    assertEquals("Statistics do not cover all objects.", SIZE, objects);
+  }
+}
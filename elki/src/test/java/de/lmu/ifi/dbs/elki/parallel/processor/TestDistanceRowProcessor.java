@@ -0,0 +1,81 @@
+package de.lmu.ifi.dbs.elki.parallel.processor;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.math.random.RandomFactory;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+
+/**
+ * Test the parallel distance row processor against sequential distance
+ * computations.
+ *
+ * @author Erich Schubert
+ */
+public class TestDistanceRowProcessor extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  @Test
+  public void testDistanceRows() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    DistanceQuery<NumberVector> dq = db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC);
+    ArrayDBIDs columns = DBIDUtil.ensureArray(DBIDUtil.randomSample(rel.getDBIDs(), 20, RandomFactory.get(0L)));
+
+    DistanceRowProcessor<NumberVector> rowm = new DistanceRowProcessor<>(columns, dq);
+    SharedObject<double[]> rowv = new SharedObject<>();
+    rowm.connectRowOutput(rowv);
+    WritableDataStore<double[]> rows = DataStoreUtil.makeStorage(rel.getDBIDs(), DataStoreFactory.HINT_TEMP, double[].class);
+    WriteDataStoreProcessor<double[]> storem = new WriteDataStoreProcessor<>(rows);
+    storem.connectInput(rowv);
+    ParallelExecutor.run(rel.getDBIDs(), rowm, storem);
+
+    DBIDArrayIter col = columns.iter();
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      double[] row = rows.get(it);
+      assertEquals("Row length differs.", columns.size(), row.length);
+      for(col.seek(0); col.valid(); col.advance()) {
+        assertEquals("Distance differs.", dq.distance(it, col), row[col.getOffset()], 0.);
+      }
+    }
+    rows.destroy();
+  }
+}
@@ -0,0 +1,85 @@
+package de.lmu.ifi.dbs.elki.parallel.processor;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.algorithm.AbstractSimpleAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.variables.SharedObject;
+
+/**
+ * Test the parallel range query processor against sequential range queries.
+ *
+ * @author Erich Schubert
+ */
+public class TestRangeProcessor extends AbstractSimpleAlgorithmTest implements JUnit4Test {
+  @Test
+  public void testRangeQueries() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    DistanceQuery<NumberVector> dq = db.getDistanceQuery(rel, EuclideanDistanceFunction.STATIC);
+    RangeQuery<NumberVector> rq = db.getRangeQuery(dq);
+    final double radius = 0.05;
+
+    RangeProcessor<NumberVector> rangem = new RangeProcessor<>(radius, rq);
+    SharedObject<DoubleDBIDList> rangev = new SharedObject<>();
+    rangem.connectRangeOutput(rangev);
+    WritableDataStore<DoubleDBIDList> results = DataStoreUtil.makeStorage(rel.getDBIDs(), DataStoreFactory.HINT_TEMP, DoubleDBIDList.class);
+    WriteDataStoreProcessor<DoubleDBIDList> storem = new WriteDataStoreProcessor<>(results);
+    storem.connectInput(rangev);
+    ParallelExecutor.run(rel.getDBIDs(), rangem, storem);
+
+    int total = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      DoubleDBIDList seq = rq.getRangeForDBID(it, radius), par = results.get(it);
+      assertEquals("Result size differs.", seq.size(), par.size());
+      total += par.size();
+      for(DoubleDBIDListIter a = seq.iter(), b = par.iter(); a.valid(); a.advance(), b.advance()) {
+        assertEquals("Distance differs.", a.doubleValue(), b.doubleValue(), 0.);
+        assertEquals("Neighbor differs.", DBIDUtil.asInteger(a), DBIDUtil.asInteger(b));
+      }
+    }
+    assertTrue("Radius too small for a meaningful test.", total > 2 * rel.size());
+    results.destroy();
+  }
+}
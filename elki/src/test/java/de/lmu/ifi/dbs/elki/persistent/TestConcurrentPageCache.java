@@ -0,0 +1,169 @@
+package de.lmu.ifi.dbs.elki.persistent;
+
+/*
+ This file is part of ELKI:
+ Environment for Developing KDD-Applications Supported by Index-Structures
+
+ Copyright (C) 2015
+ Ludwig-Maximilians-Universität München
+ Lehr- und Forschungseinheit für Datenbanksysteme
+ ELKI Development Team
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Affero General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.JUnit4Test;
+import de.lmu.ifi.dbs.elki.index.tree.spatial.rstarvariants.rstar.RStarTreeNode;
+
+/**
+ * Test the {@link ConcurrentPageCache} under concurrent reads and evictions.
+ * 
+ * @author Erich Schubert
+ */
+public class TestConcurrentPageCache implements JUnit4Test {
+  /**
+   * Page size.
+   */
+  private static final int PAGESIZE = 32;
+
+  /**
+   * Concurrent reads and writes on a cache much smaller than the file.
+   * 
+   * @throws Exception on errors
+   */
+  @Test
+  public void testConcurrentReadEvict() throws Exception {
+    final int numpages = 256, threads = 8, ops = 20000;
+    final CountingPageFile file = new CountingPageFile();
+    final ConcurrentPageCache<RStarTreeNode> cache = new ConcurrentPageCache<>(32 * PAGESIZE, file, true);
+    cache.initialize(new DefaultPageHeader(PAGESIZE));
+    for(int i = 0; i < numpages; i++) {
+      // Every 16th page is a directory page.
+      assertEquals(i, cache.writePage(new RStarTreeNode(4, (i & 15) != 0)));
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Void>> results = new ArrayList<>();
+      for(int t = 0; t < threads; t++) {
+        final long seed = t;
+        results.add(pool.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            Random rnd = new Random(seed);
+            for(int i = 0; i < ops; i++) {
+              final int id = rnd.nextInt(numpages);
+              if(rnd.nextInt(10) == 0) {
+                // Replace the page with a new, dirty, instance.
+                RStarTreeNode node = new RStarTreeNode(4, (id & 15) != 0);
+                node.setPageID(id);
+                cache.writePage(node);
+                continue;
+              }
+              RStarTreeNode page = cache.readPage(id);
+              assertNotNull("Page lost: " + id, page);
+              assertEquals("Wrong page returned.", id, page.getPageID());
+            }
+            return null;
+          }
+        }));
+      }
+      for(Future<Void> f : results) {
+        f.get(); // Rethrows assertion errors.
+      }
+    }
+    finally {
+      pool.shutdown();
+    }
+    assertTrue("Cache exceeds its capacity: " + cache.size(), cache.size() <= 32);
+    cache.flush();
+    assertEquals("Cache not empty after flushing.", 0, cache.size());
+    for(int i = 0; i < numpages; i++) {
+      RStarTreeNode page = file.readPage(i);
+      assertNotNull("Page was not written back: " + i, page);
+      assertEquals(i, page.getPageID());
+      assertTrue("Page still dirty: " + i, !page.isDirty());
+    }
+  }
+
+  /**
+   * Directory pages are pinned when a pin becomes available.
+   */
+  @Test
+  public void testLatePinning() {
+    final CountingPageFile file = new CountingPageFile();
+    // Eight pages, a single segment: up to four pinned pages.
+    final ConcurrentPageCache<RStarTreeNode> cache = new ConcurrentPageCache<>(8 * PAGESIZE, file, true);
+    cache.initialize(new DefaultPageHeader(PAGESIZE));
+    for(int i = 0; i < 5; i++) {
+      cache.writePage(new RStarTreeNode(4, false));
+    }
+    // Page 4 did not get a pin. Free one, and access page 4 again.
+    cache.deletePage(0);
+    RStarTreeNode dir = cache.readPage(4);
+    assertNotNull(dir);
+    // Flood the cache with leaf pages.
+    for(int i = 0; i < 50; i++) {
+      cache.writePage(new RStarTreeNode(4, true));
+    }
+    for(int i = 0; i < 50; i++) {
+      cache.readPage(i + 5);
+    }
+    final int before = file.reads.get();
+    assertSame("Directory page was not pinned.", dir, cache.readPage(4));
+    assertEquals("Directory page was evicted.", before, file.reads.get());
+  }
+
+  /**
+   * Memory page file counting read accesses.
+   * 
+   * @author Erich Schubert
+   * 
+   * @apiviz.exclude
+   */
+  private static class CountingPageFile extends MemoryPageFile<RStarTreeNode> {
+    /**
+     * Number of reads.
+     */
+    AtomicInteger reads = new AtomicInteger();
+
+    /**
+     * Constructor.
+     */
+    public CountingPageFile() {
+      super(PAGESIZE);
+    }
+
+    @Override
+    public synchronized RStarTreeNode readPage(int pageID) {
+      reads.incrementAndGet();
+      return super.readPage(pageID);
+    }
+  }
+}